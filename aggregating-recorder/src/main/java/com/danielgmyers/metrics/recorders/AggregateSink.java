@@ -0,0 +1,32 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Receives the aggregates accumulated by an AggregatingMetricRecorderFactory at the end of each flush interval.
+ */
+@FunctionalInterface
+public interface AggregateSink {
+
+    /**
+     * Called from the flushing thread with every metric which had at least one sample during the interval.
+     */
+    void flush(Instant intervalStart, Instant intervalEnd, List<MetricAggregate> aggregates);
+}
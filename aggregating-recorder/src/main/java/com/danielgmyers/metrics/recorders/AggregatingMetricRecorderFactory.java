@@ -0,0 +1,104 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Produces MetricRecorder objects whose counts and durations are rolled up into per-operation statistics when closed,
+ * and hands those statistics to an AggregateSink at a fixed interval, instead of emitting each recorder individually.
+ */
+public class AggregatingMetricRecorderFactory extends PublishingMetricRecorderFactory {
+
+    private final MetricAggregator aggregator;
+    private final AggregateSink sink;
+    private final Clock clock;
+    private final ScheduledExecutorService scheduler;
+    private Instant intervalStart;
+
+    public AggregatingMetricRecorderFactory(AggregateSink sink, Duration flushInterval) {
+        this(sink, flushInterval, Clock.systemUTC());
+    }
+
+    /**
+     * Creates a factory which flushes to the sink at the specified interval.
+     *
+     * @param clock Used only to timestamp the flush intervals reported to the sink.
+     */
+    public AggregatingMetricRecorderFactory(AggregateSink sink, Duration flushInterval, Clock clock) {
+        this(new MetricAggregator(), sink, flushInterval, clock);
+    }
+
+    public AggregatingMetricRecorderFactory(MetricAggregator aggregator, AggregateSink sink, Duration flushInterval, Clock clock) {
+        super(aggregator);
+        if (flushInterval == null || flushInterval.isNegative() || flushInterval.isZero()) {
+            throw new IllegalArgumentException("Flush interval must be positive.");
+        }
+        this.aggregator = aggregator;
+        this.sink = sink;
+        this.clock = clock;
+        this.intervalStart = clock.instant();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "aggregating-metric-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalNanos = flushInterval.toNanos();
+        scheduler.scheduleAtFixedRate(this::flushQuietly, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public MetricAggregator getAggregator() {
+        return aggregator;
+    }
+
+    /**
+     * Immediately hands everything aggregated since the last flush to the sink, and starts a new interval.
+     */
+    public synchronized void flush() {
+        Instant intervalEnd = clock.instant();
+        List<MetricAggregate> aggregates = aggregator.drain();
+        Instant start = intervalStart;
+        intervalStart = intervalEnd;
+        if (!aggregates.isEmpty()) {
+            sink.flush(start, intervalEnd, aggregates);
+        }
+    }
+
+    /**
+     * Stops the periodic flush, waiting up to the specified timeout for one in progress to finish, then flushes
+     * whatever remains. Recorders closed after this returns are aggregated but never flushed.
+     */
+    public void shutdown(Duration timeout) throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        flush();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // The sink failed; the interval's aggregates are lost, but later intervals should still be flushed.
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.danielgmyers.metrics.MetricKey;
+import com.danielgmyers.metrics.MetricPublisher;
+import com.danielgmyers.metrics.MetricSnapshot;
+import com.danielgmyers.metrics.StandardMetricNames;
+
+/**
+ * A MetricPublisher which keeps the complete snapshots of the slowest recorders (by their Time duration) for each
+ * Operation, so the requests behind a latency regression can be inspected rather than just its percentiles.
+ *
+ * Exemplars are kept per time window, aligned to multiples of the window length since the epoch. The exemplars of
+ * the window in progress and of the one before it can be queried; older ones are discarded. Each operation keeps at
+ * most twice the configured number of snapshots however much traffic it sees, and snapshots without a Time duration
+ * are ignored. As with MetricAggregator, operations are never removed, so their names should come from a bounded set.
+ *
+ * Each operation's exemplars are a min-heap ordered by Time. Once the heap is full, snapshots no slower than its
+ * fastest entry are rejected with a single volatile read, so the lock is only taken for snapshots that will be kept.
+ * A snapshot published for a window the operation has already moved past, because its publisher read the clock just
+ * before the window changed or because the clock stepped backwards, is dropped.
+ */
+public final class ExemplarStore implements MetricPublisher {
+
+    private static final String UNKNOWN_OPERATION = "";
+    private static final MetricKey TIME = StandardMetricNames.TIME.getKey();
+    // Keeps everything until the heap is full.
+    private static final long NO_FLOOR = -1;
+    private static final Comparator<MetricSnapshot> SLOWEST_FIRST =
+        Comparator.comparingLong(ExemplarStore::getTimeNanos).reversed();
+
+    private final int exemplarsPerOperation;
+    private final long windowMillis;
+    private final Clock clock;
+    private final Map<String, OperationExemplars> operations = new ConcurrentHashMap<>();
+
+    public ExemplarStore(int exemplarsPerOperation, Duration window) {
+        this(exemplarsPerOperation, window, Clock.systemUTC());
+    }
+
+    /**
+     * Creates a store which keeps the slowest exemplarsPerOperation snapshots for each operation in each window.
+     *
+     * @param clock Used to determine which window a snapshot was published in.
+     */
+    public ExemplarStore(int exemplarsPerOperation, Duration window, Clock clock) {
+        if (exemplarsPerOperation < 1) {
+            throw new IllegalArgumentException("At least one exemplar per operation must be kept.");
+        }
+        if (window == null || window.toMillis() < 1) {
+            throw new IllegalArgumentException("The window must be at least one millisecond.");
+        }
+        this.exemplarsPerOperation = exemplarsPerOperation;
+        this.windowMillis = window.toMillis();
+        this.clock = clock;
+    }
+
+    @Override
+    public void publish(MetricSnapshot snapshot) {
+        long timeNanos = getTimeNanos(snapshot);
+        if (timeNanos < 0) {
+            return;
+        }
+        String operation = snapshot.getProperty(StandardMetricNames.OPERATION.toString());
+        if (operation == null) {
+            operation = UNKNOWN_OPERATION;
+        }
+        OperationExemplars exemplars = operations.get(operation);
+        if (exemplars == null) {
+            exemplars = operations.computeIfAbsent(operation, o -> new OperationExemplars(exemplarsPerOperation));
+        }
+        exemplars.offer(currentWindow(), timeNanos, snapshot);
+    }
+
+    /**
+     * Returns the slowest snapshots published for the operation so far in the current window, slowest first.
+     */
+    public List<MetricSnapshot> getSlowest(String operation) {
+        OperationExemplars exemplars = operations.get(operation);
+        if (exemplars == null) {
+            return Collections.emptyList();
+        }
+        return exemplars.getCurrent(currentWindow());
+    }
+
+    /**
+     * Returns the slowest snapshots published for the operation during the previous window, slowest first.
+     */
+    public List<MetricSnapshot> getSlowestInPreviousWindow(String operation) {
+        OperationExemplars exemplars = operations.get(operation);
+        if (exemplars == null) {
+            return Collections.emptyList();
+        }
+        return exemplars.getPrevious(currentWindow());
+    }
+
+    /**
+     * Returns the operations which have had exemplars published.
+     */
+    public Set<String> getOperations() {
+        return Collections.unmodifiableSet(operations.keySet());
+    }
+
+    /**
+     * Returns the time at which the current window started.
+     */
+    public Instant getWindowStart() {
+        return Instant.ofEpochMilli(currentWindow() * windowMillis);
+    }
+
+    private long currentWindow() {
+        return Math.floorDiv(clock.millis(), windowMillis);
+    }
+
+    private static long getTimeNanos(MetricSnapshot snapshot) {
+        for (int i = 0; i < snapshot.getNumDurations(); i++) {
+            if (snapshot.getDurationKey(i) == TIME) {
+                return snapshot.getDurationNanos(i);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The exemplars for one operation. The current window's heap and the previous window's exemplars are both
+     * preallocated, and swap roles when the window changes.
+     */
+    private static final class OperationExemplars {
+        private long[] times;
+        private MetricSnapshot[] snapshots;
+        private int size;
+        private volatile long window;
+        private volatile long floorNanos = NO_FLOOR;
+
+        private long[] previousTimes;
+        private MetricSnapshot[] previousSnapshots;
+        private int previousSize;
+
+        OperationExemplars(int capacity) {
+            times = new long[capacity];
+            snapshots = new MetricSnapshot[capacity];
+            previousTimes = new long[capacity];
+            previousSnapshots = new MetricSnapshot[capacity];
+            window = Long.MIN_VALUE;
+        }
+
+        void offer(long currentWindow, long timeNanos, MetricSnapshot snapshot) {
+            // window is read before floorNanos, and rotate() writes them in the opposite order, so a stale floor
+            // from the previous window is never applied to the current one.
+            // A publisher which read the clock before another one moved to the next window is too late, and its
+            // snapshot is dropped rather than rewinding the window.
+            long heapWindow = window;
+            if (heapWindow > currentWindow || heapWindow == currentWindow && timeNanos <= floorNanos) {
+                return;
+            }
+            synchronized (this) {
+                if (!rotate(currentWindow)) {
+                    return;
+                }
+                if (size < times.length) {
+                    times[size] = timeNanos;
+                    snapshots[size] = snapshot;
+                    siftUp(size);
+                    size++;
+                } else if (timeNanos > times[0]) {
+                    times[0] = timeNanos;
+                    snapshots[0] = snapshot;
+                    siftDown();
+                } else {
+                    return;
+                }
+                if (size == times.length) {
+                    floorNanos = times[0];
+                }
+            }
+        }
+
+        synchronized List<MetricSnapshot> getCurrent(long currentWindow) {
+            return copyOf(currentWindow, currentWindow);
+        }
+
+        synchronized List<MetricSnapshot> getPrevious(long currentWindow) {
+            return copyOf(currentWindow, currentWindow - 1);
+        }
+
+        private List<MetricSnapshot> copyOf(long currentWindow, long requestedWindow) {
+            rotate(currentWindow);
+            // If the clock has stepped backwards, the requested window may be one the exemplars have already moved
+            // past.
+            if (requestedWindow == window) {
+                return sortedCopy(snapshots, size);
+            } else if (requestedWindow == window - 1) {
+                return sortedCopy(previousSnapshots, previousSize);
+            }
+            return new ArrayList<>();
+        }
+
+        /**
+         * Moves the exemplars forward to currentWindow, returning false without changing anything if they are already
+         * past it.
+         */
+        private boolean rotate(long currentWindow) {
+            long heapWindow = window;
+            if (heapWindow == currentWindow) {
+                return true;
+            } else if (heapWindow > currentWindow) {
+                return false;
+            }
+            floorNanos = NO_FLOOR;
+            Arrays.fill(previousSnapshots, 0, previousSize, null);
+            previousSize = 0;
+            if (heapWindow == currentWindow - 1) {
+                final long[] emptyTimes = previousTimes;
+                final MetricSnapshot[] emptySnapshots = previousSnapshots;
+                previousTimes = times;
+                previousSnapshots = snapshots;
+                previousSize = size;
+                times = emptyTimes;
+                snapshots = emptySnapshots;
+            } else {
+                Arrays.fill(snapshots, 0, size, null);
+            }
+            size = 0;
+            window = currentWindow;
+            return true;
+        }
+
+        private void siftUp(int index) {
+            int child = index;
+            while (child > 0) {
+                int parent = (child - 1) >>> 1;
+                if (times[parent] <= times[child]) {
+                    break;
+                }
+                swap(child, parent);
+                child = parent;
+            }
+        }
+
+        private void siftDown() {
+            int parent = 0;
+            while (true) {
+                int smallest = parent;
+                int left = 2 * parent + 1;
+                int right = left + 1;
+                if (left < size && times[left] < times[smallest]) {
+                    smallest = left;
+                }
+                if (right < size && times[right] < times[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == parent) {
+                    return;
+                }
+                swap(parent, smallest);
+                parent = smallest;
+            }
+        }
+
+        private void swap(int first, int second) {
+            long time = times[first];
+            times[first] = times[second];
+            times[second] = time;
+            MetricSnapshot snapshot = snapshots[first];
+            snapshots[first] = snapshots[second];
+            snapshots[second] = snapshot;
+        }
+
+        private static List<MetricSnapshot> sortedCopy(MetricSnapshot[] snapshots, int size) {
+            List<MetricSnapshot> copy = new ArrayList<>(Arrays.asList(snapshots).subList(0, size));
+            copy.sort(SLOWEST_FIRST);
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import com.danielgmyers.metrics.LatencyHistogram;
+
+/**
+ * The statistics for a single metric of a single operation, accumulated over one flush interval.
+ * Duration values are in nanoseconds.
+ */
+public final class MetricAggregate {
+
+    /**
+     * The kind of metric that was aggregated.
+     */
+    public enum Type {
+        COUNT,
+        DURATION
+    }
+
+    private final String operation;
+    private final String name;
+    private final Type type;
+    private final long sampleCount;
+    private final double sum;
+    private final double min;
+    private final double max;
+    private final LatencyHistogram histogram;
+
+    public MetricAggregate(String operation, String name, Type type, long sampleCount, double sum, double min, double max) {
+        this(operation, name, type, sampleCount, sum, min, max, null);
+    }
+
+    public MetricAggregate(String operation, String name, Type type, long sampleCount, double sum, double min, double max,
+                           LatencyHistogram histogram) {
+        this.operation = operation;
+        this.name = name;
+        this.type = type;
+        this.sampleCount = sampleCount;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+        this.histogram = histogram;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the number of closed recorders which recorded this metric.
+     */
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the distribution of the recorded values for DURATION aggregates, or null for COUNT aggregates.
+     */
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    /**
+     * Returns the estimated value at the given percentile (0 to 100), e.g. 99 for p99.
+     * Only supported for DURATION aggregates.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (histogram == null) {
+            throw new UnsupportedOperationException("Percentiles are only tracked for durations.");
+        }
+        return histogram.getValueAtPercentile(percentile);
+    }
+
+    public double getMean() {
+        return sampleCount == 0 ? 0.0 : sum / sampleCount;
+    }
+
+    @Override
+    public String toString() {
+        return operation + "/" + name + " " + type + " n=" + sampleCount + " sum=" + sum + " min=" + min + " max=" + max;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.danielgmyers.metrics.MetricKey;
+import com.danielgmyers.metrics.MetricPublisher;
+import com.danielgmyers.metrics.MetricSnapshot;
+import com.danielgmyers.metrics.StandardMetricNames;
+
+/**
+ * A MetricPublisher which folds each snapshot's counts and durations into per-(Operation, metric name) statistics,
+ * rather than keeping the snapshots themselves.
+ *
+ * Aggregates are never removed once created (drain() only resets them), so operation and metric names should come
+ * from a bounded set.
+ */
+public final class MetricAggregator implements MetricPublisher {
+
+    private static final String UNKNOWN_OPERATION = "";
+    // Each thread's current stripe hash, which is moved on whenever it collides with another thread's updates.
+    private static final ThreadLocal<int[]> PROBE = ThreadLocal.withInitial(MetricAggregator::initialProbe);
+
+    private final int stripeMask;
+    private final Map<String, OperationStatistics> operations = new ConcurrentHashMap<>();
+
+    public MetricAggregator() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an aggregator with the specified number of stripes.
+     *
+     * @param stripes The number of independent accumulators kept per metric; rounded up to a power of two.
+     */
+    public MetricAggregator(int stripes) {
+        if (stripes < 1 || stripes > (1 << 16)) {
+            throw new IllegalArgumentException("Stripes must be between 1 and 65536.");
+        }
+        int rounded = Integer.highestOneBit(stripes);
+        if (rounded < stripes) {
+            rounded <<= 1;
+        }
+        stripeMask = rounded - 1;
+    }
+
+    @Override
+    public void publish(MetricSnapshot snapshot) {
+        String operation = snapshot.getProperty(StandardMetricNames.OPERATION.toString());
+        if (operation == null) {
+            operation = UNKNOWN_OPERATION;
+        }
+        OperationStatistics statistics = operations.get(operation);
+        if (statistics == null) {
+            statistics = operations.computeIfAbsent(operation, o -> new OperationStatistics());
+        }
+
+        int[] probe = PROBE.get();
+        int stripe = probe[0] & stripeMask;
+        for (int i = 0; i < snapshot.getNumCounts(); i++) {
+            if (!statistics.get(statistics.counts, snapshot.getCountKey(i), false).add(stripe, snapshot.getCountValue(i))) {
+                stripe = advanceProbe(probe) & stripeMask;
+            }
+        }
+        for (int i = 0; i < snapshot.getNumDurations(); i++) {
+            StripedStatistic statistic = statistics.get(statistics.durations, snapshot.getDurationKey(i), true);
+            if (!statistic.add(stripe, snapshot.getDurationNanos(i))) {
+                stripe = advanceProbe(probe) & stripeMask;
+            }
+        }
+    }
+
+    /**
+     * Returns the statistics accumulated since the previous call, and resets them.
+     * Metrics with no samples in that time are omitted.
+     */
+    public List<MetricAggregate> drain() {
+        List<MetricAggregate> aggregates = new ArrayList<>();
+        for (Map.Entry<String, OperationStatistics> operation : operations.entrySet()) {
+            drainInto(aggregates, operation.getKey(), operation.getValue().counts, MetricAggregate.Type.COUNT);
+            drainInto(aggregates, operation.getKey(), operation.getValue().durations, MetricAggregate.Type.DURATION);
+        }
+        return aggregates;
+    }
+
+    private static int[] initialProbe() {
+        long id = Thread.currentThread().getId();
+        // The xorshift in advanceProbe() never leaves zero, so the probe must start non-zero.
+        return new int[] {(int) ((id * 0x9E3779B97F4A7C15L) >>> 32) | 1};
+    }
+
+    private static int advanceProbe(int[] probe) {
+        int hash = probe[0];
+        hash ^= hash << 13;
+        hash ^= hash >>> 17;
+        hash ^= hash << 5;
+        probe[0] = hash;
+        return hash;
+    }
+
+    private static void drainInto(List<MetricAggregate> aggregates, String operation,
+                                  Map<MetricKey, StripedStatistic> statistics, MetricAggregate.Type type) {
+        for (Map.Entry<MetricKey, StripedStatistic> entry : statistics.entrySet()) {
+            MetricAggregate aggregate = entry.getValue().drain(operation, entry.getKey().getName(), type);
+            if (aggregate != null) {
+                aggregates.add(aggregate);
+            }
+        }
+    }
+
+    private final class OperationStatistics {
+        private final Map<MetricKey, StripedStatistic> counts = new ConcurrentHashMap<>();
+        private final Map<MetricKey, StripedStatistic> durations = new ConcurrentHashMap<>();
+
+        private StripedStatistic get(Map<MetricKey, StripedStatistic> statistics, MetricKey key, boolean trackDistribution) {
+            StripedStatistic statistic = statistics.get(key);
+            if (statistic == null) {
+                statistic = statistics.computeIfAbsent(key, k -> new StripedStatistic(stripeMask + 1, trackDistribution));
+            }
+            return statistic;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import com.danielgmyers.metrics.LatencyHistogram;
+
+/**
+ * Accumulates count, sum, min and max for one metric across threads.
+ *
+ * Each thread updates the cell for its current stripe with compare-and-set, so no thread ever blocks another.
+ * add() reports whether its update raced with another thread's, so that the caller can move that thread to a
+ * different stripe, as LongAdder does. Each cell is padded on both sides, so that neighbouring cells don't share
+ * a cache line. For durations, every stripe also records into one shared LatencyHistogram, whose recording is
+ * already lock-free, so the histogram's memory doesn't grow with the number of stripes.
+ */
+final class StripedStatistic {
+
+    private final Cell[] cells;
+    private final LatencyHistogram histogram;
+
+    StripedStatistic(int stripes, boolean trackDistribution) {
+        cells = new Cell[stripes];
+        for (int i = 0; i < stripes; i++) {
+            cells[i] = new Cell();
+        }
+        histogram = trackDistribution ? new LatencyHistogram() : null;
+    }
+
+    /**
+     * Adds a value to the specified stripe's cell, returning false if another thread was updating the cell at the
+     * same time.
+     */
+    boolean add(int stripe, double value) {
+        if (histogram != null) {
+            histogram.record((long) value);
+        }
+        return cells[stripe].add(value);
+    }
+
+    /**
+     * Combines and resets every stripe, returning null if nothing was recorded since the last drain.
+     * Nothing is lost to a concurrent add(), but a value added while this is running may have its count reported in the
+     * next interval and its sum, min, max and histogram entry in this one.
+     */
+    MetricAggregate drain(String operation, String name, MetricAggregate.Type type) {
+        long count = 0;
+        double sum = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (Cell cell : cells) {
+            long cellCount = cell.takeCount();
+            if (cellCount == 0) {
+                continue;
+            }
+            count += cellCount;
+            sum += cell.takeSum();
+            min = Math.min(min, cell.takeMin());
+            max = Math.max(max, cell.takeMax());
+        }
+        if (count == 0) {
+            return null;
+        }
+        LatencyHistogram distribution = histogram == null ? null : histogram.drain();
+        return new MetricAggregate(operation, name, type, count, sum, min, max, distribution);
+    }
+
+    // Keeps the previous cell off the start of this cell's cache line.
+    private abstract static class CellPadding {
+        private long pad00;
+        private long pad01;
+        private long pad02;
+        private long pad03;
+        private long pad04;
+        private long pad05;
+        private long pad06;
+    }
+
+    private abstract static class CellFields extends CellPadding {
+        private static final long POSITIVE_INFINITY_BITS = Double.doubleToRawLongBits(Double.POSITIVE_INFINITY);
+        private static final long NEGATIVE_INFINITY_BITS = Double.doubleToRawLongBits(Double.NEGATIVE_INFINITY);
+        private static final long ZERO_BITS = Double.doubleToRawLongBits(0.0);
+
+        private static final AtomicLongFieldUpdater<CellFields> COUNT =
+            AtomicLongFieldUpdater.newUpdater(CellFields.class, "count");
+        private static final AtomicLongFieldUpdater<CellFields> SUM =
+            AtomicLongFieldUpdater.newUpdater(CellFields.class, "sumBits");
+        private static final AtomicLongFieldUpdater<CellFields> MIN =
+            AtomicLongFieldUpdater.newUpdater(CellFields.class, "minBits");
+        private static final AtomicLongFieldUpdater<CellFields> MAX =
+            AtomicLongFieldUpdater.newUpdater(CellFields.class, "maxBits");
+
+        private volatile long count;
+        private volatile long sumBits = ZERO_BITS;
+        private volatile long minBits = POSITIVE_INFINITY_BITS;
+        private volatile long maxBits = NEGATIVE_INFINITY_BITS;
+
+        boolean add(double value) {
+            boolean uncontended = true;
+            long min = minBits;
+            while (value < Double.longBitsToDouble(min) && !MIN.compareAndSet(this, min, Double.doubleToRawLongBits(value))) {
+                uncontended = false;
+                min = minBits;
+            }
+            long max = maxBits;
+            while (value > Double.longBitsToDouble(max) && !MAX.compareAndSet(this, max, Double.doubleToRawLongBits(value))) {
+                uncontended = false;
+                max = maxBits;
+            }
+            long sum = sumBits;
+            while (!SUM.compareAndSet(this, sum, Double.doubleToRawLongBits(Double.longBitsToDouble(sum) + value))) {
+                uncontended = false;
+                sum = sumBits;
+            }
+            // The count is updated last, and taken first by drain(), so that no interval counts a value it hasn't summed.
+            COUNT.getAndIncrement(this);
+            return uncontended;
+        }
+
+        long takeCount() {
+            return COUNT.getAndSet(this, 0);
+        }
+
+        double takeSum() {
+            return Double.longBitsToDouble(SUM.getAndSet(this, ZERO_BITS));
+        }
+
+        double takeMin() {
+            return Double.longBitsToDouble(MIN.getAndSet(this, POSITIVE_INFINITY_BITS));
+        }
+
+        double takeMax() {
+            return Double.longBitsToDouble(MAX.getAndSet(this, NEGATIVE_INFINITY_BITS));
+        }
+    }
+
+    // Keeps the next cell off the end of this cell's cache line.
+    private static final class Cell extends CellFields {
+        private long pad10;
+        private long pad11;
+        private long pad12;
+        private long pad13;
+        private long pad14;
+        private long pad15;
+        private long pad16;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.danielgmyers.metrics.MetricRecorder;
+import com.danielgmyers.metrics.StandardMetricNames;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class AggregatingMetricRecorderFactoryTest {
+
+    private static final class RecordingSink implements AggregateSink {
+        private final List<Instant> intervalStarts = new ArrayList<>();
+        private final List<Instant> intervalEnds = new ArrayList<>();
+        private final List<List<MetricAggregate>> flushes = new ArrayList<>();
+
+        @Override
+        public synchronized void flush(Instant intervalStart, Instant intervalEnd, List<MetricAggregate> aggregates) {
+            intervalStarts.add(intervalStart);
+            intervalEnds.add(intervalEnd);
+            flushes.add(aggregates);
+        }
+    }
+
+    @Test
+    public void testManualFlush() throws InterruptedException {
+        ManualClock clock = new ManualClock();
+        RecordingSink sink = new RecordingSink();
+        AggregatingMetricRecorderFactory factory = new AggregatingMetricRecorderFactory(sink, Duration.ofHours(1), clock);
+        Instant start = clock.instant();
+
+        for (int i = 0; i < 3; i++) {
+            MetricRecorder recorder = factory.newMetricRecorder("GetWidget", clock);
+            recorder.addCount("Widgets", 1);
+            recorder.close();
+        }
+        Instant end = clock.forward(Duration.ofSeconds(60));
+        factory.flush();
+
+        Assertions.assertEquals(1, sink.flushes.size());
+        Assertions.assertEquals(start, sink.intervalStarts.get(0));
+        Assertions.assertEquals(end, sink.intervalEnds.get(0));
+        boolean sawWidgets = false;
+        boolean sawTime = false;
+        for (MetricAggregate aggregate : sink.flushes.get(0)) {
+            Assertions.assertEquals("GetWidget", aggregate.getOperation());
+            Assertions.assertEquals(3, aggregate.getSampleCount());
+            sawWidgets |= aggregate.getName().equals("Widgets") && aggregate.getSum() == 3.0;
+            sawTime |= aggregate.getName().equals(StandardMetricNames.TIME.toString());
+        }
+        Assertions.assertTrue(sawWidgets);
+        Assertions.assertTrue(sawTime);
+
+        // Nothing new was recorded, so the sink isn't called.
+        factory.shutdown(Duration.ofSeconds(10));
+        Assertions.assertEquals(1, sink.flushes.size());
+    }
+
+    @Test
+    public void testPeriodicFlush() throws InterruptedException {
+        CountDownLatch flushed = new CountDownLatch(1);
+        AggregatingMetricRecorderFactory factory = new AggregatingMetricRecorderFactory(
+            (start, end, aggregates) -> flushed.countDown(), Duration.ofMillis(10));
+        factory.newMetricRecorder("GetWidget").close();
+        Assertions.assertTrue(flushed.await(10, TimeUnit.SECONDS));
+        factory.shutdown(Duration.ofSeconds(10));
+    }
+
+    @Test
+    public void testInvalidFlushInterval() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> new AggregatingMetricRecorderFactory((start, end, aggregates) -> { }, Duration.ZERO));
+    }
+}
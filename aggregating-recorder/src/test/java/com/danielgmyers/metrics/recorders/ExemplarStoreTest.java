@@ -0,0 +1,185 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import com.danielgmyers.metrics.MetricKey;
+import com.danielgmyers.metrics.MetricRecorder;
+import com.danielgmyers.metrics.MetricSnapshot;
+import com.danielgmyers.metrics.StandardMetricNames;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ExemplarStoreTest {
+
+    private static final MetricKey OPERATION = StandardMetricNames.OPERATION.getKey();
+    private static final MetricKey TIME = StandardMetricNames.TIME.getKey();
+    private static final MetricKey REQUEST_ID = MetricKey.of("RequestId");
+
+    private final ManualClock clock = new ManualClock(Instant.parse("2024-01-01T00:00:00Z"));
+
+    private static MetricSnapshot snapshot(String operation, long timeMillis) {
+        return new MetricSnapshot.Builder()
+                .putProperty(OPERATION, operation)
+                .putProperty(REQUEST_ID, operation + "-" + timeMillis)
+                .addDurationNanos(TIME, Duration.ofMillis(timeMillis).toNanos())
+                .build();
+    }
+
+    private static List<Long> timesMillis(List<MetricSnapshot> snapshots) {
+        List<Long> times = new ArrayList<>();
+        for (MetricSnapshot snapshot : snapshots) {
+            times.add(snapshot.getDuration(StandardMetricNames.TIME.toString()).toMillis());
+        }
+        return times;
+    }
+
+    @Test
+    public void testKeepsSlowestPerOperation() {
+        ExemplarStore store = new ExemplarStore(3, Duration.ofMinutes(1), clock);
+        long[] times = {5, 50, 1, 30, 70, 20, 60, 10};
+        for (long time : times) {
+            store.publish(snapshot("GetWidget", time));
+        }
+        store.publish(snapshot("PutWidget", 2));
+
+        List<MetricSnapshot> slowest = store.getSlowest("GetWidget");
+        Assertions.assertEquals(List.of(70L, 60L, 50L), timesMillis(slowest));
+        Assertions.assertEquals("GetWidget-70", slowest.get(0).getProperty("RequestId"));
+        Assertions.assertEquals(List.of(2L), timesMillis(store.getSlowest("PutWidget")));
+        Assertions.assertTrue(store.getSlowest("DeleteWidget").isEmpty());
+        Assertions.assertEquals(2, store.getOperations().size());
+    }
+
+    @Test
+    public void testWindowsRotate() {
+        ExemplarStore store = new ExemplarStore(2, Duration.ofMinutes(1), clock);
+        Assertions.assertEquals(clock.instant(), store.getWindowStart());
+        store.publish(snapshot("GetWidget", 100));
+        store.publish(snapshot("GetWidget", 200));
+
+        clock.forward(Duration.ofMinutes(1));
+        Assertions.assertTrue(store.getSlowest("GetWidget").isEmpty());
+        Assertions.assertEquals(List.of(200L, 100L), timesMillis(store.getSlowestInPreviousWindow("GetWidget")));
+
+        // The previous window's slow requests don't crowd out the new window's.
+        store.publish(snapshot("GetWidget", 10));
+        Assertions.assertEquals(List.of(10L), timesMillis(store.getSlowest("GetWidget")));
+
+        clock.forward(Duration.ofMinutes(1));
+        store.publish(snapshot("GetWidget", 1));
+        Assertions.assertEquals(List.of(10L), timesMillis(store.getSlowestInPreviousWindow("GetWidget")));
+
+        // After an idle window, there's nothing from the previous window to report.
+        clock.forward(Duration.ofMinutes(2));
+        Assertions.assertTrue(store.getSlowest("GetWidget").isEmpty());
+        Assertions.assertTrue(store.getSlowestInPreviousWindow("GetWidget").isEmpty());
+    }
+
+    @Test
+    public void testStaleOffersDoNotRewindTheWindow() {
+        ExemplarStore store = new ExemplarStore(2, Duration.ofMinutes(1), clock);
+        store.publish(snapshot("GetWidget", 100));
+
+        clock.forward(Duration.ofMinutes(1));
+        store.publish(snapshot("GetWidget", 10));
+
+        // A publisher which read the clock before the window changed offers its snapshot after the one above.
+        clock.rewind(Duration.ofMinutes(1));
+        store.publish(snapshot("GetWidget", 500));
+        Assertions.assertEquals(List.of(100L), timesMillis(store.getSlowest("GetWidget")));
+        Assertions.assertTrue(store.getSlowestInPreviousWindow("GetWidget").isEmpty());
+
+        clock.forward(Duration.ofMinutes(1));
+        Assertions.assertEquals(List.of(10L), timesMillis(store.getSlowest("GetWidget")));
+        Assertions.assertEquals(List.of(100L), timesMillis(store.getSlowestInPreviousWindow("GetWidget")));
+
+        store.publish(snapshot("GetWidget", 20));
+        clock.forward(Duration.ofMinutes(1));
+        Assertions.assertEquals(List.of(20L, 10L), timesMillis(store.getSlowestInPreviousWindow("GetWidget")));
+    }
+
+    @Test
+    public void testSnapshotsWithoutTimeAreIgnored() {
+        ExemplarStore store = new ExemplarStore(2, Duration.ofMinutes(1), clock);
+        store.publish(new MetricSnapshot.Builder().putProperty(OPERATION, "GetWidget").build());
+        Assertions.assertTrue(store.getOperations().isEmpty());
+        store.publish(new MetricSnapshot.Builder().addDurationNanos(TIME, 5).build());
+        Assertions.assertEquals(1, store.getSlowest("").size());
+    }
+
+    @Test
+    public void testCollectsClosedRecorders() {
+        ExemplarStore store = new ExemplarStore(1, Duration.ofMinutes(1), clock);
+        PublishingMetricRecorderFactory factory = new PublishingMetricRecorderFactory(store);
+        MetricRecorder recorder = factory.newMetricRecorder("GetWidget", clock);
+        recorder.addCount("Rows", 4);
+        clock.forward(Duration.ofMillis(25));
+        recorder.close();
+
+        MetricSnapshot exemplar = store.getSlowest("GetWidget").get(0);
+        Assertions.assertEquals(4.0, exemplar.getCount("Rows"));
+        Assertions.assertEquals(Duration.ofMillis(25), exemplar.getDuration(StandardMetricNames.TIME.toString()));
+    }
+
+    @Test
+    public void testInvalidConfiguration() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ExemplarStore(0, Duration.ofMinutes(1)));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ExemplarStore(1, Duration.ZERO));
+    }
+
+    @Test
+    public void testConcurrentPublishersKeepSlowest() throws InterruptedException {
+        int threads = 16;
+        int perThread = 10_000;
+        ExemplarStore store = new ExemplarStore(10, Duration.ofMinutes(1), clock);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> publishers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    store.publish(snapshot("GetWidget", (long) i * threads + offset));
+                }
+            });
+            thread.start();
+            publishers.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : publishers) {
+            thread.join();
+        }
+
+        long max = (long) threads * perThread - 1;
+        List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            expected.add(max - i);
+        }
+        Assertions.assertEquals(expected, timesMillis(store.getSlowest("GetWidget")));
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import com.danielgmyers.metrics.MetricKey;
+import com.danielgmyers.metrics.MetricSnapshot;
+import com.danielgmyers.metrics.StandardMetricNames;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class MetricAggregatorTest {
+
+    private static final MetricKey OPERATION = StandardMetricNames.OPERATION.getKey();
+    private static final MetricKey WIDGETS = MetricKey.of("Widgets");
+    private static final MetricKey LOOKUP = MetricKey.of("Lookup");
+
+    private static MetricSnapshot snapshot(String operation, double widgets, Duration lookup) {
+        return new MetricSnapshot.Builder()
+                .putProperty(OPERATION, operation)
+                .addCount(WIDGETS, widgets)
+                .addDurationNanos(LOOKUP, lookup.toNanos())
+                .build();
+    }
+
+    private static Map<String, MetricAggregate> byName(List<MetricAggregate> aggregates) {
+        Map<String, MetricAggregate> result = new HashMap<>();
+        for (MetricAggregate aggregate : aggregates) {
+            Assertions.assertNull(result.put(aggregate.getOperation() + "/" + aggregate.getName(), aggregate));
+        }
+        return result;
+    }
+
+    @Test
+    public void testAggregatesPerOperationAndMetric() {
+        MetricAggregator aggregator = new MetricAggregator(4);
+        aggregator.publish(snapshot("GetWidget", 1, Duration.ofMillis(10)));
+        aggregator.publish(snapshot("GetWidget", 5, Duration.ofMillis(30)));
+        aggregator.publish(snapshot("PutWidget", 2, Duration.ofMillis(7)));
+
+        Map<String, MetricAggregate> aggregates = byName(aggregator.drain());
+        Assertions.assertEquals(4, aggregates.size());
+
+        MetricAggregate widgets = aggregates.get("GetWidget/Widgets");
+        Assertions.assertEquals(MetricAggregate.Type.COUNT, widgets.getType());
+        Assertions.assertEquals(2, widgets.getSampleCount());
+        Assertions.assertEquals(6.0, widgets.getSum());
+        Assertions.assertEquals(1.0, widgets.getMin());
+        Assertions.assertEquals(5.0, widgets.getMax());
+        Assertions.assertEquals(3.0, widgets.getMean());
+
+        MetricAggregate lookup = aggregates.get("GetWidget/Lookup");
+        Assertions.assertEquals(MetricAggregate.Type.DURATION, lookup.getType());
+        Assertions.assertEquals(2, lookup.getSampleCount());
+        Assertions.assertEquals(Duration.ofMillis(40).toNanos(), (long) lookup.getSum());
+        Assertions.assertEquals(Duration.ofMillis(10).toNanos(), (long) lookup.getMin());
+        Assertions.assertEquals(Duration.ofMillis(30).toNanos(), (long) lookup.getMax());
+
+        Assertions.assertEquals(1, aggregates.get("PutWidget/Widgets").getSampleCount());
+        Assertions.assertEquals(7.0, aggregates.get("PutWidget/Lookup").getSum() / 1_000_000);
+    }
+
+    @Test
+    public void testDurationsTrackDistribution() {
+        MetricAggregator aggregator = new MetricAggregator(4);
+        for (int i = 1; i <= 1000; i++) {
+            aggregator.publish(snapshot("GetWidget", i, Duration.ofMillis(i)));
+        }
+
+        Map<String, MetricAggregate> aggregates = byName(aggregator.drain());
+        MetricAggregate lookup = aggregates.get("GetWidget/Lookup");
+        Assertions.assertEquals(1000, lookup.getHistogram().getCount());
+        long p99 = lookup.getValueAtPercentile(99);
+        Assertions.assertTrue(Math.abs(p99 - Duration.ofMillis(990).toNanos()) <= Duration.ofMillis(990).toNanos() / 100);
+
+        MetricAggregate widgets = aggregates.get("GetWidget/Widgets");
+        Assertions.assertNull(widgets.getHistogram());
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> widgets.getValueAtPercentile(99));
+
+        aggregator.publish(snapshot("GetWidget", 1, Duration.ofMillis(5)));
+        Assertions.assertEquals(1, byName(aggregator.drain()).get("GetWidget/Lookup").getHistogram().getCount());
+    }
+
+    @Test
+    public void testDrainResetsAndOmitsIdleMetrics() {
+        MetricAggregator aggregator = new MetricAggregator(4);
+        aggregator.publish(snapshot("GetWidget", 1, Duration.ofMillis(10)));
+        Assertions.assertEquals(2, aggregator.drain().size());
+        Assertions.assertTrue(aggregator.drain().isEmpty());
+
+        aggregator.publish(new MetricSnapshot.Builder().putProperty(OPERATION, "GetWidget").addCount(WIDGETS, -3).build());
+        List<MetricAggregate> aggregates = aggregator.drain();
+        Assertions.assertEquals(1, aggregates.size());
+        Assertions.assertEquals(-3.0, aggregates.get(0).getMin());
+        Assertions.assertEquals(-3.0, aggregates.get(0).getMax());
+    }
+
+    @Test
+    public void testSnapshotWithoutOperationIsAggregatedUnderEmptyOperation() {
+        MetricAggregator aggregator = new MetricAggregator();
+        aggregator.publish(new MetricSnapshot.Builder().addCount(WIDGETS, 1).build());
+        List<MetricAggregate> aggregates = aggregator.drain();
+        Assertions.assertEquals(1, aggregates.size());
+        Assertions.assertEquals("", aggregates.get(0).getOperation());
+    }
+
+    @Test
+    public void testInvalidStripeCount() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new MetricAggregator(0));
+    }
+
+    @Test
+    public void testConcurrentPublishersAndDrains() throws InterruptedException {
+        int threads = 64;
+        int perThread = 2_000;
+        MetricAggregator aggregator = new MetricAggregator(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> publishers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 1; i <= perThread; i++) {
+                    aggregator.publish(snapshot("GetWidget", i, Duration.ofNanos(i)));
+                }
+            });
+            thread.start();
+            publishers.add(thread);
+        }
+
+        start.countDown();
+        List<MetricAggregate> drained = new ArrayList<>();
+        boolean running = true;
+        while (running) {
+            running = false;
+            for (Thread thread : publishers) {
+                running |= thread.isAlive();
+            }
+            drained.addAll(aggregator.drain());
+        }
+        drained.addAll(aggregator.drain());
+
+        long samples = 0;
+        double sum = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        long distributionSamples = 0;
+        for (MetricAggregate aggregate : drained) {
+            if (aggregate.getType() == MetricAggregate.Type.COUNT) {
+                samples += aggregate.getSampleCount();
+                sum += aggregate.getSum();
+                min = Math.min(min, aggregate.getMin());
+                max = Math.max(max, aggregate.getMax());
+            } else {
+                distributionSamples += aggregate.getHistogram().getCount();
+            }
+        }
+        Assertions.assertEquals((long) threads * perThread, samples);
+        Assertions.assertEquals(threads * (perThread * (perThread + 1.0) / 2), sum);
+        Assertions.assertEquals(1.0, min);
+        Assertions.assertEquals(perThread, max);
+        Assertions.assertEquals((long) threads * perThread, distributionSamples);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package com.danielgmyers.metrics.recorders;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class StripedStatisticTest {
+
+    @Test
+    public void testUncontendedAddsReportNoCollision() {
+        StripedStatistic statistic = new StripedStatistic(4, false);
+        Assertions.assertTrue(statistic.add(0, 5));
+        Assertions.assertTrue(statistic.add(3, -2));
+        Assertions.assertTrue(statistic.add(3, 7));
+
+        MetricAggregate aggregate = statistic.drain("GetWidget", "Widgets", MetricAggregate.Type.COUNT);
+        Assertions.assertEquals(3, aggregate.getSampleCount());
+        Assertions.assertEquals(10.0, aggregate.getSum());
+        Assertions.assertEquals(-2.0, aggregate.getMin());
+        Assertions.assertEquals(7.0, aggregate.getMax());
+    }
+
+    @Test
+    public void testDrainResetsMinAndMax() {
+        StripedStatistic statistic = new StripedStatistic(2, false);
+        statistic.add(1, 100);
+        statistic.add(1, -100);
+        statistic.drain("GetWidget", "Widgets", MetricAggregate.Type.COUNT);
+
+        Assertions.assertNull(statistic.drain("GetWidget", "Widgets", MetricAggregate.Type.COUNT));
+
+        statistic.add(1, 3);
+        MetricAggregate aggregate = statistic.drain("GetWidget", "Widgets", MetricAggregate.Type.COUNT);
+        Assertions.assertEquals(1, aggregate.getSampleCount());
+        Assertions.assertEquals(3.0, aggregate.getSum());
+        Assertions.assertEquals(3.0, aggregate.getMin());
+        Assertions.assertEquals(3.0, aggregate.getMax());
+    }
+
+    @Test
+    public void testDistributionCoversEveryStripe() {
+        StripedStatistic statistic = new StripedStatistic(4, true);
+        for (int stripe = 0; stripe < 4; stripe++) {
+            statistic.add(stripe, 1_000 * (stripe + 1));
+        }
+
+        MetricAggregate aggregate = statistic.drain("GetWidget", "Lookup", MetricAggregate.Type.DURATION);
+        Assertions.assertEquals(4, aggregate.getSampleCount());
+        Assertions.assertEquals(4, aggregate.getHistogram().getCount());
+        Assertions.assertEquals(1_000, aggregate.getHistogram().getMin());
+        Assertions.assertEquals(4_000, aggregate.getHistogram().getMax());
+
+        statistic.add(2, 50);
+        aggregate = statistic.drain("GetWidget", "Lookup", MetricAggregate.Type.DURATION);
+        Assertions.assertEquals(1, aggregate.getHistogram().getCount());
+        Assertions.assertEquals(50, aggregate.getHistogram().getMax());
+    }
+}
@@ -0,0 +1,348 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.danielgmyers.metrics.MetricPublisher;
+import com.danielgmyers.metrics.MetricSnapshot;
+
+/**
+ * A MetricPublisher which buffers snapshots in a bounded ring buffer and hands them to a delegate publisher in
+ * batches from a single background flusher thread, so closing a recorder never waits on the delegate
+ * (unless the BLOCK overflow policy is in use and the buffer is full).
+ *
+ * The flusher drains the buffer whenever a full batch is available, and otherwise at least once per flush interval.
+ * Anything thrown by the delegate, errors included, is counted and otherwise ignored, so one bad batch doesn't stop the
+ * flusher. Publishers blocked by the BLOCK policy wait to be signalled by the flusher after it drains the buffer, and
+ * give up (counting the snapshot as dropped) if the publisher is shut down or the flusher thread is no longer running.
+ */
+public final class AsyncMetricPublisher implements MetricPublisher {
+
+    public static final int DEFAULT_CAPACITY = 8192;
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    public static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofMillis(100);
+    public static final OverflowPolicy DEFAULT_OVERFLOW_POLICY = OverflowPolicy.DROP_NEWEST;
+
+    private final MetricPublisher delegate;
+    private final OverflowPolicy overflowPolicy;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final BoundedRingBuffer<MetricSnapshot> buffer;
+    private final Thread flusher;
+
+    // Set by the first publisher to see a full batch waiting, and cleared by the flusher before it drains, so the
+    // flusher is unparked once per batch rather than by every publish made while the batch is waiting.
+    private final AtomicBoolean wakeRequested = new AtomicBoolean();
+
+    // BLOCK publishers wait on spaceAvailable, which the flusher only signals while blockedPublishers is nonzero.
+    private final ReentrantLock blockedLock = new ReentrantLock();
+    private final Condition spaceAvailable = blockedLock.newCondition();
+    private final AtomicInteger blockedPublishers = new AtomicInteger();
+
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+
+    // Only written by the flusher thread.
+    private volatile long publishedCount;
+    private volatile long flushCount;
+    private volatile long lastFlushLatencyNanos;
+    private volatile long maxFlushLatencyNanos;
+    private volatile long totalFlushLatencyNanos;
+
+    private volatile boolean shutdown;
+
+    private AsyncMetricPublisher(Builder builder) {
+        this.delegate = builder.delegate;
+        this.overflowPolicy = builder.overflowPolicy;
+        this.batchSize = builder.batchSize;
+        this.flushIntervalNanos = builder.flushInterval.toNanos();
+        this.buffer = new BoundedRingBuffer<>(builder.capacity);
+        this.flusher = new Thread(this::runFlusher, builder.threadName);
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    public static Builder builder(MetricPublisher delegate) {
+        return new Builder(delegate);
+    }
+
+    /**
+     * Buffers the snapshot for the flusher thread. Once shutdown() has been called, snapshots are counted as dropped.
+     */
+    @Override
+    public void publish(MetricSnapshot snapshot) {
+        if (shutdown) {
+            droppedCount.increment();
+            return;
+        }
+        switch (overflowPolicy) {
+            case DROP_OLDEST:
+                while (!buffer.offer(snapshot)) {
+                    if (buffer.poll() != null) {
+                        droppedCount.increment();
+                    }
+                }
+                break;
+            case BLOCK:
+                if (!buffer.offer(snapshot) && !publishBlocking(snapshot)) {
+                    droppedCount.increment();
+                    return;
+                }
+                break;
+            case DROP_NEWEST:
+            default:
+                if (!buffer.offer(snapshot)) {
+                    droppedCount.increment();
+                    return;
+                }
+                break;
+        }
+        if (buffer.size() >= batchSize && !wakeRequested.get() && wakeRequested.compareAndSet(false, true)) {
+            LockSupport.unpark(flusher);
+        }
+    }
+
+    /**
+     * Waits for the flusher to make space for the snapshot.
+     *
+     * @return false if the publisher was shut down or the flusher stopped before the snapshot could be buffered.
+     */
+    private boolean publishBlocking(MetricSnapshot snapshot) {
+        blockedPublishers.incrementAndGet();
+        blockedLock.lock();
+        try {
+            while (!buffer.offer(snapshot)) {
+                if (shutdown || !flusher.isAlive()) {
+                    return false;
+                }
+                wakeRequested.set(true);
+                LockSupport.unpark(flusher);
+                // Bounded, so a flusher which dies without signalling is still noticed.
+                spaceAvailable.awaitNanos(flushIntervalNanos);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            blockedLock.unlock();
+            blockedPublishers.decrementAndGet();
+        }
+    }
+
+    private void signalBlockedPublishers() {
+        if (blockedPublishers.get() > 0) {
+            blockedLock.lock();
+            try {
+                spaceAvailable.signalAll();
+            } finally {
+                blockedLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Stops accepting snapshots and waits up to the specified timeout for the flusher to hand every buffered snapshot
+     * to the delegate.
+     *
+     * @return true if the buffer was fully drained before the timeout elapsed.
+     */
+    public boolean shutdown(Duration timeout) throws InterruptedException {
+        shutdown = true;
+        LockSupport.unpark(flusher);
+        signalBlockedPublishers();
+        long timeoutMillis = Math.max(1, timeout.toMillis());
+        flusher.join(timeoutMillis);
+        return !flusher.isAlive() && buffer.isEmpty();
+    }
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * Returns the approximate number of snapshots waiting to be flushed.
+     */
+    public int getQueueDepth() {
+        return buffer.size();
+    }
+
+    public int getCapacity() {
+        return buffer.capacity();
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Returns the number of snapshots discarded because the buffer was full or the publisher was shut down.
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * Returns the number of snapshots successfully handed to the delegate.
+     */
+    public long getPublishedCount() {
+        return publishedCount;
+    }
+
+    /**
+     * Returns the number of snapshots in batches for which the delegate threw an exception.
+     */
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    public long getFlushCount() {
+        return flushCount;
+    }
+
+    public Duration getLastFlushLatency() {
+        return Duration.ofNanos(lastFlushLatencyNanos);
+    }
+
+    public Duration getMaxFlushLatency() {
+        return Duration.ofNanos(maxFlushLatencyNanos);
+    }
+
+    public Duration getAverageFlushLatency() {
+        long flushes = flushCount;
+        return flushes == 0 ? Duration.ZERO : Duration.ofNanos(totalFlushLatencyNanos / flushes);
+    }
+
+    private void runFlusher() {
+        List<MetricSnapshot> batch = new ArrayList<>(batchSize);
+        try {
+            while (true) {
+                wakeRequested.set(false);
+                if (buffer.drainTo(batch, batchSize) > 0) {
+                    signalBlockedPublishers();
+                    flush(batch);
+                    batch.clear();
+                } else if (shutdown) {
+                    // Publishers racing with shutdown() may still land a snapshot after this check; it stays in the
+                    // buffer and shutdown() reports the buffer as not drained.
+                    return;
+                } else {
+                    LockSupport.parkNanos(this, flushIntervalNanos);
+                }
+            }
+        } finally {
+            // Blocked publishers give up once the flusher has stopped.
+            signalBlockedPublishers();
+        }
+    }
+
+    private void flush(List<MetricSnapshot> batch) {
+        long start = System.nanoTime();
+        try {
+            delegate.publishAll(batch);
+            publishedCount += batch.size();
+        } catch (Throwable t) {
+            // Errors too: if they stopped the flusher, BLOCK publishers would have nothing left to wait for.
+            failedCount.add(batch.size());
+        }
+        long latency = System.nanoTime() - start;
+        lastFlushLatencyNanos = latency;
+        totalFlushLatencyNanos += latency;
+        if (latency > maxFlushLatencyNanos) {
+            maxFlushLatencyNanos = latency;
+        }
+        flushCount++;
+    }
+
+    /**
+     * Configures and starts an AsyncMetricPublisher.
+     */
+    public static final class Builder {
+        private final MetricPublisher delegate;
+        private int capacity = DEFAULT_CAPACITY;
+        private int batchSize = DEFAULT_BATCH_SIZE;
+        private Duration flushInterval = DEFAULT_FLUSH_INTERVAL;
+        private OverflowPolicy overflowPolicy = DEFAULT_OVERFLOW_POLICY;
+        private String threadName = "async-metric-publisher";
+
+        private Builder(MetricPublisher delegate) {
+            if (delegate == null) {
+                throw new IllegalArgumentException("A delegate publisher is required.");
+            }
+            this.delegate = delegate;
+        }
+
+        /**
+         * Sets the maximum number of buffered snapshots. This is rounded up to the next power of two.
+         */
+        public Builder withCapacity(int capacity) {
+            if (capacity < 1) {
+                throw new IllegalArgumentException("Capacity must be positive.");
+            }
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of snapshots handed to the delegate in a single publishAll() call.
+         */
+        public Builder withBatchSize(int batchSize) {
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("Batch size must be positive.");
+            }
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * Sets the longest time a snapshot waits in the buffer before being flushed in a partial batch.
+         */
+        public Builder withFlushInterval(Duration flushInterval) {
+            if (flushInterval == null || flushInterval.isNegative() || flushInterval.isZero()) {
+                throw new IllegalArgumentException("Flush interval must be positive.");
+            }
+            this.flushInterval = flushInterval;
+            return this;
+        }
+
+        public Builder withOverflowPolicy(OverflowPolicy overflowPolicy) {
+            if (overflowPolicy == null) {
+                throw new IllegalArgumentException("Overflow policy must not be null.");
+            }
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        public Builder withThreadName(String threadName) {
+            this.threadName = threadName;
+            return this;
+        }
+
+        public AsyncMetricPublisher build() {
+            return new AsyncMetricPublisher(this);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.time.Duration;
+
+import com.danielgmyers.metrics.MetricPublisher;
+
+/**
+ * Produces MetricRecorder objects whose snapshots are handed to a delegate publisher by a background thread,
+ * rather than on the thread closing the recorder.
+ */
+public class AsyncMetricRecorderFactory extends PublishingMetricRecorderFactory {
+
+    private final AsyncMetricPublisher publisher;
+
+    /**
+     * Creates a factory wrapping the delegate in an AsyncMetricPublisher with the default settings.
+     */
+    public AsyncMetricRecorderFactory(MetricPublisher delegate) {
+        this(AsyncMetricPublisher.builder(delegate).build());
+    }
+
+    public AsyncMetricRecorderFactory(AsyncMetricPublisher publisher) {
+        super(publisher);
+        this.publisher = publisher;
+    }
+
+    public AsyncMetricPublisher getPublisher() {
+        return publisher;
+    }
+
+    /**
+     * See AsyncMetricPublisher.shutdown().
+     */
+    public boolean shutdown(Duration timeout) throws InterruptedException {
+        return publisher.shutdown(timeout);
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free ring buffer using per-slot sequence numbers to hand elements between threads.
+ *
+ * Any number of threads may offer. Polling is normally done by a single flusher thread, but is also safe from
+ * multiple threads, which lets producers evict the oldest element when the buffer is full.
+ */
+final class BoundedRingBuffer<E> {
+
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    BoundedRingBuffer(int requestedCapacity) {
+        if (requestedCapacity < 1 || requestedCapacity > (1 << 30)) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30.");
+        }
+        int capacity = Integer.highestOneBit(requestedCapacity);
+        if (capacity < requestedCapacity) {
+            capacity <<= 1;
+        }
+        mask = capacity - 1;
+        elements = new AtomicReferenceArray<>(capacity);
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Adds the element to the buffer, returning false if the buffer is full.
+     */
+    boolean offer(E element) {
+        long position = tail.get();
+        while (true) {
+            int slot = (int) position & mask;
+            long difference = sequences.get(slot) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.lazySet(slot, element);
+                    sequences.set(slot, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Removes and returns the oldest element, or null if the buffer is empty.
+     */
+    E poll() {
+        long position = head.get();
+        while (true) {
+            int slot = (int) position & mask;
+            long difference = sequences.get(slot) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    E element = elements.get(slot);
+                    elements.lazySet(slot, null);
+                    sequences.set(slot, position + mask + 1);
+                    return element;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    /**
+     * Moves up to maxElements elements into the destination list, returning the number moved.
+     */
+    int drainTo(List<? super E> destination, int maxElements) {
+        int drained = 0;
+        while (drained < maxElements) {
+            E element = poll();
+            if (element == null) {
+                break;
+            }
+            destination.add(element);
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * Returns the approximate number of buffered elements; the result may be stale by the time it's used.
+     */
+    int size() {
+        while (true) {
+            long before = head.get();
+            long currentTail = tail.get();
+            if (head.get() == before) {
+                return (int) Math.max(0, Math.min(currentTail - before, mask + 1));
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+/**
+ * Controls what an AsyncMetricPublisher does with a snapshot when its buffer is full.
+ */
+public enum OverflowPolicy {
+    /**
+     * The snapshot being published is discarded. The publishing thread never waits.
+     */
+    DROP_NEWEST,
+
+    /**
+     * The oldest buffered snapshot is discarded to make room. The publishing thread never waits.
+     */
+    DROP_OLDEST,
+
+    /**
+     * The publishing thread waits until the flusher frees up space in the buffer.
+     */
+    BLOCK
+}
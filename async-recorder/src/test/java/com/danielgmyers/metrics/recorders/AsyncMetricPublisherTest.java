@@ -0,0 +1,249 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.danielgmyers.metrics.MetricKey;
+import com.danielgmyers.metrics.MetricPublisher;
+import com.danielgmyers.metrics.MetricSnapshot;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class AsyncMetricPublisherTest {
+
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(10);
+
+    private static MetricSnapshot snapshot(int id) {
+        return new MetricSnapshot.Builder().addCount(MetricKey.of("Id"), id).build();
+    }
+
+    private static List<Integer> ids(List<MetricSnapshot> snapshots) {
+        List<Integer> ids = new ArrayList<>();
+        for (MetricSnapshot snapshot : snapshots) {
+            ids.add(snapshot.getCount("Id").intValue());
+        }
+        return ids;
+    }
+
+    /**
+     * A delegate which blocks inside its first publishAll() call until released, so tests can fill the buffer.
+     */
+    private static final class GatedPublisher implements MetricPublisher {
+        private final List<MetricSnapshot> published = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void publish(MetricSnapshot snapshot) {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            published.add(snapshot);
+        }
+    }
+
+    private static AsyncMetricPublisher gated(GatedPublisher delegate, OverflowPolicy policy) throws InterruptedException {
+        AsyncMetricPublisher publisher = AsyncMetricPublisher.builder(delegate)
+                .withCapacity(4)
+                .withBatchSize(1)
+                .withFlushInterval(Duration.ofMillis(1))
+                .withOverflowPolicy(policy)
+                .build();
+        // The flusher takes snapshot 0 and then blocks in the delegate, leaving the buffer empty.
+        publisher.publish(snapshot(0));
+        Assertions.assertTrue(delegate.entered.await(10, TimeUnit.SECONDS));
+        for (int i = 1; i <= 4; i++) {
+            publisher.publish(snapshot(i));
+        }
+        Assertions.assertEquals(4, publisher.getQueueDepth());
+        return publisher;
+    }
+
+    @Test
+    public void testSnapshotsAreFlushedInBatches() throws InterruptedException {
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        List<MetricSnapshot> published = Collections.synchronizedList(new ArrayList<>());
+        MetricPublisher delegate = new MetricPublisher() {
+            @Override
+            public void publish(MetricSnapshot snapshot) {
+                published.add(snapshot);
+            }
+
+            @Override
+            public void publishAll(List<MetricSnapshot> snapshots) {
+                batchSizes.add(snapshots.size());
+                published.addAll(snapshots);
+            }
+        };
+        AsyncMetricPublisher publisher = AsyncMetricPublisher.builder(delegate)
+                .withCapacity(1024)
+                .withBatchSize(10)
+                .withFlushInterval(Duration.ofSeconds(10))
+                .build();
+        for (int i = 0; i < 100; i++) {
+            publisher.publish(snapshot(i));
+        }
+
+        Assertions.assertTrue(publisher.shutdown(SHUTDOWN_TIMEOUT));
+        Assertions.assertEquals(100, published.size());
+        Assertions.assertEquals(100, publisher.getPublishedCount());
+        Assertions.assertEquals(0, publisher.getDroppedCount());
+        Assertions.assertEquals(0, publisher.getQueueDepth());
+        Assertions.assertEquals(batchSizes.size(), publisher.getFlushCount());
+        for (int size : batchSizes) {
+            Assertions.assertTrue(size <= 10);
+        }
+        Assertions.assertTrue(publisher.getMaxFlushLatency().compareTo(publisher.getAverageFlushLatency()) >= 0);
+    }
+
+    @Test
+    public void testDropNewest() throws InterruptedException {
+        GatedPublisher delegate = new GatedPublisher();
+        AsyncMetricPublisher publisher = gated(delegate, OverflowPolicy.DROP_NEWEST);
+        publisher.publish(snapshot(5));
+        Assertions.assertEquals(1, publisher.getDroppedCount());
+
+        delegate.release.countDown();
+        Assertions.assertTrue(publisher.shutdown(SHUTDOWN_TIMEOUT));
+        Assertions.assertEquals(List.of(0, 1, 2, 3, 4), ids(delegate.published));
+    }
+
+    @Test
+    public void testDropOldest() throws InterruptedException {
+        GatedPublisher delegate = new GatedPublisher();
+        AsyncMetricPublisher publisher = gated(delegate, OverflowPolicy.DROP_OLDEST);
+        publisher.publish(snapshot(5));
+        Assertions.assertEquals(1, publisher.getDroppedCount());
+
+        delegate.release.countDown();
+        Assertions.assertTrue(publisher.shutdown(SHUTDOWN_TIMEOUT));
+        Assertions.assertEquals(List.of(0, 2, 3, 4, 5), ids(delegate.published));
+    }
+
+    @Test
+    public void testBlockWaitsForSpace() throws InterruptedException {
+        GatedPublisher delegate = new GatedPublisher();
+        AsyncMetricPublisher publisher = gated(delegate, OverflowPolicy.BLOCK);
+        Thread blocked = new Thread(() -> publisher.publish(snapshot(5)));
+        blocked.start();
+        blocked.join(100);
+        Assertions.assertTrue(blocked.isAlive());
+
+        delegate.release.countDown();
+        blocked.join(TimeUnit.SECONDS.toMillis(10));
+        Assertions.assertFalse(blocked.isAlive());
+        Assertions.assertTrue(publisher.shutdown(SHUTDOWN_TIMEOUT));
+        Assertions.assertEquals(0, publisher.getDroppedCount());
+        Assertions.assertEquals(List.of(0, 1, 2, 3, 4, 5), ids(delegate.published));
+    }
+
+    @Test
+    public void testShutdownReleasesBlockedPublishers() throws InterruptedException {
+        GatedPublisher delegate = new GatedPublisher();
+        AsyncMetricPublisher publisher = gated(delegate, OverflowPolicy.BLOCK);
+        Thread blocked = new Thread(() -> publisher.publish(snapshot(5)));
+        blocked.start();
+        blocked.join(100);
+        Assertions.assertTrue(blocked.isAlive());
+
+        Assertions.assertFalse(publisher.shutdown(Duration.ofMillis(50)));
+        blocked.join(TimeUnit.SECONDS.toMillis(10));
+        Assertions.assertFalse(blocked.isAlive());
+        Assertions.assertEquals(1, publisher.getDroppedCount());
+
+        delegate.release.countDown();
+        Assertions.assertTrue(publisher.shutdown(SHUTDOWN_TIMEOUT));
+        Assertions.assertEquals(List.of(0, 1, 2, 3, 4), ids(delegate.published));
+    }
+
+    @Test
+    public void testShutdownTimesOutWhenDelegateIsStuck() throws InterruptedException {
+        GatedPublisher delegate = new GatedPublisher();
+        AsyncMetricPublisher publisher = gated(delegate, OverflowPolicy.DROP_NEWEST);
+        Assertions.assertFalse(publisher.shutdown(Duration.ofMillis(50)));
+        Assertions.assertTrue(publisher.isShutdown());
+
+        publisher.publish(snapshot(5));
+        Assertions.assertEquals(1, publisher.getDroppedCount());
+
+        delegate.release.countDown();
+        Assertions.assertTrue(publisher.shutdown(SHUTDOWN_TIMEOUT));
+        Assertions.assertEquals(List.of(0, 1, 2, 3, 4), ids(delegate.published));
+    }
+
+    @Test
+    public void testDelegateFailuresAreCountedAndDoNotStopTheFlusher() throws InterruptedException {
+        List<MetricSnapshot> published = Collections.synchronizedList(new ArrayList<>());
+        AsyncMetricPublisher publisher = AsyncMetricPublisher.builder(snapshot -> {
+            if (snapshot.getCount("Id").intValue() % 2 == 0) {
+                throw new IllegalStateException("Backend unavailable");
+            }
+            published.add(snapshot);
+        }).withBatchSize(1).withFlushInterval(Duration.ofMillis(1)).build();
+        for (int i = 0; i < 10; i++) {
+            publisher.publish(snapshot(i));
+        }
+
+        Assertions.assertTrue(publisher.shutdown(SHUTDOWN_TIMEOUT));
+        Assertions.assertEquals(5, publisher.getFailedCount());
+        Assertions.assertEquals(5, publisher.getPublishedCount());
+        Assertions.assertEquals(List.of(1, 3, 5, 7, 9), ids(published));
+    }
+
+    @Test
+    public void testDelegateErrorsDoNotStopTheFlusher() throws InterruptedException {
+        List<MetricSnapshot> published = Collections.synchronizedList(new ArrayList<>());
+        AsyncMetricPublisher publisher = AsyncMetricPublisher.builder(snapshot -> {
+            if (snapshot.getCount("Id").intValue() % 2 == 0) {
+                throw new AssertionError("Backend bug");
+            }
+            published.add(snapshot);
+        }).withCapacity(2).withBatchSize(1).withFlushInterval(Duration.ofMillis(1))
+                .withOverflowPolicy(OverflowPolicy.BLOCK).build();
+        // With a buffer this small, publishing would block forever if an error had stopped the flusher.
+        for (int i = 0; i < 20; i++) {
+            publisher.publish(snapshot(i));
+        }
+
+        Assertions.assertTrue(publisher.shutdown(SHUTDOWN_TIMEOUT));
+        Assertions.assertEquals(10, publisher.getFailedCount());
+        Assertions.assertEquals(10, publisher.getPublishedCount());
+        Assertions.assertEquals(0, publisher.getDroppedCount());
+        Assertions.assertEquals(List.of(1, 3, 5, 7, 9, 11, 13, 15, 17, 19), ids(published));
+    }
+
+    @Test
+    public void testBuilderRejectsInvalidSettings() {
+        MetricPublisher delegate = snapshot -> { };
+        Assertions.assertThrows(IllegalArgumentException.class, () -> AsyncMetricPublisher.builder(null));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> AsyncMetricPublisher.builder(delegate).withCapacity(0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> AsyncMetricPublisher.builder(delegate).withBatchSize(0));
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> AsyncMetricPublisher.builder(delegate).withFlushInterval(Duration.ZERO));
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> AsyncMetricPublisher.builder(delegate).withOverflowPolicy(null));
+    }
+}
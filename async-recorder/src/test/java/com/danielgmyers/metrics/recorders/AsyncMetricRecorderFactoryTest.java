@@ -0,0 +1,53 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.danielgmyers.metrics.MetricRecorder;
+import com.danielgmyers.metrics.MetricSnapshot;
+import com.danielgmyers.metrics.StandardMetricNames;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class AsyncMetricRecorderFactoryTest {
+
+    @Test
+    public void testClosedRecordersAreDeliveredToDelegate() throws InterruptedException {
+        List<MetricSnapshot> published = Collections.synchronizedList(new ArrayList<>());
+        AsyncMetricRecorderFactory factory = new AsyncMetricRecorderFactory(published::add);
+
+        for (int i = 0; i < 20; i++) {
+            MetricRecorder recorder = factory.newMetricRecorder("test");
+            Assertions.assertEquals(PublishingMetricRecorder.class, recorder.getClass());
+            recorder.addCount("Widgets", i);
+            recorder.close();
+        }
+
+        Assertions.assertTrue(factory.shutdown(Duration.ofSeconds(10)));
+        Assertions.assertEquals(20, published.size());
+        Assertions.assertEquals(20, factory.getPublisher().getPublishedCount());
+        for (int i = 0; i < 20; i++) {
+            MetricSnapshot snapshot = published.get(i);
+            Assertions.assertEquals("test", snapshot.getProperty(StandardMetricNames.OPERATION.toString()));
+            Assertions.assertEquals((double) i, snapshot.getCount("Widgets"));
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class BoundedRingBufferTest {
+
+    @Test
+    public void testCapacityIsRoundedUpToPowerOfTwo() {
+        Assertions.assertEquals(1, new BoundedRingBuffer<Integer>(1).capacity());
+        Assertions.assertEquals(8, new BoundedRingBuffer<Integer>(5).capacity());
+        Assertions.assertEquals(8, new BoundedRingBuffer<Integer>(8).capacity());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new BoundedRingBuffer<Integer>(0));
+    }
+
+    @Test
+    public void testOfferAndPollAreFifo() {
+        BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(4);
+        Assertions.assertNull(buffer.poll());
+        Assertions.assertTrue(buffer.isEmpty());
+        for (int i = 0; i < 4; i++) {
+            Assertions.assertTrue(buffer.offer(i));
+        }
+        Assertions.assertFalse(buffer.offer(4));
+        Assertions.assertEquals(4, buffer.size());
+        for (int i = 0; i < 4; i++) {
+            Assertions.assertEquals(i, buffer.poll());
+        }
+        Assertions.assertNull(buffer.poll());
+    }
+
+    @Test
+    public void testWrapsAround() {
+        BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(4);
+        for (int i = 0; i < 100; i++) {
+            Assertions.assertTrue(buffer.offer(i));
+            Assertions.assertTrue(buffer.offer(i + 1000));
+            Assertions.assertEquals(i, buffer.poll());
+            Assertions.assertEquals(i + 1000, buffer.poll());
+        }
+        Assertions.assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void testDrainToRespectsLimit() {
+        BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(8);
+        for (int i = 0; i < 6; i++) {
+            buffer.offer(i);
+        }
+        List<Integer> drained = new ArrayList<>();
+        Assertions.assertEquals(4, buffer.drainTo(drained, 4));
+        Assertions.assertEquals(List.of(0, 1, 2, 3), drained);
+        Assertions.assertEquals(2, buffer.drainTo(drained, 4));
+        Assertions.assertEquals(0, buffer.drainTo(drained, 4));
+    }
+
+    @Test
+    public void testConcurrentProducersDeliverEveryElementOnce() throws InterruptedException {
+        int producers = 4;
+        int perProducer = 50_000;
+        BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(64);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    while (!buffer.offer(base + i)) {
+                        Thread.onSpinWait();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+        Set<Integer> seen = new HashSet<>();
+        while (seen.size() < producers * perProducer) {
+            Integer element = buffer.poll();
+            if (element != null) {
+                Assertions.assertTrue(seen.add(element));
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assertions.assertTrue(buffer.isEmpty());
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.danielgmyers.metrics.MetricKey;
+import com.danielgmyers.metrics.StandardMetricNames;
+
+/**
+ * Constants shared by BinaryRecordEncoder and BinaryRecordDecoder. A stream is the magic bytes "MRB" and a version
+ * byte, followed by any number of records, each of which is the varint length of its body followed by the body:
+ *
+ *   varint count, then count properties:  name, value
+ *   varint count, then count timestamps:  if count is non-zero, the base time (zig-zag varint epoch seconds, varint
+ *                                         nanoseconds), then for each timestamp: name, offset from the base
+ *   varint count, then count counts:      name, count value
+ *   varint count, then count durations:   name, zig-zag varint nanoseconds
+ *
+ * The base time is the StartTime timestamp if there is one, otherwise the first timestamp. A timestamp's offset is
+ * the zig-zag encoded nanoseconds since the base shifted left by one, or if that doesn't fit, 1 followed by the
+ * timestamp itself in the same form as the base. A count value is its zig-zag encoding shifted left by one if it's
+ * an integer of magnitude below 2^53, or otherwise 1 followed by the eight little-endian bytes of the double.
+ *
+ * Names and property values are dictionary-encoded, with the dictionaries built up over the whole stream: a name is
+ * varint 0 followed by a string the first time it's written, which adds it to the dictionary, and varint (index + 1)
+ * after that. A value is varint 0 for null, 1 followed by a string (added to the dictionary while it has fewer than
+ * MAX_VALUE_ENTRIES entries), or varint (index + 2). Strings are a varint byte length followed by UTF-8 bytes. The
+ * name dictionary starts out holding SEEDED_NAMES, so the standard metric names never need to be written out.
+ *
+ * A standalone record, which can be decoded without the records before it, is the version byte followed by a body
+ * whose dictionaries hold only SEEDED_NAMES and never grow, so every other name and every value is written in full.
+ */
+final class BinaryFormat {
+
+    static final byte[] MAGIC = {'M', 'R', 'B'};
+    static final byte VERSION = 1;
+
+    /**
+     * The names every version 1 stream's name dictionary starts with, in index order. This must never change for an
+     * existing version.
+     */
+    static final List<MetricKey> SEEDED_NAMES = Collections.unmodifiableList(Arrays.asList(
+            StandardMetricNames.OPERATION.getKey(),
+            StandardMetricNames.THREAD_NAME.getKey(),
+            StandardMetricNames.SAMPLE_WEIGHT.getKey(),
+            StandardMetricNames.START_TIME.getKey(),
+            StandardMetricNames.END_TIME.getKey(),
+            StandardMetricNames.TIME.getKey(),
+            StandardMetricNames.CHILD_TIME.getKey(),
+            StandardMetricNames.CHILD_CRITICAL_PATH_TIME.getKey()));
+
+    /**
+     * Property values are often unbounded (request ids, for example), so only this many are kept in the dictionary.
+     */
+    static final int MAX_VALUE_ENTRIES = 4096;
+
+    static final int NEW_NAME = 0;
+    static final int NULL_VALUE = 0;
+    static final int NEW_VALUE = 1;
+    static final long RAW_VALUE = 1;
+
+    // Integral doubles below this magnitude are exactly representable, and their zig-zag encoding fits in 63 bits.
+    static final double MAX_INTEGRAL_COUNT = 0x1p53;
+    static final long NANOS_PER_SECOND = 1_000_000_000L;
+    // Zig-zag encoded offsets are shifted left by one, so they must fit in 63 bits.
+    static final long MAX_TIMESTAMP_OFFSET = Long.MAX_VALUE >> 2;
+
+    private BinaryFormat() {}
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.danielgmyers.metrics.MetricKey;
+import com.danielgmyers.metrics.MetricSnapshot;
+
+/**
+ * Decodes the records written by BinaryRecordEncoder. decode() reads a standalone record; BinarySnapshotReader keeps
+ * an instance whose dictionaries grow with every stream record body it decodes.
+ *
+ * Not thread-safe.
+ */
+public final class BinaryRecordDecoder {
+
+    private final boolean dictionaries;
+    private final List<MetricKey> names;
+    private final List<String> values;
+    private ByteBuffer input;
+
+    private BinaryRecordDecoder(boolean dictionaries) {
+        this.dictionaries = dictionaries;
+        this.names = dictionaries ? new ArrayList<>(BinaryFormat.SEEDED_NAMES) : BinaryFormat.SEEDED_NAMES;
+        this.values = dictionaries ? new ArrayList<>() : Collections.emptyList();
+    }
+
+    /**
+     * Creates a decoder whose dictionaries grow with every record body it decodes.
+     */
+    static BinaryRecordDecoder forStream() {
+        return new BinaryRecordDecoder(true);
+    }
+
+    /**
+     * Decodes a standalone record from the buffer's position to its limit, without changing the buffer's position.
+     * Throws an IOException if the record is malformed or isn't in a supported version of the format.
+     */
+    public static MetricSnapshot decode(ByteBuffer record) throws IOException {
+        ByteBuffer input = record.duplicate();
+        if (!input.hasRemaining()) {
+            throw new IOException("Record ended unexpectedly.");
+        }
+        byte version = input.get();
+        if (version != BinaryFormat.VERSION) {
+            throw new IOException("Unsupported binary record version " + version + ".");
+        }
+        return new BinaryRecordDecoder(false).decodeBody(input);
+    }
+
+    /**
+     * Decodes a record body, which runs from the buffer's position to its limit.
+     */
+    MetricSnapshot decodeBody(ByteBuffer body) throws IOException {
+        input = body;
+        try {
+            MetricSnapshot snapshot = readBody();
+            if (input.hasRemaining()) {
+                throw new IOException("Record has " + input.remaining() + " unexpected trailing bytes.");
+            }
+            return snapshot;
+        } catch (IndexOutOfBoundsException | IllegalArgumentException | ArithmeticException | DateTimeException e) {
+            throw new IOException("Malformed record.", e);
+        } finally {
+            input = null;
+        }
+    }
+
+    private MetricSnapshot readBody() throws IOException {
+        MetricSnapshot.Builder builder = new MetricSnapshot.Builder();
+        long properties = readVarint();
+        for (long i = 0; i < properties; i++) {
+            MetricKey key = readName();
+            builder.putProperty(key, readValue());
+        }
+
+        long timestamps = readVarint();
+        if (timestamps > 0) {
+            Instant base = readInstant();
+            for (long i = 0; i < timestamps; i++) {
+                MetricKey key = readName();
+                long offset = readVarint();
+                if (offset == BinaryFormat.RAW_VALUE) {
+                    builder.putTimestamp(key, readInstant());
+                } else {
+                    builder.putTimestamp(key, base.plusNanos(BinaryFormat.unZigZag(offset >>> 1)));
+                }
+            }
+        }
+
+        long counts = readVarint();
+        for (long i = 0; i < counts; i++) {
+            MetricKey key = readName();
+            long value = readVarint();
+            if (value == BinaryFormat.RAW_VALUE) {
+                long bits = 0;
+                for (int b = 0; b < 8; b++) {
+                    bits |= (long) (readByte() & 0xFF) << (8 * b);
+                }
+                builder.addCount(key, Double.longBitsToDouble(bits));
+            } else {
+                builder.addCount(key, BinaryFormat.unZigZag(value >>> 1));
+            }
+        }
+
+        long durations = readVarint();
+        for (long i = 0; i < durations; i++) {
+            MetricKey key = readName();
+            builder.addDurationNanos(key, BinaryFormat.unZigZag(readVarint()));
+        }
+        return builder.build();
+    }
+
+    private MetricKey readName() throws IOException {
+        long reference = readVarint();
+        if (reference == BinaryFormat.NEW_NAME) {
+            MetricKey key = MetricKey.of(readString());
+            if (dictionaries) {
+                names.add(key);
+            }
+            return key;
+        }
+        if (reference < 0 || reference > names.size()) {
+            throw new IOException("Unknown name reference " + reference + ".");
+        }
+        return names.get((int) reference - 1);
+    }
+
+    private String readValue() throws IOException {
+        long reference = readVarint();
+        if (reference == BinaryFormat.NULL_VALUE) {
+            return null;
+        }
+        if (reference == BinaryFormat.NEW_VALUE) {
+            String value = readString();
+            if (dictionaries && values.size() < BinaryFormat.MAX_VALUE_ENTRIES) {
+                values.add(value);
+            }
+            return value;
+        }
+        if (reference < 0 || reference - 2 >= values.size()) {
+            throw new IOException("Unknown value reference " + reference + ".");
+        }
+        return values.get((int) reference - 2);
+    }
+
+    private Instant readInstant() throws IOException {
+        long seconds = BinaryFormat.unZigZag(readVarint());
+        return Instant.ofEpochSecond(seconds, readVarint());
+    }
+
+    private String readString() throws IOException {
+        long byteLength = readVarint();
+        if (byteLength < 0 || byteLength > input.remaining()) {
+            throw new IOException("String length " + byteLength + " overruns the record.");
+        }
+        String value;
+        if (input.hasArray()) {
+            value = new String(input.array(), input.arrayOffset() + input.position(), (int) byteLength, StandardCharsets.UTF_8);
+            input.position(input.position() + (int) byteLength);
+        } else {
+            byte[] bytes = new byte[(int) byteLength];
+            input.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    private long readVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte next = readByte();
+            value |= (long) (next & 0x7F) << shift;
+            if ((next & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint.");
+    }
+
+    private byte readByte() throws IOException {
+        if (!input.hasRemaining()) {
+            throw new IOException("Record ended unexpectedly.");
+        }
+        return input.get();
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.danielgmyers.metrics.MetricKey;
+import com.danielgmyers.metrics.MetricSnapshot;
+import com.danielgmyers.metrics.StandardMetricNames;
+
+/**
+ * Encodes snapshots as records in the format described by BinaryFormat, into a reusable buffer.
+ *
+ * A new encoder writes standalone records, each of which can be decoded on its own by BinaryRecordDecoder.decode(),
+ * for storage which keeps its own record framing, such as a segment log. BinarySnapshotWriter uses an encoder which
+ * keeps its dictionaries across the whole stream instead.
+ *
+ * Not thread-safe.
+ */
+public final class BinaryRecordEncoder {
+
+    private static final int INITIAL_BUFFER_SIZE = 256;
+    // A stream record's length is written just before its body, which starts after room for the longest varint.
+    private static final int STREAM_BODY_OFFSET = 5;
+    private static final long NEGATIVE_ZERO_BITS = Double.doubleToRawLongBits(-0.0);
+    private static final MetricKey START_TIME = StandardMetricNames.START_TIME.getKey();
+
+    private final boolean dictionaries;
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+    private int length;
+
+    // Dictionary index + 1 by MetricKey id, so that 0 means the name hasn't been written yet.
+    private int[] nameIndexes = new int[0];
+    private int nameCount;
+    private final Map<String, Integer> valueIndexes = new HashMap<>();
+
+    /**
+     * Creates an encoder for standalone records.
+     */
+    public BinaryRecordEncoder() {
+        this(false);
+    }
+
+    private BinaryRecordEncoder(boolean dictionaries) {
+        this.dictionaries = dictionaries;
+        for (MetricKey key : BinaryFormat.SEEDED_NAMES) {
+            addName(key);
+        }
+    }
+
+    /**
+     * Creates an encoder whose dictionaries grow with every record it encodes, for encodeStreamRecord().
+     */
+    static BinaryRecordEncoder forStream() {
+        return new BinaryRecordEncoder(true);
+    }
+
+    /**
+     * Encodes the snapshot as a standalone record, replacing whatever was previously encoded.
+     *
+     * @return The number of bytes encoded at the start of getBuffer().
+     */
+    public int encode(MetricSnapshot snapshot) {
+        length = 0;
+        ensureCapacity(1);
+        buffer[length++] = BinaryFormat.VERSION;
+        writeBody(snapshot);
+        return length;
+    }
+
+    /**
+     * Encodes the snapshot as a stream record, preceded by its length, into the buffer.
+     *
+     * @return The offset in the buffer at which the record starts; it ends at getLength().
+     */
+    int encodeStreamRecord(MetricSnapshot snapshot) {
+        length = STREAM_BODY_OFFSET;
+        writeBody(snapshot);
+
+        // Write the body length immediately before the body, so the record is contiguous.
+        int bodyLength = length - STREAM_BODY_OFFSET;
+        int start = STREAM_BODY_OFFSET - varintSize(bodyLength);
+        int end = length;
+        length = start;
+        writeVarint(bodyLength);
+        length = end;
+        return start;
+    }
+
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    int getLength() {
+        return length;
+    }
+
+    private void writeBody(MetricSnapshot snapshot) {
+        writeVarint(snapshot.getNumProperties());
+        for (int i = 0; i < snapshot.getNumProperties(); i++) {
+            writeName(snapshot.getPropertyKey(i));
+            writeValue(snapshot.getPropertyValue(i));
+        }
+
+        int timestamps = snapshot.getNumTimestamps();
+        writeVarint(timestamps);
+        if (timestamps > 0) {
+            Instant base = snapshot.getTimestampValue(0);
+            for (int i = 0; i < timestamps; i++) {
+                if (snapshot.getTimestampKey(i) == START_TIME) {
+                    base = snapshot.getTimestampValue(i);
+                }
+            }
+            writeInstant(base);
+            for (int i = 0; i < timestamps; i++) {
+                writeName(snapshot.getTimestampKey(i));
+                writeTimestampOffset(base, snapshot.getTimestampValue(i));
+            }
+        }
+
+        writeVarint(snapshot.getNumCounts());
+        for (int i = 0; i < snapshot.getNumCounts(); i++) {
+            writeName(snapshot.getCountKey(i));
+            writeCount(snapshot.getCountValue(i));
+        }
+
+        writeVarint(snapshot.getNumDurations());
+        for (int i = 0; i < snapshot.getNumDurations(); i++) {
+            writeName(snapshot.getDurationKey(i));
+            writeVarint(BinaryFormat.zigZag(snapshot.getDurationNanos(i)));
+        }
+    }
+
+    private void writeName(MetricKey key) {
+        int id = key.getId();
+        int index = id < nameIndexes.length ? nameIndexes[id] : 0;
+        if (index != 0) {
+            writeVarint(index);
+            return;
+        }
+        writeVarint(BinaryFormat.NEW_NAME);
+        writeString(key.getName());
+        if (dictionaries) {
+            addName(key);
+        }
+    }
+
+    private void addName(MetricKey key) {
+        int id = key.getId();
+        if (id >= nameIndexes.length) {
+            nameIndexes = Arrays.copyOf(nameIndexes, Math.max(id + 1, nameIndexes.length * 2));
+        }
+        nameCount++;
+        nameIndexes[id] = nameCount;
+    }
+
+    private void writeValue(String value) {
+        if (value == null) {
+            writeVarint(BinaryFormat.NULL_VALUE);
+            return;
+        }
+        Integer index = dictionaries ? valueIndexes.get(value) : null;
+        if (index != null) {
+            writeVarint(index + 2);
+            return;
+        }
+        writeVarint(BinaryFormat.NEW_VALUE);
+        writeString(value);
+        if (dictionaries && valueIndexes.size() < BinaryFormat.MAX_VALUE_ENTRIES) {
+            valueIndexes.put(value, valueIndexes.size());
+        }
+    }
+
+    private void writeInstant(Instant time) {
+        writeVarint(BinaryFormat.zigZag(time.getEpochSecond()));
+        writeVarint(time.getNano());
+    }
+
+    private void writeTimestampOffset(Instant base, Instant time) {
+        long seconds = time.getEpochSecond() - base.getEpochSecond();
+        // Both epoch second values are within about +/- 2^55, so the subtraction can't overflow.
+        if (Math.abs(seconds) < BinaryFormat.MAX_TIMESTAMP_OFFSET / BinaryFormat.NANOS_PER_SECOND) {
+            long offset = seconds * BinaryFormat.NANOS_PER_SECOND + time.getNano() - base.getNano();
+            writeVarint(BinaryFormat.zigZag(offset) << 1);
+        } else {
+            writeVarint(BinaryFormat.RAW_VALUE);
+            writeInstant(time);
+        }
+    }
+
+    private void writeCount(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < BinaryFormat.MAX_INTEGRAL_COUNT
+                && Double.doubleToRawLongBits(value) != NEGATIVE_ZERO_BITS) {
+            writeVarint(BinaryFormat.zigZag((long) value) << 1);
+        } else {
+            writeVarint(BinaryFormat.RAW_VALUE);
+            long bits = Double.doubleToRawLongBits(value);
+            ensureCapacity(8);
+            for (int i = 0; i < 8; i++) {
+                buffer[length++] = (byte) (bits >>> (8 * i));
+            }
+        }
+    }
+
+    private void writeString(String value) {
+        // A char never takes more than three bytes in UTF-8; surrogate pairs take four bytes for two chars.
+        int maxBytes = value.length() * 3;
+        ensureCapacity(varintSize(maxBytes) + maxBytes);
+        int lengthOffset = length;
+        int lengthSize = varintSize(maxBytes);
+        length += lengthSize;
+        int bodyStart = length;
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch < 0x80) {
+                buffer[length++] = (byte) ch;
+            } else if (ch < 0x800) {
+                buffer[length++] = (byte) (0xC0 | (ch >> 6));
+                buffer[length++] = (byte) (0x80 | (ch & 0x3F));
+            } else if (Character.isHighSurrogate(ch) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(ch, value.charAt(++i));
+                buffer[length++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[length++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(ch)) {
+                buffer[length++] = '?';
+            } else {
+                buffer[length++] = (byte) (0xE0 | (ch >> 12));
+                buffer[length++] = (byte) (0x80 | ((ch >> 6) & 0x3F));
+                buffer[length++] = (byte) (0x80 | (ch & 0x3F));
+            }
+        }
+        int byteLength = length - bodyStart;
+        int actualLengthSize = varintSize(byteLength);
+        if (actualLengthSize != lengthSize) {
+            // The space reserved for the length assumed the worst case, so close the gap.
+            System.arraycopy(buffer, bodyStart, buffer, lengthOffset + actualLengthSize, byteLength);
+        }
+        int end = lengthOffset + actualLengthSize + byteLength;
+        length = lengthOffset;
+        writeVarint(byteLength);
+        length = end;
+    }
+
+    private void writeVarint(long value) {
+        ensureCapacity(10);
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            buffer[length++] = (byte) ((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        buffer[length++] = (byte) remaining;
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        for (int remaining = value >>> 7; remaining != 0; remaining >>>= 7) {
+            size++;
+        }
+        return size;
+    }
+
+    private void ensureCapacity(int additional) {
+        if (length + additional > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + additional));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.danielgmyers.metrics.MetricSnapshot;
+
+/**
+ * Reads the snapshots written by a BinarySnapshotWriter from an input stream, in order. Each record is read into a
+ * reusable buffer in full before it's decoded by a BinaryRecordDecoder, so the stream should do its own buffering if
+ * it's unbuffered. Throws an IOException if the stream isn't in a supported version of the format, or is truncated or malformed.
+ *
+ * Not thread-safe.
+ */
+public final class BinarySnapshotReader implements AutoCloseable {
+
+    private static final int INITIAL_BUFFER_SIZE = 256;
+
+    private final InputStream input;
+    private final BinaryRecordDecoder decoder = BinaryRecordDecoder.forStream();
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+    private boolean headerRead;
+
+    public BinarySnapshotReader(InputStream input) {
+        if (input == null) {
+            throw new IllegalArgumentException("An input stream is required.");
+        }
+        this.input = input;
+    }
+
+    /**
+     * Returns the next snapshot, or null if the stream ended cleanly before another record.
+     */
+    public MetricSnapshot read() throws IOException {
+        if (!headerRead) {
+            readHeader();
+            headerRead = true;
+        }
+        long bodyLength = readRecordLength();
+        if (bodyLength < 0) {
+            return null;
+        }
+        if (bodyLength > Integer.MAX_VALUE - 8) {
+            throw new IOException("Record length " + bodyLength + " is too large.");
+        }
+        if (bodyLength > buffer.length) {
+            buffer = new byte[Math.max((int) bodyLength, buffer.length * 2)];
+        }
+        readFully(buffer, (int) bodyLength);
+        return decoder.decodeBody(ByteBuffer.wrap(buffer, 0, (int) bodyLength));
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    private void readHeader() throws IOException {
+        byte[] header = new byte[BinaryFormat.MAGIC.length + 1];
+        readFully(header, header.length);
+        if (!Arrays.equals(Arrays.copyOf(header, BinaryFormat.MAGIC.length), BinaryFormat.MAGIC)) {
+            throw new IOException("Not a binary snapshot stream.");
+        }
+        if (header[BinaryFormat.MAGIC.length] != BinaryFormat.VERSION) {
+            throw new IOException("Unsupported binary snapshot stream version " + header[BinaryFormat.MAGIC.length] + ".");
+        }
+    }
+
+    /**
+     * Reads the varint length of the next record straight from the stream, or returns -1 at the end of the stream.
+     */
+    private long readRecordLength() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int next = input.read();
+            if (next < 0) {
+                if (shift == 0) {
+                    return -1;
+                }
+                throw new EOFException("Stream ended in the middle of a record length.");
+            }
+            value |= (long) (next & 0x7F) << shift;
+            if ((next & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed record length.");
+    }
+
+    private void readFully(byte[] target, int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            int count = input.read(target, read, length - read);
+            if (count < 0) {
+                throw new EOFException("Stream ended in the middle of a record.");
+            }
+            read += count;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+import com.danielgmyers.metrics.MetricPublisher;
+import com.danielgmyers.metrics.MetricSnapshot;
+
+/**
+ * Writes snapshots to an output stream in the compact binary format described by BinaryFormat, which
+ * BinarySnapshotReader reads back. Each record is encoded by a BinaryRecordEncoder into its reusable buffer and
+ * handed to the stream in a single write, so the stream should do its own buffering if it's unbuffered (a socket, for example).
+ *
+ * Names and property values are dictionary-encoded across the whole stream, so once a stream is under way most
+ * records contain no strings at all. For the same reason, after an IOException the stream can't be recovered,
+ * and every later write fails.
+ *
+ * Also usable directly as a MetricPublisher, in which case IOExceptions are rethrown as UncheckedIOException.
+ * Thread-safe.
+ */
+public final class BinarySnapshotWriter implements MetricPublisher, AutoCloseable {
+
+    private final OutputStream output;
+    private final BinaryRecordEncoder encoder = BinaryRecordEncoder.forStream();
+    private boolean headerWritten;
+    private boolean broken;
+
+    public BinarySnapshotWriter(OutputStream output) {
+        if (output == null) {
+            throw new IllegalArgumentException("An output stream is required.");
+        }
+        this.output = output;
+    }
+
+    /**
+     * Writes a single record.
+     */
+    public synchronized void write(MetricSnapshot snapshot) throws IOException {
+        if (broken) {
+            throw new IOException("An earlier write failed, so the stream can't be continued.");
+        }
+        try {
+            if (!headerWritten) {
+                output.write(BinaryFormat.MAGIC);
+                output.write(BinaryFormat.VERSION);
+                headerWritten = true;
+            }
+            int start = encoder.encodeStreamRecord(snapshot);
+            output.write(encoder.getBuffer(), start, encoder.getLength() - start);
+        } catch (IOException | RuntimeException e) {
+            broken = true;
+            throw e;
+        }
+    }
+
+    @Override
+    public void publish(MetricSnapshot snapshot) {
+        try {
+            write(snapshot);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void publishAll(List<MetricSnapshot> snapshots) {
+        for (MetricSnapshot snapshot : snapshots) {
+            publish(snapshot);
+        }
+    }
+
+    public synchronized void flush() throws IOException {
+        output.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        output.close();
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+
+import com.danielgmyers.metrics.MetricKey;
+import com.danielgmyers.metrics.MetricSnapshot;
+import com.danielgmyers.metrics.StandardMetricNames;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class BinaryRecordEncoderTest {
+
+    private static MetricSnapshot decode(BinaryRecordEncoder encoder, int length) throws IOException {
+        return BinaryRecordDecoder.decode(ByteBuffer.wrap(encoder.getBuffer(), 0, length));
+    }
+
+    @Test
+    public void testStandaloneRecordsDecodeIndependently() throws IOException {
+        Instant start = Instant.ofEpochSecond(1700000000L, 123456789);
+        MetricSnapshot snapshot = new MetricSnapshot.Builder()
+                .putProperty(StandardMetricNames.OPERATION.getKey(), "GetWidget")
+                .putProperty(MetricKey.of("StarshipName"), "Enterprise ✨")
+                .putProperty(MetricKey.of("Captain"), null)
+                .putTimestamp(StandardMetricNames.START_TIME.getKey(), start)
+                .addCount(MetricKey.of("Rings"), 2.5)
+                .addDurationNanos(MetricKey.of("Warp"), 7)
+                .build();
+
+        BinaryRecordEncoder encoder = new BinaryRecordEncoder();
+        int firstLength = encoder.encode(snapshot);
+        byte[] first = Arrays.copyOf(encoder.getBuffer(), firstLength);
+        // Nothing is added to a dictionary, so the second record is written in full too and decodes on its own.
+        int secondLength = encoder.encode(snapshot);
+        Assertions.assertArrayEquals(first, Arrays.copyOf(encoder.getBuffer(), secondLength));
+
+        MetricSnapshot decoded = decode(encoder, secondLength);
+        Assertions.assertEquals("GetWidget", decoded.getProperty("Operation"));
+        Assertions.assertEquals("Enterprise ✨", decoded.getProperty("StarshipName"));
+        Assertions.assertNull(decoded.getPropertyValue(2));
+        Assertions.assertEquals(start, decoded.getTimestamp("StartTime"));
+        Assertions.assertEquals(2.5, decoded.getCount("Rings"));
+        Assertions.assertEquals(Duration.ofNanos(7), decoded.getDuration("Warp"));
+    }
+
+    @Test
+    public void testStandaloneRecordsStartWithTheFormatVersion() throws IOException {
+        BinaryRecordEncoder encoder = new BinaryRecordEncoder();
+        int length = encoder.encode(new MetricSnapshot.Builder().addCount(MetricKey.of("Rings"), 1).build());
+        Assertions.assertEquals(BinaryFormat.VERSION, encoder.getBuffer()[0]);
+
+        Assertions.assertThrows(IOException.class, () -> decode(encoder, length - 1));
+        Assertions.assertThrows(IOException.class, () -> decode(encoder, 0));
+        encoder.getBuffer()[0] = 99;
+        Assertions.assertThrows(IOException.class, () -> decode(encoder, length));
+    }
+
+    @Test
+    public void testStandaloneRecordsCannotReferToStreamDictionaries() throws IOException {
+        BinaryRecordEncoder encoder = new BinaryRecordEncoder();
+        int length = encoder.encode(new MetricSnapshot.Builder().addCount(MetricKey.of("Rings"), 1).build());
+        // The count's name reference, which would point past the seeded names into a stream's dictionary.
+        encoder.getBuffer()[4] = (byte) (BinaryFormat.SEEDED_NAMES.size() + 1);
+        Assertions.assertThrows(IOException.class, () -> decode(encoder, length));
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.danielgmyers.metrics.MetricKey;
+import com.danielgmyers.metrics.MetricSnapshot;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class BinarySnapshotReaderTest {
+
+    private static byte[] encode(MetricSnapshot snapshot) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new BinarySnapshotWriter(output).write(snapshot);
+        return output.toByteArray();
+    }
+
+    private static BinarySnapshotReader reader(byte[] bytes) {
+        return new BinarySnapshotReader(new ByteArrayInputStream(bytes));
+    }
+
+    @Test
+    public void testEndOfStream() throws IOException {
+        byte[] bytes = encode(new MetricSnapshot.Builder().addCount(MetricKey.of("Rings"), 1).build());
+        BinarySnapshotReader reader = reader(bytes);
+        Assertions.assertEquals(1.0, reader.read().getCount("Rings"));
+        Assertions.assertNull(reader.read());
+        Assertions.assertNull(reader.read());
+    }
+
+    @Test
+    public void testRejectsOtherStreams() {
+        Assertions.assertThrows(IOException.class, () -> reader(new byte[] {'{', '"', 'a', '"'}).read());
+        Assertions.assertThrows(IOException.class, () -> reader(new byte[] {'M', 'R', 'B', 2}).read());
+        Assertions.assertThrows(EOFException.class, () -> reader(new byte[] {'M', 'R'}).read());
+    }
+
+    @Test
+    public void testRejectsTruncatedRecords() throws IOException {
+        byte[] bytes = encode(new MetricSnapshot.Builder().addCount(MetricKey.of("Rings"), 1).build());
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 1);
+        Assertions.assertThrows(EOFException.class, () -> reader(truncated).read());
+    }
+
+    @Test
+    public void testRejectsMalformedRecords() throws IOException {
+        byte[] bytes = encode(new MetricSnapshot.Builder().addCount(MetricKey.of("Rings"), 1).build());
+        // Point the count's name at a dictionary entry which doesn't exist.
+        byte[] unknownName = bytes.clone();
+        unknownName[8] = 100;
+        Assertions.assertThrows(IOException.class, () -> reader(unknownName).read());
+    }
+}
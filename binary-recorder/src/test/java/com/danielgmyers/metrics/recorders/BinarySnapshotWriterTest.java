@@ -0,0 +1,177 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.danielgmyers.metrics.MetricKey;
+import com.danielgmyers.metrics.MetricSnapshot;
+import com.danielgmyers.metrics.StandardMetricNames;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class BinarySnapshotWriterTest {
+
+    private static final Instant START = Instant.ofEpochSecond(1700000000L, 123456789);
+
+    private static MetricSnapshot request(String requestId, double widgets, long lookupNanos) {
+        return new MetricSnapshot.Builder()
+                .putProperty(StandardMetricNames.OPERATION.getKey(), "GetWidget")
+                .putProperty(StandardMetricNames.THREAD_NAME.getKey(), "worker-1")
+                .putProperty(MetricKey.of("RequestId"), requestId)
+                .putTimestamp(StandardMetricNames.START_TIME.getKey(), START)
+                .putTimestamp(StandardMetricNames.END_TIME.getKey(), START.plusMillis(5))
+                .addCount(MetricKey.of("WidgetCount"), widgets)
+                .addDurationNanos(MetricKey.of("DatabaseLookup"), lookupNanos)
+                .addDurationNanos(StandardMetricNames.TIME.getKey(), 5_000_000)
+                .build();
+    }
+
+    private static List<MetricSnapshot> readAll(byte[] bytes) throws IOException {
+        List<MetricSnapshot> snapshots = new ArrayList<>();
+        try (BinarySnapshotReader reader = new BinarySnapshotReader(new ByteArrayInputStream(bytes))) {
+            for (MetricSnapshot snapshot = reader.read(); snapshot != null; snapshot = reader.read()) {
+                snapshots.add(snapshot);
+            }
+        }
+        return snapshots;
+    }
+
+    private static void assertSnapshotsEqual(MetricSnapshot expected, MetricSnapshot actual) {
+        Assertions.assertEquals(expected.getNumProperties(), actual.getNumProperties());
+        for (int i = 0; i < expected.getNumProperties(); i++) {
+            Assertions.assertSame(expected.getPropertyKey(i), actual.getPropertyKey(i));
+            Assertions.assertEquals(expected.getPropertyValue(i), actual.getPropertyValue(i));
+        }
+        Assertions.assertEquals(expected.getNumTimestamps(), actual.getNumTimestamps());
+        for (int i = 0; i < expected.getNumTimestamps(); i++) {
+            Assertions.assertSame(expected.getTimestampKey(i), actual.getTimestampKey(i));
+            Assertions.assertEquals(expected.getTimestampValue(i), actual.getTimestampValue(i));
+        }
+        Assertions.assertEquals(expected.getNumCounts(), actual.getNumCounts());
+        for (int i = 0; i < expected.getNumCounts(); i++) {
+            Assertions.assertSame(expected.getCountKey(i), actual.getCountKey(i));
+            Assertions.assertEquals(Double.doubleToRawLongBits(expected.getCountValue(i)),
+                    Double.doubleToRawLongBits(actual.getCountValue(i)));
+        }
+        Assertions.assertEquals(expected.getNumDurations(), actual.getNumDurations());
+        for (int i = 0; i < expected.getNumDurations(); i++) {
+            Assertions.assertSame(expected.getDurationKey(i), actual.getDurationKey(i));
+            Assertions.assertEquals(expected.getDurationNanos(i), actual.getDurationNanos(i));
+        }
+    }
+
+    @Test
+    public void testRoundTripsRecords() throws IOException {
+        List<MetricSnapshot> snapshots = List.of(
+                request("request-1", 3, 1_500_000),
+                request("request-2", -7, 0),
+                MetricSnapshot.empty(),
+                request("request-1", 0.5, Long.MAX_VALUE));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (BinarySnapshotWriter writer = new BinarySnapshotWriter(output)) {
+            for (MetricSnapshot snapshot : snapshots) {
+                writer.write(snapshot);
+            }
+        }
+
+        List<MetricSnapshot> decoded = readAll(output.toByteArray());
+        Assertions.assertEquals(snapshots.size(), decoded.size());
+        for (int i = 0; i < snapshots.size(); i++) {
+            assertSnapshotsEqual(snapshots.get(i), decoded.get(i));
+        }
+    }
+
+    @Test
+    public void testRoundTripsUnusualValues() throws IOException {
+        MetricSnapshot snapshot = new MetricSnapshot.Builder()
+                .putProperty(MetricKey.of("Missing"), null)
+                .putProperty(MetricKey.of("Unicode"), "Enterprise ✨ 😀")
+                .putTimestamp(MetricKey.of("Launch"), START)
+                .putTimestamp(MetricKey.of("LongAgo"), Instant.MIN)
+                .putTimestamp(MetricKey.of("FarFuture"), Instant.MAX)
+                .addCount(MetricKey.of("NegativeZero"), -0.0)
+                .addCount(MetricKey.of("NotANumber"), Double.NaN)
+                .addCount(MetricKey.of("Huge"), 1e300)
+                .addCount(MetricKey.of("LargestExact"), 0x1p53 - 1)
+                .addDurationNanos(MetricKey.of("Backwards"), Long.MIN_VALUE)
+                .build();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new BinarySnapshotWriter(output).write(snapshot);
+
+        assertSnapshotsEqual(snapshot, readAll(output.toByteArray()).get(0));
+    }
+
+    @Test
+    public void testRepeatedNamesAndValuesAreWrittenOnce() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        BinarySnapshotWriter writer = new BinarySnapshotWriter(output);
+        writer.write(request("request-1", 3, 1_500_000));
+        int first = output.size();
+        writer.write(request("request-1", 3, 1_500_000));
+        int second = output.size() - first;
+
+        // Every name and value is a one-byte reference the second time around.
+        Assertions.assertTrue(second < 40, "second record took " + second + " bytes");
+        Assertions.assertTrue(second * 2 < first, "first record took " + first + " bytes");
+    }
+
+    @Test
+    public void testValueDictionaryIsBounded() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        BinarySnapshotWriter writer = new BinarySnapshotWriter(output);
+        List<MetricSnapshot> snapshots = new ArrayList<>();
+        for (int i = 0; i < BinaryFormat.MAX_VALUE_ENTRIES + 10; i++) {
+            snapshots.add(request("request-" + i, i, i));
+        }
+        // Values seen after the dictionary filled up are written out in full every time.
+        snapshots.add(request("request-" + (BinaryFormat.MAX_VALUE_ENTRIES + 5), 0, 0));
+        snapshots.add(request("request-0", 0, 0));
+        for (MetricSnapshot snapshot : snapshots) {
+            writer.write(snapshot);
+        }
+
+        List<MetricSnapshot> decoded = readAll(output.toByteArray());
+        Assertions.assertEquals(snapshots.size(), decoded.size());
+        for (int i = 0; i < snapshots.size(); i++) {
+            assertSnapshotsEqual(snapshots.get(i), decoded.get(i));
+        }
+    }
+
+    @Test
+    public void testFailedStreamsCannotBeContinued() {
+        OutputStream failing = new OutputStream() {
+            @Override
+            public void write(int value) throws IOException {
+                throw new IOException("disk full");
+            }
+        };
+        BinarySnapshotWriter writer = new BinarySnapshotWriter(failing);
+        MetricSnapshot snapshot = request("request-1", 1, Duration.ofMillis(1).toNanos());
+
+        Assertions.assertThrows(UncheckedIOException.class, () -> writer.publish(snapshot));
+        Assertions.assertThrows(IOException.class, () -> writer.write(snapshot));
+    }
+}
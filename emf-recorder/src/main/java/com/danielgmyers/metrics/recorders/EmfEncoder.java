@@ -0,0 +1,453 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.List;
+
+import com.danielgmyers.metrics.MetricKey;
+import com.danielgmyers.metrics.RecordedMetrics;
+import com.danielgmyers.metrics.StandardMetricNames;
+
+/**
+ * Encodes recorded metrics as CloudWatch Embedded Metric Format JSON lines, directly into a reusable byte array.
+ *
+ * Properties become root members (the configured dimensions among them), timestamps become root members holding
+ * epoch milliseconds, and counts and durations become metrics, with durations converted to milliseconds.
+ * Each root member name is used once per line: when a timestamp, count or duration has the same name as a member
+ * written before it (properties first, then timestamps, counts and durations), it's written under its name with
+ * "Timestamp", "Count" or "Duration" appended instead. EMF allows at most MAX_METRICS_PER_LINE metrics in a
+ * directive, so metrics beyond that are written in further lines, each repeating the properties and timestamps.
+ * Numbers are formatted without going through String, and each metric name is escaped and encoded once and then
+ * cached by MetricKey id, so encoding allocates nothing once the buffer and cache have grown to fit. The one
+ * exception is a count with a fractional part, which is formatted with Double.toString().
+ *
+ * Not thread-safe; EmfMetricPublisher keeps one encoder per thread.
+ */
+final class EmfEncoder {
+
+    /**
+     * The most metrics EMF allows in a single metric directive.
+     */
+    static final int MAX_METRICS_PER_LINE = 100;
+    /**
+     * The most dimensions EMF allows in a dimension set.
+     */
+    static final int MAX_DIMENSIONS = 30;
+
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+
+    private static final byte[] TIMESTAMP = ascii("{\"_aws\":{\"Timestamp\":");
+    private static final byte[] NAMESPACE = ascii(",\"CloudWatchMetrics\":[{\"Namespace\":");
+    private static final byte[] DIMENSIONS = ascii(",\"Dimensions\":[[");
+    private static final byte[] METRICS = ascii("]],\"Metrics\":[");
+    private static final byte[] NAME = ascii("{\"Name\":");
+    private static final byte[] COUNT_UNIT = ascii(",\"Unit\":\"Count\"}");
+    private static final byte[] MILLISECONDS_UNIT = ascii(",\"Unit\":\"Milliseconds\"}");
+    private static final byte[] DIRECTIVE_END = ascii("]}]}");
+    private static final byte[] LONG_MIN_VALUE = ascii(Long.toString(Long.MIN_VALUE));
+    private static final byte[] HEX_DIGITS = ascii("0123456789abcdef");
+
+    private static final MetricKey END_TIME = StandardMetricNames.END_TIME.getKey();
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+    // Integral counts of smaller magnitude than this are exact as longs, and are written without a fraction.
+    private static final double MAX_INTEGRAL_COUNT = 1e15;
+
+    // Appended to a timestamp, count or duration name already taken by an earlier member of the line.
+    private static final int TIMESTAMP_MEMBER = 0;
+    private static final int COUNT_MEMBER = 1;
+    private static final int DURATION_MEMBER = 2;
+    private static final String[] RENAME_SUFFIXES = {"Timestamp", "Count", "Duration"};
+
+    private final byte[] namespace;
+    private final MetricKey[] dimensions;
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+    private int length;
+    private byte[][] encodedNames = new byte[0][];
+
+    // The member names used by the current encode() call are the keys whose entries equal memberStamp.
+    private int[] memberStamps = new int[0];
+    private int memberStamp;
+    private final MetricKey[][] renamedKeys = new MetricKey[RENAME_SUFFIXES.length][0];
+    private MetricKey[] timestampMembers = new MetricKey[0];
+    // The finite counts and then the durations, by member name and by source: the count's index, or -1 minus the
+    // duration's index.
+    private MetricKey[] metricMembers = new MetricKey[0];
+    private int[] metricSources = new int[0];
+    private int[] lineEnds = new int[1];
+    private int lineCount;
+
+    EmfEncoder(String namespace, List<String> dimensions) {
+        this.dimensions = new MetricKey[dimensions.size()];
+        for (int i = 0; i < this.dimensions.length; i++) {
+            this.dimensions[i] = MetricKey.of(dimensions.get(i));
+        }
+        this.namespace = quote(namespace);
+    }
+
+    /**
+     * Encodes the metrics as one or more newline-terminated lines, replacing whatever was previously encoded.
+     * Each line's timestamp is the EndTime timestamp, or the clock's current time if there is none.
+     *
+     * @return The number of bytes encoded into getBuffer(); see getLineCount() and getLineEnd() for the lines.
+     */
+    int encode(RecordedMetrics metrics, Clock defaultClock) {
+        length = 0;
+        long timestampMillis = NO_TIMESTAMP;
+        for (int i = 0; i < metrics.getNumTimestamps(); i++) {
+            if (metrics.getTimestampKey(i) == END_TIME) {
+                timestampMillis = metrics.getTimestampValue(i).toEpochMilli();
+            }
+        }
+        if (timestampMillis == NO_TIMESTAMP) {
+            timestampMillis = defaultClock.millis();
+        }
+
+        int metricCount = nameMembers(metrics);
+        lineCount = Math.max(1, (metricCount + MAX_METRICS_PER_LINE - 1) / MAX_METRICS_PER_LINE);
+        if (lineEnds.length < lineCount) {
+            lineEnds = new int[lineCount];
+        }
+        for (int line = 0; line < lineCount; line++) {
+            int from = line * MAX_METRICS_PER_LINE;
+            writeLine(metrics, timestampMillis, from, Math.min(from + MAX_METRICS_PER_LINE, metricCount));
+            lineEnds[line] = length;
+        }
+        return length;
+    }
+
+    /**
+     * The number of lines written by the last call to encode().
+     */
+    int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * The offset just past the newline ending the specified line; each line starts where the previous one ended.
+     */
+    int getLineEnd(int line) {
+        return lineEnds[line];
+    }
+
+    byte[] getBuffer() {
+        return buffer;
+    }
+
+    private void writeLine(RecordedMetrics metrics, long timestampMillis, int fromMetric, int toMetric) {
+        writeBytes(TIMESTAMP);
+        writeLong(timestampMillis);
+        writeBytes(NAMESPACE);
+        writeBytes(namespace);
+        writeBytes(DIMENSIONS);
+        boolean first = true;
+        for (MetricKey dimension : dimensions) {
+            if (hasProperty(metrics, dimension)) {
+                if (!first) {
+                    writeByte(',');
+                }
+                writeBytes(encodedName(dimension));
+                first = false;
+            }
+        }
+        writeBytes(METRICS);
+        for (int i = fromMetric; i < toMetric; i++) {
+            if (i > fromMetric) {
+                writeByte(',');
+            }
+            writeBytes(NAME);
+            writeBytes(encodedName(metricMembers[i]));
+            writeBytes(metricSources[i] >= 0 ? COUNT_UNIT : MILLISECONDS_UNIT);
+        }
+        writeBytes(DIRECTIVE_END);
+
+        for (int i = 0; i < metrics.getNumProperties(); i++) {
+            writeMemberName(metrics.getPropertyKey(i));
+            writeString(metrics.getPropertyValue(i));
+        }
+        for (int i = 0; i < metrics.getNumTimestamps(); i++) {
+            writeMemberName(timestampMembers[i]);
+            writeLong(metrics.getTimestampValue(i).toEpochMilli());
+        }
+        for (int i = fromMetric; i < toMetric; i++) {
+            writeMemberName(metricMembers[i]);
+            int source = metricSources[i];
+            if (source >= 0) {
+                writeDouble(metrics.getCountValue(source));
+            } else {
+                writeMillis(metrics.getDurationNanos(-1 - source));
+            }
+        }
+        writeByte('}');
+        writeByte('\n');
+    }
+
+    /**
+     * Chooses a distinct root member name for every timestamp and metric, and lists the metrics to be written.
+     * Returns the number of metrics.
+     */
+    private int nameMembers(RecordedMetrics metrics) {
+        memberStamp++;
+        if (memberStamp == 0) {
+            Arrays.fill(memberStamps, 0);
+            memberStamp = 1;
+        }
+        for (int i = 0; i < metrics.getNumProperties(); i++) {
+            claim(metrics.getPropertyKey(i));
+        }
+        if (timestampMembers.length < metrics.getNumTimestamps()) {
+            timestampMembers = new MetricKey[metrics.getNumTimestamps()];
+        }
+        for (int i = 0; i < metrics.getNumTimestamps(); i++) {
+            timestampMembers[i] = memberName(metrics.getTimestampKey(i), TIMESTAMP_MEMBER);
+        }
+        int metricCapacity = metrics.getNumCounts() + metrics.getNumDurations();
+        if (metricMembers.length < metricCapacity) {
+            metricMembers = new MetricKey[metricCapacity];
+            metricSources = new int[metricCapacity];
+        }
+        int metricCount = 0;
+        for (int i = 0; i < metrics.getNumCounts(); i++) {
+            if (Double.isFinite(metrics.getCountValue(i))) {
+                metricMembers[metricCount] = memberName(metrics.getCountKey(i), COUNT_MEMBER);
+                metricSources[metricCount] = i;
+                metricCount++;
+            }
+        }
+        for (int i = 0; i < metrics.getNumDurations(); i++) {
+            metricMembers[metricCount] = memberName(metrics.getDurationKey(i), DURATION_MEMBER);
+            metricSources[metricCount] = -1 - i;
+            metricCount++;
+        }
+        return metricCount;
+    }
+
+    /**
+     * Returns the key's name if no earlier member of the line has taken it, and otherwise the name with the kind's
+     * suffix appended (repeatedly, if that's taken too).
+     */
+    private MetricKey memberName(MetricKey key, int kind) {
+        MetricKey name = key;
+        while (!claim(name)) {
+            MetricKey[] renamed = renamedKeys[kind];
+            int id = name.getId();
+            if (id >= renamed.length) {
+                renamed = Arrays.copyOf(renamed, Math.max(id + 1, renamed.length * 2));
+                renamedKeys[kind] = renamed;
+            }
+            if (renamed[id] == null) {
+                renamed[id] = MetricKey.of(name.getName() + RENAME_SUFFIXES[kind]);
+            }
+            name = renamed[id];
+        }
+        return name;
+    }
+
+    /**
+     * Marks the name as used in the current line, returning false if it already was.
+     */
+    private boolean claim(MetricKey name) {
+        int id = name.getId();
+        if (id >= memberStamps.length) {
+            memberStamps = Arrays.copyOf(memberStamps, Math.max(id + 1, MetricKey.getKeyCount()));
+        }
+        if (memberStamps[id] == memberStamp) {
+            return false;
+        }
+        memberStamps[id] = memberStamp;
+        return true;
+    }
+
+    private static boolean hasProperty(RecordedMetrics metrics, MetricKey key) {
+        for (int i = 0; i < metrics.getNumProperties(); i++) {
+            if (metrics.getPropertyKey(i) == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeMemberName(MetricKey key) {
+        writeByte(',');
+        writeBytes(encodedName(key));
+        writeByte(':');
+    }
+
+    private byte[] encodedName(MetricKey key) {
+        int id = key.getId();
+        if (id >= encodedNames.length) {
+            encodedNames = Arrays.copyOf(encodedNames, Math.max(id + 1, encodedNames.length * 2));
+        }
+        byte[] encoded = encodedNames[id];
+        if (encoded == null) {
+            encoded = quote(key.getName());
+            encodedNames[id] = encoded;
+        }
+        return encoded;
+    }
+
+    private void writeDouble(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < MAX_INTEGRAL_COUNT) {
+            writeLong((long) value);
+        } else {
+            writeAscii(Double.toString(value));
+        }
+    }
+
+    /**
+     * Writes a nanosecond value as milliseconds, with up to six decimal places and no trailing zeros.
+     */
+    private void writeMillis(long nanos) {
+        long remaining = nanos;
+        if (remaining < 0) {
+            writeByte('-');
+            remaining = -remaining;
+        }
+        writeLong(remaining / 1_000_000);
+        int fraction = (int) (remaining % 1_000_000);
+        if (fraction != 0) {
+            int digits = 6;
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+                digits--;
+            }
+            writeByte('.');
+            ensureCapacity(digits);
+            for (int i = length + digits - 1; i >= length; i--) {
+                buffer[i] = (byte) ('0' + fraction % 10);
+                fraction /= 10;
+            }
+            length += digits;
+        }
+    }
+
+    private void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            writeBytes(LONG_MIN_VALUE);
+            return;
+        }
+        long remaining = value;
+        if (remaining < 0) {
+            writeByte('-');
+            remaining = -remaining;
+        }
+        int digits = 1;
+        for (long bound = 10; digits < 19 && remaining >= bound; bound *= 10) {
+            digits++;
+        }
+        ensureCapacity(digits);
+        for (int i = length + digits - 1; i >= length; i--) {
+            buffer[i] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        }
+        length += digits;
+    }
+
+    private void writeAscii(String value) {
+        ensureCapacity(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            buffer[length++] = (byte) value.charAt(i);
+        }
+    }
+
+    /**
+     * Writes a JSON string literal, encoded as UTF-8.
+     */
+    private void writeString(String value) {
+        if (value == null) {
+            writeAscii("null");
+            return;
+        }
+        // Escaping expands a character to at most six bytes.
+        ensureCapacity(value.length() * 6 + 2);
+        buffer[length++] = '"';
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '"' || ch == '\\') {
+                buffer[length++] = '\\';
+                buffer[length++] = (byte) ch;
+            } else if (ch < 0x20) {
+                buffer[length++] = '\\';
+                buffer[length++] = 'u';
+                buffer[length++] = '0';
+                buffer[length++] = '0';
+                buffer[length++] = HEX_DIGITS[ch >> 4];
+                buffer[length++] = HEX_DIGITS[ch & 0xF];
+            } else if (ch < 0x80) {
+                buffer[length++] = (byte) ch;
+            } else if (ch < 0x800) {
+                buffer[length++] = (byte) (0xC0 | (ch >> 6));
+                buffer[length++] = (byte) (0x80 | (ch & 0x3F));
+            } else if (Character.isHighSurrogate(ch) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(ch, value.charAt(++i));
+                buffer[length++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[length++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(ch)) {
+                buffer[length++] = '?';
+            } else {
+                buffer[length++] = (byte) (0xE0 | (ch >> 12));
+                buffer[length++] = (byte) (0x80 | ((ch >> 6) & 0x3F));
+                buffer[length++] = (byte) (0x80 | (ch & 0x3F));
+            }
+        }
+        buffer[length++] = '"';
+    }
+
+    private void writeBytes(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private void writeByte(char ch) {
+        ensureCapacity(1);
+        buffer[length++] = (byte) ch;
+    }
+
+    private void ensureCapacity(int additional) {
+        if (length + additional > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + additional));
+        }
+    }
+
+    /**
+     * Returns the JSON string literal for the value, encoded as UTF-8. Only used for names, which are cached.
+     */
+    private static byte[] quote(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '"' || ch == '\\') {
+                quoted.append('\\').append(ch);
+            } else if (ch < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) ch));
+            } else {
+                quoted.append(ch);
+            }
+        }
+        return quoted.append('"').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
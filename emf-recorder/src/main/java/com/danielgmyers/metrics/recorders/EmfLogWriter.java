@@ -0,0 +1,183 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.time.Duration;
+
+/**
+ * Batches encoded log lines in a fixed-size buffer and writes them to a channel (typically a FileChannel opened for
+ * appending) or output stream in as few writes as possible.
+ *
+ * The buffer is written out when the next line doesn't fit, when a line is written more than the maximum batch delay
+ * after the oldest line in the buffer, and when flush() or close() is called. There is no background thread, so
+ * applications which can go quiet for long periods should call flush() on a schedule.
+ *
+ * Write failures are counted and the affected lines discarded, rather than failing the recorder being closed.
+ * Thread-safe.
+ */
+public final class EmfLogWriter implements AutoCloseable {
+
+    public static final int DEFAULT_BATCH_BYTES = 64 * 1024;
+    public static final Duration DEFAULT_MAX_BATCH_DELAY = Duration.ofSeconds(1);
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer batch;
+    private final long maxBatchDelayNanos;
+
+    // Guarded by this.
+    private int batchedLines;
+    private long oldestLineNanos;
+    private long writtenLines;
+    private long failedLines;
+    private long writeCount;
+    private boolean closed;
+
+    private EmfLogWriter(WritableByteChannel channel, int batchBytes, Duration maxBatchDelay) {
+        if (batchBytes < 1) {
+            throw new IllegalArgumentException("Batch size must be positive.");
+        }
+        if (maxBatchDelay == null || maxBatchDelay.isNegative()) {
+            throw new IllegalArgumentException("Maximum batch delay must not be negative.");
+        }
+        this.channel = channel;
+        this.batch = ByteBuffer.allocate(batchBytes);
+        this.maxBatchDelayNanos = maxBatchDelay.toNanos();
+    }
+
+    /**
+     * Creates a writer with the default batch size and delay. The channel is closed when the writer is closed.
+     */
+    public static EmfLogWriter forChannel(WritableByteChannel channel) {
+        return forChannel(channel, DEFAULT_BATCH_BYTES, DEFAULT_MAX_BATCH_DELAY);
+    }
+
+    public static EmfLogWriter forChannel(WritableByteChannel channel, int batchBytes, Duration maxBatchDelay) {
+        if (channel == null) {
+            throw new IllegalArgumentException("A channel is required.");
+        }
+        return new EmfLogWriter(channel, batchBytes, maxBatchDelay);
+    }
+
+    /**
+     * Creates a writer with the default batch size and delay. The stream is closed when the writer is closed.
+     */
+    public static EmfLogWriter forOutputStream(OutputStream stream) {
+        return forOutputStream(stream, DEFAULT_BATCH_BYTES, DEFAULT_MAX_BATCH_DELAY);
+    }
+
+    public static EmfLogWriter forOutputStream(OutputStream stream, int batchBytes, Duration maxBatchDelay) {
+        if (stream == null) {
+            throw new IllegalArgumentException("An output stream is required.");
+        }
+        return new EmfLogWriter(Channels.newChannel(stream), batchBytes, maxBatchDelay);
+    }
+
+    /**
+     * Appends a single complete line to the batch. Lines larger than the batch buffer are written out on their own.
+     * Lines written after the writer is closed are counted as failed.
+     */
+    public synchronized void write(byte[] line, int offset, int length) {
+        if (closed) {
+            failedLines++;
+            return;
+        }
+        long now = System.nanoTime();
+        if (length > batch.remaining()) {
+            flushBatch();
+        }
+        if (length > batch.capacity()) {
+            writeFully(ByteBuffer.wrap(line, offset, length), 1);
+            return;
+        }
+        if (batchedLines == 0) {
+            oldestLineNanos = now;
+        }
+        batch.put(line, offset, length);
+        batchedLines++;
+        if (now - oldestLineNanos >= maxBatchDelayNanos) {
+            flushBatch();
+        }
+    }
+
+    /**
+     * Writes out any buffered lines.
+     */
+    public synchronized void flush() {
+        flushBatch();
+    }
+
+    /**
+     * Writes out any buffered lines and closes the underlying channel or stream.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        flushBatch();
+        closed = true;
+        channel.close();
+    }
+
+    /**
+     * Returns the number of lines successfully written to the channel or stream.
+     */
+    public synchronized long getWrittenCount() {
+        return writtenLines;
+    }
+
+    /**
+     * Returns the number of lines discarded because writing them failed, or the writer was already closed.
+     */
+    public synchronized long getFailedCount() {
+        return failedLines;
+    }
+
+    /**
+     * Returns the number of batches written, which is at most the number of write calls made to the channel.
+     */
+    public synchronized long getBatchCount() {
+        return writeCount;
+    }
+
+    private void flushBatch() {
+        if (batchedLines == 0) {
+            return;
+        }
+        batch.flip();
+        writeFully(batch, batchedLines);
+        batch.clear();
+        batchedLines = 0;
+    }
+
+    private void writeFully(ByteBuffer bytes, int lines) {
+        try {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            writtenLines += lines;
+        } catch (IOException e) {
+            failedLines += lines;
+        }
+        writeCount++;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.time.Clock;
+import java.util.Collections;
+import java.util.List;
+
+import com.danielgmyers.metrics.MetricPublisher;
+import com.danielgmyers.metrics.MetricSnapshot;
+import com.danielgmyers.metrics.RecordedMetrics;
+import com.danielgmyers.metrics.StandardMetricNames;
+
+/**
+ * A MetricPublisher which writes each snapshot as CloudWatch Embedded Metric Format JSON lines, so EMF can be one of
+ * the backends of a CompositeMetricRecorderFactory. EmfMetricRecorderFactory's recorders encode through a publisher
+ * too, straight from their own buffers.
+ *
+ * Lines are encoded into a reusable per-thread buffer, and batched by an EmfLogWriter. Each property named as a
+ * dimension becomes a dimension of every metric in the line, when it has been recorded. EMF allows at most 30
+ * dimensions in a dimension set. Each line's timestamp is the snapshot's EndTime, or the time it was published if it
+ * has none.
+ */
+public class EmfMetricPublisher implements MetricPublisher {
+
+    private final EmfLogWriter writer;
+    private final ThreadLocal<EmfEncoder> encoders;
+
+    /**
+     * Creates a publisher which uses the Operation property as the only dimension.
+     */
+    public EmfMetricPublisher(String namespace, EmfLogWriter writer) {
+        this(namespace, Collections.singletonList(StandardMetricNames.OPERATION.toString()), writer);
+    }
+
+    public EmfMetricPublisher(String namespace, List<String> dimensions, EmfLogWriter writer) {
+        if (namespace == null || namespace.isEmpty()) {
+            throw new IllegalArgumentException("A namespace is required.");
+        }
+        if (dimensions == null) {
+            throw new IllegalArgumentException("Dimensions must not be null.");
+        }
+        if (dimensions.size() > EmfEncoder.MAX_DIMENSIONS) {
+            throw new IllegalArgumentException("At most " + EmfEncoder.MAX_DIMENSIONS + " dimensions are allowed.");
+        }
+        if (writer == null) {
+            throw new IllegalArgumentException("A writer is required.");
+        }
+        List<String> dimensionNames = List.copyOf(dimensions);
+        this.writer = writer;
+        this.encoders = ThreadLocal.withInitial(() -> new EmfEncoder(namespace, dimensionNames));
+    }
+
+    @Override
+    public void publish(MetricSnapshot snapshot) {
+        write(snapshot, Clock.systemUTC());
+    }
+
+    public EmfLogWriter getWriter() {
+        return writer;
+    }
+
+    /**
+     * Encodes the metrics with the calling thread's encoder and hands each line to the writer, which copies it, so
+     * the metrics may be reused as soon as this returns.
+     *
+     * @param defaultClock Supplies the timestamp if the metrics have no EndTime.
+     */
+    void write(RecordedMetrics metrics, Clock defaultClock) {
+        EmfEncoder encoder = encoders.get();
+        encoder.encode(metrics, defaultClock);
+        int start = 0;
+        for (int line = 0; line < encoder.getLineCount(); line++) {
+            int end = encoder.getLineEnd(line);
+            writer.write(encoder.getBuffer(), start, end - start);
+            start = end;
+        }
+    }
+}
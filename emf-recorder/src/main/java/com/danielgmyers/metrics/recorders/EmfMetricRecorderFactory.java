@@ -0,0 +1,59 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.time.Clock;
+import java.util.Collections;
+import java.util.List;
+
+import com.danielgmyers.metrics.MetricRecorder;
+import com.danielgmyers.metrics.MetricRecorderFactory;
+import com.danielgmyers.metrics.StandardMetricNames;
+
+/**
+ * Produces MetricRecorder objects which write their metrics as CloudWatch Embedded Metric Format JSON lines when
+ * closed. Lines are encoded straight from each recorder's buffers by an EmfMetricPublisher, without building a
+ * snapshot, and batched by an EmfLogWriter. To write EMF alongside other backends, add an EmfMetricPublisher to a
+ * CompositeMetricRecorderFactory instead.
+ *
+ * Each property named as a dimension becomes a dimension of every metric in the line, when it has been recorded.
+ * EMF allows at most 30 dimensions in a dimension set.
+ */
+public class EmfMetricRecorderFactory implements MetricRecorderFactory {
+
+    private final EmfMetricPublisher publisher;
+
+    /**
+     * Creates a factory which uses the Operation property as the only dimension.
+     */
+    public EmfMetricRecorderFactory(String namespace, EmfLogWriter writer) {
+        this(namespace, Collections.singletonList(StandardMetricNames.OPERATION.toString()), writer);
+    }
+
+    public EmfMetricRecorderFactory(String namespace, List<String> dimensions, EmfLogWriter writer) {
+        this.publisher = new EmfMetricPublisher(namespace, dimensions, writer);
+    }
+
+    @Override
+    public MetricRecorder newMetricRecorder(String operation, Clock clock) {
+        return new EmfMetricRecorder(operation, clock, publisher);
+    }
+
+    public EmfLogWriter getWriter() {
+        return publisher.getWriter();
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+
+import com.danielgmyers.metrics.MetricKey;
+import com.danielgmyers.metrics.MetricSnapshot;
+import com.danielgmyers.metrics.StandardMetricNames;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class EmfEncoderTest {
+
+    private static String encode(EmfEncoder encoder, MetricSnapshot.Builder metrics, long defaultTimestampMillis) {
+        int length = encoder.encode(metrics, Clock.fixed(Instant.ofEpochMilli(defaultTimestampMillis), ZoneOffset.UTC));
+        return new String(encoder.getBuffer(), 0, length, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testEncodesEveryMetricType() {
+        EmfEncoder encoder = new EmfEncoder("Widgets", Arrays.asList("Operation", "Missing"));
+        MetricSnapshot.Builder metrics = new MetricSnapshot.Builder()
+                .putProperty(StandardMetricNames.OPERATION.getKey(), "GetWidget")
+                .putTimestamp(StandardMetricNames.END_TIME.getKey(), Instant.ofEpochMilli(1700000000123L))
+                .addCount(MetricKey.of("WidgetCount"), 3)
+                .addCount(MetricKey.of("Ratio"), 0.25)
+                .addDurationNanos(MetricKey.of("DatabaseLookup"), 1_500_000)
+                .addDurationNanos(MetricKey.of("Cache"), 7_000_000);
+
+        Assertions.assertEquals("{\"_aws\":{\"Timestamp\":1700000000123,\"CloudWatchMetrics\":[{"
+                + "\"Namespace\":\"Widgets\",\"Dimensions\":[[\"Operation\"]],\"Metrics\":["
+                + "{\"Name\":\"WidgetCount\",\"Unit\":\"Count\"},"
+                + "{\"Name\":\"Ratio\",\"Unit\":\"Count\"},"
+                + "{\"Name\":\"DatabaseLookup\",\"Unit\":\"Milliseconds\"},"
+                + "{\"Name\":\"Cache\",\"Unit\":\"Milliseconds\"}]}]},"
+                + "\"Operation\":\"GetWidget\",\"EndTime\":1700000000123,"
+                + "\"WidgetCount\":3,\"Ratio\":0.25,\"DatabaseLookup\":1.5,\"Cache\":7}\n",
+                encode(encoder, metrics, 0));
+    }
+
+    @Test
+    public void testUsesDefaultTimestampWithoutEndTime() {
+        EmfEncoder encoder = new EmfEncoder("Widgets", Collections.emptyList());
+        String line = encode(encoder, new MetricSnapshot.Builder(), 42);
+        Assertions.assertEquals("{\"_aws\":{\"Timestamp\":42,\"CloudWatchMetrics\":[{"
+                + "\"Namespace\":\"Widgets\",\"Dimensions\":[[]],\"Metrics\":[]}]}}\n", line);
+    }
+
+    @Test
+    public void testEscapesStrings() {
+        EmfEncoder encoder = new EmfEncoder("Widgets", Collections.emptyList());
+        MetricSnapshot.Builder metrics = new MetricSnapshot.Builder()
+                .putProperty(MetricKey.of("Quote\"Name"), "a\"b\\c\ndé€😀");
+        String line = encode(encoder, metrics, 0);
+        Assertions.assertTrue(line.endsWith(",\"Quote\\\"Name\":\"a\\\"b\\\\c\\u000adé€😀\"}\n"), line);
+    }
+
+    @Test
+    public void testFormatsNumbers() {
+        EmfEncoder encoder = new EmfEncoder("Widgets", Collections.emptyList());
+        MetricSnapshot.Builder metrics = new MetricSnapshot.Builder()
+                .addCount(MetricKey.of("Negative"), -12)
+                .addCount(MetricKey.of("Huge"), 1e20)
+                .addCount(MetricKey.of("NotANumber"), Double.NaN)
+                .addDurationNanos(MetricKey.of("Tiny"), 1)
+                .addDurationNanos(MetricKey.of("Backwards"), -2_000_500);
+        String line = encode(encoder, metrics, 0);
+        Assertions.assertTrue(line.endsWith(",\"Negative\":-12,\"Huge\":1.0E20,\"Tiny\":0.000001,\"Backwards\":-2.0005}\n"),
+                line);
+        Assertions.assertFalse(line.contains("NotANumber"), line);
+    }
+
+    @Test
+    public void testReusesBufferAcrossLines() {
+        EmfEncoder encoder = new EmfEncoder("Widgets", Collections.emptyList());
+        MetricSnapshot.Builder metrics = new MetricSnapshot.Builder();
+        for (int i = 0; i < 200; i++) {
+            metrics.addCount(MetricKey.of("Count" + i), i);
+        }
+        String first = encode(encoder, metrics, 0);
+        byte[] buffer = encoder.getBuffer();
+        String second = encode(encoder, metrics, 0);
+
+        Assertions.assertEquals(first, second);
+        Assertions.assertEquals(2, encoder.getLineCount());
+        Assertions.assertSame(buffer, encoder.getBuffer());
+    }
+
+    @Test
+    public void testRenamesMembersWhichShareAName() {
+        EmfEncoder encoder = new EmfEncoder("Widgets", Collections.singletonList("Retries"));
+        MetricKey retries = MetricKey.of("Retries");
+        MetricSnapshot.Builder metrics = new MetricSnapshot.Builder()
+                .putProperty(retries, "some")
+                .putTimestamp(retries, Instant.ofEpochMilli(5))
+                .addCount(retries, 2)
+                .addDurationNanos(retries, 3_000_000);
+
+        Assertions.assertEquals("{\"_aws\":{\"Timestamp\":0,\"CloudWatchMetrics\":[{"
+                + "\"Namespace\":\"Widgets\",\"Dimensions\":[[\"Retries\"]],\"Metrics\":["
+                + "{\"Name\":\"RetriesCount\",\"Unit\":\"Count\"},"
+                + "{\"Name\":\"RetriesDuration\",\"Unit\":\"Milliseconds\"}]}]},"
+                + "\"Retries\":\"some\",\"RetriesTimestamp\":5,\"RetriesCount\":2,\"RetriesDuration\":3}\n",
+                encode(encoder, metrics, 0));
+    }
+
+    @Test
+    public void testRenamingSkipsNamesWhichAreAlsoTaken() {
+        EmfEncoder encoder = new EmfEncoder("Widgets", Collections.emptyList());
+        MetricSnapshot.Builder metrics = new MetricSnapshot.Builder()
+                .putProperty(MetricKey.of("Load"), "high")
+                .putProperty(MetricKey.of("LoadCount"), "many")
+                .addCount(MetricKey.of("Load"), 1);
+
+        String line = encode(encoder, metrics, 0);
+        Assertions.assertTrue(line.contains("{\"Name\":\"LoadCountCount\",\"Unit\":\"Count\"}"), line);
+        Assertions.assertTrue(line.endsWith(",\"Load\":\"high\",\"LoadCount\":\"many\",\"LoadCountCount\":1}\n"), line);
+    }
+
+    @Test
+    public void testSplitsMetricsAcrossLines() {
+        EmfEncoder encoder = new EmfEncoder("Widgets", Collections.singletonList("Operation"));
+        MetricSnapshot.Builder metrics = new MetricSnapshot.Builder()
+                .putProperty(StandardMetricNames.OPERATION.getKey(), "GetWidget");
+        for (int i = 0; i < 150; i++) {
+            metrics.addCount(MetricKey.of("Count" + i), i);
+        }
+        for (int i = 0; i < 60; i++) {
+            metrics.addDurationNanos(MetricKey.of("Duration" + i), 1_000_000);
+        }
+
+        String encoded = encode(encoder, metrics, 0);
+        Assertions.assertEquals(3, encoder.getLineCount());
+        Assertions.assertEquals(encoded.length(), encoder.getLineEnd(2));
+        String[] lines = encoded.split("\n");
+        Assertions.assertEquals(3, lines.length);
+        int[] expectedMetrics = {100, 100, 10};
+        for (int line = 0; line < lines.length; line++) {
+            Assertions.assertEquals(expectedMetrics[line], lines[line].split("\\{\"Name\":", -1).length - 1, lines[line]);
+            Assertions.assertTrue(lines[line].contains("\"Dimensions\":[[\"Operation\"]]"), lines[line]);
+            Assertions.assertTrue(lines[line].contains(",\"Operation\":\"GetWidget\""), lines[line]);
+        }
+        Assertions.assertEquals(lines[0].length() + 1, encoder.getLineEnd(0));
+        Assertions.assertTrue(lines[0].endsWith(",\"Count99\":99}"), lines[0]);
+        Assertions.assertTrue(lines[1].contains("{\"Name\":\"Count100\",\"Unit\":\"Count\"}"), lines[1]);
+        Assertions.assertTrue(lines[1].contains("{\"Name\":\"Duration49\",\"Unit\":\"Milliseconds\"}]"), lines[1]);
+        Assertions.assertTrue(lines[2].endsWith(",\"Duration59\":1}"), lines[2]);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class EmfLogWriterTest {
+
+    private static final Duration LONG_DELAY = Duration.ofHours(1);
+
+    private static void writeLine(EmfLogWriter writer, String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        writer.write(bytes, 0, bytes.length);
+    }
+
+    @Test
+    public void testBatchesLinesUntilFull() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        EmfLogWriter writer = EmfLogWriter.forOutputStream(output, 10, LONG_DELAY);
+
+        writeLine(writer, "abcd\n");
+        writeLine(writer, "efgh\n");
+        Assertions.assertEquals(0, output.size());
+
+        writeLine(writer, "ijkl\n");
+        Assertions.assertEquals("abcd\nefgh\n", output.toString(StandardCharsets.UTF_8));
+        Assertions.assertEquals(1, writer.getBatchCount());
+
+        writer.flush();
+        Assertions.assertEquals("abcd\nefgh\nijkl\n", output.toString(StandardCharsets.UTF_8));
+        Assertions.assertEquals(3, writer.getWrittenCount());
+        Assertions.assertEquals(2, writer.getBatchCount());
+    }
+
+    @Test
+    public void testWritesOversizedLinesDirectly() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        EmfLogWriter writer = EmfLogWriter.forOutputStream(output, 4, LONG_DELAY);
+
+        writeLine(writer, "ab\n");
+        writeLine(writer, "0123456789\n");
+        Assertions.assertEquals("ab\n0123456789\n", output.toString(StandardCharsets.UTF_8));
+        Assertions.assertEquals(2, writer.getWrittenCount());
+    }
+
+    @Test
+    public void testFlushesOldBatches() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        EmfLogWriter writer = EmfLogWriter.forOutputStream(output, 1024, Duration.ZERO);
+
+        writeLine(writer, "abcd\n");
+        Assertions.assertEquals("abcd\n", output.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testCountsFailedWrites() throws IOException {
+        OutputStream failing = new OutputStream() {
+            @Override
+            public void write(int value) throws IOException {
+                throw new IOException("disk full");
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                throw new IOException("disk full");
+            }
+        };
+        EmfLogWriter writer = EmfLogWriter.forOutputStream(failing, 1024, LONG_DELAY);
+
+        writeLine(writer, "abcd\n");
+        writeLine(writer, "efgh\n");
+        writer.flush();
+        Assertions.assertEquals(0, writer.getWrittenCount());
+        Assertions.assertEquals(2, writer.getFailedCount());
+
+        writer.close();
+        writeLine(writer, "ijkl\n");
+        Assertions.assertEquals(3, writer.getFailedCount());
+    }
+
+    @Test
+    public void testAppendsToFileChannel(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("metrics.log");
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        EmfLogWriter writer = EmfLogWriter.forChannel(channel);
+
+        writeLine(writer, "abcd\n");
+        writeLine(writer, "efgh\n");
+        writer.close();
+
+        Assertions.assertFalse(channel.isOpen());
+        Assertions.assertEquals("abcd\nefgh\n", Files.readString(file));
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.danielgmyers.metrics.MetricKey;
+import com.danielgmyers.metrics.MetricRecorder;
+import com.danielgmyers.metrics.MetricSnapshot;
+import com.danielgmyers.metrics.PooledMetricRecorderFactory;
+import com.danielgmyers.metrics.StandardMetricNames;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class EmfMetricRecorderFactoryTest {
+
+    @Test
+    public void testClosedRecordersAreWrittenAsLines() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        EmfLogWriter writer = EmfLogWriter.forOutputStream(output);
+        EmfMetricRecorderFactory factory = new EmfMetricRecorderFactory("Widgets", writer);
+        ManualClock clock = new ManualClock(Instant.ofEpochMilli(1700000000000L));
+
+        MetricRecorder recorder = factory.newMetricRecorder("GetWidget", clock);
+        Assertions.assertEquals(EmfMetricRecorder.class, recorder.getClass());
+        recorder.addProperty("WidgetId", "widget-1");
+        recorder.addCount("WidgetCount", 2);
+        clock.forward(Duration.ofMillis(5));
+        recorder.close();
+        writer.close();
+
+        String line = output.toString(StandardCharsets.UTF_8);
+        Assertions.assertTrue(line.startsWith("{\"_aws\":{\"Timestamp\":1700000000005,"), line);
+        Assertions.assertTrue(line.contains("\"Namespace\":\"Widgets\",\"Dimensions\":[[\"Operation\"]]"), line);
+        Assertions.assertTrue(line.contains("\"WidgetId\":\"widget-1\""), line);
+        Assertions.assertTrue(line.contains("\"Operation\":\"GetWidget\""), line);
+        Assertions.assertTrue(line.contains("\"WidgetCount\":2"), line);
+        Assertions.assertTrue(line.contains("\"StartTime\":1700000000000,\"EndTime\":1700000000005"), line);
+        Assertions.assertTrue(line.endsWith(",\"Time\":5}\n"), line);
+    }
+
+    @Test
+    public void testPublisherWritesSnapshots() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        EmfLogWriter writer = EmfLogWriter.forOutputStream(output);
+        EmfMetricPublisher publisher = new EmfMetricPublisher("Widgets", writer);
+        publisher.publish(new MetricSnapshot.Builder()
+                .putProperty(StandardMetricNames.OPERATION.getKey(), "GetWidget")
+                .putTimestamp(StandardMetricNames.END_TIME.getKey(), Instant.ofEpochMilli(1700000000005L))
+                .addCount(MetricKey.of("WidgetCount"), 2)
+                .build());
+        writer.close();
+
+        String line = output.toString(StandardCharsets.UTF_8);
+        Assertions.assertTrue(line.startsWith("{\"_aws\":{\"Timestamp\":1700000000005,"), line);
+        Assertions.assertTrue(line.contains("\"Dimensions\":[[\"Operation\"]]"), line);
+        Assertions.assertTrue(line.contains("\"Operation\":\"GetWidget\""), line);
+        Assertions.assertTrue(line.endsWith(",\"WidgetCount\":2}\n"), line);
+    }
+
+    @Test
+    public void testRecordersCanBePooled() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        EmfLogWriter writer = EmfLogWriter.forOutputStream(output);
+        PooledMetricRecorderFactory factory =
+                new PooledMetricRecorderFactory(new EmfMetricRecorderFactory("Widgets", writer));
+
+        for (int i = 0; i < 3; i++) {
+            MetricRecorder recorder = factory.newMetricRecorder("GetWidget");
+            recorder.addCount("Widget" + i, 1);
+            recorder.close();
+        }
+        writer.close();
+
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+        Assertions.assertEquals(3, lines.length);
+        Assertions.assertEquals(3, writer.getWrittenCount());
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertTrue(lines[i].contains("\"Widget" + i + "\":1"), lines[i]);
+            Assertions.assertFalse(lines[i].contains("\"Widget" + (i + 1) + "\""), lines[i]);
+        }
+    }
+
+    @Test
+    public void testRecordersWithManyMetricsAreWrittenAsSeveralLines() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        EmfLogWriter writer = EmfLogWriter.forOutputStream(output);
+        EmfMetricRecorderFactory factory = new EmfMetricRecorderFactory("Widgets", writer);
+
+        MetricRecorder recorder = factory.newMetricRecorder("GetWidget");
+        for (int i = 0; i < 120; i++) {
+            recorder.addCount("Widget" + i, 1);
+        }
+        recorder.close();
+        writer.close();
+
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+        Assertions.assertEquals(2, lines.length);
+        Assertions.assertEquals(2, writer.getWrittenCount());
+        for (String line : lines) {
+            Assertions.assertTrue(line.startsWith("{\"_aws\":"), line);
+            Assertions.assertTrue(line.contains("\"Operation\":\"GetWidget\""), line);
+        }
+    }
+
+    @Test
+    public void testRejectsTooManyDimensions() {
+        List<String> dimensions = new ArrayList<>();
+        for (int i = 0; i < 31; i++) {
+            dimensions.add("Dimension" + i);
+        }
+        EmfLogWriter writer = EmfLogWriter.forOutputStream(new ByteArrayOutputStream());
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> new EmfMetricRecorderFactory("Widgets", dimensions, writer));
+        new EmfMetricRecorderFactory("Widgets", dimensions.subList(0, 30), writer);
+    }
+}
@@ -19,21 +19,47 @@ package com.danielgmyers.metrics.recorders;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
-import com.danielgmyers.metrics.MetricRecorder;
+import com.danielgmyers.metrics.LatencyHistogram;
+import com.danielgmyers.metrics.MetricKey;
+import com.danielgmyers.metrics.MetricSnapshot;
+import com.danielgmyers.metrics.RecordedMetrics;
+import com.danielgmyers.metrics.SnapshotMetricRecorder;
 
 /**
  * For use in validating metrics emitted by methods under test.
+ *
+ * Metrics are accumulated in primitive arrays by SnapshotMetricRecorder, so recording doesn't box counts or
+ * allocate Durations. The Map accessors are materialized from the snapshot published at close() the first time
+ * they're called.
+ *
+ * Each individual duration value is also kept, so tests can check the distribution of repeated durations
+ * (see getDurationHistogram()) as well as their sum. Once MAX_DURATION_SAMPLES values have been kept, they're
+ * folded into a histogram per metric and later values are recorded there instead, so memory stays bounded.
+ *
+ * These recorders are never pooled, since their metrics are read after they've been closed.
  */
-public class InMemoryMetricRecorder extends MetricRecorder {
+public class InMemoryMetricRecorder extends SnapshotMetricRecorder {
 
-    private final Map<String, String> properties;
-    private final Map<String, Instant> dates;
-    private final Map<String, Double> counts;
-    private final Map<String, Duration> durations;
+    /**
+     * The number of individual duration values kept before they're folded into per-metric histograms.
+     */
+    public static final int MAX_DURATION_SAMPLES = 1024;
+
+    private MetricSnapshot snapshot;
+    private MetricKey[] durationSampleKeys;
+    private long[] durationSamples;
+    private int durationSampleCount;
+    private Map<MetricKey, LatencyHistogram> durationHistograms;
+
+    private Map<String, String> properties;
+    private Map<String, Instant> dates;
+    private Map<String, Double> counts;
+    private Map<String, Duration> durations;
 
     public InMemoryMetricRecorder(String operation) {
         this(operation, Clock.systemUTC());
@@ -41,78 +67,153 @@ public class InMemoryMetricRecorder extends MetricRecorder {
 
     public InMemoryMetricRecorder(String operation, Clock clock) {
         super(operation, clock);
-        this.properties = new HashMap<>();
-        this.dates = new HashMap<>();
-        this.counts = new HashMap<>();
-        this.durations = new HashMap<>();
     }
 
     @Override
-    protected void addPropertyHook(String name, String value) {
-        properties.put(name, value);
+    protected void addDurationHook(MetricKey key, long nanos) {
+        super.addDurationHook(key, nanos);
+        if (durationHistograms == null && durationSampleCount == MAX_DURATION_SAMPLES) {
+            foldDurationSamples();
+        }
+        if (durationHistograms != null) {
+            durationHistograms.computeIfAbsent(key, k -> new LatencyHistogram()).record(nanos);
+            return;
+        }
+        if (durationSamples == null) {
+            durationSampleKeys = new MetricKey[4];
+            durationSamples = new long[4];
+        } else if (durationSampleCount == durationSamples.length) {
+            durationSampleKeys = Arrays.copyOf(durationSampleKeys, durationSampleCount * 2);
+            durationSamples = Arrays.copyOf(durationSamples, durationSampleCount * 2);
+        }
+        durationSampleKeys[durationSampleCount] = key;
+        durationSamples[durationSampleCount] = nanos;
+        durationSampleCount++;
     }
 
-    @Override
-    protected void addTimestampHook(String name, Instant time) {
-        dates.put(name, time);
+    private void foldDurationSamples() {
+        durationHistograms = new HashMap<>();
+        for (int i = 0; i < durationSampleCount; i++) {
+            durationHistograms.computeIfAbsent(durationSampleKeys[i], k -> new LatencyHistogram()).record(durationSamples[i]);
+        }
+        durationSampleKeys = null;
+        durationSamples = null;
+        durationSampleCount = 0;
     }
 
     @Override
-    protected void addCountHook(String name, double value) {
-        if (!counts.containsKey(name)) {
-            counts.put(name, value);
-        } else {
-            counts.put(name, counts.get(name) + value);
-        }
+    protected void publish(RecordedMetrics metrics) {
+        this.snapshot = metrics.toSnapshot();
     }
 
     @Override
-    protected void addDurationHook(String name, Duration duration) {
-        if (!durations.containsKey(name)) {
-            durations.put(name, duration);
-        } else {
-            durations.put(name, durations.get(name).plus(duration));
-        }
+    protected boolean resetHook() {
+        // Callers read what was recorded after close(), so a PooledMetricRecorderFactory must never reuse this.
+        return false;
+    }
+
+    /**
+     * Returns everything recorded, in the flat form backends receive.
+     */
+    public MetricSnapshot getSnapshot() {
+        verifyClosed();
+        return snapshot;
     }
 
     public Map<String, Double> getCounts() {
         verifyClosed();
-        return Collections.unmodifiableMap(counts);
+        if (counts == null) {
+            Map<String, Double> map = new HashMap<>();
+            for (int i = 0; i < snapshot.getNumCounts(); i++) {
+                map.put(snapshot.getCountKey(i).getName(), snapshot.getCountValue(i));
+            }
+            counts = Collections.unmodifiableMap(map);
+        }
+        return counts;
     }
 
     public Double getCount(String metricName) {
         verifyClosed();
-        return counts.get(metricName);
+        return snapshot.getCount(metricName);
     }
 
     public Map<String, Duration> getDurations() {
         verifyClosed();
-        return Collections.unmodifiableMap(durations);
+        if (durations == null) {
+            Map<String, Duration> map = new HashMap<>();
+            for (int i = 0; i < snapshot.getNumDurations(); i++) {
+                map.put(snapshot.getDurationKey(i).getName(), Duration.ofNanos(snapshot.getDurationNanos(i)));
+            }
+            durations = Collections.unmodifiableMap(map);
+        }
+        return durations;
     }
 
     public Duration getDuration(String metricName) {
         verifyClosed();
-        return durations.get(metricName);
+        return snapshot.getDuration(metricName);
+    }
+
+    /**
+     * Returns a new histogram of every value recorded for the named duration, or null if none were recorded.
+     */
+    public LatencyHistogram getDurationHistogram(String metricName) {
+        verifyClosed();
+        LatencyHistogram histogram = null;
+        if (durationHistograms != null) {
+            for (Map.Entry<MetricKey, LatencyHistogram> entry : durationHistograms.entrySet()) {
+                if (entry.getKey().getName().equals(metricName)) {
+                    if (histogram == null) {
+                        histogram = new LatencyHistogram();
+                    }
+                    histogram.merge(entry.getValue());
+                }
+            }
+            return histogram;
+        }
+        for (int i = 0; i < durationSampleCount; i++) {
+            if (durationSampleKeys[i].getName().equals(metricName)) {
+                if (histogram == null) {
+                    histogram = new LatencyHistogram();
+                }
+                histogram.record(durationSamples[i]);
+            }
+        }
+        return histogram;
     }
 
     public Map<String, Instant> getTimestamps() {
         verifyClosed();
-        return Collections.unmodifiableMap(dates);
+        if (dates == null) {
+            Map<String, Instant> map = new HashMap<>();
+            for (int i = 0; i < snapshot.getNumTimestamps(); i++) {
+                map.put(snapshot.getTimestampKey(i).getName(), snapshot.getTimestampValue(i));
+            }
+            dates = Collections.unmodifiableMap(map);
+        }
+        return dates;
     }
 
     public Instant getTimestamp(String metricName) {
         verifyClosed();
-        return dates.get(metricName);
+        return snapshot.getTimestamp(metricName);
     }
 
     public Map<String, String> getProperties() {
         verifyClosed();
-        return Collections.unmodifiableMap(properties);
+        if (properties == null) {
+            Map<String, String> map = new HashMap<>();
+            for (int i = 0; i < snapshot.getNumProperties(); i++) {
+                map.put(snapshot.getPropertyKey(i).getName(), snapshot.getPropertyValue(i));
+            }
+            properties = Collections.unmodifiableMap(map);
+        }
+        return properties;
     }
 
     public String getProperty(String metricName) {
         verifyClosed();
-        return properties.get(metricName);
+        return snapshot.getProperty(metricName);
     }
 
     private void verifyClosed() {
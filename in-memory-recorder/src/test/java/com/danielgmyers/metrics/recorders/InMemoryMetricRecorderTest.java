@@ -23,6 +23,7 @@ import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ThreadLocalRandom;
 
+import com.danielgmyers.metrics.LatencyHistogram;
 import com.danielgmyers.metrics.StandardMetricNames;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -187,6 +188,45 @@ public class InMemoryMetricRecorderTest {
         Assertions.assertEquals(Duration.ofDays(28), recorder.getDurations().get(metricName));
     }
 
+    @Test
+    public void testDurationHistogram() {
+        InMemoryMetricRecorder recorder = new InMemoryMetricRecorder("test");
+        String metricName = "WarpTime";
+        for (int i = 1; i <= 100; i++) {
+            recorder.addDuration(metricName, Duration.ofMillis(i));
+        }
+        Assertions.assertThrows(IllegalStateException.class, () -> recorder.getDurationHistogram(metricName));
+        recorder.close();
+
+        LatencyHistogram histogram = recorder.getDurationHistogram(metricName);
+        Assertions.assertEquals(100, histogram.getCount());
+        Assertions.assertEquals(Duration.ofMillis(1).toNanos(), histogram.getMin());
+        Assertions.assertEquals(Duration.ofMillis(100).toNanos(), histogram.getMax());
+        long p50 = histogram.getValueAtPercentile(50);
+        Assertions.assertTrue(Math.abs(p50 - Duration.ofMillis(50).toNanos()) <= Duration.ofMillis(50).toNanos() / 100);
+        Assertions.assertEquals(1, recorder.getDurationHistogram(StandardMetricNames.TIME.toString()).getCount());
+        Assertions.assertNull(recorder.getDurationHistogram("NotRecorded"));
+    }
+
+    @Test
+    public void testDurationHistogramBeyondSampleLimit() {
+        InMemoryMetricRecorder recorder = new InMemoryMetricRecorder("test");
+        int samples = InMemoryMetricRecorder.MAX_DURATION_SAMPLES * 3;
+        for (int i = 1; i <= samples; i++) {
+            recorder.addDuration("WarpTime", Duration.ofMillis(i));
+            recorder.addDuration("ImpulseTime", Duration.ofMillis(1));
+        }
+        recorder.close();
+
+        LatencyHistogram histogram = recorder.getDurationHistogram("WarpTime");
+        Assertions.assertEquals(samples, histogram.getCount());
+        Assertions.assertEquals(Duration.ofMillis(1).toNanos(), histogram.getMin());
+        Assertions.assertEquals(Duration.ofMillis(samples).toNanos(), histogram.getMax());
+        Assertions.assertEquals(samples, recorder.getDurationHistogram("ImpulseTime").getCount());
+        Assertions.assertEquals(1, recorder.getDurationHistogram(StandardMetricNames.TIME.toString()).getCount());
+        Assertions.assertNull(recorder.getDurationHistogram("NotRecorded"));
+    }
+
     @Test
     public void testAddLotsOfDurations() {
         InMemoryMetricRecorder recorder = new InMemoryMetricRecorder("test");
@@ -275,4 +315,20 @@ public class InMemoryMetricRecorderTest {
         Assertions.assertEquals(metricValue, recorder.getCount(metricName));
         Assertions.assertEquals(metricValue, recorder.getCounts().get(metricName));
     }
+
+    @Test
+    public void testRecordersAreNeverPooled() {
+        InMemoryMetricRecorder recorder = new InMemoryMetricRecorder("test");
+        recorder.addProperty("StarshipName", "Enterprise");
+        recorder.addTimestamp("TheFuture", Instant.now());
+        recorder.addCount("Rings", 1.0);
+        recorder.addDuration("OneMonth", Duration.ofDays(30));
+        recorder.close();
+
+        Assertions.assertFalse(recorder.resetHook());
+        Assertions.assertEquals("Enterprise", recorder.getProperties().get("StarshipName"));
+        Assertions.assertEquals(1.0, recorder.getCount("Rings"));
+        Assertions.assertEquals(Duration.ofDays(30), recorder.getDurations().get("OneMonth"));
+        Assertions.assertNotNull(recorder.getDurationHistogram("OneMonth"));
+    }
 }
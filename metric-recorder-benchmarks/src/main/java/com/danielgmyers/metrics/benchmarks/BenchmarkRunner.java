@@ -0,0 +1,55 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point for the benchmarks jar. Accepts the usual JMH command line arguments, but always attaches the GC
+ * profiler (so allocation rates are reported alongside timings) and writes JSON results so runs from different
+ * releases can be compared mechanically.
+ *
+ * The results file defaults to jmh-result.json and can be changed with -Dbenchmark.resultFile=path.
+ */
+public final class BenchmarkRunner {
+
+    private static final String RESULT_FILE_PROPERTY = "benchmark.resultFile";
+    private static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+    private BenchmarkRunner() {}
+
+    /**
+     * Runs the benchmarks selected by the command line arguments, or all of them if none are selected.
+     */
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        Options options = new OptionsBuilder()
+                .parent(commandLineOptions)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(System.getProperty(RESULT_FILE_PROPERTY, DEFAULT_RESULT_FILE))
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.danielgmyers.metrics.MetricRecorder;
+import com.danielgmyers.metrics.MetricRecorderFactory;
+import com.danielgmyers.metrics.MetricSnapshot;
+import com.danielgmyers.metrics.PooledMetricRecorderFactory;
+import com.danielgmyers.metrics.recorders.BinaryRecordEncoder;
+import com.danielgmyers.metrics.recorders.BinarySnapshotReader;
+import com.danielgmyers.metrics.recorders.BinarySnapshotWriter;
+import com.danielgmyers.metrics.recorders.EmfLogWriter;
+import com.danielgmyers.metrics.recorders.EmfMetricPublisher;
+import com.danielgmyers.metrics.recorders.PublishingMetricRecorderFactory;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the full recorder lifecycle when each snapshot is written with a BinarySnapshotWriter, and decoding the
+ * same records with a BinarySnapshotReader. Records are written to a stream which only counts the bytes, so the
+ * single-threaded lifecycle benchmarks report bytesPerOp, to compare with EmfMetricRecorderFactoryBenchmark's.
+ *
+ * The encode benchmarks compare the cost of encoding one snapshot as a binary stream record, as a standalone binary
+ * record, and as an Embedded Metric Format JSON line, without any recorder around them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BinarySnapshotBenchmark {
+
+    private static final int DECODED_RECORDS = 1024;
+
+    private final CountingStream stream = new CountingStream();
+    private final BinarySnapshotWriter writer = new BinarySnapshotWriter(stream);
+    private final MetricRecorderFactory factory = new PublishingMetricRecorderFactory(writer);
+    private final MetricRecorderFactory pooledFactory = new PooledMetricRecorderFactory(factory);
+
+    private final BinarySnapshotWriter encodeWriter = new BinarySnapshotWriter(new CountingStream());
+    private final BinaryRecordEncoder standaloneEncoder = new BinaryRecordEncoder();
+    private final EmfMetricPublisher emfPublisher = new EmfMetricPublisher("Benchmarks",
+        EmfLogWriter.forChannel(new EmfMetricRecorderFactoryBenchmark.CountingChannel()));
+
+    private byte[] encoded;
+    private MetricSnapshot snapshot;
+
+    @Setup
+    public void setUp() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        BinarySnapshotWriter recordWriter = new BinarySnapshotWriter(output);
+        MetricRecorderFactory recordFactory = new PublishingMetricRecorderFactory(recordWriter);
+        for (int i = 0; i < DECODED_RECORDS; i++) {
+            RecorderWorkload.recordRequest(recordFactory);
+        }
+        encoded = output.toByteArray();
+        RecorderWorkload.recordRequest(new PublishingMetricRecorderFactory(published -> snapshot = published));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public MetricRecorder lifecycleSingleThreaded(OutputCounters counters) {
+        return RecorderWorkload.recordRequest(factory);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public MetricRecorder lifecycleMultiThreaded() {
+        return RecorderWorkload.recordRequest(factory);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public MetricRecorder pooledLifecycleSingleThreaded(OutputCounters counters) {
+        return RecorderWorkload.recordRequest(pooledFactory);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public MetricRecorder pooledLifecycleMultiThreaded() {
+        return RecorderWorkload.recordRequest(pooledFactory);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void encodeBinary() throws IOException {
+        encodeWriter.write(snapshot);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int encodeBinaryStandalone() {
+        return standaloneEncoder.encode(snapshot);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void encodeJson() {
+        emfPublisher.publish(snapshot);
+    }
+
+    /**
+     * Decodes a stream of records, reported per record.
+     */
+    @Benchmark
+    @Threads(1)
+    @OperationsPerInvocation(DECODED_RECORDS)
+    public void decode(Blackhole blackhole) throws IOException {
+        BinarySnapshotReader reader = new BinarySnapshotReader(new ByteArrayInputStream(encoded));
+        for (MetricSnapshot snapshot = reader.read(); snapshot != null; snapshot = reader.read()) {
+            blackhole.consume(snapshot);
+        }
+    }
+
+    /**
+     * Reports the average number of bytes written per recorder over each iteration. Only meaningful for benchmarks
+     * run on a single thread, since JMH sums event counters across threads.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class OutputCounters {
+
+        private CountingStream stream;
+        private long startBytes;
+        private long startRecords;
+
+        @Setup(Level.Iteration)
+        public void setUp(BinarySnapshotBenchmark benchmark) {
+            stream = benchmark.stream;
+            startBytes = stream.getBytes();
+            startRecords = stream.getWrites();
+        }
+
+        public double bytesPerOp() {
+            long records = stream.getWrites() - startRecords;
+            return records == 0 ? 0 : (double) (stream.getBytes() - startBytes) / records;
+        }
+    }
+
+    /**
+     * Discards everything written to it, counting the bytes and the writes. BinarySnapshotWriter writes each record
+     * in a single call.
+     */
+    static final class CountingStream extends OutputStream {
+
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder writes = new LongAdder();
+
+        @Override
+        public void write(int value) {
+            write(new byte[] {(byte) value}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] source, int offset, int length) {
+            bytes.add(length);
+            writes.increment();
+        }
+
+        long getBytes() {
+            return bytes.sum();
+        }
+
+        long getWrites() {
+            return writes.sum();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import com.danielgmyers.metrics.MetricKey;
+import com.danielgmyers.metrics.MetricRecorder;
+import com.danielgmyers.metrics.MetricRecorderFactory;
+import com.danielgmyers.metrics.recorders.InMemoryMetricRecorderFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a recorder with three children, each recording a count and a timer, most of which is the cost of merging
+ * the children's metrics into the parent when it's closed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChildMetricRecorderBenchmark {
+
+    private static final String[] SUB_OPERATIONS = {"FetchInventory", "FetchPricing", "FetchReviews"};
+    private static final MetricKey ROWS = MetricKey.of("Rows");
+    private static final MetricKey QUERY = MetricKey.of("Query");
+
+    private final MetricRecorderFactory factory = new InMemoryMetricRecorderFactory();
+
+    @Benchmark
+    @Threads(1)
+    public MetricRecorder childrenSingleThreaded() {
+        return recordWithChildren();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public MetricRecorder childrenMultiThreaded() {
+        return recordWithChildren();
+    }
+
+    private MetricRecorder recordWithChildren() {
+        MetricRecorder metrics = factory.newMetricRecorder(RecorderWorkload.OPERATION);
+        for (String subOperation : SUB_OPERATIONS) {
+            MetricRecorder child = metrics.newChild(subOperation);
+            child.startTimer(QUERY);
+            child.addCount(ROWS, 3);
+            child.stopTimer(QUERY);
+            child.close();
+        }
+        metrics.close();
+        return metrics;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.benchmarks;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import com.danielgmyers.metrics.MetricKey;
+import com.danielgmyers.metrics.MetricPublisher;
+import com.danielgmyers.metrics.MetricRecorder;
+import com.danielgmyers.metrics.MetricRecorderFactory;
+import com.danielgmyers.metrics.MetricSnapshot;
+import com.danielgmyers.metrics.recorders.CompositeMetricRecorderFactory;
+import com.danielgmyers.metrics.recorders.PublishingMetricRecorderFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the full recorder lifecycle against a CompositeMetricRecorderFactory with four publishers, next to a
+ * single PublishingMetricRecorderFactory and to a recorder which forwards every call to four separate recorders.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompositeMetricRecorderFactoryBenchmark {
+
+    private static final int BACKENDS = 4;
+
+    private final MetricPublisher[] publishers = new MetricPublisher[BACKENDS];
+    private final MetricSnapshot[] published = new MetricSnapshot[BACKENDS];
+
+    private final MetricRecorderFactory singleFactory;
+    private final MetricRecorderFactory compositeFactory;
+    private final MetricRecorderFactory teeFactory;
+
+    public CompositeMetricRecorderFactoryBenchmark() {
+        CompositeMetricRecorderFactory.Builder composite = CompositeMetricRecorderFactory.builder();
+        MetricRecorderFactory[] teeDelegates = new MetricRecorderFactory[BACKENDS];
+        for (int i = 0; i < BACKENDS; i++) {
+            int index = i;
+            publishers[i] = snapshot -> published[index] = snapshot;
+            composite.addPublisher(publishers[i]);
+            teeDelegates[i] = new PublishingMetricRecorderFactory(publishers[i]);
+        }
+        singleFactory = new PublishingMetricRecorderFactory(publishers[0]);
+        compositeFactory = composite.build();
+        teeFactory = (operation, clock) -> new TeeMetricRecorder(operation, clock, teeDelegates);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public MetricRecorder singlePublisherSingleThreaded() {
+        return RecorderWorkload.recordRequest(singleFactory);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public MetricRecorder singlePublisherMultiThreaded() {
+        return RecorderWorkload.recordRequest(singleFactory);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public MetricRecorder compositeSingleThreaded() {
+        return RecorderWorkload.recordRequest(compositeFactory);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public MetricRecorder compositeMultiThreaded() {
+        return RecorderWorkload.recordRequest(compositeFactory);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public MetricRecorder teeSingleThreaded() {
+        return RecorderWorkload.recordRequest(teeFactory);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public MetricRecorder teeMultiThreaded() {
+        return RecorderWorkload.recordRequest(teeFactory);
+    }
+
+    /**
+     * Wraps several factories the way dual-writing is done without a composite factory: every call is recorded by
+     * each delegate recorder separately.
+     */
+    private static final class TeeMetricRecorder extends MetricRecorder {
+
+        private final MetricRecorder[] delegates;
+
+        TeeMetricRecorder(String operation, Clock clock, MetricRecorderFactory[] factories) {
+            super(operation, clock);
+            delegates = new MetricRecorder[factories.length];
+            for (int i = 0; i < factories.length; i++) {
+                delegates[i] = factories[i].newMetricRecorder(operation, clock);
+            }
+        }
+
+        @Override
+        protected void addPropertyHook(String name, String value) {
+            for (MetricRecorder delegate : delegates) {
+                delegate.addProperty(name, value);
+            }
+        }
+
+        @Override
+        protected void addTimestampHook(String name, Instant time) {
+            for (MetricRecorder delegate : delegates) {
+                delegate.addTimestamp(name, time);
+            }
+        }
+
+        @Override
+        protected void addCountHook(MetricKey key, double count) {
+            for (MetricRecorder delegate : delegates) {
+                delegate.addCount(key, count);
+            }
+        }
+
+        @Override
+        protected void addDurationHook(MetricKey key, long nanos) {
+            for (MetricRecorder delegate : delegates) {
+                delegate.addDurationNanos(key, nanos);
+            }
+        }
+
+        @Override
+        protected void closeHook() {
+            for (MetricRecorder delegate : delegates) {
+                delegate.close();
+            }
+        }
+    }
+}
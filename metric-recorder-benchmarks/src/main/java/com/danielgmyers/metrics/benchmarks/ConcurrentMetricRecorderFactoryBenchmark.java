@@ -0,0 +1,74 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import com.danielgmyers.metrics.ConcurrentMetricRecorderFactory;
+import com.danielgmyers.metrics.MetricKey;
+import com.danielgmyers.metrics.MetricRecorder;
+import com.danielgmyers.metrics.MetricRecorderFactory;
+import com.danielgmyers.metrics.recorders.InMemoryMetricRecorderFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the overhead of ConcurrentMetricRecorderFactory against the single-threaded recorders it wraps:
+ * the full lifecycle on one thread for each, and addCount() on one recorder shared by every core.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConcurrentMetricRecorderFactoryBenchmark {
+
+    private static final MetricKey REQUESTS = MetricKey.of("Requests");
+
+    private final MetricRecorderFactory direct = new InMemoryMetricRecorderFactory();
+    private final MetricRecorderFactory concurrent = new ConcurrentMetricRecorderFactory(new InMemoryMetricRecorderFactory());
+
+    // Never closed, so it can be shared by every invocation on every thread.
+    private final MetricRecorder shared = concurrent.newMetricRecorder(RecorderWorkload.OPERATION);
+
+    @Benchmark
+    @Threads(1)
+    public MetricRecorder lifecycleDirect() {
+        return RecorderWorkload.recordRequest(direct);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public MetricRecorder lifecycleConcurrent() {
+        return RecorderWorkload.recordRequest(concurrent);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void sharedAddCountMultiThreaded() {
+        shared.addCount(REQUESTS, 1);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import com.danielgmyers.metrics.MetricRecorder;
+import com.danielgmyers.metrics.MetricRecorderFactory;
+import com.danielgmyers.metrics.PooledMetricRecorderFactory;
+import com.danielgmyers.metrics.recorders.NoopMetricRecorderFactory;
+import com.danielgmyers.metrics.recorders.PublishingMetricRecorderFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures recording a property whose value is expensive to build, passed eagerly as a String or deferred as a
+ * Supplier, against a factory which discards everything and against one which keeps it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+@Threads(1)
+public class DeferredValueBenchmark {
+
+    private static final String PAYLOAD = "Payload";
+
+    private final MetricRecorderFactory noopFactory = new NoopMetricRecorderFactory();
+    private final MetricRecorderFactory recordingFactory =
+            new PooledMetricRecorderFactory(new PublishingMetricRecorderFactory(snapshot -> { }));
+    private int widgetCount = 42;
+
+    @Benchmark
+    public MetricRecorder eagerNoop() {
+        MetricRecorder metrics = noopFactory.newMetricRecorder(RecorderWorkload.OPERATION);
+        metrics.addProperty(PAYLOAD, summarize(widgetCount));
+        metrics.close();
+        return metrics;
+    }
+
+    @Benchmark
+    public MetricRecorder deferredNoop() {
+        MetricRecorder metrics = noopFactory.newMetricRecorder(RecorderWorkload.OPERATION);
+        metrics.addProperty(PAYLOAD, () -> summarize(widgetCount));
+        metrics.close();
+        return metrics;
+    }
+
+    @Benchmark
+    public MetricRecorder eagerRecorded() {
+        MetricRecorder metrics = recordingFactory.newMetricRecorder(RecorderWorkload.OPERATION);
+        metrics.addProperty(PAYLOAD, summarize(widgetCount));
+        metrics.close();
+        return metrics;
+    }
+
+    @Benchmark
+    public MetricRecorder deferredRecorded() {
+        MetricRecorder metrics = recordingFactory.newMetricRecorder(RecorderWorkload.OPERATION);
+        metrics.addProperty(PAYLOAD, () -> summarize(widgetCount));
+        metrics.close();
+        return metrics;
+    }
+
+    private static String summarize(int widgets) {
+        return String.format("%d widgets from %s", widgets, "widget-store-1");
+    }
+}
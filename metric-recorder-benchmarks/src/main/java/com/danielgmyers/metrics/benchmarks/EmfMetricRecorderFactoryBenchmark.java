@@ -0,0 +1,145 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.danielgmyers.metrics.MetricRecorder;
+import com.danielgmyers.metrics.MetricRecorderFactory;
+import com.danielgmyers.metrics.PooledMetricRecorderFactory;
+import com.danielgmyers.metrics.recorders.EmfLogWriter;
+import com.danielgmyers.metrics.recorders.EmfMetricRecorderFactory;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the full recorder lifecycle against EmfMetricRecorderFactory, including encoding and batching each line,
+ * with and without pooling. Lines are written to a channel which only counts the bytes, so the disk isn't measured.
+ *
+ * The single-threaded benchmarks also report bytesPerOp, the average encoded line length; allocations per operation
+ * come from the GC profiler attached by BenchmarkRunner.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EmfMetricRecorderFactoryBenchmark {
+
+    private static final String NAMESPACE = "Benchmarks";
+
+    private final CountingChannel channel = new CountingChannel();
+    private final EmfLogWriter writer = EmfLogWriter.forChannel(channel);
+    private final MetricRecorderFactory factory = new EmfMetricRecorderFactory(NAMESPACE, writer);
+    private final MetricRecorderFactory pooledFactory = new PooledMetricRecorderFactory(factory);
+
+    @Benchmark
+    @Threads(1)
+    public MetricRecorder lifecycleSingleThreaded(OutputCounters counters) {
+        return RecorderWorkload.recordRequest(factory);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public MetricRecorder lifecycleMultiThreaded() {
+        return RecorderWorkload.recordRequest(factory);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public MetricRecorder pooledLifecycleSingleThreaded(OutputCounters counters) {
+        return RecorderWorkload.recordRequest(pooledFactory);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public MetricRecorder pooledLifecycleMultiThreaded() {
+        return RecorderWorkload.recordRequest(pooledFactory);
+    }
+
+    /**
+     * Reports the average number of bytes written per recorder over each iteration. Only meaningful for benchmarks
+     * run on a single thread, since JMH sums event counters across threads.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class OutputCounters {
+
+        private EmfLogWriter writer;
+        private CountingChannel channel;
+        private long startBytes;
+        private long startLines;
+
+        @Setup(Level.Iteration)
+        public void setUp(EmfMetricRecorderFactoryBenchmark benchmark) {
+            writer = benchmark.writer;
+            channel = benchmark.channel;
+            writer.flush();
+            startBytes = channel.getBytes();
+            startLines = writer.getWrittenCount();
+        }
+
+        public double bytesPerOp() {
+            writer.flush();
+            long lines = writer.getWrittenCount() - startLines;
+            return lines == 0 ? 0 : (double) (channel.getBytes() - startBytes) / lines;
+        }
+    }
+
+    /**
+     * Discards everything written to it, counting the bytes.
+     */
+    static final class CountingChannel implements WritableByteChannel {
+
+        private final LongAdder bytes = new LongAdder();
+
+        @Override
+        public int write(ByteBuffer source) {
+            int length = source.remaining();
+            source.position(source.limit());
+            bytes.add(length);
+            return length;
+        }
+
+        long getBytes() {
+            return bytes.sum();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {}
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import com.danielgmyers.metrics.MetricContext;
+import com.danielgmyers.metrics.MetricKey;
+import com.danielgmyers.metrics.MetricRecorder;
+import com.danielgmyers.metrics.recorders.PublishingMetricRecorderFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures recording a count into MetricContext.current() with and without a recorder bound, and the cost of binding
+ * a recorder for a request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+@Threads(1)
+public class MetricContextBenchmark {
+
+    private static final MetricKey WIDGETS = MetricKey.of("Widgets");
+
+    // Never closed, so it can keep aggregating the same count.
+    private final MetricRecorder recorder =
+            new PublishingMetricRecorderFactory(snapshot -> { }).newMetricRecorder(RecorderWorkload.OPERATION);
+
+    @Benchmark
+    public MetricRecorder recordUnbound() {
+        MetricRecorder metrics = MetricContext.current();
+        metrics.addCount(WIDGETS, 1);
+        return metrics;
+    }
+
+    @Benchmark
+    public MetricRecorder recordBound() {
+        try (MetricContext.Scope scope = MetricContext.bind(recorder)) {
+            MetricRecorder metrics = MetricContext.current();
+            metrics.addCount(WIDGETS, 1);
+            return metrics;
+        }
+    }
+
+    @Benchmark
+    public MetricRecorder recordPassedExplicitly() {
+        recorder.addCount(WIDGETS, 1);
+        return recorder;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.benchmarks;
+
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
+
+import com.danielgmyers.metrics.MetricRecorder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the work done by the base MetricRecorder class itself: construction and close(), with and without
+ * open timers. The recorder overrides none of the hooks, so nothing is added on top of the base class.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricRecorderCloseBenchmark {
+
+    private static final String TIMER_1 = "Timer1";
+    private static final String TIMER_2 = "Timer2";
+    private static final String TIMER_3 = "Timer3";
+
+    private final Clock clock = Clock.systemUTC();
+
+    @Benchmark
+    @Threads(1)
+    public MetricRecorder closeSingleThreaded() {
+        return newAndClose();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public MetricRecorder closeMultiThreaded() {
+        return newAndClose();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public MetricRecorder closeWithOpenTimersSingleThreaded() {
+        return newAndCloseWithOpenTimers();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public MetricRecorder closeWithOpenTimersMultiThreaded() {
+        return newAndCloseWithOpenTimers();
+    }
+
+    private MetricRecorder newAndClose() {
+        MetricRecorder metrics = new MetricRecorder(RecorderWorkload.OPERATION, clock) {};
+        metrics.close();
+        return metrics;
+    }
+
+    private MetricRecorder newAndCloseWithOpenTimers() {
+        MetricRecorder metrics = new MetricRecorder(RecorderWorkload.OPERATION, clock) {};
+        metrics.startDuration(TIMER_1);
+        metrics.startDuration(TIMER_2);
+        metrics.startDuration(TIMER_3);
+        metrics.close();
+        return metrics;
+    }
+}
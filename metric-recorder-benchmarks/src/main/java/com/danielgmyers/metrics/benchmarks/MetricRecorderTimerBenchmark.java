@@ -0,0 +1,64 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.benchmarks;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import com.danielgmyers.metrics.MetricKey;
+import com.danielgmyers.metrics.MetricRecorder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares timing a span with startDuration()/endDuration(), which return an Instant and a Duration,
+ * against the allocation-free startTimer()/stopTimer().
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MetricRecorderTimerBenchmark {
+
+    private static final MetricKey DATABASE_LOOKUP = MetricKey.of("DatabaseLookup");
+
+    // Never closed, so it can be reused for every invocation. It overrides none of the hooks, and unlike
+    // NoopMetricRecorder it reads the ticker.
+    private final MetricRecorder metrics = new MetricRecorder(RecorderWorkload.OPERATION, Clock.systemUTC()) {};
+
+    @Benchmark
+    public Duration startAndEndDuration() {
+        metrics.startDuration(DATABASE_LOOKUP);
+        return metrics.endDuration(DATABASE_LOOKUP);
+    }
+
+    @Benchmark
+    public long startAndStopTimer() {
+        metrics.startTimer(DATABASE_LOOKUP);
+        return metrics.stopTimer(DATABASE_LOOKUP);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import com.danielgmyers.metrics.MetricRecorder;
+import com.danielgmyers.metrics.MetricRecorderFactory;
+import com.danielgmyers.metrics.MetricSnapshot;
+import com.danielgmyers.metrics.PooledMetricRecorderFactory;
+import com.danielgmyers.metrics.StandardMetricNames;
+import com.danielgmyers.metrics.recorders.MicrometerMetricRecorderFactory;
+import com.danielgmyers.metrics.recorders.PublishingMetricRecorderFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the full recorder lifecycle against MicrometerMetricRecorderFactory, with and without pooling, next to a
+ * naive bridge which looks each meter up in the MeterRegistry by name and tags every time a recorder is closed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MicrometerMetricRecorderFactoryBenchmark {
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private final MetricRecorderFactory factory = new MicrometerMetricRecorderFactory(registry);
+    private final MetricRecorderFactory pooledFactory = new PooledMetricRecorderFactory(factory);
+    private final MetricRecorderFactory naiveFactory = new PublishingMetricRecorderFactory(this::publishNaively);
+
+    @Benchmark
+    @Threads(1)
+    public MetricRecorder lifecycleSingleThreaded() {
+        return RecorderWorkload.recordRequest(factory);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public MetricRecorder lifecycleMultiThreaded() {
+        return RecorderWorkload.recordRequest(factory);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public MetricRecorder pooledLifecycleSingleThreaded() {
+        return RecorderWorkload.recordRequest(pooledFactory);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public MetricRecorder pooledLifecycleMultiThreaded() {
+        return RecorderWorkload.recordRequest(pooledFactory);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public MetricRecorder naiveLookupSingleThreaded() {
+        return RecorderWorkload.recordRequest(naiveFactory);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public MetricRecorder naiveLookupMultiThreaded() {
+        return RecorderWorkload.recordRequest(naiveFactory);
+    }
+
+    private void publishNaively(MetricSnapshot snapshot) {
+        String operation = snapshot.getProperty(StandardMetricNames.OPERATION.toString());
+        for (int i = 0; i < snapshot.getNumCounts(); i++) {
+            registry.counter(snapshot.getCountKey(i).getName(), "operation", operation)
+                    .increment(snapshot.getCountValue(i));
+        }
+        for (int i = 0; i < snapshot.getNumDurations(); i++) {
+            registry.timer(snapshot.getDurationKey(i).getName(), "operation", operation)
+                    .record(snapshot.getDurationNanos(i), TimeUnit.NANOSECONDS);
+        }
+    }
+}
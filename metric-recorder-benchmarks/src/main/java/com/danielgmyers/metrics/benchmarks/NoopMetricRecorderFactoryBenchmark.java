@@ -0,0 +1,93 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import com.danielgmyers.metrics.MetricKey;
+import com.danielgmyers.metrics.MetricRecorder;
+import com.danielgmyers.metrics.MetricRecorderFactory;
+import com.danielgmyers.metrics.recorders.NoopMetricRecorderFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the full recorder lifecycle against NoopMetricRecorderFactory, along with the cost of the disabled path
+ * on its own: opening and closing a recorder, and recording with pre-resolved keys, which skips the name lookups.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NoopMetricRecorderFactoryBenchmark {
+
+    private static final MetricKey RESULT_COUNT = MetricKey.of("WidgetResultCount");
+    private static final MetricKey DATABASE_LOOKUP = MetricKey.of("DatabaseLookup");
+
+    private final MetricRecorderFactory factory = new NoopMetricRecorderFactory();
+
+    @Benchmark
+    @Threads(1)
+    public MetricRecorder lifecycleSingleThreaded() {
+        return RecorderWorkload.recordRequest(factory);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public MetricRecorder lifecycleMultiThreaded() {
+        return RecorderWorkload.recordRequest(factory);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public MetricRecorder openAndCloseSingleThreaded() {
+        return openAndClose();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public MetricRecorder openAndCloseMultiThreaded() {
+        return openAndClose();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public MetricRecorder keyedLifecycleSingleThreaded() {
+        MetricRecorder metrics = factory.newMetricRecorder(RecorderWorkload.OPERATION);
+        metrics.startTimer(DATABASE_LOOKUP);
+        metrics.addCount(RESULT_COUNT, 1);
+        metrics.stopTimer(DATABASE_LOOKUP);
+        metrics.close();
+        return metrics;
+    }
+
+    private MetricRecorder openAndClose() {
+        MetricRecorder metrics = factory.newMetricRecorder(RecorderWorkload.OPERATION);
+        metrics.close();
+        return metrics;
+    }
+}
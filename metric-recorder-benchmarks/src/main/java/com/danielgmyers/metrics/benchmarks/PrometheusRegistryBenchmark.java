@@ -0,0 +1,106 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.benchmarks;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import com.danielgmyers.metrics.MetricRecorder;
+import com.danielgmyers.metrics.MetricRecorderFactory;
+import com.danielgmyers.metrics.PooledMetricRecorderFactory;
+import com.danielgmyers.metrics.recorders.PrometheusRegistry;
+import com.danielgmyers.metrics.recorders.PrometheusTextEncoder;
+import com.danielgmyers.metrics.recorders.PublishingMetricRecorderFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the full recorder lifecycle when each closed recorder updates a PrometheusRegistry, with and without
+ * pooling, and rendering a registry of several thousand series for a scrape.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PrometheusRegistryBenchmark {
+
+    // Each operation has five series: the operation count, two counts and two durations (including Time).
+    private static final int SCRAPED_OPERATIONS = 1000;
+
+    private final PrometheusRegistry registry = PrometheusRegistry.builder().withNamespace("benchmark").build();
+    private final MetricRecorderFactory factory = new PublishingMetricRecorderFactory(registry);
+    private final MetricRecorderFactory pooledFactory = new PooledMetricRecorderFactory(factory);
+
+    private final PrometheusRegistry scrapedRegistry = PrometheusRegistry.builder().withNamespace("benchmark").build();
+    private final PrometheusTextEncoder encoder = new PrometheusTextEncoder();
+
+    @Setup
+    public void setUp() {
+        MetricRecorderFactory scrapedFactory = new PublishingMetricRecorderFactory(scrapedRegistry);
+        for (int i = 0; i < SCRAPED_OPERATIONS; i++) {
+            MetricRecorder metrics = scrapedFactory.newMetricRecorder(RecorderWorkload.OPERATION + i);
+            metrics.addCount("WidgetResultCount", 1);
+            metrics.addCount("FailureCount", 0);
+            metrics.addDuration("DatabaseLookup", Duration.ofMillis(i % 100));
+            metrics.close();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public MetricRecorder lifecycleSingleThreaded() {
+        return RecorderWorkload.recordRequest(factory);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public MetricRecorder lifecycleMultiThreaded() {
+        return RecorderWorkload.recordRequest(factory);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public MetricRecorder pooledLifecycleSingleThreaded() {
+        return RecorderWorkload.recordRequest(pooledFactory);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public MetricRecorder pooledLifecycleMultiThreaded() {
+        return RecorderWorkload.recordRequest(pooledFactory);
+    }
+
+    /**
+     * Renders every series of the scraped registry; the encoder's buffer is reused between invocations.
+     */
+    @Benchmark
+    @Threads(1)
+    public int scrape() {
+        return encoder.encode(scrapedRegistry);
+    }
+}
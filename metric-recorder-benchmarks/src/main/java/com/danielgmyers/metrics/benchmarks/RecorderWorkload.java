@@ -0,0 +1,57 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.benchmarks;
+
+import java.time.Duration;
+
+import com.danielgmyers.metrics.MetricRecorder;
+import com.danielgmyers.metrics.MetricRecorderFactory;
+
+/**
+ * The per-request recording pattern shared by the lifecycle benchmarks, so that every backend is measured
+ * against the same sequence of calls.
+ */
+final class RecorderWorkload {
+
+    static final String OPERATION = "GetWidget";
+
+    private static final String WIDGET_ID_PROPERTY = "WidgetId";
+    private static final String WIDGET_ID = "widget-1234";
+    private static final String RESULT_COUNT = "WidgetResultCount";
+    private static final String FAILURE_COUNT = "FailureCount";
+    private static final String DATABASE_LOOKUP = "DatabaseLookup";
+    private static final String AUTHENTICATION_TIME = "AuthenticationTime";
+    private static final Duration AUTHENTICATION_DURATION = Duration.ofMillis(3);
+
+    private RecorderWorkload() {}
+
+    /**
+     * Runs a full newMetricRecorder() → record → close() cycle and returns the closed recorder
+     * so the caller can hand it to a Blackhole.
+     */
+    static MetricRecorder recordRequest(MetricRecorderFactory factory) {
+        MetricRecorder metrics = factory.newMetricRecorder(OPERATION);
+        metrics.addProperty(WIDGET_ID_PROPERTY, WIDGET_ID);
+        metrics.addDuration(AUTHENTICATION_TIME, AUTHENTICATION_DURATION);
+        metrics.startDuration(DATABASE_LOOKUP);
+        metrics.addCount(RESULT_COUNT, 1);
+        metrics.endDuration(DATABASE_LOOKUP);
+        metrics.addCount(FAILURE_COUNT, 0);
+        metrics.close();
+        return metrics;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import com.danielgmyers.metrics.MetricRecorder;
+import com.danielgmyers.metrics.MetricRecorderFactory;
+import com.danielgmyers.metrics.recorders.PublishingMetricRecorderFactory;
+import com.danielgmyers.metrics.recorders.SegmentLog;
+import com.danielgmyers.metrics.recorders.SegmentLogPublisher;
+import com.danielgmyers.metrics.recorders.SegmentLogReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures appending a raw record to a SegmentLog, and the full recorder lifecycle through a SegmentLogPublisher.
+ * Segments are written to a temporary directory, and sealed segments are deleted after each iteration.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SegmentLogBenchmark {
+
+    // About the size of a small recorder's encoded snapshot.
+    private static final byte[] RECORD = new byte[128];
+
+    private Path directory;
+    private SegmentLog log;
+    private MetricRecorderFactory factory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("segment-log-benchmark");
+        log = SegmentLog.builder(directory).build();
+        factory = new PublishingMetricRecorderFactory(new SegmentLogPublisher(log));
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteSealedSegments() throws IOException {
+        for (Path segment : SegmentLogReader.sealedSegments(directory)) {
+            Files.delete(segment);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        log.close();
+        deleteSealedSegments();
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean appendSingleThreaded() {
+        return log.append(RECORD, 0, RECORD.length);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean appendMultiThreaded() {
+        return log.append(RECORD, 0, RECORD.length);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public MetricRecorder lifecycleSingleThreaded() {
+        return RecorderWorkload.recordRequest(factory);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public MetricRecorder lifecycleMultiThreaded() {
+        return RecorderWorkload.recordRequest(factory);
+    }
+}
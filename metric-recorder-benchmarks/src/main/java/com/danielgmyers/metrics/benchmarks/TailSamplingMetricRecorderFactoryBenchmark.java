@@ -0,0 +1,91 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.benchmarks;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import com.danielgmyers.metrics.MetricRecorder;
+import com.danielgmyers.metrics.MetricRecorderFactory;
+import com.danielgmyers.metrics.PooledMetricRecorderFactory;
+import com.danielgmyers.metrics.TailSamplingMetricRecorderFactory;
+import com.danielgmyers.metrics.recorders.InMemoryMetricRecorderFactory;
+import com.danielgmyers.metrics.recorders.NoopMetricRecorderFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the full recorder lifecycle through a TailSamplingMetricRecorderFactory, both when every recorder is
+ * dropped (for comparison with NoopMetricRecorderFactory), with and without pooling, and when every recorder is kept.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+@Threads(1)
+public class TailSamplingMetricRecorderFactoryBenchmark {
+
+    private final MetricRecorderFactory noop = new NoopMetricRecorderFactory();
+    private final MetricRecorderFactory dropping = TailSamplingMetricRecorderFactory.builder(new InMemoryMetricRecorderFactory())
+        .withSampleRate(0.0)
+        .withLatencyThreshold(Duration.ofSeconds(1))
+        .build();
+    private final MetricRecorderFactory pooledDropping = new PooledMetricRecorderFactory(
+        TailSamplingMetricRecorderFactory.builder(new InMemoryMetricRecorderFactory())
+            .withSampleRate(0.0)
+            .withLatencyThreshold(Duration.ofSeconds(1))
+            .build());
+    private final MetricRecorderFactory keeping = TailSamplingMetricRecorderFactory.builder(new InMemoryMetricRecorderFactory())
+        .withSampleRate(1.0)
+        .build();
+    private final MetricRecorderFactory inMemory = new InMemoryMetricRecorderFactory();
+
+    @Benchmark
+    public MetricRecorder noop() {
+        return RecorderWorkload.recordRequest(noop);
+    }
+
+    @Benchmark
+    public MetricRecorder tailSamplingDropped() {
+        return RecorderWorkload.recordRequest(dropping);
+    }
+
+    @Benchmark
+    public MetricRecorder pooledTailSamplingDropped() {
+        return RecorderWorkload.recordRequest(pooledDropping);
+    }
+
+    @Benchmark
+    public MetricRecorder tailSamplingKept() {
+        return RecorderWorkload.recordRequest(keeping);
+    }
+
+    @Benchmark
+    public MetricRecorder inMemory() {
+        return RecorderWorkload.recordRequest(inMemory);
+    }
+}
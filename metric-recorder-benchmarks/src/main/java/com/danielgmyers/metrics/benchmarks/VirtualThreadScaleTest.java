@@ -0,0 +1,166 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.benchmarks;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.danielgmyers.metrics.MetricRecorder;
+import com.danielgmyers.metrics.MetricRecorderFactory;
+import com.danielgmyers.metrics.StandardMetricNames;
+import com.danielgmyers.metrics.recorders.PublishingMetricRecorderFactory;
+
+/**
+ * A load test rather than a JMH benchmark: opens a large number of recorders (1,000,000 by default) at the same time,
+ * each from its own task, then closes them all, and reports the throughput and the heap used per open recorder.
+ *
+ * On runtimes with virtual threads (Java 21 and later), every recorder is opened and closed on its own virtual thread,
+ * which stays parked while the recorder is open, like a request waiting on I/O. The heap per recorder then includes
+ * the parked thread. On older runtimes, the tasks run on a pool of platform threads and the test holds the open
+ * recorders itself.
+ *
+ * Run it from the repository root with an optional number of recorders:
+ *
+ *   java -cp metric-recorder-benchmarks/target/benchmarks.jar com.danielgmyers.metrics.benchmarks.VirtualThreadScaleTest
+ */
+public final class VirtualThreadScaleTest {
+
+    private static final int DEFAULT_RECORDERS = 1_000_000;
+    private static final String THREAD_NAME = StandardMetricNames.THREAD_NAME.toString();
+
+    private VirtualThreadScaleTest() {}
+
+    public static void main(String[] args) throws InterruptedException {
+        int recorders = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_RECORDERS;
+        ExecutorService virtualExecutor = newVirtualThreadPerTaskExecutor();
+        boolean virtual = virtualExecutor != null;
+        ExecutorService executor = virtual ? virtualExecutor
+                : Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
+        LongAdder published = new LongAdder();
+        AtomicReference<String> threadName = new AtomicReference<>();
+        MetricRecorderFactory factory = new PublishingMetricRecorderFactory(snapshot -> {
+            published.increment();
+            if (threadName.get() == null) {
+                threadName.compareAndSet(null, snapshot.getProperty(THREAD_NAME));
+            }
+        });
+
+        MetricRecorder[] open = virtual ? null : new MetricRecorder[recorders];
+        CountDownLatch opened = new CountDownLatch(recorders);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch closed = new CountDownLatch(recorders);
+
+        final long baselineHeap = usedHeap();
+        long openStart = System.nanoTime();
+        for (int i = 0; i < recorders; i++) {
+            int index = i;
+            executor.execute(() -> {
+                MetricRecorder recorder = openRecorder(factory);
+                if (virtual) {
+                    opened.countDown();
+                    awaitUninterruptibly(release);
+                    recorder.close();
+                    closed.countDown();
+                } else {
+                    open[index] = recorder;
+                    opened.countDown();
+                }
+            });
+        }
+        opened.await();
+        final long openNanos = System.nanoTime() - openStart;
+        final long openHeap = usedHeap();
+
+        final long closeStart = System.nanoTime();
+        release.countDown();
+        if (!virtual) {
+            for (int i = 0; i < recorders; i++) {
+                int index = i;
+                executor.execute(() -> {
+                    open[index].close();
+                    open[index] = null;
+                    closed.countDown();
+                });
+            }
+        }
+        closed.await();
+        final long closeNanos = System.nanoTime() - closeStart;
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        System.out.printf("Threads:                %s%n", virtual ? "virtual, one per recorder" : "platform pool");
+        System.out.printf("Recorders:              %d (%d published)%n", recorders, published.sum());
+        System.out.printf("Open:                   %d ms%n", TimeUnit.NANOSECONDS.toMillis(openNanos));
+        System.out.printf("Close:                  %d ms%n", TimeUnit.NANOSECONDS.toMillis(closeNanos));
+        System.out.printf("Throughput:             %.0f recorders/s%n", recorders * 1e9 / (openNanos + closeNanos));
+        System.out.printf("Heap per open recorder: %d bytes%n", (openHeap - baselineHeap) / recorders);
+        System.out.printf("Sample ThreadName:      %s%n", threadName.get());
+    }
+
+    /**
+     * Opens a recorder as a request handler would before parking on I/O, with a property, a count and a timer which
+     * is still running when the recorder is closed.
+     */
+    private static MetricRecorder openRecorder(MetricRecorderFactory factory) {
+        MetricRecorder recorder = factory.newMetricRecorder(RecorderWorkload.OPERATION);
+        recorder.addProperty("WidgetId", "widget-1234");
+        recorder.addCount("WidgetResultCount", 1);
+        recorder.startTimer("DatabaseLookup");
+        return recorder;
+    }
+
+    /**
+     * Returns Executors.newVirtualThreadPerTaskExecutor(), or null if the runtime doesn't have virtual threads.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            return null;
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
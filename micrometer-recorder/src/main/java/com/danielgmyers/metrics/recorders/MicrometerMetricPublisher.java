@@ -0,0 +1,109 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.danielgmyers.metrics.MetricPublisher;
+import com.danielgmyers.metrics.MetricSnapshot;
+import com.danielgmyers.metrics.RecordedMetrics;
+import com.danielgmyers.metrics.StandardMetricNames;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * A MetricPublisher which adds each snapshot's counts to Micrometer Counters and its durations to Micrometer Timers,
+ * tagged with its Operation property, so Micrometer can be one of the backends of a CompositeMetricRecorderFactory.
+ * MicrometerMetricRecorderFactory's recorders report through a publisher too, straight from their own buffers.
+ *
+ * Counts which are negative or not finite are skipped, since Micrometer counters only go up. Properties other than
+ * the operation, and timestamps, are ignored. The meters are resolved once per (operation, metric name) and cached in
+ * a concurrent table, so publishing doesn't look anything up in the MeterRegistry or build any Tags, once every metric
+ * has been seen for its operation. The cache is never cleared, so operation and metric names should come from a
+ * bounded set, as they should for Micrometer itself.
+ */
+public class MicrometerMetricPublisher implements MetricPublisher {
+
+    public static final String DEFAULT_OPERATION_TAG = "operation";
+
+    private static final String OPERATION = StandardMetricNames.OPERATION.toString();
+
+    private final MeterRegistry registry;
+    private final String prefix;
+    private final String operationTag;
+    private final Map<String, OperationMeters> operations = new ConcurrentHashMap<>();
+
+    public MicrometerMetricPublisher(MeterRegistry registry) {
+        this(registry, "", DEFAULT_OPERATION_TAG);
+    }
+
+    /**
+     * Creates a publisher with a custom meter name prefix and operation tag.
+     *
+     * @param prefix Prepended to every meter name as is, e.g. "myapp." for "myapp.Time"; may be empty.
+     * @param operationTag The tag key the operation is recorded under.
+     */
+    public MicrometerMetricPublisher(MeterRegistry registry, String prefix, String operationTag) {
+        if (registry == null) {
+            throw new IllegalArgumentException("A meter registry is required.");
+        }
+        if (prefix == null) {
+            throw new IllegalArgumentException("Prefix must not be null.");
+        }
+        if (operationTag == null || operationTag.isEmpty()) {
+            throw new IllegalArgumentException("An operation tag is required.");
+        }
+        this.registry = registry;
+        this.prefix = prefix;
+        this.operationTag = operationTag;
+    }
+
+    @Override
+    public void publish(MetricSnapshot snapshot) {
+        write(snapshot, meters(snapshot.getProperty(OPERATION)));
+    }
+
+    public MeterRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Adds the counts and durations to the operation's meters.
+     */
+    void write(RecordedMetrics metrics, OperationMeters operationMeters) {
+        for (int i = 0; i < metrics.getNumCounts(); i++) {
+            double count = metrics.getCountValue(i);
+            // A zero count still registers the counter, so that it gets reported.
+            if (count >= 0 && Double.isFinite(count)) {
+                operationMeters.counter(metrics.getCountKey(i)).increment(count);
+            }
+        }
+        for (int i = 0; i < metrics.getNumDurations(); i++) {
+            operationMeters.timer(metrics.getDurationKey(i)).record(metrics.getDurationNanos(i), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    OperationMeters meters(String operation) {
+        String key = operation == null ? "" : operation;
+        OperationMeters meters = operations.get(key);
+        if (meters == null) {
+            meters = operations.computeIfAbsent(key, o -> new OperationMeters(registry, prefix, operationTag, o));
+        }
+        return meters;
+    }
+}
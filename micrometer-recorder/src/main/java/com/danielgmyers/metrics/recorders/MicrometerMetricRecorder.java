@@ -0,0 +1,48 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.time.Clock;
+
+import com.danielgmyers.metrics.RecordedMetrics;
+import com.danielgmyers.metrics.SnapshotMetricRecorder;
+
+/**
+ * Accumulates metrics through SnapshotMetricRecorder, and when closed has the factory's MicrometerMetricPublisher add
+ * the counts and durations to the meters of the recorder's operation, straight from the recorder's own buffers.
+ */
+public class MicrometerMetricRecorder extends SnapshotMetricRecorder {
+
+    private final MicrometerMetricPublisher publisher;
+    // The meters of the operation this recorder was last closed with, which is usually the next one's too when pooled.
+    private OperationMeters meters;
+
+    MicrometerMetricRecorder(String operation, Clock clock, MicrometerMetricPublisher publisher) {
+        super(operation, clock);
+        this.publisher = publisher;
+    }
+
+    @Override
+    protected void publish(RecordedMetrics metrics) {
+        OperationMeters operationMeters = meters;
+        if (operationMeters == null || !operationMeters.getOperation().equals(getOperation())) {
+            operationMeters = publisher.meters(getOperation());
+            meters = operationMeters;
+        }
+        publisher.write(metrics, operationMeters);
+    }
+}
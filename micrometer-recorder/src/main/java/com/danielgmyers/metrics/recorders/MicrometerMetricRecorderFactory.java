@@ -0,0 +1,64 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.time.Clock;
+
+import com.danielgmyers.metrics.MetricRecorder;
+import com.danielgmyers.metrics.MetricRecorderFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Produces MetricRecorder objects which add their counts to Micrometer Counters and their durations to Micrometer
+ * Timers when closed, with the recorder's operation as a tag, so code written against MetricRecorder can report to
+ * any MeterRegistry. To report to Micrometer alongside other backends, add a MicrometerMetricPublisher to a
+ * CompositeMetricRecorderFactory instead.
+ *
+ * The meters are resolved once per (operation, metric name) and cached in a concurrent table by the factory's
+ * MicrometerMetricPublisher, so closing a recorder doesn't look anything up in the MeterRegistry or build any Tags,
+ * once every metric it records has been seen for its operation. The cache is never cleared, so operation and metric
+ * names should come from a bounded set, as they should for Micrometer itself.
+ */
+public class MicrometerMetricRecorderFactory implements MetricRecorderFactory {
+
+    public static final String DEFAULT_OPERATION_TAG = MicrometerMetricPublisher.DEFAULT_OPERATION_TAG;
+
+    private final MicrometerMetricPublisher publisher;
+
+    public MicrometerMetricRecorderFactory(MeterRegistry registry) {
+        this(registry, "", DEFAULT_OPERATION_TAG);
+    }
+
+    /**
+     * Creates a factory with a custom meter name prefix and operation tag.
+     *
+     * @param prefix Prepended to every meter name as is, e.g. "myapp." for "myapp.Time"; may be empty.
+     * @param operationTag The tag key the operation is recorded under.
+     */
+    public MicrometerMetricRecorderFactory(MeterRegistry registry, String prefix, String operationTag) {
+        this.publisher = new MicrometerMetricPublisher(registry, prefix, operationTag);
+    }
+
+    @Override
+    public MetricRecorder newMetricRecorder(String operation, Clock clock) {
+        return new MicrometerMetricRecorder(operation, clock, publisher);
+    }
+
+    public MeterRegistry getRegistry() {
+        return publisher.getRegistry();
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.util.Arrays;
+
+import com.danielgmyers.metrics.MetricKey;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * The counters and timers registered for a single operation, indexed by MetricKey id.
+ *
+ * Lookups read a volatile array and never lock. A meter is only registered with the MeterRegistry the first time its
+ * metric is recorded for the operation; the array is then copied with the new meter in it and republished, so a
+ * lookup always sees fully constructed meters.
+ */
+final class OperationMeters {
+
+    private final MeterRegistry registry;
+    private final String prefix;
+    private final String operation;
+    private final Tags tags;
+
+    private volatile Counter[] counters = new Counter[0];
+    private volatile Timer[] timers = new Timer[0];
+
+    OperationMeters(MeterRegistry registry, String prefix, String operationTag, String operation) {
+        this.registry = registry;
+        this.prefix = prefix;
+        this.operation = operation;
+        this.tags = Tags.of(operationTag, operation);
+    }
+
+    String getOperation() {
+        return operation;
+    }
+
+    Counter counter(MetricKey key) {
+        Counter[] current = counters;
+        int id = key.getId();
+        if (id < current.length && current[id] != null) {
+            return current[id];
+        }
+        return registerCounter(key);
+    }
+
+    Timer timer(MetricKey key) {
+        Timer[] current = timers;
+        int id = key.getId();
+        if (id < current.length && current[id] != null) {
+            return current[id];
+        }
+        return registerTimer(key);
+    }
+
+    private synchronized Counter registerCounter(MetricKey key) {
+        int id = key.getId();
+        if (id < counters.length && counters[id] != null) {
+            return counters[id];
+        }
+        Counter counter = Counter.builder(prefix + key.getName()).tags(tags).register(registry);
+        Counter[] updated = Arrays.copyOf(counters, Math.max(id + 1, counters.length));
+        updated[id] = counter;
+        counters = updated;
+        return counter;
+    }
+
+    private synchronized Timer registerTimer(MetricKey key) {
+        int id = key.getId();
+        if (id < timers.length && timers[id] != null) {
+            return timers[id];
+        }
+        Timer timer = Timer.builder(prefix + key.getName()).tags(tags).register(registry);
+        Timer[] updated = Arrays.copyOf(timers, Math.max(id + 1, timers.length));
+        updated[id] = timer;
+        timers = updated;
+        return timer;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.danielgmyers.metrics.MetricKey;
+import com.danielgmyers.metrics.MetricRecorder;
+import com.danielgmyers.metrics.MetricRecorderFactory;
+import com.danielgmyers.metrics.MetricSnapshot;
+import com.danielgmyers.metrics.PooledMetricRecorderFactory;
+import com.danielgmyers.metrics.StandardMetricNames;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class MicrometerMetricRecorderFactoryTest {
+
+    private static void recordRequest(MetricRecorderFactory factory, ManualClock clock, String operation) {
+        MetricRecorder metrics = factory.newMetricRecorder(operation, clock);
+        metrics.addProperty("WidgetId", "widget-1");
+        metrics.addCount("WidgetCount", 2);
+        metrics.addCount("WidgetCount", 1);
+        metrics.addCount("FailureCount", 0);
+        metrics.startDuration("DatabaseLookup");
+        clock.forward(Duration.ofMillis(3));
+        metrics.endDuration("DatabaseLookup");
+        clock.forward(Duration.ofMillis(2));
+        metrics.close();
+    }
+
+    @Test
+    public void testCountsAndDurations() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MetricRecorderFactory factory = new MicrometerMetricRecorderFactory(registry);
+        ManualClock clock = new ManualClock();
+        recordRequest(factory, clock, "GetWidget");
+        recordRequest(factory, clock, "GetWidget");
+        recordRequest(factory, clock, "PutWidget");
+
+        Assertions.assertEquals(6, registry.get("WidgetCount").tag("operation", "GetWidget").counter().count());
+        Assertions.assertEquals(3, registry.get("WidgetCount").tag("operation", "PutWidget").counter().count());
+        Assertions.assertEquals(0, registry.get("FailureCount").tag("operation", "GetWidget").counter().count());
+
+        Timer lookup = registry.get("DatabaseLookup").tag("operation", "GetWidget").timer();
+        Assertions.assertEquals(2, lookup.count());
+        Assertions.assertEquals(6, lookup.totalTime(TimeUnit.MILLISECONDS), 1e-9);
+        Timer time = registry.get("Time").tag("operation", "PutWidget").timer();
+        Assertions.assertEquals(1, time.count());
+        Assertions.assertEquals(5, time.totalTime(TimeUnit.MILLISECONDS), 1e-9);
+
+        // Properties and timestamps aren't meters.
+        Assertions.assertNull(registry.find("WidgetId").meter());
+        Assertions.assertNull(registry.find("StartTime").meter());
+    }
+
+    @Test
+    public void testNegativeAndNonFiniteCountsAreSkipped() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MetricRecorder metrics = new MicrometerMetricRecorderFactory(registry).newMetricRecorder("GetWidget");
+        metrics.addCount("Negative", -1);
+        metrics.addCount("NotANumber", Double.NaN);
+        metrics.addCount("Positive", 1.5);
+        metrics.close();
+
+        Assertions.assertNull(registry.find("Negative").meter());
+        Assertions.assertNull(registry.find("NotANumber").meter());
+        Assertions.assertEquals(1.5, registry.get("Positive").counter().count());
+    }
+
+    @Test
+    public void testPrefixAndOperationTag() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MetricRecorderFactory factory = new MicrometerMetricRecorderFactory(registry, "myapp.", "op");
+        recordRequest(factory, new ManualClock(), "GetWidget");
+
+        Assertions.assertEquals(3, registry.get("myapp.WidgetCount").tag("op", "GetWidget").counter().count());
+        Assertions.assertNull(registry.find("WidgetCount").meter());
+    }
+
+    @Test
+    public void testMetersAreOnlyResolvedOnce() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        AtomicInteger resolved = new AtomicInteger();
+        // The registry applies its filters every time a meter is looked up or registered.
+        registry.config().meterFilter(new MeterFilter() {
+            @Override
+            public Meter.Id map(Meter.Id id) {
+                resolved.incrementAndGet();
+                return id;
+            }
+        });
+        MetricRecorderFactory factory = new PooledMetricRecorderFactory(new MicrometerMetricRecorderFactory(registry));
+        ManualClock clock = new ManualClock();
+
+        recordRequest(factory, clock, "GetWidget");
+        // WidgetCount, FailureCount, DatabaseLookup and Time.
+        Assertions.assertEquals(4, resolved.get());
+        for (int i = 0; i < 10; i++) {
+            recordRequest(factory, clock, "GetWidget");
+        }
+        Assertions.assertEquals(4, resolved.get());
+        recordRequest(factory, clock, "PutWidget");
+        recordRequest(factory, clock, "GetWidget");
+        Assertions.assertEquals(8, resolved.get());
+        Assertions.assertEquals(36, registry.get("WidgetCount").tag("operation", "GetWidget").counter().count());
+    }
+
+    @Test
+    public void testRequiresArguments() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new MicrometerMetricRecorderFactory(null));
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> new MicrometerMetricRecorderFactory(registry, null, "operation"));
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> new MicrometerMetricRecorderFactory(registry, "", ""));
+    }
+
+    @Test
+    public void testPublisherReportsSnapshotsUnderTheirOperation() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MicrometerMetricPublisher publisher = new MicrometerMetricPublisher(registry);
+        publisher.publish(new MetricSnapshot.Builder()
+                .putProperty(StandardMetricNames.OPERATION.getKey(), "GetWidget")
+                .addCount(MetricKey.of("WidgetCount"), 2)
+                .addDurationNanos(MetricKey.of("DatabaseLookup"), 3_000_000)
+                .build());
+        publisher.publish(new MetricSnapshot.Builder().addCount(MetricKey.of("WidgetCount"), 1).build());
+
+        Assertions.assertEquals(2, registry.get("WidgetCount").tag("operation", "GetWidget").counter().count());
+        Assertions.assertEquals(1, registry.get("WidgetCount").tag("operation", "").counter().count());
+        Timer lookup = registry.get("DatabaseLookup").tag("operation", "GetWidget").timer();
+        Assertions.assertEquals(3, lookup.totalTime(TimeUnit.MILLISECONDS), 1e-9);
+    }
+
+    @Test
+    public void testCompositeWritesToEmfAndMicrometer() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        EmfLogWriter writer = EmfLogWriter.forOutputStream(output);
+        MetricRecorderFactory factory = new PooledMetricRecorderFactory(
+                CompositeMetricRecorderFactory.builder()
+                        .addPublisher(new EmfMetricPublisher("Widgets", writer))
+                        .addPublisher(new MicrometerMetricPublisher(registry))
+                        .build());
+        ManualClock clock = new ManualClock();
+        recordRequest(factory, clock, "GetWidget");
+        recordRequest(factory, clock, "PutWidget");
+        writer.close();
+
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+        Assertions.assertEquals(2, lines.length);
+        Assertions.assertTrue(lines[0].contains("\"Operation\":\"GetWidget\""), lines[0]);
+        Assertions.assertTrue(lines[0].contains("\"WidgetCount\":3"), lines[0]);
+        Assertions.assertTrue(lines[1].contains("\"Operation\":\"PutWidget\""), lines[1]);
+        Assertions.assertEquals(3, registry.get("WidgetCount").tag("operation", "GetWidget").counter().count());
+        Assertions.assertEquals(3, registry.get("WidgetCount").tag("operation", "PutWidget").counter().count());
+        Timer time = registry.get("Time").tag("operation", "GetWidget").timer();
+        Assertions.assertEquals(5, time.totalTime(TimeUnit.MILLISECONDS), 1e-9);
+    }
+}
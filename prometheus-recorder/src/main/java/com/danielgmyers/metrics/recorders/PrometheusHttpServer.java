@@ -0,0 +1,115 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves a PrometheusRegistry at /metrics over HTTP, using the JDK's built-in server.
+ *
+ * Scrapes are handled one at a time on a single daemon thread, which renders the registry into a buffer reused for
+ * every scrape, so serving a large registry doesn't generate garbage in proportion to its size. Rendering reads the
+ * registry without locking it, so threads publishing to the registry are never blocked by a scrape.
+ */
+public final class PrometheusHttpServer implements AutoCloseable {
+
+    public static final String PATH = "/metrics";
+
+    private final PrometheusRegistry registry;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final PrometheusTextEncoder encoder = new PrometheusTextEncoder();
+
+    private PrometheusHttpServer(PrometheusRegistry registry, HttpServer server) {
+        this.registry = registry;
+        this.server = server;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "prometheus-http-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext(PATH, this::handle);
+    }
+
+    /**
+     * Starts serving the registry on the specified port on every interface. Port 0 picks a free port.
+     */
+    public static PrometheusHttpServer start(PrometheusRegistry registry, int port) throws IOException {
+        return start(registry, new InetSocketAddress(port));
+    }
+
+    /**
+     * Starts serving the registry on the specified address.
+     */
+    public static PrometheusHttpServer start(PrometheusRegistry registry, InetSocketAddress address)
+            throws IOException {
+        if (registry == null) {
+            throw new IllegalArgumentException("A registry is required.");
+        }
+        PrometheusHttpServer server = new PrometheusHttpServer(registry, HttpServer.create(address, 0));
+        server.server.start();
+        return server;
+    }
+
+    /**
+     * Returns the address the server is listening on, including the port it picked if it was started on port 0.
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Stops the server, abandoning any scrape in progress.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            if (!PATH.equals(exchange.getRequestURI().getPath())) {
+                exchange.sendResponseHeaders(404, -1);
+            } else if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+            } else {
+                int length = encoder.encode(registry);
+                exchange.getResponseHeaders().set("Content-Type", PrometheusTextEncoder.CONTENT_TYPE);
+                if ("HEAD".equals(method)) {
+                    exchange.sendResponseHeaders(200, -1);
+                } else {
+                    exchange.sendResponseHeaders(200, length);
+                    OutputStream body = exchange.getResponseBody();
+                    body.write(encoder.getBuffer(), 0, length);
+                }
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,571 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import com.danielgmyers.metrics.LatencyHistogram;
+import com.danielgmyers.metrics.MetricKey;
+import com.danielgmyers.metrics.MetricPublisher;
+import com.danielgmyers.metrics.MetricSnapshot;
+import com.danielgmyers.metrics.StandardMetricNames;
+
+/**
+ * A MetricPublisher which folds each snapshot into cumulative per-operation Prometheus series, for
+ * PrometheusHttpServer (or any other caller of PrometheusTextEncoder) to expose:
+ *
+ *   namespace_operations_total{operation="..."}       - the number of recorders closed
+ *   namespace_metric_name_total{operation="..."}      - the sum of each count
+ *   namespace_metric_name_seconds{operation="..."}    - a histogram (or summary) of each duration
+ *
+ * Metric names are converted from CamelCase to snake_case, and characters Prometheus doesn't allow are replaced with
+ * underscores. Each exposed name belongs to the first metric to convert to it, so that distinct metrics are never
+ * summed into one family: a later count or duration whose name converts to one already taken (including the
+ * operations counter's) is exposed with "_count" or "_duration" appended to its converted name, repeated until the
+ * name is free. Properties other than the operation, and timestamps, aren't exposed.
+ *
+ * Every series is updated with adders and atomic histogram buckets, so publishing never blocks, not even while the
+ * registry is being rendered; a render which runs concurrently with publishing sees some subset of the concurrent
+ * updates. Series are never removed, so operation and metric names should come from a bounded set; once the registry
+ * holds the maximum number of series, updates to new series are counted and discarded.
+ */
+public final class PrometheusRegistry implements MetricPublisher {
+
+    /**
+     * How durations are exposed.
+     */
+    public enum DurationFormat {
+        /**
+         * A histogram with fixed bucket bounds, which can be aggregated across instances.
+         */
+        HISTOGRAM,
+        /**
+         * A summary with quantiles estimated from a LatencyHistogram covering the registry's whole lifetime.
+         */
+        SUMMARY
+    }
+
+    public static final List<Duration> DEFAULT_BUCKETS = List.of(
+            Duration.ofMillis(5), Duration.ofMillis(10), Duration.ofMillis(25), Duration.ofMillis(50),
+            Duration.ofMillis(100), Duration.ofMillis(250), Duration.ofMillis(500), Duration.ofSeconds(1),
+            Duration.ofMillis(2500), Duration.ofSeconds(5), Duration.ofSeconds(10));
+    public static final List<Double> DEFAULT_QUANTILES = List.of(0.5, 0.9, 0.99);
+    public static final int DEFAULT_MAX_SERIES = 10_000;
+
+    private static final String OPERATION = StandardMetricNames.OPERATION.toString();
+    private static final String UNKNOWN_OPERATION = "";
+    // Owns the operations counter's name, which no MetricKey may share.
+    private static final Object OPERATIONS_OWNER = new Object();
+    private static final byte[] NO_SUFFIX = new byte[0];
+    private static final byte[] BUCKET_SUFFIX = ascii("_bucket");
+    private static final byte[] SUM_SUFFIX = ascii("_sum");
+    private static final byte[] COUNT_SUFFIX = ascii("_count");
+    private static final byte[] INFINITE_BUCKET = ascii(",le=\"+Inf\"} ");
+
+    private final String prefix;
+    private final DurationFormat durationFormat;
+    private final long[] bucketBounds;
+    private final byte[][] bucketLabels;
+    private final double[] quantiles;
+    private final byte[][] quantileLabels;
+    private final int maxSeries;
+
+    private final AtomicInteger seriesCount = new AtomicInteger();
+    private final LongAdder droppedCount = new LongAdder();
+
+    // Families by exposition name, which is what they're rendered from; the maps by MetricKey avoid converting names.
+    // Counter and duration names end in different suffixes, so the two kinds never share a name.
+    private final Map<String, Family<CounterSeries>> counterFamilies = new ConcurrentHashMap<>();
+    private final Map<String, Family<DurationSeries>> durationFamiliesByName = new ConcurrentHashMap<>();
+    private final Map<MetricKey, Family<CounterSeries>> countFamilies = new ConcurrentHashMap<>();
+    private final Map<MetricKey, Family<DurationSeries>> durationFamilies = new ConcurrentHashMap<>();
+    // The metric each exposed family name was given to, so that two metrics never share a family.
+    private final Map<String, Object> familyOwners = new ConcurrentHashMap<>();
+    private final Family<CounterSeries> operations;
+
+    private PrometheusRegistry(Builder builder) {
+        this.prefix = builder.namespace.isEmpty() ? "" : exposedName(builder.namespace) + "_";
+        this.durationFormat = builder.durationFormat;
+        this.maxSeries = builder.maxSeries;
+
+        this.bucketBounds = new long[builder.buckets.size()];
+        this.bucketLabels = new byte[bucketBounds.length][];
+        for (int i = 0; i < bucketBounds.length; i++) {
+            bucketBounds[i] = builder.buckets.get(i).toNanos();
+            PrometheusTextEncoder label = new PrometheusTextEncoder();
+            label.write(ascii(",le=\""));
+            label.writeSeconds(bucketBounds[i]);
+            label.write(ascii("\"} "));
+            bucketLabels[i] = label.toByteArray();
+        }
+
+        this.quantiles = new double[builder.quantiles.size()];
+        this.quantileLabels = new byte[quantiles.length][];
+        for (int i = 0; i < quantiles.length; i++) {
+            quantiles[i] = builder.quantiles.get(i);
+            quantileLabels[i] = ascii(",quantile=\"" + quantiles[i] + "\"} ");
+        }
+
+        String operationsName = prefix + "operations_total";
+        familyOwners.put(operationsName, OPERATIONS_OWNER);
+        this.operations = counterFamily(operationsName);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public void publish(MetricSnapshot snapshot) {
+        String operation = snapshot.getProperty(OPERATION);
+        if (operation == null) {
+            operation = UNKNOWN_OPERATION;
+        }
+        CounterSeries operationCount = operations.series(operation);
+        if (operationCount != null) {
+            operationCount.add(1);
+        }
+        for (int i = 0; i < snapshot.getNumCounts(); i++) {
+            MetricKey key = snapshot.getCountKey(i);
+            Family<CounterSeries> family = countFamilies.get(key);
+            if (family == null) {
+                family = countFamilies.computeIfAbsent(key, k -> counterFamily(claimName(k, "_count", "_total")));
+            }
+            CounterSeries series = family.series(operation);
+            if (series != null) {
+                series.add(snapshot.getCountValue(i));
+            }
+        }
+        for (int i = 0; i < snapshot.getNumDurations(); i++) {
+            MetricKey key = snapshot.getDurationKey(i);
+            Family<DurationSeries> family = durationFamilies.get(key);
+            if (family == null) {
+                family = durationFamilies.computeIfAbsent(key, k -> durationFamily(claimName(k, "_duration", "_seconds")));
+            }
+            DurationSeries series = family.series(operation);
+            if (series != null) {
+                series.addNanos(snapshot.getDurationNanos(i));
+            }
+        }
+    }
+
+    /**
+     * Returns the number of series in the registry.
+     */
+    public int getSeriesCount() {
+        return seriesCount.get();
+    }
+
+    /**
+     * Returns the number of updates discarded because the registry already held the maximum number of series.
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    void writeTo(PrometheusTextEncoder encoder) {
+        for (Family<CounterSeries> family : counterFamilies.values()) {
+            family.writeTo(encoder);
+        }
+        for (Family<DurationSeries> family : durationFamiliesByName.values()) {
+            family.writeTo(encoder);
+        }
+    }
+
+    /**
+     * Converts a name to a valid Prometheus metric name in snake_case, e.g. DatabaseLookup to database_lookup and
+     * HTTPStatus to http_status.
+     */
+    static String exposedName(String name) {
+        StringBuilder exposed = new StringBuilder(name.length() + 8);
+        for (int i = 0; i < name.length(); i++) {
+            char ch = name.charAt(i);
+            if (ch >= 'A' && ch <= 'Z') {
+                char previous = i > 0 ? name.charAt(i - 1) : '_';
+                boolean nextIsLower = i + 1 < name.length() && Character.isLowerCase(name.charAt(i + 1));
+                boolean startsWord = Character.isLowerCase(previous) || Character.isDigit(previous)
+                        || (Character.isUpperCase(previous) && nextIsLower);
+                if (startsWord && exposed.length() > 0 && exposed.charAt(exposed.length() - 1) != '_') {
+                    exposed.append('_');
+                }
+                exposed.append((char) (ch + ('a' - 'A')));
+            } else if (isLowerCaseOrDigit(ch) || ch == '_' || ch == ':') {
+                exposed.append(ch);
+            } else {
+                exposed.append('_');
+            }
+        }
+        if (exposed.length() == 0 || (exposed.charAt(0) >= '0' && exposed.charAt(0) <= '9')) {
+            exposed.insert(0, '_');
+        }
+        return exposed.toString();
+    }
+
+    /**
+     * Returns the exposed family name for the metric, appending the rename suffix to its converted name until the
+     * name isn't already owned by another metric.
+     */
+    private String claimName(MetricKey key, String renameSuffix, String typeSuffix) {
+        String base = prefix + exposedName(key.getName());
+        while (true) {
+            String name = base + typeSuffix;
+            Object owner = familyOwners.putIfAbsent(name, key);
+            if (owner == null || key.equals(owner)) {
+                return name;
+            }
+            base += renameSuffix;
+        }
+    }
+
+    private static boolean isLowerCaseOrDigit(char ch) {
+        return (ch >= 'a' && ch <= 'z') || (ch >= '0' && ch <= '9');
+    }
+
+    /**
+     * Returns the label set for an operation, with the value escaped as the exposition format requires.
+     */
+    static byte[] labels(String operation) {
+        StringBuilder labels = new StringBuilder(operation.length() + 16).append("{operation=\"");
+        for (int i = 0; i < operation.length(); i++) {
+            char ch = operation.charAt(i);
+            if (ch == '\\' || ch == '"') {
+                labels.append('\\').append(ch);
+            } else if (ch == '\n') {
+                labels.append("\\n");
+            } else {
+                labels.append(ch);
+            }
+        }
+        return labels.append("\"}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private Family<CounterSeries> counterFamily(String name) {
+        return counterFamilies.computeIfAbsent(name, n -> new Family<>(n, Type.COUNTER, CounterSeries::new));
+    }
+
+    private Family<DurationSeries> durationFamily(String name) {
+        if (durationFormat == DurationFormat.HISTOGRAM) {
+            return durationFamiliesByName.computeIfAbsent(name, n -> new Family<>(n, Type.HISTOGRAM, HistogramSeries::new));
+        }
+        return durationFamiliesByName.computeIfAbsent(name, n -> new Family<>(n, Type.SUMMARY, SummarySeries::new));
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private enum Type {
+        COUNTER("counter"),
+        HISTOGRAM("histogram"),
+        SUMMARY("summary");
+
+        private final String exposedName;
+
+        Type(String exposedName) {
+            this.exposedName = exposedName;
+        }
+    }
+
+    /**
+     * All the series with the same metric name, which have to be rendered together under a single TYPE line.
+     */
+    private final class Family<S extends Series> {
+        private final byte[] name;
+        private final byte[] typeLine;
+        private final Function<String, S> newSeries;
+        private final Map<String, S> series = new ConcurrentHashMap<>();
+
+        private Family(String name, Type type, Function<String, S> newSeries) {
+            this.name = name.getBytes(StandardCharsets.UTF_8);
+            this.typeLine = ("# TYPE " + name + " " + type.exposedName + "\n").getBytes(StandardCharsets.UTF_8);
+            this.newSeries = newSeries;
+        }
+
+        /**
+         * Returns the operation's series, or null if it doesn't exist and the registry is full.
+         */
+        private S series(String operation) {
+            S existing = series.get(operation);
+            if (existing != null) {
+                return existing;
+            }
+            existing = series.computeIfAbsent(operation, this::newSeries);
+            if (existing == null) {
+                droppedCount.increment();
+            }
+            return existing;
+        }
+
+        private S newSeries(String operation) {
+            if (seriesCount.incrementAndGet() > maxSeries) {
+                seriesCount.decrementAndGet();
+                return null;
+            }
+            return newSeries.apply(operation);
+        }
+
+        private void writeTo(PrometheusTextEncoder encoder) {
+            if (series.isEmpty()) {
+                return;
+            }
+            encoder.write(typeLine);
+            for (S each : series.values()) {
+                each.writeTo(encoder, name);
+            }
+        }
+    }
+
+    private abstract static class Series {
+        // {operation="..."}
+        private final byte[] labels;
+
+        protected Series(String operation) {
+            this.labels = labels(operation);
+        }
+
+        abstract void writeTo(PrometheusTextEncoder encoder, byte[] name);
+
+        /**
+         * Writes the name, a suffix, and the labels without their closing brace, ready for another label.
+         */
+        protected void writeOpenLabels(PrometheusTextEncoder encoder, byte[] name, byte[] suffix) {
+            encoder.write(name);
+            encoder.write(suffix);
+            encoder.write(labels, labels.length - 1);
+        }
+
+        protected void writeSample(PrometheusTextEncoder encoder, byte[] name, byte[] suffix) {
+            encoder.write(name);
+            encoder.write(suffix);
+            encoder.write(labels);
+            encoder.write(' ');
+        }
+    }
+
+    /**
+     * A series of durations, with the sum every duration series reports.
+     */
+    private abstract static class DurationSeries extends Series {
+        // A double rather than a long of nanoseconds, which would overflow in about 107 days for an operation that
+        // sums a thousand seconds of durations every second. It's exact to the nanosecond until the total passes
+        // 2^53 nanoseconds (about 104 days), and rounded to a double's precision after that.
+        private final DoubleAdder sumNanos = new DoubleAdder();
+
+        protected DurationSeries(String operation) {
+            super(operation);
+        }
+
+        /**
+         * Records a duration; negative durations are recorded as zero.
+         */
+        final void addNanos(long nanos) {
+            long value = Math.max(0, nanos);
+            record(value);
+            sumNanos.add(value);
+        }
+
+        protected abstract void record(long nanos);
+
+        protected void writeSumSeconds(PrometheusTextEncoder encoder) {
+            double nanos = sumNanos.sum();
+            if (nanos < Long.MAX_VALUE) {
+                encoder.writeSeconds(Math.round(nanos));
+            } else {
+                encoder.writeDouble(nanos / 1e9);
+            }
+        }
+    }
+
+    private static final class CounterSeries extends Series {
+        private final DoubleAdder value = new DoubleAdder();
+
+        private CounterSeries(String operation) {
+            super(operation);
+        }
+
+        void add(double amount) {
+            value.add(amount);
+        }
+
+        @Override
+        void writeTo(PrometheusTextEncoder encoder, byte[] name) {
+            writeSample(encoder, name, NO_SUFFIX);
+            encoder.writeDouble(value.sum());
+            encoder.write('\n');
+        }
+    }
+
+    private final class HistogramSeries extends DurationSeries {
+        // Not cumulative: buckets[i] counts the values above the previous bound and at most bucketBounds[i], and the
+        // last bucket counts the values above every bound.
+        private final LongAdder[] buckets = new LongAdder[bucketBounds.length + 1];
+
+        private HistogramSeries(String operation) {
+            super(operation);
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        @Override
+        protected void record(long nanos) {
+            int bucket = 0;
+            while (bucket < bucketBounds.length && nanos > bucketBounds[bucket]) {
+                bucket++;
+            }
+            buckets[bucket].increment();
+        }
+
+        @Override
+        void writeTo(PrometheusTextEncoder encoder, byte[] name) {
+            // The count is taken from the buckets, so it always matches the +Inf bucket.
+            long cumulative = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                cumulative += buckets[i].sum();
+                writeOpenLabels(encoder, name, BUCKET_SUFFIX);
+                encoder.write(i < bucketLabels.length ? bucketLabels[i] : INFINITE_BUCKET);
+                encoder.writeLong(cumulative);
+                encoder.write('\n');
+            }
+            writeSample(encoder, name, SUM_SUFFIX);
+            writeSumSeconds(encoder);
+            encoder.write('\n');
+            writeSample(encoder, name, COUNT_SUFFIX);
+            encoder.writeLong(cumulative);
+            encoder.write('\n');
+        }
+    }
+
+    private final class SummarySeries extends DurationSeries {
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        private SummarySeries(String operation) {
+            super(operation);
+        }
+
+        @Override
+        protected void record(long nanos) {
+            histogram.record(nanos);
+        }
+
+        @Override
+        void writeTo(PrometheusTextEncoder encoder, byte[] name) {
+            for (int i = 0; i < quantiles.length; i++) {
+                writeOpenLabels(encoder, name, NO_SUFFIX);
+                encoder.write(quantileLabels[i]);
+                encoder.writeSeconds(histogram.getValueAtPercentile(quantiles[i] * 100));
+                encoder.write('\n');
+            }
+            writeSample(encoder, name, SUM_SUFFIX);
+            writeSumSeconds(encoder);
+            encoder.write('\n');
+            writeSample(encoder, name, COUNT_SUFFIX);
+            encoder.writeLong(histogram.getCount());
+            encoder.write('\n');
+        }
+    }
+
+    /**
+     * Configures and creates a PrometheusRegistry.
+     */
+    public static final class Builder {
+        private String namespace = "";
+        private DurationFormat durationFormat = DurationFormat.HISTOGRAM;
+        private List<Duration> buckets = DEFAULT_BUCKETS;
+        private List<Double> quantiles = DEFAULT_QUANTILES;
+        private int maxSeries = DEFAULT_MAX_SERIES;
+
+        private Builder() {}
+
+        /**
+         * Sets the prefix of every metric name, e.g. "myapp" for myapp_operations_total. Empty means no prefix.
+         */
+        public Builder withNamespace(String namespace) {
+            if (namespace == null) {
+                throw new IllegalArgumentException("Namespace must not be null.");
+            }
+            this.namespace = namespace;
+            return this;
+        }
+
+        public Builder withDurationFormat(DurationFormat durationFormat) {
+            if (durationFormat == null) {
+                throw new IllegalArgumentException("Duration format must not be null.");
+            }
+            this.durationFormat = durationFormat;
+            return this;
+        }
+
+        /**
+         * Sets the upper bounds of the histogram buckets, which must be positive and strictly increasing.
+         * A bucket for everything above the last bound is always added.
+         */
+        public Builder withBuckets(List<Duration> buckets) {
+            if (buckets == null || buckets.isEmpty()) {
+                throw new IllegalArgumentException("At least one bucket is required.");
+            }
+            Duration previous = Duration.ZERO;
+            for (Duration bound : buckets) {
+                if (bound == null || bound.compareTo(previous) <= 0) {
+                    throw new IllegalArgumentException("Bucket bounds must be positive and strictly increasing.");
+                }
+                previous = bound;
+            }
+            this.buckets = List.copyOf(buckets);
+            return this;
+        }
+
+        /**
+         * Sets the quantiles reported by summaries, each between 0 and 1.
+         */
+        public Builder withQuantiles(List<Double> quantiles) {
+            if (quantiles == null || quantiles.isEmpty()) {
+                throw new IllegalArgumentException("At least one quantile is required.");
+            }
+            for (Double quantile : quantiles) {
+                if (quantile == null || !(quantile >= 0 && quantile <= 1)) {
+                    throw new IllegalArgumentException("Quantiles must be between 0 and 1.");
+                }
+            }
+            this.quantiles = List.copyOf(quantiles);
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of series, across every metric and operation.
+         */
+        public Builder withMaxSeries(int maxSeries) {
+            if (maxSeries < 1) {
+                throw new IllegalArgumentException("Max series must be positive.");
+            }
+            this.maxSeries = maxSeries;
+            return this;
+        }
+
+        public PrometheusRegistry build() {
+            return new PrometheusRegistry(this);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.util.Arrays;
+
+/**
+ * Renders a PrometheusRegistry in the Prometheus text exposition format, into a buffer which is kept and reused for
+ * every scrape. Metric names and labels are encoded once, when each series is created, so rendering a registry only
+ * copies those bytes and formats the numbers, and allocates nothing once the buffer has grown to fit.
+ *
+ * Not thread-safe; PrometheusHttpServer keeps one per server.
+ */
+public final class PrometheusTextEncoder {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    // Doubles with a smaller magnitude than this which are whole numbers are written without a fraction.
+    private static final double MAX_INTEGRAL_DOUBLE = 1e15;
+    private static final String LONG_MIN = Long.toString(Long.MIN_VALUE);
+
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+    private int length;
+
+    /**
+     * Renders every series in the registry, replacing whatever was previously rendered.
+     *
+     * @return The number of bytes rendered into getBuffer().
+     */
+    public int encode(PrometheusRegistry registry) {
+        length = 0;
+        registry.writeTo(this);
+        return length;
+    }
+
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Returns a copy of what has been rendered so far.
+     */
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, length);
+    }
+
+    void write(byte[] bytes) {
+        write(bytes, bytes.length);
+    }
+
+    /**
+     * Writes the first count bytes of the array.
+     */
+    void write(byte[] bytes, int count) {
+        ensureCapacity(count);
+        System.arraycopy(bytes, 0, buffer, length, count);
+        length += count;
+    }
+
+    void write(char ascii) {
+        ensureCapacity(1);
+        buffer[length++] = (byte) ascii;
+    }
+
+    void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            writeAscii(LONG_MIN);
+            return;
+        }
+        // A long has at most 19 digits and a sign.
+        ensureCapacity(20);
+        long remaining = value;
+        if (remaining < 0) {
+            buffer[length++] = '-';
+            remaining = -remaining;
+        }
+        int digits = 1;
+        for (long bound = 10; digits < 19 && remaining >= bound; bound *= 10) {
+            digits++;
+        }
+        for (int i = length + digits - 1; i >= length; i--) {
+            buffer[i] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        }
+        length += digits;
+    }
+
+    void writeDouble(double value) {
+        if (Double.isNaN(value)) {
+            writeAscii("NaN");
+        } else if (Double.isInfinite(value)) {
+            writeAscii(value > 0 ? "+Inf" : "-Inf");
+        } else if (value == Math.rint(value) && Math.abs(value) < MAX_INTEGRAL_DOUBLE) {
+            writeLong((long) value);
+        } else {
+            writeAscii(Double.toString(value));
+        }
+    }
+
+    /**
+     * Writes a number of nanoseconds as an exact decimal number of seconds.
+     */
+    void writeSeconds(long nanos) {
+        long seconds = nanos / NANOS_PER_SECOND;
+        long fraction = Math.abs(nanos % NANOS_PER_SECOND);
+        if (nanos < 0 && seconds == 0) {
+            write('-');
+        }
+        writeLong(seconds);
+        if (fraction == 0) {
+            return;
+        }
+        int digits = 9;
+        while (fraction % 10 == 0) {
+            fraction /= 10;
+            digits--;
+        }
+        ensureCapacity(1 + digits);
+        buffer[length++] = '.';
+        for (int i = length + digits - 1; i >= length; i--) {
+            buffer[i] = (byte) ('0' + fraction % 10);
+            fraction /= 10;
+        }
+        length += digits;
+    }
+
+    private void writeAscii(String value) {
+        ensureCapacity(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            buffer[length++] = (byte) value.charAt(i);
+        }
+    }
+
+    private void ensureCapacity(int additional) {
+        if (length + additional > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + additional));
+        }
+    }
+}
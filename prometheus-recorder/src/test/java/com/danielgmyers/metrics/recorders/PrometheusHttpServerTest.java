@@ -0,0 +1,87 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import com.danielgmyers.metrics.MetricSnapshot;
+import com.danielgmyers.metrics.StandardMetricNames;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class PrometheusHttpServerTest {
+
+    private static HttpURLConnection connect(PrometheusHttpServer server, String path, String method)
+            throws IOException {
+        URL url = new URL("http://localhost:" + server.getAddress().getPort() + path);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        return connection;
+    }
+
+    @Test
+    public void testServesMetrics() throws IOException {
+        PrometheusRegistry registry = PrometheusRegistry.builder().build();
+        registry.publish(new MetricSnapshot.Builder()
+                .putProperty(StandardMetricNames.OPERATION.getKey(), "GetWidget")
+                .build());
+        try (PrometheusHttpServer server = PrometheusHttpServer.start(registry,
+                new InetSocketAddress("localhost", 0))) {
+            HttpURLConnection connection = connect(server, PrometheusHttpServer.PATH, "GET");
+            Assertions.assertEquals(200, connection.getResponseCode());
+            Assertions.assertEquals(PrometheusTextEncoder.CONTENT_TYPE, connection.getContentType());
+            String body;
+            try (InputStream input = connection.getInputStream()) {
+                body = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            Assertions.assertEquals("# TYPE operations_total counter\noperations_total{operation=\"GetWidget\"} 1\n",
+                    body);
+
+            registry.publish(new MetricSnapshot.Builder()
+                    .putProperty(StandardMetricNames.OPERATION.getKey(), "GetWidget")
+                    .build());
+            connection = connect(server, PrometheusHttpServer.PATH, "GET");
+            try (InputStream input = connection.getInputStream()) {
+                body = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            Assertions.assertTrue(body.contains("operations_total{operation=\"GetWidget\"} 2\n"), body);
+        }
+    }
+
+    @Test
+    public void testRejectsOtherRequests() throws IOException {
+        try (PrometheusHttpServer server = PrometheusHttpServer.start(PrometheusRegistry.builder().build(),
+                new InetSocketAddress("localhost", 0))) {
+            Assertions.assertEquals(200, connect(server, PrometheusHttpServer.PATH, "HEAD").getResponseCode());
+            Assertions.assertEquals(404, connect(server, "/metricsfoo", "GET").getResponseCode());
+            Assertions.assertEquals(404, connect(server, "/", "GET").getResponseCode());
+            HttpURLConnection post = connect(server, PrometheusHttpServer.PATH, "POST");
+            Assertions.assertEquals(405, post.getResponseCode());
+            Assertions.assertEquals("GET, HEAD", post.getHeaderField("Allow"));
+        }
+    }
+
+    @Test
+    public void testRequiresRegistry() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> PrometheusHttpServer.start(null, 0));
+    }
+}
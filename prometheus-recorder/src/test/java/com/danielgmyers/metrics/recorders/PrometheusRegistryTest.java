@@ -0,0 +1,219 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import com.danielgmyers.metrics.LatencyHistogram;
+import com.danielgmyers.metrics.MetricKey;
+import com.danielgmyers.metrics.MetricRecorder;
+import com.danielgmyers.metrics.MetricSnapshot;
+import com.danielgmyers.metrics.StandardMetricNames;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class PrometheusRegistryTest {
+
+    private static MetricSnapshot request(String operation, double widgets, Duration lookup) {
+        return new MetricSnapshot.Builder()
+                .putProperty(StandardMetricNames.OPERATION.getKey(), operation)
+                .addCount(MetricKey.of("WidgetCount"), widgets)
+                .addDurationNanos(MetricKey.of("DatabaseLookup"), lookup.toNanos())
+                .build();
+    }
+
+    private static String render(PrometheusRegistry registry) {
+        PrometheusTextEncoder encoder = new PrometheusTextEncoder();
+        int length = encoder.encode(registry);
+        return new String(encoder.getBuffer(), 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static void assertContainsLine(String rendered, String line) {
+        Assertions.assertTrue(rendered.contains(line + "\n"), () -> "Missing line " + line + " in:\n" + rendered);
+    }
+
+    @Test
+    public void testEmptyRegistryRendersNothing() {
+        Assertions.assertEquals("", render(PrometheusRegistry.builder().build()));
+    }
+
+    @Test
+    public void testCountersAccumulatePerOperation() {
+        PrometheusRegistry registry = PrometheusRegistry.builder().withNamespace("MyApp").build();
+        registry.publish(request("GetWidget", 2, Duration.ofMillis(1)));
+        registry.publish(request("GetWidget", 3, Duration.ofMillis(1)));
+        registry.publish(request("PutWidget", 0.5, Duration.ofMillis(1)));
+
+        String rendered = render(registry);
+        assertContainsLine(rendered, "# TYPE my_app_operations_total counter");
+        assertContainsLine(rendered, "my_app_operations_total{operation=\"GetWidget\"} 2");
+        assertContainsLine(rendered, "my_app_operations_total{operation=\"PutWidget\"} 1");
+        assertContainsLine(rendered, "# TYPE my_app_widget_count_total counter");
+        assertContainsLine(rendered, "my_app_widget_count_total{operation=\"GetWidget\"} 5");
+        assertContainsLine(rendered, "my_app_widget_count_total{operation=\"PutWidget\"} 0.5");
+        Assertions.assertEquals(6, registry.getSeriesCount());
+    }
+
+    @Test
+    public void testCountNamedOperationsDoesNotJoinTheOperationsCounter() {
+        PrometheusRegistry registry = PrometheusRegistry.builder().build();
+        registry.publish(new MetricSnapshot.Builder()
+                .putProperty(StandardMetricNames.OPERATION.getKey(), "GetWidget")
+                .addCount(MetricKey.of("Operations"), 5)
+                .build());
+
+        String rendered = render(registry);
+        assertContainsLine(rendered, "operations_total{operation=\"GetWidget\"} 1");
+        assertContainsLine(rendered, "# TYPE operations_count_total counter");
+        assertContainsLine(rendered, "operations_count_total{operation=\"GetWidget\"} 5");
+    }
+
+    @Test
+    public void testMetricsWhoseNamesConvertAlikeGetDistinctFamilies() {
+        PrometheusRegistry registry = PrometheusRegistry.builder().build();
+        registry.publish(new MetricSnapshot.Builder()
+                .putProperty(StandardMetricNames.OPERATION.getKey(), "GetWidget")
+                .addCount(MetricKey.of("HTTPStatus"), 1)
+                .addCount(MetricKey.of("HttpStatus"), 2)
+                .addCount(MetricKey.of("HttpStatusCount"), 3)
+                .addDurationNanos(MetricKey.of("Foo.Bar"), 1_000_000)
+                .addDurationNanos(MetricKey.of("Foo_Bar"), 2_000_000)
+                .build());
+        registry.publish(new MetricSnapshot.Builder()
+                .putProperty(StandardMetricNames.OPERATION.getKey(), "GetWidget")
+                .addCount(MetricKey.of("HttpStatus"), 2)
+                .build());
+
+        String rendered = render(registry);
+        assertContainsLine(rendered, "http_status_total{operation=\"GetWidget\"} 1");
+        assertContainsLine(rendered, "http_status_count_total{operation=\"GetWidget\"} 4");
+        assertContainsLine(rendered, "http_status_count_count_total{operation=\"GetWidget\"} 3");
+        assertContainsLine(rendered, "foo_bar_seconds_sum{operation=\"GetWidget\"} 0.001");
+        assertContainsLine(rendered, "foo_bar_duration_seconds_sum{operation=\"GetWidget\"} 0.002");
+    }
+
+    @Test
+    public void testDurationsAreCumulativeHistograms() {
+        PrometheusRegistry registry = PrometheusRegistry.builder()
+                .withBuckets(List.of(Duration.ofMillis(10), Duration.ofMillis(100)))
+                .build();
+        registry.publish(request("GetWidget", 1, Duration.ofMillis(5)));
+        registry.publish(request("GetWidget", 1, Duration.ofMillis(10)));
+        registry.publish(request("GetWidget", 1, Duration.ofMillis(50)));
+        registry.publish(request("GetWidget", 1, Duration.ofSeconds(2)));
+        registry.publish(request("GetWidget", 1, Duration.ofNanos(-5)));
+
+        String rendered = render(registry);
+        assertContainsLine(rendered, "# TYPE database_lookup_seconds histogram");
+        assertContainsLine(rendered, "database_lookup_seconds_bucket{operation=\"GetWidget\",le=\"0.01\"} 3");
+        assertContainsLine(rendered, "database_lookup_seconds_bucket{operation=\"GetWidget\",le=\"0.1\"} 4");
+        assertContainsLine(rendered, "database_lookup_seconds_bucket{operation=\"GetWidget\",le=\"+Inf\"} 5");
+        assertContainsLine(rendered, "database_lookup_seconds_sum{operation=\"GetWidget\"} 2.065");
+        assertContainsLine(rendered, "database_lookup_seconds_count{operation=\"GetWidget\"} 5");
+    }
+
+    @Test
+    public void testDurationsAsSummaries() {
+        PrometheusRegistry registry = PrometheusRegistry.builder()
+                .withDurationFormat(PrometheusRegistry.DurationFormat.SUMMARY)
+                .withQuantiles(List.of(0.5, 1.0))
+                .build();
+        for (int i = 1; i <= 100; i++) {
+            registry.publish(request("GetWidget", 1, Duration.ofMillis(i)));
+        }
+
+        String rendered = render(registry);
+        assertContainsLine(rendered, "# TYPE database_lookup_seconds summary");
+        assertContainsLine(rendered, "database_lookup_seconds{operation=\"GetWidget\",quantile=\"1.0\"} 0.1");
+        assertContainsLine(rendered, "database_lookup_seconds_sum{operation=\"GetWidget\"} 5.05");
+        assertContainsLine(rendered, "database_lookup_seconds_count{operation=\"GetWidget\"} 100");
+        String median = "database_lookup_seconds{operation=\"GetWidget\",quantile=\"0.5\"} ";
+        int start = rendered.indexOf(median) + median.length();
+        double seconds = Double.parseDouble(rendered.substring(start, rendered.indexOf('\n', start)));
+        Assertions.assertEquals(0.05, seconds, 0.05 * new LatencyHistogram().getRelativeError());
+    }
+
+    @Test
+    public void testOperationLabelsAreEscaped() {
+        PrometheusRegistry registry = PrometheusRegistry.builder().build();
+        registry.publish(new MetricSnapshot.Builder()
+                .putProperty(StandardMetricNames.OPERATION.getKey(), "Say \"hi\"\\\n")
+                .build());
+        registry.publish(MetricSnapshot.empty());
+
+        String rendered = render(registry);
+        assertContainsLine(rendered, "operations_total{operation=\"Say \\\"hi\\\"\\\\\\n\"} 1");
+        assertContainsLine(rendered, "operations_total{operation=\"\"} 1");
+    }
+
+    @Test
+    public void testSeriesAreLimited() {
+        PrometheusRegistry registry = PrometheusRegistry.builder().withMaxSeries(4).build();
+        registry.publish(request("GetWidget", 1, Duration.ofMillis(1)));
+        registry.publish(request("PutWidget", 1, Duration.ofMillis(1)));
+        registry.publish(request("GetWidget", 1, Duration.ofMillis(1)));
+
+        Assertions.assertEquals(4, registry.getSeriesCount());
+        Assertions.assertEquals(2, registry.getDroppedCount());
+        String rendered = render(registry);
+        assertContainsLine(rendered, "operations_total{operation=\"GetWidget\"} 2");
+        assertContainsLine(rendered, "operations_total{operation=\"PutWidget\"} 1");
+        assertContainsLine(rendered, "widget_count_total{operation=\"GetWidget\"} 2");
+        Assertions.assertFalse(rendered.contains("widget_count_total{operation=\"PutWidget\"}"));
+    }
+
+    @Test
+    public void testPublishedFromRecorders() {
+        PrometheusRegistry registry = PrometheusRegistry.builder().build();
+        PublishingMetricRecorderFactory factory = new PublishingMetricRecorderFactory(registry);
+        MetricRecorder metrics = factory.newMetricRecorder("GetWidget");
+        metrics.addCount("WidgetCount", 3);
+        metrics.close();
+
+        String rendered = render(registry);
+        assertContainsLine(rendered, "operations_total{operation=\"GetWidget\"} 1");
+        assertContainsLine(rendered, "widget_count_total{operation=\"GetWidget\"} 3");
+        Assertions.assertTrue(rendered.contains("# TYPE time_seconds histogram\n"), rendered);
+    }
+
+    @Test
+    public void testExposedNames() {
+        Assertions.assertEquals("database_lookup", PrometheusRegistry.exposedName("DatabaseLookup"));
+        Assertions.assertEquals("http_status", PrometheusRegistry.exposedName("HTTPStatus"));
+        Assertions.assertEquals("get_http_status2_code", PrometheusRegistry.exposedName("getHTTPStatus2Code"));
+        Assertions.assertEquals("already_snake", PrometheusRegistry.exposedName("already_snake"));
+        Assertions.assertEquals("cache_hit_rate", PrometheusRegistry.exposedName("Cache.Hit-Rate"));
+        Assertions.assertEquals("_5xx", PrometheusRegistry.exposedName("5xx"));
+        Assertions.assertEquals("_", PrometheusRegistry.exposedName(""));
+    }
+
+    @Test
+    public void testBuilderValidation() {
+        PrometheusRegistry.Builder builder = PrometheusRegistry.builder();
+        Assertions.assertThrows(IllegalArgumentException.class, () -> builder.withNamespace(null));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> builder.withDurationFormat(null));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> builder.withBuckets(List.of()));
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> builder.withBuckets(List.of(Duration.ofMillis(10), Duration.ofMillis(10))));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> builder.withBuckets(List.of(Duration.ZERO)));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> builder.withQuantiles(List.of(1.5)));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> builder.withQuantiles(List.of(Double.NaN)));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> builder.withMaxSeries(0));
+    }
+}
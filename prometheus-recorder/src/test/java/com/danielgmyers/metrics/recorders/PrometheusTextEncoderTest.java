@@ -0,0 +1,81 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.nio.charset.StandardCharsets;
+
+import com.danielgmyers.metrics.MetricSnapshot;
+import com.danielgmyers.metrics.StandardMetricNames;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class PrometheusTextEncoderTest {
+
+    private static String written(PrometheusTextEncoder encoder) {
+        return new String(encoder.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testWriteLong() {
+        for (long value : new long[] {0, 7, 10, -10, 123456789, Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE + 1}) {
+            PrometheusTextEncoder encoder = new PrometheusTextEncoder();
+            encoder.writeLong(value);
+            Assertions.assertEquals(Long.toString(value), written(encoder));
+        }
+    }
+
+    @Test
+    public void testWriteDouble() {
+        double[] values = {0, -0.0, 3, -2.5, 1e20, 1.5e-7, Double.NaN, Double.POSITIVE_INFINITY,
+            Double.NEGATIVE_INFINITY};
+        String[] expected = {"0", "0", "3", "-2.5", "1.0E20", "1.5E-7", "NaN", "+Inf", "-Inf"};
+        for (int i = 0; i < values.length; i++) {
+            PrometheusTextEncoder encoder = new PrometheusTextEncoder();
+            encoder.writeDouble(values[i]);
+            Assertions.assertEquals(expected[i], written(encoder));
+        }
+    }
+
+    @Test
+    public void testWriteSeconds() {
+        long[] nanos = {0, 1, 5_000_000, 1_000_000_000, 2_500_000_000L, -500_000_000, -1_250_000_000};
+        String[] expected = {"0", "0.000000001", "0.005", "1", "2.5", "-0.5", "-1.25"};
+        for (int i = 0; i < nanos.length; i++) {
+            PrometheusTextEncoder encoder = new PrometheusTextEncoder();
+            encoder.writeSeconds(nanos[i]);
+            Assertions.assertEquals(expected[i], written(encoder));
+        }
+    }
+
+    @Test
+    public void testBufferIsReusedAndGrows() {
+        PrometheusRegistry registry = PrometheusRegistry.builder().build();
+        PrometheusTextEncoder encoder = new PrometheusTextEncoder();
+        Assertions.assertEquals(0, encoder.encode(registry));
+
+        for (int i = 0; i < 1000; i++) {
+            registry.publish(new MetricSnapshot.Builder()
+                    .putProperty(StandardMetricNames.OPERATION.getKey(), "Operation" + i)
+                    .build());
+        }
+        int length = encoder.encode(registry);
+        byte[] buffer = encoder.getBuffer();
+        Assertions.assertTrue(length > 4096);
+        Assertions.assertEquals(length, encoder.encode(registry));
+        Assertions.assertSame(buffer, encoder.getBuffer());
+    }
+}
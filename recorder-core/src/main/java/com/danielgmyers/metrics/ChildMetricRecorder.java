@@ -0,0 +1,52 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+/**
+ * A recorder for a sub-operation, created by MetricRecorder.newChild(). It records into its own builder, so children
+ * running on different threads never contend with each other or the parent, and hands the finished snapshot to the
+ * parent when closed.
+ */
+final class ChildMetricRecorder extends SnapshotMetricRecorder {
+
+    private final MetricRecorder parent;
+    private final PrefixedKeys prefix;
+    private final long childStartTicks;
+
+    ChildMetricRecorder(MetricRecorder parent, String subOperation) {
+        super(subOperation, parent.getClock(), parent.getTicker());
+        this.parent = parent;
+        this.prefix = PrefixedKeys.of(subOperation);
+        this.childStartTicks = getTicker().read();
+    }
+
+    @Override
+    protected boolean isRecordingHook() {
+        return parent.isRecordingHook();
+    }
+
+    @Override
+    protected void publish(RecordedMetrics metrics) {
+        parent.addClosedChild(new ClosedChild(prefix, metrics.toSnapshot(), childStartTicks, getTicker().read()));
+    }
+
+    @Override
+    protected boolean resetHook() {
+        // Children are created for a single use by newChild(), and are never pooled.
+        return false;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+/**
+ * The metrics of a closed child recorder, waiting to be merged into its parent. Closed children form a linked stack
+ * so they can be pushed from any thread without locking.
+ */
+final class ClosedChild {
+
+    private final PrefixedKeys prefix;
+    private final MetricSnapshot snapshot;
+    private final long startTicks;
+    private final long endTicks;
+    private ClosedChild next;
+
+    ClosedChild(PrefixedKeys prefix, MetricSnapshot snapshot, long startTicks, long endTicks) {
+        this.prefix = prefix;
+        this.snapshot = snapshot;
+        this.startTicks = startTicks;
+        this.endTicks = endTicks;
+    }
+
+    PrefixedKeys getPrefix() {
+        return prefix;
+    }
+
+    MetricSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    long getStartTicks() {
+        return startTicks;
+    }
+
+    long getEndTicks() {
+        return endTicks;
+    }
+
+    ClosedChild getNext() {
+        return next;
+    }
+
+    void setNext(ClosedChild next) {
+        this.next = next;
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+/**
+ * The handle ConcurrentMetricRecorderFactory gives out, which may be shared between threads, for example across the
+ * tasks of a CompletableFuture fan-out.
+ *
+ * Metrics are accumulated in concurrent maps of adders without locking, and only handed to the backend recorder's
+ * hooks (from the thread calling close()) once every write in progress has finished; see RecordingGate. After that,
+ * the metrics close() records itself go straight to the backend. Counts and durations with the same name are
+ * combined before they reach the backend, so the backend sees one value per name.
+ */
+final class ConcurrentMetricRecorder extends MetricRecorder {
+
+    private final MetricRecorder backend;
+    private final RecordingGate gate;
+
+    private final ConcurrentMap<String, String> properties = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Instant> timestamps = new ConcurrentHashMap<>();
+    private final ConcurrentMap<MetricKey, DoubleAdder> counts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<MetricKey, LongAdder> durations = new ConcurrentHashMap<>();
+
+    ConcurrentMetricRecorder(MetricRecorder backend) {
+        this(backend, new RecordingGate());
+    }
+
+    private ConcurrentMetricRecorder(MetricRecorder backend, RecordingGate gate) {
+        super(backend.getOperation(), backend.getClock(), backend.getTicker(), new ConcurrentTimerTable(gate));
+        this.backend = backend;
+        this.gate = gate;
+    }
+
+    @Override
+    protected boolean isRecordingHook() {
+        return backend.isRecordingHook();
+    }
+
+    @Override
+    void deferProperty(String name, Supplier<String> value) {
+        int token = gate.enter();
+        try {
+            // The gate is a private object, so it doubles as the lock around the deferred values.
+            synchronized (gate) {
+                super.deferProperty(name, value);
+            }
+        } finally {
+            if (token != RecordingGate.CLOSING) {
+                gate.exit(token);
+            }
+        }
+    }
+
+    @Override
+    void deferCount(MetricKey key, DoubleSupplier count) {
+        int token = gate.enter();
+        try {
+            synchronized (gate) {
+                super.deferCount(key, count);
+            }
+        } finally {
+            if (token != RecordingGate.CLOSING) {
+                gate.exit(token);
+            }
+        }
+    }
+
+    @Override
+    void prepareClose() {
+        gate.seal();
+        flushToBackend();
+    }
+
+    private void flushToBackend() {
+        // The gate is sealed, so nothing else can write to the maps now.
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            backend.addPropertyHook(property.getKey(), property.getValue());
+        }
+        for (Map.Entry<String, Instant> timestamp : timestamps.entrySet()) {
+            backend.addTimestampHook(timestamp.getKey(), timestamp.getValue());
+        }
+        for (Map.Entry<MetricKey, DoubleAdder> count : counts.entrySet()) {
+            backend.addCountHook(count.getKey(), count.getValue().sum());
+        }
+        for (Map.Entry<MetricKey, LongAdder> duration : durations.entrySet()) {
+            backend.addDurationHook(duration.getKey(), duration.getValue().sum());
+        }
+    }
+
+    @Override
+    protected void addPropertyHook(String name, String value) {
+        int token = gate.enter();
+        if (token == RecordingGate.CLOSING) {
+            backend.addPropertyHook(name, value);
+            return;
+        }
+        try {
+            properties.put(name, value);
+        } finally {
+            gate.exit(token);
+        }
+    }
+
+    @Override
+    protected void addTimestampHook(String name, Instant time) {
+        int token = gate.enter();
+        if (token == RecordingGate.CLOSING) {
+            backend.addTimestampHook(name, time);
+            return;
+        }
+        try {
+            timestamps.put(name, time);
+        } finally {
+            gate.exit(token);
+        }
+    }
+
+    @Override
+    protected void addCountHook(MetricKey key, double count) {
+        int token = gate.enter();
+        if (token == RecordingGate.CLOSING) {
+            backend.addCountHook(key, count);
+            return;
+        }
+        try {
+            DoubleAdder adder = counts.get(key);
+            if (adder == null) {
+                adder = counts.computeIfAbsent(key, k -> new DoubleAdder());
+            }
+            adder.add(count);
+        } finally {
+            gate.exit(token);
+        }
+    }
+
+    @Override
+    protected void addDurationHook(MetricKey key, long nanos) {
+        int token = gate.enter();
+        if (token == RecordingGate.CLOSING) {
+            backend.addDurationHook(key, nanos);
+            return;
+        }
+        try {
+            LongAdder adder = durations.get(key);
+            if (adder == null) {
+                adder = durations.computeIfAbsent(key, k -> new LongAdder());
+            }
+            adder.add(nanos);
+        } finally {
+            gate.exit(token);
+        }
+    }
+
+    @Override
+    protected void closeHook() {
+        // Wrappers which drive this recorder's hooks directly never call close(), so prepareClose() hasn't run.
+        if (!gate.isSealed()) {
+            gate.seal();
+            flushToBackend();
+        }
+        backend.closeHook();
+        backend.markClosed();
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+import java.time.Clock;
+
+/**
+ * Produces MetricRecorder objects which may safely be shared between threads, by wrapping the recorders produced by
+ * another factory.
+ *
+ * Any thread may record metrics until close() is called. Every metric recorded by a call which returns before close()
+ * is called is included, and calls racing with close() either complete before the metrics are handed to the backend
+ * or throw an IllegalStateException. Recorders which are only used from one thread should come from the delegate
+ * factory directly, since this adds some overhead to every call.
+ */
+public class ConcurrentMetricRecorderFactory implements MetricRecorderFactory {
+
+    private final MetricRecorderFactory delegate;
+
+    public ConcurrentMetricRecorderFactory(MetricRecorderFactory delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public MetricRecorder newMetricRecorder(String operation, Clock clock) {
+        return new ConcurrentMetricRecorder(delegate.newMetricRecorder(operation, clock));
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A TimerTable which may be used from multiple threads at once. Timers are still identified only by key, so
+ * concurrent tasks timing the same kind of work should use distinct names.
+ *
+ * Each key gets one AtomicLong holding its start tick, which stays in the map once the timer is stopped and is reused
+ * when a timer with the same key is started again, so ticks are never boxed.
+ *
+ * Since there's no meaningful order between timers started on different threads, lastKey() returns any open timer.
+ */
+final class ConcurrentTimerTable extends TimerTable {
+
+    // Marks a stopped timer. A ticker reading of exactly Long.MIN_VALUE is treated as a timer that was never started.
+    private static final long NOT_OPEN = Long.MIN_VALUE;
+
+    private final ConcurrentMap<MetricKey, AtomicLong> timers = new ConcurrentHashMap<>();
+    private final RecordingGate gate;
+
+    ConcurrentTimerTable(RecordingGate gate) {
+        this.gate = gate;
+    }
+
+    @Override
+    void start(MetricKey key, long ticks) {
+        int token = gate.enter();
+        try {
+            AtomicLong timer = timers.get(key);
+            if (timer == null) {
+                timer = timers.computeIfAbsent(key, k -> new AtomicLong(NOT_OPEN));
+            }
+            if (!timer.compareAndSet(NOT_OPEN, ticks)) {
+                throw new IllegalStateException("A timer named " + key + " is already open.");
+            }
+        } finally {
+            if (token != RecordingGate.CLOSING) {
+                gate.exit(token);
+            }
+        }
+    }
+
+    @Override
+    long stop(MetricKey key) {
+        int token = gate.enter();
+        try {
+            AtomicLong timer = timers.get(key);
+            long ticks = timer == null ? NOT_OPEN : timer.getAndSet(NOT_OPEN);
+            if (ticks == NOT_OPEN) {
+                throw new IllegalStateException("No active timer named " + key);
+            }
+            return ticks;
+        } finally {
+            if (token != RecordingGate.CLOSING) {
+                gate.exit(token);
+            }
+        }
+    }
+
+    @Override
+    void clear() {
+        timers.clear();
+    }
+
+    /**
+     * Only called by close(), once the gate is sealed, so the open timers can't change while it counts them.
+     */
+    @Override
+    int size() {
+        int open = 0;
+        for (AtomicLong timer : timers.values()) {
+            if (timer.get() != NOT_OPEN) {
+                open++;
+            }
+        }
+        return open;
+    }
+
+    @Override
+    MetricKey lastKey() {
+        for (Map.Entry<MetricKey, AtomicLong> timer : timers.entrySet()) {
+            if (timer.getValue().get() != NOT_OPEN) {
+                return timer.getKey();
+            }
+        }
+        throw new IllegalStateException("No timers are open.");
+    }
+}
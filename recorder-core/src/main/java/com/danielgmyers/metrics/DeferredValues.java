@@ -0,0 +1,101 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+import java.util.Arrays;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+/**
+ * The property and count values a MetricRecorder was given as suppliers, kept in the order they were added until
+ * close() evaluates them. The arrays are only allocated once the first value is deferred.
+ *
+ * Not thread-safe; ConcurrentMetricRecorder synchronizes around it.
+ */
+final class DeferredValues {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    // A String name for a property, or a MetricKey for a count.
+    private Object[] names;
+    private Object[] suppliers;
+    private int size;
+
+    void addProperty(String name, Supplier<String> value) {
+        add(name, value);
+    }
+
+    void addCount(MetricKey key, DoubleSupplier count) {
+        add(key, count);
+    }
+
+    /**
+     * Evaluates every supplier and hands the values to the recorder's hooks. A supplier which throws is skipped, so
+     * one bad value doesn't stop the recorder from closing, and counted in the DeferredValueFailures count. Exceptions
+     * from the hooks themselves are not caught.
+     */
+    void applyTo(MetricRecorder recorder) {
+        int failures = 0;
+        for (int i = 0; i < size; i++) {
+            if (names[i] instanceof MetricKey) {
+                double value;
+                try {
+                    value = ((DoubleSupplier) suppliers[i]).getAsDouble();
+                } catch (RuntimeException e) {
+                    failures++;
+                    continue;
+                }
+                recorder.addCountHook((MetricKey) names[i], value);
+            } else {
+                @SuppressWarnings("unchecked")
+                Supplier<String> supplier = (Supplier<String>) suppliers[i];
+                String value;
+                try {
+                    value = supplier.get();
+                } catch (RuntimeException e) {
+                    failures++;
+                    continue;
+                }
+                recorder.addPropertyHook((String) names[i], value);
+            }
+        }
+        if (failures > 0) {
+            recorder.addCountHook(StandardMetricNames.DEFERRED_VALUE_FAILURES.getKey(), failures);
+        }
+    }
+
+    void clear() {
+        if (names != null) {
+            Arrays.fill(names, 0, size, null);
+            Arrays.fill(suppliers, 0, size, null);
+        }
+        size = 0;
+    }
+
+    private void add(Object name, Object supplier) {
+        if (names == null) {
+            names = new Object[INITIAL_CAPACITY];
+            suppliers = new Object[INITIAL_CAPACITY];
+        } else if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            suppliers = Arrays.copyOf(suppliers, size * 2);
+        }
+        names[size] = name;
+        suppliers[size] = supplier;
+        size++;
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+/**
+ * The child MetricRecorder.newChild() returns when the parent isn't recording. Like the parent, it never reads the
+ * clock and keeps nothing, so it has nothing to hand over when closed, but it must still be closed before its parent.
+ */
+final class DisabledChildMetricRecorder extends MetricRecorder {
+
+    private final MetricRecorder parent;
+
+    DisabledChildMetricRecorder(MetricRecorder parent, String subOperation) {
+        super(subOperation, parent.getClock(), false);
+        this.parent = parent;
+    }
+
+    @Override
+    protected void addDurationHook(MetricKey key, long nanos) {
+        // Overridden so the default doesn't allocate a Duration only to discard it.
+    }
+
+    @Override
+    protected void closeHook() {
+        parent.verifyAcceptingChildren();
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+import java.time.Clock;
+
+/**
+ * A single shared MetricRecorder which discards everything, for code that has nowhere to record to, such as
+ * MetricContext.current() when no recorder is bound. Unlike NoopMetricRecorder it can be used from any number of
+ * threads at once and is never closed: close() does nothing and newChild() returns the recorder itself. It keeps
+ * no timers at all, so its timer methods never throw and always measure zero.
+ */
+final class DiscardingMetricRecorder extends MetricRecorder {
+
+    static final DiscardingMetricRecorder INSTANCE = new DiscardingMetricRecorder();
+
+    private static final String OPERATION = "Discarded";
+
+    private DiscardingMetricRecorder() {
+        super(OPERATION, Clock.systemUTC(), DISABLED_TICKER, DiscardingTimerTable.INSTANCE, false);
+    }
+
+    @Override
+    boolean isDiscarding() {
+        return true;
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+/**
+ * A TimerTable which keeps no timers, for the shared DiscardingMetricRecorder. It has no state, so it can be used
+ * from any number of threads at once.
+ */
+final class DiscardingTimerTable extends TimerTable {
+
+    static final DiscardingTimerTable INSTANCE = new DiscardingTimerTable();
+
+    private DiscardingTimerTable() {}
+
+    @Override
+    void start(MetricKey key, long ticks) {}
+
+    @Override
+    long stop(MetricKey key) {
+        return 0;
+    }
+
+    @Override
+    void clear() {}
+
+    @Override
+    int size() {
+        return 0;
+    }
+}
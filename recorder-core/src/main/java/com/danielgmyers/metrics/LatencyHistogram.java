@@ -0,0 +1,284 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A fixed-memory histogram of non-negative long values (typically durations in nanoseconds) with bounded relative error.
+ *
+ * Buckets are log-linear: each power of two is split into 2^significantBits equal-width buckets, so any value is
+ * reported to within 1 part in 2^(significantBits + 1). Values below 2^significantBits are recorded exactly.
+ * The buckets for each power of two are allocated the first time a value of that magnitude is recorded; after that,
+ * recording never allocates.
+ *
+ * Recording is lock-free and safe from any number of threads. Queries may run concurrently with recording, but then
+ * reflect some subset of the values recorded while the query was running.
+ */
+public final class LatencyHistogram {
+
+    public static final int DEFAULT_SIGNIFICANT_BITS = 6;
+
+    private final int significantBits;
+    private final int subBucketCount;
+    private final AtomicReferenceArray<AtomicLongArray> chunks;
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+    public LatencyHistogram() {
+        this(DEFAULT_SIGNIFICANT_BITS);
+    }
+
+    /**
+     * Creates a histogram with the specified precision.
+     *
+     * @param significantBits The number of bits of each value which are kept exactly; between 1 and 16.
+     *                        The default of 6 gives a relative error of at most 0.8%.
+     */
+    public LatencyHistogram(int significantBits) {
+        if (significantBits < 1 || significantBits > 16) {
+            throw new IllegalArgumentException("Significant bits must be between 1 and 16.");
+        }
+        this.significantBits = significantBits;
+        this.subBucketCount = 1 << significantBits;
+        // Chunk 0 holds the exact values below subBucketCount, chunk k holds [2^(k+bits-1), 2^(k+bits)).
+        this.chunks = new AtomicReferenceArray<>(64 - significantBits);
+    }
+
+    public int getSignificantBits() {
+        return significantBits;
+    }
+
+    /**
+     * Returns the largest possible difference between a reported value and the recorded value, relative to the latter.
+     */
+    public double getRelativeError() {
+        return 1.0 / (subBucketCount << 1);
+    }
+
+    /**
+     * Records a single value. Negative values are recorded as zero.
+     */
+    public void record(long value) {
+        long nonNegative = Math.max(0, value);
+        int chunkIndex;
+        int bucket;
+        if (nonNegative < subBucketCount) {
+            chunkIndex = 0;
+            bucket = (int) nonNegative;
+        } else {
+            int exponent = 63 - Long.numberOfLeadingZeros(nonNegative);
+            int shift = exponent - significantBits;
+            chunkIndex = shift + 1;
+            bucket = (int) (nonNegative >>> shift) - subBucketCount;
+        }
+        chunk(chunkIndex).incrementAndGet(bucket);
+        updateMin(nonNegative);
+        updateMax(nonNegative);
+    }
+
+    public void record(Duration duration) {
+        record(duration.toNanos());
+    }
+
+    /**
+     * Adds the values in the other histogram, which must have the same precision, to this one.
+     */
+    public void merge(LatencyHistogram other) {
+        if (other.significantBits != significantBits) {
+            throw new IllegalArgumentException("Histograms with different precisions can't be merged.");
+        }
+        for (int c = 0; c < other.chunks.length(); c++) {
+            AtomicLongArray source = other.chunks.get(c);
+            if (source == null) {
+                continue;
+            }
+            AtomicLongArray destination = chunk(c);
+            for (int i = 0; i < subBucketCount; i++) {
+                long count = source.get(i);
+                if (count != 0) {
+                    destination.addAndGet(i, count);
+                }
+            }
+        }
+        updateMin(other.min.get());
+        updateMax(other.max.get());
+    }
+
+    /**
+     * Returns a copy of this histogram.
+     */
+    public LatencyHistogram copy() {
+        LatencyHistogram copy = new LatencyHistogram(significantBits);
+        copy.merge(this);
+        return copy;
+    }
+
+    /**
+     * Moves everything recorded so far into a new histogram and returns it, which makes this suitable for reporting
+     * fixed intervals. Each value recorded concurrently with this call is counted in exactly one of the two histograms.
+     * The min and max are taken before the buckets, though, so such a value may be counted in one histogram and
+     * reflected in the min or max of the other.
+     */
+    public LatencyHistogram drain() {
+        LatencyHistogram drained = new LatencyHistogram(significantBits);
+        drained.updateMin(min.getAndSet(Long.MAX_VALUE));
+        drained.updateMax(max.getAndSet(Long.MIN_VALUE));
+        for (int c = 0; c < chunks.length(); c++) {
+            AtomicLongArray source = chunks.get(c);
+            if (source == null) {
+                continue;
+            }
+            AtomicLongArray destination = null;
+            for (int i = 0; i < subBucketCount; i++) {
+                long count = source.getAndSet(i, 0);
+                if (count != 0) {
+                    if (destination == null) {
+                        destination = drained.chunk(c);
+                    }
+                    destination.addAndGet(i, count);
+                }
+            }
+        }
+        return drained;
+    }
+
+    /**
+     * Discards everything recorded so far, keeping the allocated buckets for reuse.
+     */
+    public void reset() {
+        for (int c = 0; c < chunks.length(); c++) {
+            AtomicLongArray chunk = chunks.get(c);
+            if (chunk != null) {
+                for (int i = 0; i < subBucketCount; i++) {
+                    chunk.set(i, 0);
+                }
+            }
+        }
+        min.set(Long.MAX_VALUE);
+        max.set(Long.MIN_VALUE);
+    }
+
+    /**
+     * Returns the number of recorded values.
+     */
+    public long getCount() {
+        long count = 0;
+        for (int c = 0; c < chunks.length(); c++) {
+            AtomicLongArray chunk = chunks.get(c);
+            if (chunk != null) {
+                for (int i = 0; i < subBucketCount; i++) {
+                    count += chunk.get(i);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the smallest recorded value (exactly), or 0 if nothing has been recorded.
+     */
+    public long getMin() {
+        long value = min.get();
+        return value == Long.MAX_VALUE ? 0 : value;
+    }
+
+    /**
+     * Returns the largest recorded value (exactly), or 0 if nothing has been recorded.
+     */
+    public long getMax() {
+        long value = max.get();
+        return value == Long.MIN_VALUE ? 0 : value;
+    }
+
+    /**
+     * Returns the value below which the given percentage of recorded values fall, to within getRelativeError().
+     *
+     * @param percentile Between 0 and 100, e.g. 99.9 for p999.
+     * @return The estimated value, or 0 if nothing has been recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100 || Double.isNaN(percentile)) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100.");
+        }
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int c = 0; c < chunks.length(); c++) {
+            AtomicLongArray chunk = chunks.get(c);
+            if (chunk == null) {
+                continue;
+            }
+            for (int i = 0; i < subBucketCount; i++) {
+                seen += chunk.get(i);
+                if (seen >= rank) {
+                    return clamp(bucketMidpoint(c, i));
+                }
+            }
+        }
+        // Values were recorded concurrently after getCount() returned.
+        return getMax();
+    }
+
+    public Duration getDurationAtPercentile(double percentile) {
+        return Duration.ofNanos(getValueAtPercentile(percentile));
+    }
+
+    private AtomicLongArray chunk(int index) {
+        AtomicLongArray chunk = chunks.get(index);
+        if (chunk == null) {
+            chunk = new AtomicLongArray(subBucketCount);
+            if (!chunks.compareAndSet(index, null, chunk)) {
+                chunk = chunks.get(index);
+            }
+        }
+        return chunk;
+    }
+
+    private long bucketMidpoint(int chunkIndex, int bucket) {
+        if (chunkIndex == 0) {
+            return bucket;
+        }
+        int shift = chunkIndex - 1;
+        long lower = (long) (subBucketCount + bucket) << shift;
+        return lower + ((1L << shift) >>> 1);
+    }
+
+    private long clamp(long value) {
+        return Math.min(Math.max(value, getMin()), getMax());
+    }
+
+    private void updateMin(long value) {
+        long current = min.get();
+        while (value < current && !min.compareAndSet(current, value)) {
+            current = min.get();
+        }
+    }
+
+    private void updateMax(long value) {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Makes a MetricRecorder available to code running on the current thread without passing it through every method,
+ * so nested library code can record into the request's recorder instead of creating its own.
+ *
+ * The request handler binds its recorder for the duration of the request, inside the recorder's own try block:
+ *
+ *   try (MetricRecorder metrics = factory.newMetricRecorder("GetWidget");
+ *        MetricContext.Scope scope = MetricContext.bind(metrics)) {
+ *       ...
+ *   }
+ *
+ * and nested code records into MetricContext.current(). When nothing is bound, current() returns a shared recorder
+ * which discards everything, so nested code never has to check. Each call to current() is a ThreadLocal lookup;
+ * code recording several metrics should call it once and keep the result for the rest of the method.
+ *
+ * Bindings don't follow work onto other threads by themselves. Tasks handed to executors, CompletableFuture's async
+ * methods or new threads (including virtual threads) should be wrapped with the wrap methods here, which bind the
+ * captured recorder around the task and restore the thread's own binding afterwards.
+ *
+ * Carrying a recorder onto other threads means several threads use it, so only recorders from a
+ * ConcurrentMetricRecorderFactory may be bound across threads; every other recorder is single-threaded. The async
+ * work must also finish before the recorder is closed: a task recording into a recorder that has already been
+ * closed throws an IllegalStateException.
+ */
+public final class MetricContext {
+
+    private static final ThreadLocal<MetricRecorder> CURRENT = new ThreadLocal<>();
+
+    private MetricContext() {}
+
+    /**
+     * Returns the recorder bound to the current thread, or a shared recorder which discards everything if there is
+     * none. The discarding recorder is never closed; closing it does nothing.
+     */
+    public static MetricRecorder current() {
+        MetricRecorder recorder = CURRENT.get();
+        return recorder == null ? DiscardingMetricRecorder.INSTANCE : recorder;
+    }
+
+    /**
+     * Returns true if a recorder is bound to the current thread.
+     */
+    public static boolean isBound() {
+        return CURRENT.get() != null;
+    }
+
+    /**
+     * Binds the recorder to the current thread until the returned scope is closed, which restores whatever was
+     * bound before.
+     */
+    public static Scope bind(MetricRecorder recorder) {
+        if (recorder == null) {
+            throw new IllegalArgumentException("Recorder must not be null.");
+        }
+        MetricRecorder previous = CURRENT.get();
+        CURRENT.set(recorder);
+        return new Scope(previous);
+    }
+
+    /**
+     * Returns a Runnable which runs the task with the currently bound recorder (or none) bound.
+     */
+    public static Runnable wrapRunnable(Runnable task) {
+        return bindAround(CURRENT.get(), task);
+    }
+
+    /**
+     * Returns a Callable which calls the task with the currently bound recorder (or none) bound.
+     */
+    public static <T> Callable<T> wrapCallable(Callable<T> task) {
+        MetricRecorder captured = CURRENT.get();
+        return () -> {
+            MetricRecorder previous = swap(captured);
+            try {
+                return task.call();
+            } finally {
+                swap(previous);
+            }
+        };
+    }
+
+    /**
+     * Returns a Supplier which calls the supplier with the currently bound recorder (or none) bound.
+     */
+    public static <T> Supplier<T> wrapSupplier(Supplier<T> supplier) {
+        MetricRecorder captured = CURRENT.get();
+        return () -> {
+            MetricRecorder previous = swap(captured);
+            try {
+                return supplier.get();
+            } finally {
+                swap(previous);
+            }
+        };
+    }
+
+    /**
+     * Returns an Executor which runs every task with the recorder bound when this method was called (or none).
+     * This suits a single request's CompletableFuture chain: passing it to the async methods carries the request's
+     * recorder into each stage, even though dependent stages are submitted by whichever thread completed the
+     * previous one. Long-lived executors shared between requests should use wrapExecutorService() instead.
+     * The recorder must come from a ConcurrentMetricRecorderFactory, and must outlive the tasks.
+     */
+    public static Executor wrapExecutor(Executor executor) {
+        MetricRecorder captured = CURRENT.get();
+        return task -> executor.execute(bindAround(captured, task));
+    }
+
+    /**
+     * Returns an ExecutorService which runs each task with the recorder that was bound when the task was submitted
+     * (or none).
+     * Shutting it down shuts down the delegate. This also carries recorders onto virtual threads, for example when
+     * wrapping Executors.newVirtualThreadPerTaskExecutor().
+     * The recorders must come from a ConcurrentMetricRecorderFactory, and must outlive the tasks.
+     */
+    public static ExecutorService wrapExecutorService(ExecutorService executor) {
+        return new ContextExecutorService(executor);
+    }
+
+    /**
+     * Equivalent to CompletableFuture.supplyAsync(), with the currently bound recorder bound while the supplier runs.
+     * The recorder must come from a ConcurrentMetricRecorderFactory, and must outlive the supplier.
+     */
+    public static <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier, Executor executor) {
+        return CompletableFuture.supplyAsync(wrapSupplier(supplier), executor);
+    }
+
+    /**
+     * Equivalent to CompletableFuture.runAsync(), with the currently bound recorder bound while the task runs.
+     * The recorder must come from a ConcurrentMetricRecorderFactory, and must outlive the task.
+     */
+    public static CompletableFuture<Void> runAsync(Runnable task, Executor executor) {
+        return CompletableFuture.runAsync(wrapRunnable(task), executor);
+    }
+
+    private static Runnable bindAround(MetricRecorder captured, Runnable task) {
+        return () -> {
+            MetricRecorder previous = swap(captured);
+            try {
+                task.run();
+            } finally {
+                swap(previous);
+            }
+        };
+    }
+
+    /**
+     * Binds the recorder, or unbinds if it's null, and returns whatever was bound before. Unbinding sets the value to
+     * null rather than removing it, since removing and re-adding the thread's entry on every request costs more than
+     * the binding itself.
+     */
+    private static MetricRecorder swap(MetricRecorder recorder) {
+        MetricRecorder previous = CURRENT.get();
+        CURRENT.set(recorder);
+        return previous;
+    }
+
+    /**
+     * A binding made by bind(). Scopes must be closed on the thread that created them, in the reverse order they
+     * were created, which try-with-resources does.
+     */
+    public static final class Scope implements AutoCloseable {
+        private final MetricRecorder previous;
+
+        private Scope(MetricRecorder previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            swap(previous);
+        }
+    }
+
+    private static final class ContextExecutorService extends AbstractExecutorService {
+        private final ExecutorService delegate;
+
+        ContextExecutorService(ExecutorService delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            delegate.execute(wrapRunnable(task));
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An interned metric name. Resolving a name to a MetricKey once and reusing the key lets the recording path skip
+ * hashing the name on every call, and lets backends index arrays by the key's id instead of keeping string maps.
+ *
+ * There is exactly one MetricKey instance per distinct name for the life of the JVM, and each key carries a dense
+ * integer id assigned in the order names are first seen, starting at zero. Interned keys are never released, so
+ * metric names should come from a bounded set; don't embed request-specific values in them.
+ */
+public final class MetricKey {
+
+    private static final ConcurrentMap<String, MetricKey> KEYS = new ConcurrentHashMap<>();
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    private final String name;
+    private final int id;
+
+    private MetricKey(String name, int id) {
+        this.name = name;
+        this.id = id;
+    }
+
+    /**
+     * Returns the key for the specified name, interning it if this is the first time the name has been seen.
+     * This is safe to call concurrently, and only allocates the first time a given name is seen.
+     */
+    public static MetricKey of(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("Metric names may not be null.");
+        }
+        MetricKey key = KEYS.get(name);
+        if (key != null) {
+            return key;
+        }
+        return KEYS.computeIfAbsent(name, n -> new MetricKey(n, NEXT_ID.getAndIncrement()));
+    }
+
+    /**
+     * Returns the number of keys interned so far. Every key's id is strictly less than this value,
+     * so backends can use it to size arrays indexed by id.
+     */
+    public static int getKeyCount() {
+        return NEXT_ID.get();
+    }
+
+    /**
+     * The metric name this key was interned from.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The dense id of this key; ids are assigned consecutively starting at zero.
+     */
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        // Keys are interned, so identity is equality.
+        return this == other;
+    }
+
+    @Override
+    public int hashCode() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing hash index from MetricKey to a dense position (0, 1, 2, ...) assigned in insertion order.
+ * Callers keep the values in their own primitive arrays indexed by position, which keeps them unboxed and in
+ * insertion order. Keys hash by their dense id, so no String hashing or equals() calls are involved.
+ * The tables are only allocated once the first key is inserted.
+ *
+ * Not thread-safe.
+ */
+final class MetricKeyIndex {
+
+    private static final int INITIAL_CAPACITY = 4;
+    private static final MetricKey[] NO_KEYS = new MetricKey[0];
+
+    private MetricKey[] keys;
+    // Each slot holds position + 1 of the key that hashed there, or 0 if the slot is empty.
+    private int[] slots;
+    private int size;
+
+    /**
+     * Returns the position of the specified key, or -1 if it has not been inserted.
+     */
+    int indexOf(MetricKey key) {
+        if (size == 0) {
+            return -1;
+        }
+        int mask = slots.length - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            int entry = slots[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            if (keys[entry - 1] == key) {
+                return entry - 1;
+            }
+        }
+    }
+
+    /**
+     * Returns the position of the specified key, inserting it at position size() if it is not already present.
+     * Callers can tell whether the key was inserted by comparing the result against size() beforehand.
+     */
+    int insert(MetricKey key) {
+        if (keys == null) {
+            keys = new MetricKey[INITIAL_CAPACITY];
+            slots = new int[INITIAL_CAPACITY * 2];
+        }
+        int mask = slots.length - 1;
+        int slot = hash(key) & mask;
+        for (int entry = slots[slot]; entry != 0; entry = slots[slot]) {
+            if (keys[entry - 1] == key) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size == keys.length) {
+            grow();
+            return insert(key);
+        }
+        keys[size] = key;
+        slots[slot] = size + 1;
+        return size++;
+    }
+
+    /**
+     * The key at the specified position.
+     */
+    MetricKey keyAt(int position) {
+        return keys[position];
+    }
+
+    /**
+     * The number of keys inserted.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * The current capacity, i.e. the length value arrays must have to hold every position.
+     */
+    int capacity() {
+        return keys == null ? 0 : keys.length;
+    }
+
+    /**
+     * Copies the inserted keys, in position order.
+     */
+    MetricKey[] copyKeys() {
+        return size == 0 ? NO_KEYS : Arrays.copyOf(keys, size);
+    }
+
+    /**
+     * Removes every key, keeping the tables for reuse.
+     */
+    void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, 0, size, null);
+            Arrays.fill(slots, 0);
+            size = 0;
+        }
+    }
+
+    private void grow() {
+        // Slots are kept at twice the key capacity, so the load factor never exceeds one half.
+        keys = Arrays.copyOf(keys, keys.length * 2);
+        slots = new int[keys.length * 2];
+        int mask = slots.length - 1;
+        for (int position = 0; position < size; position++) {
+            int slot = hash(keys[position]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = position + 1;
+        }
+    }
+
+    private static int hash(MetricKey key) {
+        int mixed = key.getId() * 0x9E3779B9;
+        return mixed ^ (mixed >>> 16);
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+import java.util.List;
+
+/**
+ * A backend which receives the metrics of each closed MetricRecorder as an immutable MetricSnapshot.
+ * Publishers are typically shared by every recorder a factory produces, so implementations must be thread-safe.
+ */
+@FunctionalInterface
+public interface MetricPublisher {
+
+    /**
+     * Publishes the metrics of a single closed recorder.
+     */
+    void publish(MetricSnapshot snapshot);
+
+    /**
+     * Publishes a batch of snapshots. The list may be reused by the caller once this returns, so implementations
+     * must not keep a reference to it (the snapshots themselves may be kept).
+     *
+     * Default is to call publish() for each snapshot in order.
+     */
+    default void publishAll(List<MetricSnapshot> snapshots) {
+        for (MetricSnapshot snapshot : snapshots) {
+            publish(snapshot);
+        }
+    }
+}
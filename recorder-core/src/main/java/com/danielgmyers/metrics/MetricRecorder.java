@@ -19,31 +19,88 @@ package com.danielgmyers.metrics;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
 
 /**
  * A generic interface for emitting metrics to an arbitrary recording mechanism.
  *
  * This class implements AutoCloseable to encourage use with try-with-resources blocks.
+ *
+ * Durations are measured with a monotonic Ticker, so they are unaffected by wall-clock adjustments;
+ * the Clock is only used to produce timestamps.
  */
 public abstract class MetricRecorder implements AutoCloseable {
 
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    // Marks the closed-children stack once the parent has merged it, so children closing later are rejected.
+    private static final ClosedChild CHILDREN_MERGED = new ClosedChild(null, null, 0, 0);
+    private static final AtomicReferenceFieldUpdater<MetricRecorder, ClosedChild> CLOSED_CHILDREN =
+        AtomicReferenceFieldUpdater.newUpdater(MetricRecorder.class, ClosedChild.class, "closedChildren");
+    // Disabled recorders never read the time, so their timers always measure zero.
+    static final Ticker DISABLED_TICKER = () -> 0L;
+    // Shared by every recorder until it starts its first timer, since most never do. Nothing is ever started in it,
+    // so stopping a timer which was never started still throws.
+    private static final TimerTable NO_TIMERS = new TimerTable();
+
+    // These are only reassigned by reinitialize(), which requires the recorder to be closed.
     private boolean closed;
-    private final Clock clock;
-    private final Instant startTime;
-    private final String operation;
+    private Clock clock;
+    private Ticker ticker;
+    private Instant startTime;
+    private long startTicks;
+    private String operation;
 
-    private final Map<String, Instant> timers = new HashMap<>();
+    private TimerTable timers;
+    private final boolean recording;
+    private volatile ClosedChild closedChildren;
+    private DeferredValues deferred;
 
     /**
-     * Initializes the MetricRecorder.
+     * Initializes the MetricRecorder, measuring durations with the default Ticker for the specified clock.
      */
     protected MetricRecorder(String operation, Clock clock) {
+        this(operation, clock, Ticker.forClock(clock));
+    }
+
+    /**
+     * Initializes the MetricRecorder, measuring durations with the specified ticker.
+     */
+    protected MetricRecorder(String operation, Clock clock, Ticker ticker) {
+        this(operation, clock, ticker, NO_TIMERS);
+    }
+
+    /**
+     * Initializes a MetricRecorder which is either recording as usual, or disabled, for implementations like
+     * NoopMetricRecorder which keep nothing. A disabled recorder never reads the clock or the ticker, so every
+     * duration it measures is zero, and close() skips the standard metrics. It still rejects use after close(),
+     * starting a timer which is already open and stopping one which isn't, and isRecording() returns false unless
+     * isRecordingHook() is overridden.
+     */
+    protected MetricRecorder(String operation, Clock clock, boolean recording) {
+        this(operation, clock, recording ? Ticker.forClock(clock) : DISABLED_TICKER, NO_TIMERS, recording);
+    }
+
+    /**
+     * Initializes the MetricRecorder with a specific timer table, for recorders which are shared between threads.
+     */
+    MetricRecorder(String operation, Clock clock, Ticker ticker, TimerTable timers) {
+        this(operation, clock, ticker, timers, true);
+    }
+
+    /**
+     * Initializes the MetricRecorder with a specific timer table, which may be disabled as above.
+     */
+    MetricRecorder(String operation, Clock clock, Ticker ticker, TimerTable timers, boolean recording) {
+        this.timers = timers;
+        this.recording = recording;
         this.clock = clock;
-        this.startTime = clock.instant();
+        this.ticker = ticker;
+        this.startTime = recording ? clock.instant() : Instant.EPOCH;
+        this.startTicks = recording ? ticker.read() : 0;
         this.operation = operation;
     }
 
@@ -51,24 +108,39 @@ public abstract class MetricRecorder implements AutoCloseable {
      * Closes this set of metrics. After close() is called, new metrics may no longer be recorded with this object.
      * Implementations should store, publish, or otherwise record the metrics at this time.
      * This method closes any open durations, and emits the standard metrics listed in StandardMetricNames.
+     * Recorders for which isRecording() is false skip all of that, and only call closeHook().
      * Throws an IllegalStateException if the MetricRecorder is already closed.
      */
     public final void close() {
+        if (isDiscarding()) {
+            return;
+        }
         verifyNotClosed();
+        if (!isRecordingHook()) {
+            // Nothing will be kept, so there's no need to read the time. Children closed from now on are still
+            // rejected, but those already closed are dropped without being merged.
+            CLOSED_CHILDREN.lazySet(this, CHILDREN_MERGED);
+            closeHook();
+            closed = true;
+            return;
+        }
+        prepareClose();
 
-        Set<String> openTimers = new HashSet<>(timers.keySet());
-        for (String openTimer : openTimers) {
-            endDuration(openTimer);
+        long endTicks = ticker.read();
+        while (timers.size() > 0) {
+            MetricKey openTimer = timers.lastKey();
+            addDurationHook(openTimer, endTicks - timers.stop(openTimer));
+        }
+        mergeChildren();
+        if (deferred != null) {
+            deferred.applyTo(this);
         }
 
         addProperty(StandardMetricNames.OPERATION.toString(), operation);
-        addProperty(StandardMetricNames.THREAD_NAME.toString(), Thread.currentThread().getName());
+        addProperty(StandardMetricNames.THREAD_NAME.toString(), ThreadIdentity.name(Thread.currentThread()));
         addTimestamp(StandardMetricNames.START_TIME.toString(), startTime);
-
-        Instant endTime = clock.instant();
-        Duration time = Duration.between(startTime, endTime);
-        addTimestamp(StandardMetricNames.END_TIME.toString(), endTime);
-        addDuration(StandardMetricNames.TIME.toString(), time);
+        addTimestamp(StandardMetricNames.END_TIME.toString(), clock.instant());
+        addDurationHook(StandardMetricNames.TIME.getKey(), endTicks - startTicks);
 
         closeHook();
 
@@ -82,6 +154,15 @@ public abstract class MetricRecorder implements AutoCloseable {
         return closed;
     }
 
+    /**
+     * Indicates whether the metrics recorded by this MetricRecorder will be kept. When this returns false, as it does
+     * for recorders from NoopMetricRecorderFactory or recorders not chosen by SamplingMetricRecorderFactory, callers
+     * can skip work done only to produce metrics. Values passed as suppliers are never evaluated in that case.
+     */
+    public final boolean isRecording() {
+        return isRecordingHook();
+    }
+
     /**
      * Records an arbitrary String value alongside the other metrics. This is useful to label this group of metrics.
      * If multiple properties are recorded with the same name, implementations *may* choose to throw an exception,
@@ -93,6 +174,19 @@ public abstract class MetricRecorder implements AutoCloseable {
         addPropertyHook(name, value);
     }
 
+    /**
+     * Records a property whose value is only produced when the recorder is closed, and only if isRecording() is true.
+     * This keeps expensive values off the request path when the recorder would discard them anyway.
+     * If the supplier throws an exception, the property is not recorded.
+     * Throws an IllegalStateException if the MetricRecorder is already closed.
+     */
+    public final void addProperty(String name, Supplier<String> value) {
+        verifyNotClosed();
+        if (isRecordingHook()) {
+            deferProperty(name, value);
+        }
+    }
+
     /**
      * Records a timestamp.
      * If multiple timestamps are recorded with the same name, implementations *may* choose to throw an exception,
@@ -110,29 +204,86 @@ public abstract class MetricRecorder implements AutoCloseable {
      * Throws an IllegalStateException if the MetricRecorder is already closed.
      */
     public final void addCount(String name, double count) {
+        addCount(MetricKey.of(name), count);
+    }
+
+    /**
+     * Records a count metric using a pre-resolved key, which avoids looking up the name on every call.
+     * If multiple counts are recorded with the same name, implementations should aggregate them.
+     * Throws an IllegalStateException if the MetricRecorder is already closed.
+     */
+    public final void addCount(MetricKey key, double count) {
         verifyNotClosed();
-        addCountHook(name, count);
+        addCountHook(key, count);
     }
 
     /**
-     * Records a specific duration metric.
+     * Records a count whose value is only produced when the recorder is closed, and only if isRecording() is true.
+     * If the supplier throws an exception, the count is not recorded.
+     * Throws an IllegalStateException if the MetricRecorder is already closed.
+     */
+    public final void addCount(String name, DoubleSupplier count) {
+        addCount(MetricKey.of(name), count);
+    }
+
+    /**
+     * Records a count whose value is only produced when the recorder is closed, using a pre-resolved key.
+     * Throws an IllegalStateException if the MetricRecorder is already closed.
+     */
+    public final void addCount(MetricKey key, DoubleSupplier count) {
+        verifyNotClosed();
+        if (isRecordingHook()) {
+            deferCount(key, count);
+        }
+    }
+
+    /**
+     * Records a specific duration metric. The duration must fit in a long of nanoseconds (roughly 292 years).
      * If multiple durations are recorded with the same name, implementations should aggregate them.
      * Throws an IllegalStateException if the MetricRecorder is already closed.
      */
     public final void addDuration(String name, Duration duration) {
+        addDurationNanos(MetricKey.of(name), duration.toNanos());
+    }
+
+    /**
+     * Records a specific duration metric using a pre-resolved key, which avoids looking up the name on every call.
+     * The duration must fit in a long of nanoseconds (roughly 292 years).
+     * If multiple durations are recorded with the same name, implementations should aggregate them.
+     * Throws an IllegalStateException if the MetricRecorder is already closed.
+     */
+    public final void addDuration(MetricKey key, Duration duration) {
+        addDurationNanos(key, duration.toNanos());
+    }
+
+    /**
+     * Records a duration metric specified in nanoseconds, without allocating a Duration.
+     * If multiple durations are recorded with the same name, implementations should aggregate them.
+     * Throws an IllegalStateException if the MetricRecorder is already closed.
+     */
+    public final void addDurationNanos(String name, long nanos) {
+        addDurationNanos(MetricKey.of(name), nanos);
+    }
+
+    /**
+     * Records a duration metric specified in nanoseconds using a pre-resolved key, without allocating a Duration.
+     * If multiple durations are recorded with the same name, implementations should aggregate them.
+     * Throws an IllegalStateException if the MetricRecorder is already closed.
+     */
+    public final void addDurationNanos(MetricKey key, long nanos) {
         verifyNotClosed();
-        addDurationHook(name, duration);
+        addDurationHook(key, nanos);
     }
 
     /**
      * Records the current time as a timestamp with the specified name.
      * Call endDuration() with the same name or close() to record the duration.
      *
-     * Returns the stored start time.
+     * Returns the start time according to the clock, or the epoch for a disabled recorder, which never reads it.
      * Throws an IllegalStateException if the MetricRecorder is already closed.
      */
     public final Instant startDuration(String name) {
-        return startDuration(name, clock.instant());
+        return startDuration(MetricKey.of(name));
     }
 
     /**
@@ -143,11 +294,31 @@ public abstract class MetricRecorder implements AutoCloseable {
      * Throws an IllegalStateException if the MetricRecorder is already closed.
      */
     public final Instant startDuration(String name, Instant startTime) {
+        return startDuration(MetricKey.of(name), startTime);
+    }
+
+    /**
+     * Records the current time as a timestamp with the specified key.
+     * Call endDuration() with the same key or close() to record the duration.
+     *
+     * Returns the start time according to the clock, or the epoch for a disabled recorder, which never reads it.
+     * Throws an IllegalStateException if the MetricRecorder is already closed.
+     */
+    public final Instant startDuration(MetricKey key) {
+        startTimer(key);
+        return recording ? clock.instant() : Instant.EPOCH;
+    }
+
+    /**
+     * Records the specified start time as a timestamp with the specified key.
+     * Call endDuration() with the same key or close() to record the duration.
+     *
+     * Returns the stored start time.
+     * Throws an IllegalStateException if the MetricRecorder is already closed.
+     */
+    public final Instant startDuration(MetricKey key, Instant startTime) {
         verifyNotClosed();
-        if (timers.containsKey(name)) {
-            throw new IllegalStateException("A timer named " + name + " is already open.");
-        }
-        timers.put(name, startTime);
+        openTimers().start(key, recording ? toTicks(startTime) : 0);
         return startTime;
     }
 
@@ -158,7 +329,7 @@ public abstract class MetricRecorder implements AutoCloseable {
      * Throws an IllegalStateException if the MetricRecorder is already closed.
      */
     public final Duration endDuration(String name) {
-        return endDuration(name, clock.instant());
+        return endDuration(MetricKey.of(name));
     }
 
     /**
@@ -168,14 +339,204 @@ public abstract class MetricRecorder implements AutoCloseable {
      * Throws an IllegalStateException if the MetricRecorder is already closed.
      */
     public final Duration endDuration(String name, Instant endTime) {
+        return endDuration(MetricKey.of(name), endTime);
+    }
+
+    /**
+     * When startDuration() was called with the same key, this method calls
+     * addDuration() using the duration between the recorded start time and the current time.
+     * Returns the measured duration.
+     * Throws an IllegalStateException if the MetricRecorder is already closed.
+     */
+    public final Duration endDuration(MetricKey key) {
+        return Duration.ofNanos(stopTimer(key));
+    }
+
+    /**
+     * When startDuration() was called with the same key, this method calls
+     * addDuration() using the duration between the recorded start time and the specified end time.
+     * Returns the measured duration.
+     * Throws an IllegalStateException if the MetricRecorder is already closed.
+     */
+    public final Duration endDuration(MetricKey key, Instant endTime) {
+        verifyNotClosed();
+        long start = timers.stop(key);
+        // Disabled recorders don't anchor their timers to the clock, so like the other timer methods this measures zero.
+        long nanos = recording ? toTicks(endTime) - start : 0;
+        addDurationHook(key, nanos);
+        return Duration.ofNanos(nanos);
+    }
+
+    /**
+     * Creates a recorder for a sub-operation of this one, for example one of several tasks run in parallel.
+     * Each child records independently (children may be used on different threads from each other and the parent),
+     * and when closed its metrics are merged into this recorder with names prefixed by the sub-operation and a dot,
+     * e.g. "FetchInventory.Time". The child's own Operation, ThreadName, StartTime and EndTime are not merged.
+     *
+     * Children must be closed before their parent; closing a child after its parent throws an IllegalStateException.
+     * When this recorder is closed, it also records the ChildTime and ChildCriticalPathTime durations
+     * (see StandardMetricNames) across every child.
+     *
+     * Throws an IllegalStateException if the MetricRecorder is already closed.
+     */
+    public final MetricRecorder newChild(String subOperation) {
+        if (isDiscarding()) {
+            return this;
+        }
+        verifyNotClosed();
+        if (!isRecordingHook()) {
+            return new DisabledChildMetricRecorder(this, subOperation);
+        }
+        return new ChildMetricRecorder(this, subOperation);
+    }
+
+    /**
+     * Allocation-free equivalent of startDuration(). Timers started with either method share the same names,
+     * and may be ended with either stopTimer() or endDuration().
+     *
+     * Returns the start tick read from the ticker.
+     * Throws an IllegalStateException if the MetricRecorder is already closed.
+     */
+    public final long startTimer(String name) {
+        return startTimer(MetricKey.of(name));
+    }
+
+    /**
+     * Allocation-free equivalent of startDuration(). Timers started with either method share the same names,
+     * and may be ended with either stopTimer() or endDuration().
+     *
+     * Returns the start tick read from the ticker.
+     * Throws an IllegalStateException if the MetricRecorder is already closed.
+     */
+    public final long startTimer(MetricKey key) {
         verifyNotClosed();
-        if (!timers.containsKey(name)) {
-            throw new IllegalStateException("No active timer named " + name);
+        long ticks = ticker.read();
+        openTimers().start(key, ticks);
+        return ticks;
+    }
+
+    /**
+     * Allocation-free equivalent of endDuration(): records the time elapsed since the timer with the same name
+     * was started.
+     *
+     * Returns the measured duration in nanoseconds.
+     * Throws an IllegalStateException if the MetricRecorder is already closed.
+     */
+    public final long stopTimer(String name) {
+        return stopTimer(MetricKey.of(name));
+    }
+
+    /**
+     * Allocation-free equivalent of endDuration(): records the time elapsed since the timer with the same key
+     * was started.
+     *
+     * Returns the measured duration in nanoseconds.
+     * Throws an IllegalStateException if the MetricRecorder is already closed.
+     */
+    public final long stopTimer(MetricKey key) {
+        verifyNotClosed();
+        long nanos = ticker.read() - timers.stop(key);
+        addDurationHook(key, nanos);
+        return nanos;
+    }
+
+    /**
+     * Discards the metrics of a closed recorder so it can be pooled for reuse.
+     * Only called by recorder pools, after close() has returned and the backend has consumed the metrics.
+     * Returns false if the implementation does not support reuse, in which case the recorder must not be pooled.
+     */
+    final boolean recycle() {
+        if (!closed) {
+            throw new IllegalStateException("Only closed MetricRecorders may be recycled.");
+        }
+        return resetHook();
+    }
+
+    /**
+     * Reopens a recycled recorder for a new operation. Pooled recorders are only ever driven through their hooks by
+     * the handle PooledMetricRecorderFactory gives out, which measures the operation's time itself, so the clock and
+     * ticker aren't read again here, and the recorder's own start time is left over from its first operation.
+     */
+    final void reinitialize(String newOperation, Clock newClock) {
+        if (!closed) {
+            throw new IllegalStateException("Only closed MetricRecorders may be reinitialized.");
+        }
+        if (timers != NO_TIMERS) {
+            timers.clear();
+        }
+        this.clock = newClock;
+        this.operation = newOperation;
+        this.closedChildren = null;
+        if (deferred != null) {
+            deferred.clear();
+        }
+        this.closed = false;
+    }
+
+    /**
+     * Queues the metrics of a closed child for merging when this recorder is closed. May be called from any thread.
+     * Throws an IllegalStateException if this recorder has already merged its children.
+     */
+    final void addClosedChild(ClosedChild child) {
+        while (true) {
+            ClosedChild head = closedChildren;
+            if (head == CHILDREN_MERGED) {
+                throw new IllegalStateException("The parent MetricRecorder is already closed.");
+            }
+            child.setNext(head);
+            if (CLOSED_CHILDREN.compareAndSet(this, head, child)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Throws an IllegalStateException if this recorder has already merged its children, for disabled children which
+     * have nothing to hand over but must still be closed before their parent.
+     */
+    final void verifyAcceptingChildren() {
+        if (closedChildren == CHILDREN_MERGED) {
+            throw new IllegalStateException("The parent MetricRecorder is already closed.");
+        }
+    }
+
+    /**
+     * Marks the recorder closed without recording anything, for pools which drive the hooks directly.
+     */
+    final void markClosed() {
+        closed = true;
+    }
+
+    /**
+     * Called at the start of close(), before the standard metrics are recorded, so recorders shared between threads
+     * can stop accepting metrics from every thread except the one closing them.
+     */
+    void prepareClose() {}
+
+    /**
+     * Keeps a property value supplier until close(). ConcurrentMetricRecorder overrides this and deferCount() to
+     * guard the deferred values against other threads.
+     */
+    void deferProperty(String name, Supplier<String> value) {
+        deferredValues().addProperty(name, value);
+    }
+
+    void deferCount(MetricKey key, DoubleSupplier count) {
+        deferredValues().addCount(key, count);
+    }
+
+    final DeferredValues deferredValues() {
+        if (deferred == null) {
+            deferred = new DeferredValues();
         }
-        Instant startTime = timers.remove(name);
-        Duration duration = Duration.between(startTime, endTime);
-        addDuration(name, duration);
-        return duration;
+        return deferred;
+    }
+
+    /**
+     * Returns true for the shared DiscardingMetricRecorder, which is never closed and has no children.
+     */
+    boolean isDiscarding() {
+        return false;
     }
 
     /**
@@ -185,6 +546,29 @@ public abstract class MetricRecorder implements AutoCloseable {
      */
     protected void closeHook() {}
 
+    /**
+     * Hook method for implementations that support being reused by PooledMetricRecorderFactory.
+     * Implementations should discard all recorded metrics and any other per-operation state, and return true;
+     * the base class resets its own state (operation, clock and timers) when the recorder is reused.
+     * This is only called once the recorder has been closed and closeHook() has returned, so anything closeHook()
+     * handed off to be published later must not share state that is cleared here.
+     *
+     * Default is to return false, which means the recorder will never be reused.
+     */
+    protected boolean resetHook() {
+        return false;
+    }
+
+    /**
+     * Hook method for implementations that discard what is recorded, so that callers and close() can skip producing
+     * values nobody will see. Wrappers should return their delegate's answer.
+     *
+     * Default is to return false for recorders constructed as disabled, and true otherwise.
+     */
+    protected boolean isRecordingHook() {
+        return recording;
+    }
+
     /**
      * Hook method for implementation-specific behavior.
      *
@@ -206,6 +590,16 @@ public abstract class MetricRecorder implements AutoCloseable {
      */
     protected void addCountHook(String name, double count) {}
 
+    /**
+     * Hook method for implementations that can make use of pre-resolved keys, for example to index arrays by the
+     * key's id instead of hashing the name. All count metrics pass through this hook.
+     *
+     * Default is to call addCountHook() with the key's name.
+     */
+    protected void addCountHook(MetricKey key, double count) {
+        addCountHook(key.getName(), count);
+    }
+
     /**
      * Hook method for implementation-specific behavior.
      *
@@ -213,6 +607,26 @@ public abstract class MetricRecorder implements AutoCloseable {
      */
     protected void addDurationHook(String name, Duration duration) {}
 
+    /**
+     * Hook method for implementations that can make use of pre-resolved keys, for example to index arrays by the
+     * key's id instead of hashing the name.
+     *
+     * Default is to call addDurationHook() with the key's name.
+     */
+    protected void addDurationHook(MetricKey key, Duration duration) {
+        addDurationHook(key.getName(), duration);
+    }
+
+    /**
+     * Hook method for implementations that can store durations as primitive nanoseconds; overriding this lets
+     * timed spans be recorded without allocating. All duration metrics pass through this hook.
+     *
+     * Default is to call addDurationHook() with the equivalent Duration.
+     */
+    protected void addDurationHook(MetricKey key, long nanos) {
+        addDurationHook(key, Duration.ofNanos(nanos));
+    }
+
     /**
      * Allows child classes to retrieve the operation name if needed.
      */
@@ -227,6 +641,105 @@ public abstract class MetricRecorder implements AutoCloseable {
         return clock;
     }
 
+    /**
+     * Allows child classes to retrieve the ticker if needed.
+     */
+    protected final Ticker getTicker() {
+        return ticker;
+    }
+
+    /**
+     * Converts a wall-clock instant into the ticker's timeline, anchored at the time this recorder was created.
+     */
+    private long toTicks(Instant time) {
+        long seconds = Math.subtractExact(time.getEpochSecond(), startTime.getEpochSecond());
+        long nanos = time.getNano() - startTime.getNano();
+        return startTicks + Math.addExact(Math.multiplyExact(seconds, NANOS_PER_SECOND), nanos);
+    }
+
+    private TimerTable openTimers() {
+        if (timers == NO_TIMERS) {
+            timers = new TimerTable();
+        }
+        return timers;
+    }
+
+    private void mergeChildren() {
+        ClosedChild child = CLOSED_CHILDREN.getAndSet(this, CHILDREN_MERGED);
+        if (child == null) {
+            return;
+        }
+
+        int count = 0;
+        for (ClosedChild c = child; c != null; c = c.getNext()) {
+            count++;
+        }
+        long[] starts = new long[count];
+        long[] ends = new long[count];
+        long childTime = 0;
+        int index = 0;
+        for (ClosedChild c = child; c != null; c = c.getNext()) {
+            mergeChild(c.getPrefix(), c.getSnapshot());
+            starts[index] = c.getStartTicks();
+            ends[index] = c.getEndTicks();
+            childTime += c.getEndTicks() - c.getStartTicks();
+            index++;
+        }
+        addDurationHook(StandardMetricNames.CHILD_TIME.getKey(), childTime);
+        addDurationHook(StandardMetricNames.CHILD_CRITICAL_PATH_TIME.getKey(), unionLength(starts, ends));
+    }
+
+    private void mergeChild(PrefixedKeys prefix, MetricSnapshot snapshot) {
+        for (int i = 0; i < snapshot.getNumProperties(); i++) {
+            MetricKey key = snapshot.getPropertyKey(i);
+            if (key != StandardMetricNames.OPERATION.getKey() && key != StandardMetricNames.THREAD_NAME.getKey()) {
+                addPropertyHook(prefix.prefixed(key).getName(), snapshot.getPropertyValue(i));
+            }
+        }
+        for (int i = 0; i < snapshot.getNumTimestamps(); i++) {
+            MetricKey key = snapshot.getTimestampKey(i);
+            if (key != StandardMetricNames.START_TIME.getKey() && key != StandardMetricNames.END_TIME.getKey()) {
+                addTimestampHook(prefix.prefixed(key).getName(), snapshot.getTimestampValue(i));
+            }
+        }
+        for (int i = 0; i < snapshot.getNumCounts(); i++) {
+            addCountHook(prefix.prefixed(snapshot.getCountKey(i)), snapshot.getCountValue(i));
+        }
+        for (int i = 0; i < snapshot.getNumDurations(); i++) {
+            addDurationHook(prefix.prefixed(snapshot.getDurationKey(i)), snapshot.getDurationNanos(i));
+        }
+    }
+
+    /**
+     * Returns the total length covered by the union of the intervals [starts[i], ends[i]).
+     * Sorting the starts and ends independently is enough to sweep across the interval boundaries in order.
+     */
+    private static long unionLength(long[] starts, long[] ends) {
+        Arrays.sort(starts);
+        Arrays.sort(ends);
+        long covered = 0;
+        long coverStart = 0;
+        int active = 0;
+        int nextStart = 0;
+        int nextEnd = 0;
+        while (nextEnd < ends.length) {
+            if (nextStart < starts.length && starts[nextStart] < ends[nextEnd]) {
+                if (active == 0) {
+                    coverStart = starts[nextStart];
+                }
+                active++;
+                nextStart++;
+            } else {
+                active--;
+                if (active == 0) {
+                    covered += ends[nextEnd] - coverStart;
+                }
+                nextEnd++;
+            }
+        }
+        return covered;
+    }
+
     private void verifyNotClosed() {
         if (closed) {
             throw new IllegalStateException("MetricRecorder is already closed.");
@@ -0,0 +1,381 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * An immutable, flat copy of the metrics recorded by a MetricRecorder, with repeated counts and durations already
+ * aggregated. Each metric type is stored as parallel arrays of keys and values, with counts as doubles and
+ * durations as nanoseconds, so serializing a snapshot involves no boxing or map iteration.
+ *
+ * Entries of each type are kept in the order their names were first recorded. Snapshots are safe to share
+ * between threads.
+ */
+public final class MetricSnapshot implements RecordedMetrics {
+
+    private static final String[] NO_STRINGS = new String[0];
+    private static final Instant[] NO_INSTANTS = new Instant[0];
+    private static final double[] NO_DOUBLES = new double[0];
+    private static final long[] NO_LONGS = new long[0];
+
+    private static final MetricSnapshot EMPTY = new Builder().build();
+
+    private final MetricKey[] propertyKeys;
+    private final String[] propertyValues;
+    private final MetricKey[] timestampKeys;
+    private final Instant[] timestampValues;
+    private final MetricKey[] countKeys;
+    private final double[] countValues;
+    private final MetricKey[] durationKeys;
+    private final long[] durationNanos;
+
+    private MetricSnapshot(Builder builder) {
+        this.propertyKeys = builder.properties.copyKeys();
+        this.propertyValues = propertyKeys.length == 0 ? NO_STRINGS
+                : Arrays.copyOf(builder.propertyValues, propertyKeys.length);
+        this.timestampKeys = builder.timestamps.copyKeys();
+        this.timestampValues = timestampKeys.length == 0 ? NO_INSTANTS
+                : Arrays.copyOf(builder.timestampValues, timestampKeys.length);
+        this.countKeys = builder.counts.copyKeys();
+        this.countValues = countKeys.length == 0 ? NO_DOUBLES
+                : Arrays.copyOf(builder.countValues, countKeys.length);
+        this.durationKeys = builder.durations.copyKeys();
+        this.durationNanos = durationKeys.length == 0 ? NO_LONGS
+                : Arrays.copyOf(builder.durationNanos, durationKeys.length);
+    }
+
+    /**
+     * Returns a snapshot with no metrics.
+     */
+    public static MetricSnapshot empty() {
+        return EMPTY;
+    }
+
+    /**
+     * The number of properties in this snapshot.
+     */
+    @Override
+    public int getNumProperties() {
+        return propertyKeys.length;
+    }
+
+    /**
+     * The key of the property at the specified index.
+     */
+    @Override
+    public MetricKey getPropertyKey(int index) {
+        return propertyKeys[index];
+    }
+
+    /**
+     * The value of the property at the specified index.
+     */
+    @Override
+    public String getPropertyValue(int index) {
+        return propertyValues[index];
+    }
+
+    /**
+     * Returns the value of the property with the specified name, or null if there is none.
+     */
+    public String getProperty(String name) {
+        int index = indexOf(propertyKeys, name);
+        return index < 0 ? null : propertyValues[index];
+    }
+
+    /**
+     * The number of timestamps in this snapshot.
+     */
+    @Override
+    public int getNumTimestamps() {
+        return timestampKeys.length;
+    }
+
+    /**
+     * The key of the timestamp at the specified index.
+     */
+    @Override
+    public MetricKey getTimestampKey(int index) {
+        return timestampKeys[index];
+    }
+
+    /**
+     * The value of the timestamp at the specified index.
+     */
+    @Override
+    public Instant getTimestampValue(int index) {
+        return timestampValues[index];
+    }
+
+    /**
+     * Returns the timestamp with the specified name, or null if there is none.
+     */
+    public Instant getTimestamp(String name) {
+        int index = indexOf(timestampKeys, name);
+        return index < 0 ? null : timestampValues[index];
+    }
+
+    /**
+     * The number of counts in this snapshot.
+     */
+    @Override
+    public int getNumCounts() {
+        return countKeys.length;
+    }
+
+    /**
+     * The key of the count at the specified index.
+     */
+    @Override
+    public MetricKey getCountKey(int index) {
+        return countKeys[index];
+    }
+
+    /**
+     * The aggregated value of the count at the specified index.
+     */
+    @Override
+    public double getCountValue(int index) {
+        return countValues[index];
+    }
+
+    /**
+     * Returns the aggregated count with the specified name, or null if there is none.
+     */
+    public Double getCount(String name) {
+        int index = indexOf(countKeys, name);
+        return index < 0 ? null : countValues[index];
+    }
+
+    /**
+     * The number of durations in this snapshot.
+     */
+    @Override
+    public int getNumDurations() {
+        return durationKeys.length;
+    }
+
+    /**
+     * The key of the duration at the specified index.
+     */
+    @Override
+    public MetricKey getDurationKey(int index) {
+        return durationKeys[index];
+    }
+
+    /**
+     * The aggregated value of the duration at the specified index, in nanoseconds.
+     */
+    @Override
+    public long getDurationNanos(int index) {
+        return durationNanos[index];
+    }
+
+    /**
+     * Returns the aggregated duration with the specified name, or null if there is none.
+     */
+    public Duration getDuration(String name) {
+        int index = indexOf(durationKeys, name);
+        return index < 0 ? null : Duration.ofNanos(durationNanos[index]);
+    }
+
+    @Override
+    public MetricSnapshot toSnapshot() {
+        return this;
+    }
+
+    private static int indexOf(MetricKey[] keys, String name) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i].getName().equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Accumulates metrics for a snapshot. Counts and durations recorded more than once with the same key are summed,
+     * and properties and timestamps recorded more than once with the same key keep the last value.
+     *
+     * Values are stored in primitive arrays indexed through an open-addressing table keyed by MetricKey id, so
+     * recording a metric neither hashes its name nor boxes its value. A builder can be cleared and reused.
+     *
+     * Not thread-safe.
+     */
+    public static final class Builder implements RecordedMetrics {
+
+        private final MetricKeyIndex properties = new MetricKeyIndex();
+        private String[] propertyValues = NO_STRINGS;
+        private final MetricKeyIndex timestamps = new MetricKeyIndex();
+        private Instant[] timestampValues = NO_INSTANTS;
+        private final MetricKeyIndex counts = new MetricKeyIndex();
+        private double[] countValues = NO_DOUBLES;
+        private final MetricKeyIndex durations = new MetricKeyIndex();
+        private long[] durationNanos = NO_LONGS;
+
+        /**
+         * Records a property, replacing any previous value with the same key.
+         */
+        public Builder putProperty(MetricKey key, String value) {
+            int position = properties.insert(key);
+            if (position >= propertyValues.length) {
+                propertyValues = Arrays.copyOf(propertyValues, properties.capacity());
+            }
+            propertyValues[position] = value;
+            return this;
+        }
+
+        /**
+         * Records a timestamp, replacing any previous value with the same key.
+         */
+        public Builder putTimestamp(MetricKey key, Instant time) {
+            int position = timestamps.insert(key);
+            if (position >= timestampValues.length) {
+                timestampValues = Arrays.copyOf(timestampValues, timestamps.capacity());
+            }
+            timestampValues[position] = time;
+            return this;
+        }
+
+        /**
+         * Adds to the count with the specified key.
+         */
+        public Builder addCount(MetricKey key, double count) {
+            int size = counts.size();
+            int position = counts.insert(key);
+            if (position >= countValues.length) {
+                countValues = Arrays.copyOf(countValues, counts.capacity());
+            }
+            if (position == size) {
+                countValues[position] = count;
+            } else {
+                countValues[position] += count;
+            }
+            return this;
+        }
+
+        /**
+         * Adds to the duration with the specified key.
+         */
+        public Builder addDurationNanos(MetricKey key, long nanos) {
+            int size = durations.size();
+            int position = durations.insert(key);
+            if (position >= durationNanos.length) {
+                durationNanos = Arrays.copyOf(durationNanos, durations.capacity());
+            }
+            if (position == size) {
+                durationNanos[position] = nanos;
+            } else {
+                durationNanos[position] += nanos;
+            }
+            return this;
+        }
+
+        /**
+         * The number of properties recorded so far. The builder's accessors are RecordedMetrics, so that backends can
+         * read what has been recorded without building a snapshot.
+         */
+        @Override
+        public int getNumProperties() {
+            return properties.size();
+        }
+
+        @Override
+        public MetricKey getPropertyKey(int index) {
+            return properties.keyAt(index);
+        }
+
+        @Override
+        public String getPropertyValue(int index) {
+            return propertyValues[index];
+        }
+
+        @Override
+        public int getNumTimestamps() {
+            return timestamps.size();
+        }
+
+        @Override
+        public MetricKey getTimestampKey(int index) {
+            return timestamps.keyAt(index);
+        }
+
+        @Override
+        public Instant getTimestampValue(int index) {
+            return timestampValues[index];
+        }
+
+        @Override
+        public int getNumCounts() {
+            return counts.size();
+        }
+
+        @Override
+        public MetricKey getCountKey(int index) {
+            return counts.keyAt(index);
+        }
+
+        @Override
+        public double getCountValue(int index) {
+            return countValues[index];
+        }
+
+        @Override
+        public int getNumDurations() {
+            return durations.size();
+        }
+
+        @Override
+        public MetricKey getDurationKey(int index) {
+            return durations.keyAt(index);
+        }
+
+        @Override
+        public long getDurationNanos(int index) {
+            return durationNanos[index];
+        }
+
+        /**
+         * Discards everything recorded so far, keeping the allocated tables for reuse.
+         */
+        public Builder clear() {
+            Arrays.fill(propertyValues, 0, properties.size(), null);
+            Arrays.fill(timestampValues, 0, timestamps.size(), null);
+            properties.clear();
+            timestamps.clear();
+            counts.clear();
+            durations.clear();
+            return this;
+        }
+
+        /**
+         * Returns an immutable snapshot of everything recorded so far. The builder is unaffected, and may continue
+         * to be used.
+         */
+        public MetricSnapshot build() {
+            return new MetricSnapshot(this);
+        }
+
+        @Override
+        public MetricSnapshot toSnapshot() {
+            return build();
+        }
+    }
+}
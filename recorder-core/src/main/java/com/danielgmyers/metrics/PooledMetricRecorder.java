@@ -0,0 +1,74 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+import java.time.Clock;
+import java.time.Instant;
+
+/**
+ * The handle PooledMetricRecorderFactory gives out for each newMetricRecorder() call. The handle is cheap and never
+ * reused, so its own closed flag keeps use-after-close detection working even after the pooled backend recorder it
+ * forwards to has been handed to another operation. Every hook is forwarded straight to the backend recorder's hooks,
+ * so the standard metrics are only recorded once, by this handle.
+ */
+final class PooledMetricRecorder extends MetricRecorder {
+
+    private final MetricRecorder backend;
+    private final RecorderPool pool;
+
+    PooledMetricRecorder(String operation, Clock clock, MetricRecorder backend, RecorderPool pool) {
+        // A handle for a disabled backend is disabled too, so it never reads the clock either.
+        super(operation, clock, backend.isRecordingHook());
+        this.backend = backend;
+        this.pool = pool;
+    }
+
+    @Override
+    protected boolean isRecordingHook() {
+        return backend.isRecordingHook();
+    }
+
+    @Override
+    protected void addPropertyHook(String name, String value) {
+        backend.addPropertyHook(name, value);
+    }
+
+    @Override
+    protected void addTimestampHook(String name, Instant time) {
+        backend.addTimestampHook(name, time);
+    }
+
+    @Override
+    protected void addCountHook(MetricKey key, double count) {
+        backend.addCountHook(key, count);
+    }
+
+    @Override
+    protected void addDurationHook(MetricKey key, long nanos) {
+        backend.addDurationHook(key, nanos);
+    }
+
+    @Override
+    protected void closeHook() {
+        backend.closeHook();
+        backend.markClosed();
+        // The backend has consumed its metrics once closeHook() returns, so it can go back to the pool.
+        if (backend.recycle()) {
+            pool.release(backend);
+        }
+    }
+}
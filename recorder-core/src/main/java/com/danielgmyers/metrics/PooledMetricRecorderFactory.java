@@ -0,0 +1,80 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+import java.time.Clock;
+
+/**
+ * Wraps another factory, reusing the recorders it produces instead of allocating new ones for every operation.
+ * This is opt-in, and only recorders which support reuse (see MetricRecorder.resetHook()) are pooled;
+ * recorders from other factories are simply used once, as if the pool weren't there.
+ *
+ * Each call to newMetricRecorder() returns a lightweight handle that forwards to a pooled recorder. Handles are not
+ * reused, so recording into a handle after it has been closed still throws an IllegalStateException, even if the
+ * recorder behind it is already serving another operation. A pooled recorder is returned to the pool as soon as its
+ * closeHook() has returned, so this should only wrap backends which are done with their recorders by then.
+ * Recorders which publish a copy of what they recorded are safe to pool, such as those from
+ * PublishingMetricRecorderFactory, CompositeMetricRecorderFactory, TailSamplingMetricRecorderFactory,
+ * NoopMetricRecorderFactory and the EMF, StatsD and Micrometer factories. InMemoryMetricRecorder, which is read after
+ * it has been closed, opts out of pooling, and so do recorders which don't override resetHook().
+ *
+ * Each handle costs a small object of its own, and only allocates a timer table if a timer is started on it, so
+ * pooling pays off for backends which allocate more than that per operation.
+ *
+ * Pooled recorders are kept in stripes of fixed size, so the pool's memory is bounded and acquiring or releasing a
+ * recorder is lock-free. Each thread uses the stripe picked by hashing its thread id, so threads sharing a stripe
+ * compete for its recorders, however many processors there are.
+ */
+public class PooledMetricRecorderFactory implements MetricRecorderFactory {
+
+    private static final int DEFAULT_RECORDERS_PER_STRIPE = 8;
+
+    private final MetricRecorderFactory delegate;
+    private final RecorderPool pool;
+
+    /**
+     * Creates a pool with as many stripes as available processors (rounded up to a power of two), each holding up to
+     * 8 idle recorders. Threads are assigned to stripes by thread id, not by the processor they run on.
+     */
+    public PooledMetricRecorderFactory(MetricRecorderFactory delegate) {
+        this(delegate, defaultStripeCount(), DEFAULT_RECORDERS_PER_STRIPE);
+    }
+
+    /**
+     * Creates a pool with the specified number of stripes, which must be a power of two,
+     * each holding up to recordersPerStripe idle recorders.
+     */
+    public PooledMetricRecorderFactory(MetricRecorderFactory delegate, int stripes, int recordersPerStripe) {
+        this.delegate = delegate;
+        this.pool = new RecorderPool(stripes, recordersPerStripe);
+    }
+
+    @Override
+    public MetricRecorder newMetricRecorder(String operation, Clock clock) {
+        MetricRecorder backend = pool.acquire();
+        if (backend == null) {
+            backend = delegate.newMetricRecorder(operation, clock);
+        } else {
+            backend.reinitialize(operation, clock);
+        }
+        return new PooledMetricRecorder(operation, clock, backend, pool);
+    }
+
+    private static int defaultStripeCount() {
+        return Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+import java.time.Instant;
+
+/**
+ * Read-only access to a set of aggregated metrics, as parallel lists of keys and values for each metric type.
+ * MetricSnapshot implements this, and so does MetricSnapshot.Builder, so a serializer can encode what a recorder
+ * has recorded straight from its builder without building a snapshot first.
+ */
+public interface RecordedMetrics {
+
+    /**
+     * The number of properties.
+     */
+    int getNumProperties();
+
+    /**
+     * The key of the property at the specified index.
+     */
+    MetricKey getPropertyKey(int index);
+
+    /**
+     * The value of the property at the specified index.
+     */
+    String getPropertyValue(int index);
+
+    /**
+     * The number of timestamps.
+     */
+    int getNumTimestamps();
+
+    /**
+     * The key of the timestamp at the specified index.
+     */
+    MetricKey getTimestampKey(int index);
+
+    /**
+     * The value of the timestamp at the specified index.
+     */
+    Instant getTimestampValue(int index);
+
+    /**
+     * The number of counts.
+     */
+    int getNumCounts();
+
+    /**
+     * The key of the count at the specified index.
+     */
+    MetricKey getCountKey(int index);
+
+    /**
+     * The aggregated value of the count at the specified index.
+     */
+    double getCountValue(int index);
+
+    /**
+     * The number of durations.
+     */
+    int getNumDurations();
+
+    /**
+     * The key of the duration at the specified index.
+     */
+    MetricKey getDurationKey(int index);
+
+    /**
+     * The aggregated value of the duration at the specified index, in nanoseconds.
+     */
+    long getDurationNanos(int index);
+
+    /**
+     * Returns these metrics as an immutable snapshot, which may be kept or handed to another thread. A MetricSnapshot
+     * returns itself.
+     */
+    MetricSnapshot toSnapshot();
+}
@@ -0,0 +1,77 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free pool of idle MetricRecorders, split into stripes so threads mostly touch their own slots.
+ * Each thread only looks in the stripe its id maps to; if that stripe is empty (or full, on release) the caller
+ * simply allocates a fresh recorder (or drops the released one), so the pool never blocks and never allocates.
+ */
+final class RecorderPool {
+
+    private final AtomicReferenceArray<MetricRecorder> slots;
+    private final int stripeMask;
+    private final int slotsPerStripe;
+
+    RecorderPool(int stripes, int slotsPerStripe) {
+        if (stripes < 1 || Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("The stripe count must be a positive power of two.");
+        }
+        if (slotsPerStripe < 1) {
+            throw new IllegalArgumentException("Each stripe must have at least one slot.");
+        }
+        this.slots = new AtomicReferenceArray<>(stripes * slotsPerStripe);
+        this.stripeMask = stripes - 1;
+        this.slotsPerStripe = slotsPerStripe;
+    }
+
+    /**
+     * Removes and returns an idle recorder from the current thread's stripe, or null if there are none.
+     */
+    MetricRecorder acquire() {
+        int start = stripeStart();
+        for (int i = start; i < start + slotsPerStripe; i++) {
+            MetricRecorder recorder = slots.get(i);
+            if (recorder != null && slots.compareAndSet(i, recorder, null)) {
+                return recorder;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Offers an idle recorder to the current thread's stripe. Returns false if the stripe is full.
+     */
+    boolean release(MetricRecorder recorder) {
+        int start = stripeStart();
+        for (int i = start; i < start + slotsPerStripe; i++) {
+            if (slots.get(i) == null && slots.compareAndSet(i, null, recorder)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int stripeStart() {
+        long id = Thread.currentThread().getId();
+        // Mix the id so consecutively-numbered threads don't collide on small masks after the multiply.
+        int stripe = (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & stripeMask;
+        return stripe * slotsPerStripe;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Orders the recording threads of a ConcurrentMetricRecorder against close().
+ *
+ * Each write enters the gate, and close() seals it: sealing waits for every write already inside the gate to exit,
+ * and after that only the closing thread may enter. So each write either happens-before the metrics are handed
+ * to the backend, or is rejected with an IllegalStateException; none are silently lost.
+ *
+ * Writers only read the sealed flag. Each one counts itself in, then re-reads the sealed flag, and backs out if
+ * the gate was sealed in between; the closing thread sets the flag, then waits for the count to drain. The count is
+ * a single field until two writers collide on it, after which it is striped across padded counters, like a
+ * LongAdder. Unlike a LongAdder, enter() returns the stripe it counted in, so that exit() counts out of the same one;
+ * that keeps each stripe's count exact, so a zero sum really does mean no writes are in progress.
+ */
+final class RecordingGate {
+
+    /**
+     * Returned by enter() to the closing thread, which writes without entering and must not call exit().
+     */
+    static final int CLOSING = -1;
+
+    private static final int BASE = 0;
+    private static final int STRIPES = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+    // Each stripe's counter is 16 longs (128 bytes) from the next, so stripes never share a cache line.
+    private static final int STRIDE = 16;
+
+    private static final AtomicLongFieldUpdater<RecordingGate> BASE_WRITERS =
+        AtomicLongFieldUpdater.newUpdater(RecordingGate.class, "baseWriters");
+    private static final AtomicReferenceFieldUpdater<RecordingGate, AtomicLongArray> STRIPED_WRITERS =
+        AtomicReferenceFieldUpdater.newUpdater(RecordingGate.class, AtomicLongArray.class, "stripedWriters");
+    private static final AtomicIntegerFieldUpdater<RecordingGate> SEALED =
+        AtomicIntegerFieldUpdater.newUpdater(RecordingGate.class, "sealed");
+
+    private volatile long baseWriters;
+    private volatile AtomicLongArray stripedWriters;
+    private volatile int sealed;
+    private volatile Thread closingThread;
+
+    /**
+     * Enters the gate before a write.
+     *
+     * @return the token to pass to exit() once the write is done, or CLOSING if the caller is the thread closing the
+     *         recorder, which may keep writing without entering.
+     * @throws IllegalStateException if the gate has been sealed by another thread.
+     */
+    int enter() {
+        if (sealed != 0) {
+            return closingOrReject();
+        }
+        int token = countIn();
+        if (sealed != 0) {
+            // Sealed after the check above; seal() may not have seen this writer, so back out.
+            exit(token);
+            return closingOrReject();
+        }
+        return token;
+    }
+
+    void exit(int token) {
+        if (token == BASE) {
+            BASE_WRITERS.decrementAndGet(this);
+        } else {
+            stripedWriters.decrementAndGet((token - 1) * STRIDE);
+        }
+    }
+
+    boolean isSealed() {
+        return sealed != 0;
+    }
+
+    /**
+     * Stops other threads from entering, then waits for the writes already in progress to finish.
+     * Throws an IllegalStateException if the gate was already sealed.
+     */
+    void seal() {
+        if (!SEALED.compareAndSet(this, 0, 1)) {
+            throw new IllegalStateException("MetricRecorder is already closed.");
+        }
+        closingThread = Thread.currentThread();
+        while (writers() != 0) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private int closingOrReject() {
+        if (closingThread == Thread.currentThread()) {
+            return CLOSING;
+        }
+        throw new IllegalStateException("MetricRecorder is already closed.");
+    }
+
+    private int countIn() {
+        AtomicLongArray striped = stripedWriters;
+        if (striped == null) {
+            long current = baseWriters;
+            if (BASE_WRITERS.compareAndSet(this, current, current + 1)) {
+                return BASE;
+            }
+            striped = stripe();
+        }
+        int stripe = stripeFor(Thread.currentThread());
+        striped.incrementAndGet(stripe * STRIDE);
+        return stripe + 1;
+    }
+
+    private AtomicLongArray stripe() {
+        AtomicLongArray striped = new AtomicLongArray(STRIPES * STRIDE);
+        if (STRIPED_WRITERS.compareAndSet(this, null, striped)) {
+            return striped;
+        }
+        return stripedWriters;
+    }
+
+    private long writers() {
+        long writers = baseWriters;
+        AtomicLongArray striped = stripedWriters;
+        if (striped != null) {
+            for (int i = 0; i < STRIPES; i++) {
+                writers += striped.get(i * STRIDE);
+            }
+        }
+        return writers;
+    }
+
+    private static int stripeFor(Thread thread) {
+        // Spread sequential thread ids across the stripes.
+        return (int) ((thread.getId() * 0x9E3779B97F4A7C15L) >>> 32) & (STRIPES - 1);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+import java.time.Clock;
+import java.time.Instant;
+
+/**
+ * A MetricRecorder which aggregates everything recorded into a MetricSnapshot.Builder, and hands a read-only view of
+ * it to publish() when it's closed. Backends which only need the final set of metrics can extend this and implement
+ * publish(), instead of implementing each of the add hooks and their own aggregation; a serializer can encode
+ * straight from the view, and a backend which keeps the metrics can take an immutable copy with toSnapshot().
+ *
+ * Subclasses which need to see individual values may override the add hooks, as long as they call the superclass's.
+ * Recorders are reusable by PooledMetricRecorderFactory. Subclasses with their own per-operation state should
+ * override resetHook() to discard it, and return the result of calling super.resetHook().
+ */
+public abstract class SnapshotMetricRecorder extends MetricRecorder {
+
+    private final MetricSnapshot.Builder builder = new MetricSnapshot.Builder();
+
+    protected SnapshotMetricRecorder(String operation, Clock clock) {
+        super(operation, clock);
+    }
+
+    protected SnapshotMetricRecorder(String operation, Clock clock, Ticker ticker) {
+        super(operation, clock, ticker);
+    }
+
+    /**
+     * Called once when the recorder is closed, with everything it recorded, including the standard metrics added
+     * by close(). The metrics are this recorder's own buffers rather than a copy, and are only valid until this
+     * returns; call toSnapshot() on them for an immutable snapshot which may be kept or handed to another thread.
+     */
+    protected abstract void publish(RecordedMetrics metrics);
+
+    /**
+     * Returns a read-only view of what has been recorded so far, which changes as more is recorded.
+     */
+    protected final RecordedMetrics getRecordedMetrics() {
+        return builder;
+    }
+
+    @Override
+    protected final void closeHook() {
+        publish(builder);
+    }
+
+    @Override
+    protected boolean resetHook() {
+        // Anything kept from the last publish() is a copy, so the builder can be reused straight away.
+        builder.clear();
+        return true;
+    }
+
+    @Override
+    protected void addPropertyHook(String name, String value) {
+        builder.putProperty(MetricKey.of(name), value);
+    }
+
+    @Override
+    protected void addTimestampHook(String name, Instant time) {
+        builder.putTimestamp(MetricKey.of(name), time);
+    }
+
+    @Override
+    protected void addCountHook(MetricKey key, double count) {
+        builder.addCount(key, count);
+    }
+
+    @Override
+    protected void addDurationHook(MetricKey key, long nanos) {
+        builder.addDurationNanos(key, nanos);
+    }
+}
@@ -18,20 +18,34 @@ package com.danielgmyers.metrics;
 
 /**
  * An enum representing a few standard metric names. Metrics with these names will be emitted by all MetricRecorder
- * implementations. When the MetricRecorder's close() method returns, the following metrics will have been recorded:
+ * implementations. When the MetricRecorder's close() method returns, the following metrics will have been recorded,
+ * unless the recorder's isRecording() method returns false:
  *
  * The Operation property will contain the value that was passed to the MetricRecorderFactory.newMetricRecorder() method.
  * The ThreadName property will contain the name of the current thread at the time the MetricRecorder is closed.
+ * Threads without a name, such as unnamed virtual threads, are identified by id instead: "virtual-123" for a
+ * virtual thread and "thread-123" otherwise.
  *
  * The StartTime timestamp will contain the Instant at which the MetricRecorder object was created.
  * The EndTime timestamp will contain the Instant at which the MetricRecorder object's close() method was called.
  *
  * The Time duration will contain the duration between the StartTime and EndTime timestamps.
+ *
+ * Recorders produced by SamplingMetricRecorderFactory also carry a SampleWeight property: the number of operations
+ * this recorder stands for, i.e. the inverse of the probability with which it was sampled.
+ *
+ * If any child recorders (see MetricRecorder.newChild()) were closed before their parent, the parent also records:
+ * The ChildTime duration will contain the sum of the children's Time durations.
+ * The ChildCriticalPathTime duration will contain the wall-clock time during which at least one child was running.
+ *
+ * If any value passed as a supplier threw an exception when it was evaluated, the DeferredValueFailures count will
+ * contain the number of values which were skipped.
  */
 public enum StandardMetricNames {
     // Properties
     OPERATION("Operation"),
     THREAD_NAME("ThreadName"),
+    SAMPLE_WEIGHT("SampleWeight"),
 
     // Timestamps
     START_TIME("StartTime"),
@@ -39,14 +53,26 @@ public enum StandardMetricNames {
 
     // Durations
     TIME("Time"),
+    CHILD_TIME("ChildTime"),
+    CHILD_CRITICAL_PATH_TIME("ChildCriticalPathTime"),
 
-    // Counts - none for now
+    // Counts
+    DEFERRED_VALUE_FAILURES("DeferredValueFailures"),
     ;
 
     private final String name;
+    private final MetricKey key;
 
     StandardMetricNames(String name) {
         this.name = name;
+        this.key = MetricKey.of(name);
+    }
+
+    /**
+     * The interned key for this metric name.
+     */
+    public MetricKey getKey() {
+        return key;
     }
 
     @Override
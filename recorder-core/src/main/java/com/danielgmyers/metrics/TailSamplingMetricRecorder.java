@@ -0,0 +1,91 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+import java.time.Clock;
+
+/**
+ * The recorder TailSamplingMetricRecorderFactory gives out. Metrics are buffered by SnapshotMetricRecorder, and only
+ * when the recorder is closed (and its Time and failure counts are known) is a delegate recorder created and fed the
+ * buffered metrics; dropped recorders never touch the delegate.
+ *
+ * Values passed as suppliers are evaluated whether or not the recorder is kept, since the decision can depend on
+ * them (a deferred count may be a failure count).
+ */
+final class TailSamplingMetricRecorder extends SnapshotMetricRecorder {
+
+    private final TailSamplingMetricRecorderFactory factory;
+    private long timeNanos;
+
+    TailSamplingMetricRecorder(String operation, Clock clock, TailSamplingMetricRecorderFactory factory) {
+        super(operation, clock);
+        this.factory = factory;
+    }
+
+    @Override
+    protected void addDurationHook(MetricKey key, long nanos) {
+        if (key == StandardMetricNames.TIME.getKey()) {
+            timeNanos = nanos;
+        }
+        super.addDurationHook(key, nanos);
+    }
+
+    @Override
+    protected void publish(RecordedMetrics metrics) {
+        String sampleWeight = factory.decide(getOperation(), timeNanos, hasFailed(metrics));
+        if (sampleWeight == null) {
+            return;
+        }
+
+        MetricRecorder target = factory.getDelegate().newMetricRecorder(getOperation(), getClock());
+        for (int i = 0; i < metrics.getNumProperties(); i++) {
+            target.addPropertyHook(metrics.getPropertyKey(i).getName(), metrics.getPropertyValue(i));
+        }
+        target.addPropertyHook(StandardMetricNames.SAMPLE_WEIGHT.toString(), sampleWeight);
+        for (int i = 0; i < metrics.getNumTimestamps(); i++) {
+            target.addTimestampHook(metrics.getTimestampKey(i).getName(), metrics.getTimestampValue(i));
+        }
+        for (int i = 0; i < metrics.getNumCounts(); i++) {
+            target.addCountHook(metrics.getCountKey(i), metrics.getCountValue(i));
+        }
+        for (int i = 0; i < metrics.getNumDurations(); i++) {
+            target.addDurationHook(metrics.getDurationKey(i), metrics.getDurationNanos(i));
+        }
+        target.closeHook();
+        target.markClosed();
+    }
+
+    @Override
+    protected boolean resetHook() {
+        // Everything kept has been handed to the delegate recorder by now, so the buffers can be reused.
+        timeNanos = 0;
+        return super.resetHook();
+    }
+
+    /**
+     * Checks the summed failure counts rather than each add, so that adds which cancel out, such as recording 0 up
+     * front and correcting it later, don't count as a failure.
+     */
+    private boolean hasFailed(RecordedMetrics metrics) {
+        for (int i = 0; i < metrics.getNumCounts(); i++) {
+            if (metrics.getCountValue(i) != 0 && factory.isFailureCount(metrics.getCountKey(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides when each recorder is closed whether its metrics are worth emitting. Recorders whose Time reaches the
+ * operation's latency threshold, or which recorded a non-zero failure count, are always passed on to the delegate
+ * factory's recorders; the rest are sampled at a fixed rate, and carry a SampleWeight property (see
+ * StandardMetricNames) so aggregates can be scaled back up.
+ *
+ * Latency thresholds are either fixed, per operation or for every operation, or track a running percentile (e.g. p99)
+ * of each operation's Time. Until a running percentile has seen enough recorders to be meaningful, every recorder
+ * for that operation is kept.
+ *
+ * Recording is buffered in primitive arrays, and dropped recorders are discarded without creating a delegate recorder.
+ * The recorders support reuse, so wrapping this factory in a PooledMetricRecorderFactory reuses their buffers too.
+ */
+public final class TailSamplingMetricRecorderFactory implements MetricRecorderFactory {
+
+    public static final double DEFAULT_SAMPLE_RATE = 0.01;
+    public static final String DEFAULT_FAILURE_COUNT = "FailureCount";
+
+    // A running percentile is recalculated after this many samples (a power of two), and its histogram is
+    // restarted after HISTOGRAM_REFRESHES recalculations so the threshold follows changes in latency.
+    private static final int PERCENTILE_REFRESH_INTERVAL = 1024;
+    private static final int HISTOGRAM_REFRESHES = 64;
+
+    private static final String KEPT_WEIGHT = "1.0";
+
+    private final MetricRecorderFactory delegate;
+    private final double sampleRate;
+    private final String sampledWeight;
+    private final long defaultThresholdNanos;
+    private final Map<String, Long> operationThresholdNanos;
+    private final double thresholdPercentile;
+    private final Set<MetricKey> failureCounts;
+    private final Map<String, RunningPercentile> runningPercentiles = new ConcurrentHashMap<>();
+
+    private TailSamplingMetricRecorderFactory(Builder builder) {
+        this.delegate = builder.delegate;
+        this.sampleRate = builder.sampleRate;
+        this.sampledWeight = builder.sampleRate > 0 ? Double.toString(1.0 / builder.sampleRate) : KEPT_WEIGHT;
+        this.defaultThresholdNanos = builder.defaultThresholdNanos;
+        this.operationThresholdNanos = new HashMap<>(builder.operationThresholdNanos);
+        this.thresholdPercentile = builder.thresholdPercentile;
+        this.failureCounts = new HashSet<>(builder.failureCounts);
+    }
+
+    public static Builder builder(MetricRecorderFactory delegate) {
+        return new Builder(delegate);
+    }
+
+    @Override
+    public MetricRecorder newMetricRecorder(String operation, Clock clock) {
+        return new TailSamplingMetricRecorder(operation, clock, this);
+    }
+
+    MetricRecorderFactory getDelegate() {
+        return delegate;
+    }
+
+    boolean isFailureCount(MetricKey key) {
+        return failureCounts.contains(key);
+    }
+
+    /**
+     * Returns the SampleWeight to emit the recorder with, or null if it should be dropped.
+     */
+    String decide(String operation, long timeNanos, boolean failed) {
+        long threshold = thresholdNanos(operation, timeNanos);
+        if (failed || timeNanos >= threshold) {
+            return KEPT_WEIGHT;
+        }
+        if (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            return sampledWeight;
+        }
+        return null;
+    }
+
+    private long thresholdNanos(String operation, long timeNanos) {
+        Long fixed = operationThresholdNanos.get(operation);
+        if (fixed != null) {
+            return fixed;
+        }
+        if (thresholdPercentile > 0) {
+            RunningPercentile percentile = runningPercentiles.get(operation);
+            if (percentile == null) {
+                percentile = runningPercentiles.computeIfAbsent(operation, o -> new RunningPercentile());
+            }
+            return percentile.recordAndGetThreshold(timeNanos, thresholdPercentile);
+        }
+        return defaultThresholdNanos;
+    }
+
+    /**
+     * Tracks a percentile of one operation's Time. Values are recorded into a lock-free LatencyHistogram, and the
+     * threshold is only recalculated every PERCENTILE_REFRESH_INTERVAL samples, since that walks every bucket.
+     */
+    private static final class RunningPercentile {
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final AtomicLong samples = new AtomicLong();
+        // Zero keeps every recorder until the first threshold has been calculated.
+        private volatile long thresholdNanos;
+
+        long recordAndGetThreshold(long timeNanos, double percentile) {
+            histogram.record(timeNanos);
+            long count = samples.incrementAndGet();
+            if ((count & (PERCENTILE_REFRESH_INTERVAL - 1)) == 0) {
+                thresholdNanos = histogram.getValueAtPercentile(percentile);
+                if (count % ((long) PERCENTILE_REFRESH_INTERVAL * HISTOGRAM_REFRESHES) == 0) {
+                    histogram.reset();
+                }
+            }
+            return thresholdNanos;
+        }
+    }
+
+    /**
+     * Configures a TailSamplingMetricRecorderFactory.
+     */
+    public static final class Builder {
+        private final MetricRecorderFactory delegate;
+        private double sampleRate = DEFAULT_SAMPLE_RATE;
+        private long defaultThresholdNanos = Long.MAX_VALUE;
+        private final Map<String, Long> operationThresholdNanos = new HashMap<>();
+        private double thresholdPercentile;
+        private final Set<MetricKey> failureCounts = new HashSet<>(Set.of(MetricKey.of(DEFAULT_FAILURE_COUNT)));
+
+        private Builder(MetricRecorderFactory delegate) {
+            if (delegate == null) {
+                throw new IllegalArgumentException("A delegate factory is required.");
+            }
+            this.delegate = delegate;
+        }
+
+        /**
+         * Sets the probability with which recorders that aren't slow or failed are kept. Defaults to 1%.
+         */
+        public Builder withSampleRate(double sampleRate) {
+            if (!(sampleRate >= 0.0 && sampleRate <= 1.0)) {
+                throw new IllegalArgumentException("The sample rate must be between 0 and 1.");
+            }
+            this.sampleRate = sampleRate;
+            return this;
+        }
+
+        /**
+         * Always keeps recorders for any operation whose Time is at least the threshold, unless the operation has
+         * its own fixed threshold.
+         */
+        public Builder withLatencyThreshold(Duration threshold) {
+            this.defaultThresholdNanos = threshold.toNanos();
+            return this;
+        }
+
+        /**
+         * Always keeps recorders for the specified operation whose Time is at least the threshold.
+         */
+        public Builder withLatencyThreshold(String operation, Duration threshold) {
+            operationThresholdNanos.put(operation, threshold.toNanos());
+            return this;
+        }
+
+        /**
+         * Always keeps recorders whose Time is at least the running percentile (e.g. 99) of their operation's Time.
+         * This replaces the threshold set by withLatencyThreshold(Duration), but not per-operation thresholds.
+         */
+        public Builder withPercentileThreshold(double percentile) {
+            if (!(percentile > 0 && percentile < 100)) {
+                throw new IllegalArgumentException("The percentile must be between 0 and 100.");
+            }
+            this.thresholdPercentile = percentile;
+            return this;
+        }
+
+        /**
+         * Sets the count metrics which indicate a failure when non-zero. Defaults to FailureCount.
+         */
+        public Builder withFailureCounts(String... names) {
+            failureCounts.clear();
+            for (String name : names) {
+                failureCounts.add(MetricKey.of(name));
+            }
+            return this;
+        }
+
+        public TailSamplingMetricRecorderFactory build() {
+            return new TailSamplingMetricRecorderFactory(this);
+        }
+    }
+}
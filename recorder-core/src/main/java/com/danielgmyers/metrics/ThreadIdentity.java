@@ -0,0 +1,73 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Produces the ThreadName property. Named threads are identified by their name. Threads without a name, which
+ * includes virtual threads unless they were explicitly named, are identified by their thread id instead, as
+ * "virtual-123" for a virtual thread and "thread-123" otherwise.
+ *
+ * Thread.isVirtual() doesn't exist before Java 21, so it's resolved once through a method handle, which the JIT
+ * inlines like a direct call; on older runtimes no thread is virtual.
+ */
+final class ThreadIdentity {
+
+    static final String VIRTUAL_PREFIX = "virtual-";
+    static final String UNNAMED_PREFIX = "thread-";
+
+    private static final MethodHandle IS_VIRTUAL = findIsVirtual();
+
+    private ThreadIdentity() {}
+
+    static String name(Thread thread) {
+        String name = thread.getName();
+        if (!name.isEmpty()) {
+            return name;
+        }
+        return (isVirtual(thread) ? VIRTUAL_PREFIX : UNNAMED_PREFIX) + thread.getId();
+    }
+
+    /**
+     * Returns true if the thread is a virtual thread; always false on runtimes without virtual threads.
+     */
+    static boolean isVirtual(Thread thread) {
+        if (IS_VIRTUAL == null) {
+            return false;
+        }
+        try {
+            return (boolean) IS_VIRTUAL.invokeExact(thread);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            // Thread.isVirtual() declares no checked exceptions, so invokeExact() can't throw anything else.
+            throw new AssertionError(e);
+        }
+    }
+
+    private static MethodHandle findIsVirtual() {
+        try {
+            return MethodHandles.publicLookup()
+                    .findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+}
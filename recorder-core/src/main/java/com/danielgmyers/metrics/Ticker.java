@@ -0,0 +1,63 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+import java.time.Clock;
+import java.time.Instant;
+
+/**
+ * A monotonic source of nanosecond ticks, used by MetricRecorder to measure durations.
+ * Tick values have an arbitrary origin; only the difference between two readings from the same Ticker is meaningful.
+ */
+@FunctionalInterface
+public interface Ticker {
+
+    /**
+     * Returns the current tick, in nanoseconds.
+     */
+    long read();
+
+    /**
+     * Returns a Ticker backed by System.nanoTime(), which is monotonic and does not allocate.
+     */
+    static Ticker systemTicker() {
+        return System::nanoTime;
+    }
+
+    /**
+     * Returns a Ticker which reads nanoseconds since the epoch from the specified clock.
+     * Unlike the system ticker, this follows the clock if it jumps, but it lets durations be controlled by
+     * a custom clock (e.g. in tests).
+     */
+    static Ticker clockTicker(Clock clock) {
+        return () -> {
+            Instant now = clock.instant();
+            return Math.addExact(Math.multiplyExact(now.getEpochSecond(), 1_000_000_000L), now.getNano());
+        };
+    }
+
+    /**
+     * Returns the Ticker MetricRecorder uses by default for the specified clock: the system ticker if the clock
+     * is a system clock, or a ticker that follows the clock otherwise, so custom clocks still control durations.
+     */
+    static Ticker forClock(Clock clock) {
+        if (clock.getClass() == Clock.systemUTC().getClass()) {
+            return systemTicker();
+        }
+        return clockTicker(clock);
+    }
+}
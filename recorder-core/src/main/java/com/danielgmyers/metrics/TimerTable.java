@@ -0,0 +1,112 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+import java.util.Arrays;
+
+/**
+ * The set of open timers for a single MetricRecorder, stored as parallel arrays of keys and primitive start ticks.
+ * Recorders rarely have more than a handful of timers open at once, so a linear scan by identity is cheaper than
+ * hashing. The arrays are only allocated once the first timer is started.
+ *
+ * Not thread-safe; ConcurrentTimerTable overrides every method for recorders shared between threads.
+ */
+class TimerTable {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private MetricKey[] keys;
+    private long[] startTicks;
+    private int size;
+
+    /**
+     * Records the start tick for the specified key.
+     * Throws an IllegalStateException if a timer with this key is already open.
+     */
+    void start(MetricKey key, long ticks) {
+        if (indexOf(key) >= 0) {
+            throw new IllegalStateException("A timer named " + key + " is already open.");
+        }
+        if (keys == null) {
+            keys = new MetricKey[INITIAL_CAPACITY];
+            startTicks = new long[INITIAL_CAPACITY];
+        } else if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            startTicks = Arrays.copyOf(startTicks, size * 2);
+        }
+        keys[size] = key;
+        startTicks[size] = ticks;
+        size++;
+    }
+
+    /**
+     * Removes the timer with the specified key and returns its start tick.
+     * Throws an IllegalStateException if no timer with this key is open.
+     */
+    long stop(MetricKey key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            throw new IllegalStateException("No active timer named " + key);
+        }
+        long ticks = startTicks[index];
+        removeAt(index);
+        return ticks;
+    }
+
+    /**
+     * Discards all open timers, keeping the arrays for reuse.
+     */
+    void clear() {
+        if (keys != null) {
+            Arrays.fill(keys, 0, size, null);
+        }
+        size = 0;
+    }
+
+    /**
+     * The number of open timers.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * The key of the most recently started timer that is still open. Only valid if size() is nonzero.
+     */
+    MetricKey lastKey() {
+        return keys[size - 1];
+    }
+
+    private int indexOf(MetricKey key) {
+        for (int i = 0; i < size; i++) {
+            if (keys[i] == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void removeAt(int index) {
+        int last = size - 1;
+        if (index != last) {
+            System.arraycopy(keys, index + 1, keys, index, last - index);
+            System.arraycopy(startTicks, index + 1, startTicks, index, last - index);
+        }
+        keys[last] = null;
+        size = last;
+    }
+}
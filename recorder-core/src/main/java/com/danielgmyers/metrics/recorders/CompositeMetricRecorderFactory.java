@@ -0,0 +1,146 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.danielgmyers.metrics.MetricPublisher;
+import com.danielgmyers.metrics.MetricRecorder;
+import com.danielgmyers.metrics.MetricRecorderFactory;
+import com.danielgmyers.metrics.MetricSnapshot;
+
+/**
+ * A MetricRecorderFactory which sends each closed recorder's metrics to several publishers, for example while
+ * writing to both the old and new backend during a migration.
+ *
+ * Each recorder records into a single snapshot builder, however many publishers there are, and the immutable
+ * snapshot built when it's closed is handed to every publisher in turn. An exception thrown by one publisher is
+ * counted against it and doesn't stop the others from receiving the snapshot.
+ *
+ * If an Executor is configured, close() hands the snapshot to the executor once and the publishers are called from
+ * there, so the cost to the closing thread doesn't depend on the number of publishers. Snapshots the executor
+ * rejects are counted as dropped.
+ */
+public final class CompositeMetricRecorderFactory implements MetricRecorderFactory {
+
+    private final MetricPublisher[] publishers;
+    private final LongAdder[] failedCounts;
+    private final Executor executor;
+    private final LongAdder droppedCount = new LongAdder();
+    private final MetricPublisher dispatcher;
+
+    private CompositeMetricRecorderFactory(Builder builder) {
+        this.publishers = builder.publishers.toArray(new MetricPublisher[0]);
+        this.failedCounts = new LongAdder[publishers.length];
+        for (int i = 0; i < failedCounts.length; i++) {
+            failedCounts[i] = new LongAdder();
+        }
+        this.executor = builder.executor;
+        this.dispatcher = executor == null ? this::publishToAll : this::dispatch;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public MetricRecorder newMetricRecorder(String operation, Clock clock) {
+        return new PublishingMetricRecorder(operation, clock, dispatcher);
+    }
+
+    public int getPublisherCount() {
+        return publishers.length;
+    }
+
+    /**
+     * Returns the number of snapshots for which the publisher at the specified index (in the order the publishers
+     * were added) threw an exception.
+     */
+    public long getFailedCount(int publisherIndex) {
+        return failedCounts[publisherIndex].sum();
+    }
+
+    /**
+     * Returns the number of snapshots which were rejected by the executor, and so reached none of the publishers.
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    private void dispatch(MetricSnapshot snapshot) {
+        try {
+            executor.execute(() -> publishToAll(snapshot));
+        } catch (RejectedExecutionException e) {
+            droppedCount.increment();
+        }
+    }
+
+    private void publishToAll(MetricSnapshot snapshot) {
+        for (int i = 0; i < publishers.length; i++) {
+            try {
+                publishers[i].publish(snapshot);
+            } catch (RuntimeException e) {
+                failedCounts[i].increment();
+            }
+        }
+    }
+
+    /**
+     * Configures a CompositeMetricRecorderFactory.
+     */
+    public static final class Builder {
+        private final List<MetricPublisher> publishers = new ArrayList<>();
+        private Executor executor;
+
+        private Builder() {}
+
+        /**
+         * Adds a publisher. Publishers are called in the order they were added.
+         */
+        public Builder addPublisher(MetricPublisher publisher) {
+            if (publisher == null) {
+                throw new IllegalArgumentException("Publisher must not be null.");
+            }
+            publishers.add(publisher);
+            return this;
+        }
+
+        /**
+         * Publishes from the specified executor instead of the thread closing the recorder. The publishers are
+         * called one after another by a single task per snapshot.
+         */
+        public Builder withExecutor(Executor executor) {
+            if (executor == null) {
+                throw new IllegalArgumentException("Executor must not be null.");
+            }
+            this.executor = executor;
+            return this;
+        }
+
+        public CompositeMetricRecorderFactory build() {
+            if (publishers.isEmpty()) {
+                throw new IllegalArgumentException("At least one publisher is required.");
+            }
+            return new CompositeMetricRecorderFactory(this);
+        }
+    }
+}
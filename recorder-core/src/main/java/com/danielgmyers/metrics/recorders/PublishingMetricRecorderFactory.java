@@ -0,0 +1,40 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.time.Clock;
+
+import com.danielgmyers.metrics.MetricPublisher;
+import com.danielgmyers.metrics.MetricRecorder;
+import com.danielgmyers.metrics.MetricRecorderFactory;
+
+/**
+ * Produces MetricRecorder objects which publish a MetricSnapshot to the specified publisher when closed.
+ */
+public class PublishingMetricRecorderFactory implements MetricRecorderFactory {
+
+    private final MetricPublisher publisher;
+
+    public PublishingMetricRecorderFactory(MetricPublisher publisher) {
+        this.publisher = publisher;
+    }
+
+    @Override
+    public MetricRecorder newMetricRecorder(String operation, Clock clock) {
+        return new PublishingMetricRecorder(operation, clock, publisher);
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.time.Clock;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.danielgmyers.metrics.MetricRecorder;
+import com.danielgmyers.metrics.MetricRecorderFactory;
+import com.danielgmyers.metrics.StandardMetricNames;
+import com.danielgmyers.metrics.Ticker;
+
+/**
+ * Decides when each recorder is created whether the operation is sampled. Sampled operations get a recorder from
+ * the delegate factory, carrying a SampleWeight property (see StandardMetricNames) so aggregates can be scaled back
+ * up; the rest get a NoopMetricRecorder.
+ *
+ * Rates are either fixed, with optional per-operation overrides, or adaptive: each operation is sampled at whatever
+ * rate keeps it near a target number of samples per second, so operations below the target are always kept.
+ *
+ * The sampling decision takes no locks and, once an operation has been seen, allocates nothing.
+ */
+public class SamplingMetricRecorderFactory implements MetricRecorderFactory {
+
+    private static final long ADAPTIVE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final MetricRecorderFactory delegate;
+    private final double defaultRate;
+    private final Map<String, Double> operationRates;
+    private final double targetSamplesPerSecond;
+    private final Ticker ticker;
+    private final Map<String, OperationSampler> samplers = new ConcurrentHashMap<>();
+
+    /**
+     * Samples every operation with the same fixed probability.
+     */
+    public SamplingMetricRecorderFactory(MetricRecorderFactory delegate, double rate) {
+        this(delegate, rate, Map.of());
+    }
+
+    /**
+     * Samples the specified operations with their own fixed probabilities, and any others with the default rate.
+     */
+    public SamplingMetricRecorderFactory(MetricRecorderFactory delegate, double defaultRate, Map<String, Double> operationRates) {
+        this(delegate, validateRate(defaultRate), copyRates(operationRates), 0, null);
+    }
+
+    private SamplingMetricRecorderFactory(MetricRecorderFactory delegate, double defaultRate,
+                                          Map<String, Double> operationRates, double targetSamplesPerSecond,
+                                          Ticker ticker) {
+        this.delegate = delegate;
+        this.defaultRate = defaultRate;
+        this.operationRates = operationRates;
+        this.targetSamplesPerSecond = targetSamplesPerSecond;
+        this.ticker = ticker;
+    }
+
+    /**
+     * Creates a factory which adjusts each operation's sampling rate once per second, aiming for the target number
+     * of samples per second for that operation.
+     */
+    public static SamplingMetricRecorderFactory adaptive(MetricRecorderFactory delegate, double targetSamplesPerSecond) {
+        return adaptive(delegate, targetSamplesPerSecond, Ticker.systemTicker());
+    }
+
+    /**
+     * Like adaptive(delegate, targetSamplesPerSecond), but measures request rates with the specified ticker.
+     */
+    public static SamplingMetricRecorderFactory adaptive(MetricRecorderFactory delegate, double targetSamplesPerSecond,
+                                                         Ticker ticker) {
+        if (!(targetSamplesPerSecond > 0)) {
+            throw new IllegalArgumentException("The target samples per second must be positive.");
+        }
+        return new SamplingMetricRecorderFactory(delegate, 1.0, Map.of(), targetSamplesPerSecond, ticker);
+    }
+
+    @Override
+    public MetricRecorder newMetricRecorder(String operation, Clock clock) {
+        OperationSampler sampler = samplers.get(operation);
+        if (sampler == null) {
+            sampler = samplers.computeIfAbsent(operation, this::newSampler);
+        }
+        if (ticker != null) {
+            sampler.adapt(ticker.read(), targetSamplesPerSecond);
+        }
+
+        double rate = sampler.rate;
+        if (rate < 1.0 && (rate <= 0.0 || ThreadLocalRandom.current().nextDouble() >= rate)) {
+            return new NoopMetricRecorder(operation, clock);
+        }
+        MetricRecorder recorder = delegate.newMetricRecorder(operation, clock);
+        recorder.addProperty(StandardMetricNames.SAMPLE_WEIGHT.toString(), sampler.weight);
+        return recorder;
+    }
+
+    /**
+     * Returns the probability with which the operation is currently being sampled.
+     */
+    public double getSamplingRate(String operation) {
+        OperationSampler sampler = samplers.get(operation);
+        if (sampler != null) {
+            return sampler.rate;
+        }
+        return operationRates.getOrDefault(operation, defaultRate);
+    }
+
+    private OperationSampler newSampler(String operation) {
+        OperationSampler sampler = new OperationSampler(ticker == null ? 0 : ticker.read());
+        sampler.setRate(operationRates.getOrDefault(operation, defaultRate));
+        return sampler;
+    }
+
+    private static double validateRate(double rate) {
+        if (!(rate >= 0.0 && rate <= 1.0)) {
+            throw new IllegalArgumentException("Sampling rates must be between 0 and 1.");
+        }
+        return rate;
+    }
+
+    private static Map<String, Double> copyRates(Map<String, Double> rates) {
+        Map<String, Double> copy = new HashMap<>();
+        for (Map.Entry<String, Double> entry : rates.entrySet()) {
+            copy.put(entry.getKey(), validateRate(entry.getValue()));
+        }
+        return copy;
+    }
+
+    /**
+     * The sampling state for a single operation. The rate and its weight string only change when an adaptive window
+     * ends, so the weight is formatted once per window rather than once per recorder.
+     */
+    private static final class OperationSampler {
+        private volatile double rate;
+        private volatile String weight;
+
+        private final AtomicLong windowStart;
+        private final LongAdder windowRequests = new LongAdder();
+
+        OperationSampler(long now) {
+            this.windowStart = new AtomicLong(now);
+        }
+
+        void setRate(double newRate) {
+            // The weight is published first, so a thread which sees the new rate also sees its weight.
+            weight = newRate > 0.0 ? Double.toString(1.0 / newRate) : "0.0";
+            rate = newRate;
+        }
+
+        void adapt(long now, double targetSamplesPerSecond) {
+            windowRequests.increment();
+            long start = windowStart.get();
+            long elapsed = now - start;
+            if (elapsed >= ADAPTIVE_WINDOW_NANOS && windowStart.compareAndSet(start, now)) {
+                double requestsPerSecond = windowRequests.sumThenReset() * (double) ADAPTIVE_WINDOW_NANOS / elapsed;
+                setRate(requestsPerSecond <= targetSamplesPerSecond ? 1.0 : targetSamplesPerSecond / requestsPerSecond);
+            }
+        }
+    }
+}
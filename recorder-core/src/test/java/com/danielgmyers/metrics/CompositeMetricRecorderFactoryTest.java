@@ -0,0 +1,133 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.danielgmyers.metrics.recorders.CompositeMetricRecorderFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class CompositeMetricRecorderFactoryTest {
+
+    private final List<MetricSnapshot> first = new ArrayList<>();
+    private final List<MetricSnapshot> second = new ArrayList<>();
+
+    @Test
+    public void testEveryPublisherReceivesTheSameSnapshot() {
+        CompositeMetricRecorderFactory factory = CompositeMetricRecorderFactory.builder()
+                .addPublisher(first::add)
+                .addPublisher(second::add)
+                .build();
+        MetricRecorder recorder = factory.newMetricRecorder("test", new ManualClock());
+        recorder.addCount("Widgets", 2);
+        recorder.addCount("Widgets", 3);
+        recorder.close();
+
+        Assertions.assertEquals(2, factory.getPublisherCount());
+        Assertions.assertEquals(1, first.size());
+        Assertions.assertEquals(1, second.size());
+        Assertions.assertSame(first.get(0), second.get(0));
+        Assertions.assertEquals(5.0, first.get(0).getCount("Widgets"));
+        Assertions.assertEquals("test", first.get(0).getProperty(StandardMetricNames.OPERATION.toString()));
+    }
+
+    @Test
+    public void testFailingPublisherDoesNotAffectOthers() {
+        CompositeMetricRecorderFactory factory = CompositeMetricRecorderFactory.builder()
+                .addPublisher(first::add)
+                .addPublisher(snapshot -> {
+                    throw new IllegalStateException("backend unavailable");
+                })
+                .addPublisher(second::add)
+                .build();
+        for (int i = 0; i < 3; i++) {
+            factory.newMetricRecorder("test").close();
+        }
+
+        Assertions.assertEquals(3, first.size());
+        Assertions.assertEquals(3, second.size());
+        Assertions.assertEquals(0, factory.getFailedCount(0));
+        Assertions.assertEquals(3, factory.getFailedCount(1));
+        Assertions.assertEquals(0, factory.getFailedCount(2));
+    }
+
+    @Test
+    public void testExecutorPublishesOnceForAllPublishers() {
+        List<Runnable> tasks = new ArrayList<>();
+        CompositeMetricRecorderFactory factory = CompositeMetricRecorderFactory.builder()
+                .addPublisher(first::add)
+                .addPublisher(second::add)
+                .withExecutor(tasks::add)
+                .build();
+        factory.newMetricRecorder("test").close();
+
+        Assertions.assertEquals(1, tasks.size());
+        Assertions.assertTrue(first.isEmpty());
+        Assertions.assertTrue(second.isEmpty());
+
+        tasks.get(0).run();
+        Assertions.assertEquals(1, first.size());
+        Assertions.assertSame(first.get(0), second.get(0));
+    }
+
+    @Test
+    public void testRejectedSnapshotsAreCountedAsDropped() {
+        Executor rejecting = task -> {
+            throw new RejectedExecutionException();
+        };
+        CompositeMetricRecorderFactory factory = CompositeMetricRecorderFactory.builder()
+                .addPublisher(first::add)
+                .withExecutor(rejecting)
+                .build();
+        MetricRecorder recorder = factory.newMetricRecorder("test");
+        recorder.close();
+
+        Assertions.assertTrue(recorder.isClosed());
+        Assertions.assertTrue(first.isEmpty());
+        Assertions.assertEquals(1, factory.getDroppedCount());
+    }
+
+    @Test
+    public void testPooledRecordersPublishIndependentSnapshots() {
+        MetricRecorderFactory pooled = new PooledMetricRecorderFactory(
+                CompositeMetricRecorderFactory.builder().addPublisher(first::add).addPublisher(second::add).build(),
+                1, 1);
+        for (int i = 0; i < 2; i++) {
+            MetricRecorder recorder = pooled.newMetricRecorder("test");
+            recorder.addCount("Iteration" + i, i);
+            recorder.close();
+        }
+
+        Assertions.assertEquals(0.0, second.get(0).getCount("Iteration0"));
+        Assertions.assertNull(second.get(0).getCount("Iteration1"));
+        Assertions.assertEquals(1.0, second.get(1).getCount("Iteration1"));
+    }
+
+    @Test
+    public void testBuilderValidation() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> CompositeMetricRecorderFactory.builder().build());
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> CompositeMetricRecorderFactory.builder().addPublisher(null));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> CompositeMetricRecorderFactory.builder().withExecutor(null));
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.danielgmyers.metrics.MetricRecorderTest.StubMetricRecorder;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ConcurrentMetricRecorderFactoryTest {
+
+    private final List<StubMetricRecorder> backends = new ArrayList<>();
+    private final ConcurrentMetricRecorderFactory factory = new ConcurrentMetricRecorderFactory((operation, clock) -> {
+        StubMetricRecorder backend = new StubMetricRecorder(operation, clock);
+        backends.add(backend);
+        return backend;
+    });
+
+    @Test
+    public void testMetricsReachBackendOnClose() {
+        ManualClock clock = new ManualClock();
+        Instant startTime = clock.instant();
+        MetricRecorder recorder = factory.newMetricRecorder("test", clock);
+        recorder.addProperty("StarshipName", "Enterprise");
+        recorder.addTimestamp("Launch", startTime);
+        recorder.addCount("Rings", 1);
+        recorder.addCount("Rings", 2);
+        recorder.startDuration("Warp");
+        recorder.addDuration("Impulse", Duration.ofMillis(3));
+        clock.forward(Duration.ofMillis(10));
+
+        StubMetricRecorder backend = backends.get(0);
+        Assertions.assertTrue(backend.getCounts().isEmpty());
+        recorder.close();
+
+        Assertions.assertTrue(recorder.isClosed());
+        Assertions.assertTrue(backend.isClosed());
+        Assertions.assertTrue(backend.isCloseHookCalled());
+        Assertions.assertEquals("Enterprise", backend.getProperties().get("StarshipName"));
+        Assertions.assertEquals("test", backend.getProperties().get(StandardMetricNames.OPERATION.toString()));
+        Assertions.assertEquals(startTime, backend.getTimestamps().get("Launch"));
+        Assertions.assertEquals(startTime, backend.getTimestamps().get(StandardMetricNames.START_TIME.toString()));
+        Assertions.assertEquals(3.0, backend.getCounts().get("Rings"));
+        Assertions.assertEquals(Duration.ofMillis(10), backend.getDurations().get("Warp"));
+        Assertions.assertEquals(Duration.ofMillis(3), backend.getDurations().get("Impulse"));
+        Assertions.assertEquals(Duration.ofMillis(10), backend.getDurations().get(StandardMetricNames.TIME.toString()));
+    }
+
+    @Test
+    public void testFanOutRecordsEverything() {
+        int tasks = 16;
+        int perTask = 1000;
+        MetricRecorder recorder = factory.newMetricRecorder("test");
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int t = 0; t < tasks; t++) {
+                String timer = "Task" + t;
+                futures.add(CompletableFuture.runAsync(() -> {
+                    recorder.startTimer(timer);
+                    for (int i = 0; i < perTask; i++) {
+                        recorder.addCount("Requests", 1);
+                        recorder.addDurationNanos("Work", 2);
+                    }
+                    recorder.stopTimer(timer);
+                }, executor));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } finally {
+            executor.shutdown();
+        }
+        recorder.close();
+
+        StubMetricRecorder backend = backends.get(0);
+        Assertions.assertEquals((double) tasks * perTask, backend.getCounts().get("Requests"));
+        Assertions.assertEquals(Duration.ofNanos(2L * tasks * perTask), backend.getDurations().get("Work"));
+        for (int t = 0; t < tasks; t++) {
+            Assertions.assertNotNull(backend.getDurations().get("Task" + t));
+        }
+    }
+
+    @Test
+    public void testWritesRacingCloseAreIncludedOrRejected() throws InterruptedException {
+        int threads = 4;
+        MetricRecorder recorder = factory.newMetricRecorder("test");
+        AtomicLong accepted = new AtomicLong();
+        CountDownLatch started = new CountDownLatch(threads);
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread writer = new Thread(() -> {
+                started.countDown();
+                try {
+                    while (true) {
+                        recorder.addCount("Requests", 1);
+                        accepted.incrementAndGet();
+                    }
+                } catch (IllegalStateException e) {
+                    // The recorder was closed.
+                }
+            });
+            writer.start();
+            writers.add(writer);
+        }
+
+        started.await();
+        Thread.sleep(20);
+        recorder.close();
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        Assertions.assertEquals((double) accepted.get(), backends.get(0).getCounts().get("Requests"));
+    }
+
+    @Test
+    public void testDeferredValuesFromSeveralThreadsReachBackend() throws InterruptedException {
+        MetricRecorder recorder = factory.newMetricRecorder("test");
+        int threads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(CompletableFuture.runAsync(() -> {
+                    for (int j = 0; j < 100; j++) {
+                        recorder.addCount("Widgets", () -> 1);
+                    }
+                }, executor));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } finally {
+            executor.shutdown();
+        }
+        recorder.close();
+
+        Assertions.assertEquals(400.0, backends.get(0).getCounts().get("Widgets"));
+    }
+
+    @Test
+    public void testUseAfterCloseRejectedOnOtherThreads() throws InterruptedException {
+        MetricRecorder recorder = factory.newMetricRecorder("test");
+        recorder.close();
+        List<Throwable> failures = new ArrayList<>();
+        Thread other = new Thread(() -> {
+            try {
+                recorder.addCount("Rings", 1);
+            } catch (IllegalStateException e) {
+                failures.add(e);
+            }
+        });
+        other.start();
+        other.join();
+
+        Assertions.assertEquals(1, failures.size());
+        Assertions.assertThrows(IllegalStateException.class, recorder::close);
+        Assertions.assertThrows(IllegalStateException.class, () -> recorder.startTimer("Warp"));
+    }
+
+    @Test
+    public void testDuplicateTimerRejected() {
+        MetricRecorder recorder = factory.newMetricRecorder("test");
+        recorder.startTimer("Warp");
+        Assertions.assertThrows(IllegalStateException.class, () -> recorder.startTimer("Warp"));
+        Assertions.assertThrows(IllegalStateException.class, () -> recorder.stopTimer("Impulse"));
+        recorder.stopTimer("Warp");
+        recorder.close();
+    }
+
+    @Test
+    public void testMetricsReachBackendWhenHooksAreDrivenByAnotherRecorder() {
+        MetricRecorder recorder = new PooledMetricRecorderFactory(factory).newMetricRecorder("test");
+        recorder.addCount("Rings", 2);
+        recorder.close();
+
+        StubMetricRecorder backend = backends.get(0);
+        Assertions.assertTrue(backend.isClosed());
+        Assertions.assertEquals(2.0, backend.getCounts().get("Rings"));
+        Assertions.assertEquals("test", backend.getProperties().get(StandardMetricNames.OPERATION.toString()));
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTest {
+
+    private static void assertWithinRelativeError(LatencyHistogram histogram, long expected, long actual) {
+        double error = Math.abs(actual - expected) / (double) Math.max(1, expected);
+        Assertions.assertTrue(error <= histogram.getRelativeError(),
+            "Expected " + expected + " but got " + actual + " (error " + error + ")");
+    }
+
+    @Test
+    public void testEmptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assertions.assertEquals(0, histogram.getCount());
+        Assertions.assertEquals(0, histogram.getMin());
+        Assertions.assertEquals(0, histogram.getMax());
+        Assertions.assertEquals(0, histogram.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram(6);
+        for (int i = 0; i < 64; i++) {
+            histogram.record(i);
+        }
+        Assertions.assertEquals(64, histogram.getCount());
+        Assertions.assertEquals(0, histogram.getValueAtPercentile(0));
+        Assertions.assertEquals(31, histogram.getValueAtPercentile(50));
+        Assertions.assertEquals(63, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testPercentilesAreWithinRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(42);
+        long[] values = new long[100_000];
+        for (int i = 0; i < values.length; i++) {
+            // Log-uniform between 1us and ~1s.
+            values[i] = (long) Math.pow(10, 3 + random.nextDouble() * 6);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        Assertions.assertEquals(values.length, histogram.getCount());
+        Assertions.assertEquals(values[0], histogram.getMin());
+        Assertions.assertEquals(values[values.length - 1], histogram.getMax());
+        for (double percentile : new double[] {1, 25, 50, 90, 99, 99.9, 100}) {
+            long expected = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            assertWithinRelativeError(histogram, expected, histogram.getValueAtPercentile(percentile));
+        }
+    }
+
+    @Test
+    public void testExtremeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        Assertions.assertEquals(2, histogram.getCount());
+        Assertions.assertEquals(0, histogram.getMin());
+        Assertions.assertEquals(0, histogram.getValueAtPercentile(50));
+        assertWithinRelativeError(histogram, Long.MAX_VALUE, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testDurations() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Duration.ofMillis(250));
+        Assertions.assertEquals(Duration.ofMillis(250), histogram.getDurationAtPercentile(50));
+    }
+
+    @Test
+    public void testMerge() {
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            first.record(i * 1000L);
+            second.record(i * 1_000_000L);
+        }
+        first.merge(second);
+
+        Assertions.assertEquals(2000, first.getCount());
+        Assertions.assertEquals(1000, first.getMin());
+        Assertions.assertEquals(1_000_000_000L, first.getMax());
+        assertWithinRelativeError(first, 1_000_000L, first.getValueAtPercentile(50));
+        Assertions.assertEquals(1000, second.getCount());
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> first.merge(new LatencyHistogram(4)));
+    }
+
+    @Test
+    public void testCopyIsIndependent() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(100);
+        LatencyHistogram copy = histogram.copy();
+        histogram.record(200);
+        Assertions.assertEquals(1, copy.getCount());
+        Assertions.assertEquals(100, copy.getMax());
+    }
+
+    @Test
+    public void testDrainMovesValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(100);
+        histogram.record(5000);
+        LatencyHistogram drained = histogram.drain();
+
+        Assertions.assertEquals(2, drained.getCount());
+        Assertions.assertEquals(100, drained.getMin());
+        Assertions.assertEquals(5000, drained.getMax());
+        Assertions.assertEquals(0, histogram.getCount());
+        Assertions.assertEquals(0, histogram.getMax());
+
+        histogram.record(7);
+        Assertions.assertEquals(7, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(12345);
+        histogram.reset();
+        Assertions.assertEquals(0, histogram.getCount());
+        Assertions.assertEquals(0, histogram.getMin());
+    }
+
+    @Test
+    public void testConcurrentRecordingAndDraining() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        int threads = 8;
+        int perThread = 100_000;
+        List<Thread> recorders = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    histogram.record(i);
+                }
+            });
+            thread.start();
+            recorders.add(thread);
+        }
+
+        LatencyHistogram total = new LatencyHistogram();
+        boolean running = true;
+        while (running) {
+            running = false;
+            for (Thread thread : recorders) {
+                running |= thread.isAlive();
+            }
+            total.merge(histogram.drain());
+        }
+        total.merge(histogram.drain());
+
+        Assertions.assertEquals((long) threads * perThread, total.getCount());
+        Assertions.assertEquals(0, total.getMin());
+        Assertions.assertEquals(perThread - 1, total.getMax());
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new LatencyHistogram(0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new LatencyHistogram(17));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new LatencyHistogram().getValueAtPercentile(101));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new LatencyHistogram().getValueAtPercentile(-1));
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class MetricContextTest {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    public void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testUnboundContextDiscardsEverything() {
+        Assertions.assertFalse(MetricContext.isBound());
+        MetricRecorder recorder = MetricContext.current();
+        Assertions.assertSame(recorder, MetricContext.current());
+
+        recorder.addCount("Widgets", 1);
+        recorder.addProperty("StarshipName", "Enterprise");
+        recorder.startDuration("WarpTime");
+        recorder.startDuration("WarpTime");
+        recorder.endDuration("WarpTime");
+        recorder.stopTimer("NeverStarted");
+        Assertions.assertSame(recorder, recorder.newChild("Child"));
+        recorder.close();
+
+        Assertions.assertFalse(recorder.isClosed());
+        recorder.addCount("Widgets", 1);
+    }
+
+    @Test
+    public void testBindRestoresPreviousRecorder() {
+        MetricRecorderTest.StubMetricRecorder outer = new MetricRecorderTest.StubMetricRecorder("outer", new ManualClock());
+        MetricRecorderTest.StubMetricRecorder inner = new MetricRecorderTest.StubMetricRecorder("inner", new ManualClock());
+
+        try (MetricContext.Scope outerScope = MetricContext.bind(outer)) {
+            MetricContext.current().addCount("Widgets", 1);
+            try (MetricContext.Scope innerScope = MetricContext.bind(inner)) {
+                MetricContext.current().addCount("Widgets", 2);
+            }
+            Assertions.assertSame(outer, MetricContext.current());
+        }
+        Assertions.assertFalse(MetricContext.isBound());
+
+        outer.close();
+        inner.close();
+        Assertions.assertEquals(1.0, outer.getCounts().get("Widgets"));
+        Assertions.assertEquals(2.0, inner.getCounts().get("Widgets"));
+    }
+
+    @Test
+    public void testTaskRunningAfterRecorderIsClosedThrows() throws Exception {
+        MetricRecorder recorder = new ConcurrentMetricRecorderFactory(MetricRecorderTest.StubMetricRecorder::new)
+                .newMetricRecorder("test", new ManualClock());
+        Runnable task;
+        try (MetricContext.Scope scope = MetricContext.bind(recorder)) {
+            task = MetricContext.wrapRunnable(() -> MetricContext.current().addCount("Widgets", 1));
+        }
+        recorder.close();
+
+        ExecutionException thrown = Assertions.assertThrows(ExecutionException.class, () -> executor.submit(task).get());
+        Assertions.assertInstanceOf(IllegalStateException.class, thrown.getCause());
+    }
+
+    @Test
+    public void testBindRejectsNull() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> MetricContext.bind(null));
+    }
+
+    @Test
+    public void testWrappedExecutorCarriesRecorder() throws ExecutionException, InterruptedException {
+        MetricRecorderTest.StubMetricRecorder recorder = new MetricRecorderTest.StubMetricRecorder("test", new ManualClock());
+        ExecutorService wrapped = MetricContext.wrapExecutorService(executor);
+
+        Future<Boolean> future;
+        try (MetricContext.Scope scope = MetricContext.bind(recorder)) {
+            future = wrapped.submit(() -> {
+                MetricContext.current().addCount("Widgets", 1);
+                return MetricContext.isBound();
+            });
+        }
+        Assertions.assertTrue(future.get());
+        // The worker thread doesn't keep the binding once the task is done.
+        Assertions.assertFalse(executor.submit(MetricContext::isBound).get());
+
+        recorder.close();
+        Assertions.assertEquals(1.0, recorder.getCounts().get("Widgets"));
+    }
+
+    @Test
+    public void testTaskWrappedWithoutBindingRunsUnbound() throws Exception {
+        Runnable unbound = MetricContext.wrapRunnable(() -> Assertions.assertFalse(MetricContext.isBound()));
+        Callable<Boolean> unboundCallable = MetricContext.wrapCallable(MetricContext::isBound);
+
+        MetricRecorder workerRecorder = new MetricRecorderTest.StubMetricRecorder("worker", new ManualClock());
+        try (MetricContext.Scope scope = MetricContext.bind(workerRecorder)) {
+            unbound.run();
+            Assertions.assertFalse(unboundCallable.call());
+            Assertions.assertSame(workerRecorder, MetricContext.current());
+        }
+    }
+
+    @Test
+    public void testCompletableFutureStagesCarryRecorder() throws ExecutionException, InterruptedException {
+        MetricRecorderTest.StubMetricRecorder recorder = new MetricRecorderTest.StubMetricRecorder("test", new ManualClock());
+        CompletableFuture<Void> future;
+        try (MetricContext.Scope scope = MetricContext.bind(recorder)) {
+            future = MetricContext.supplyAsync(() -> {
+                MetricContext.current().addDuration("Lookup", Duration.ofMillis(5));
+                return 2;
+            }, executor).thenAcceptAsync(count -> MetricContext.current().addCount("Widgets", count),
+                    MetricContext.wrapExecutor(executor));
+        }
+        future.get();
+
+        recorder.close();
+        Assertions.assertEquals(Duration.ofMillis(5), recorder.getDurations().get("Lookup"));
+        Assertions.assertEquals(2.0, recorder.getCounts().get("Widgets"));
+    }
+}
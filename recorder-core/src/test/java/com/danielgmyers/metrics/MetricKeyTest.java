@@ -0,0 +1,106 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class MetricKeyTest {
+
+    @Test
+    public void testSameNameReturnsSameKey() {
+        String name = UUID.randomUUID().toString();
+        MetricKey key = MetricKey.of(name);
+        Assertions.assertSame(key, MetricKey.of(name));
+        Assertions.assertSame(key, MetricKey.of(new String(name)));
+        Assertions.assertEquals(name, key.getName());
+        Assertions.assertEquals(name, key.toString());
+    }
+
+    @Test
+    public void testDifferentNamesReturnDifferentKeys() {
+        MetricKey key1 = MetricKey.of(UUID.randomUUID().toString());
+        MetricKey key2 = MetricKey.of(UUID.randomUUID().toString());
+        Assertions.assertNotEquals(key1, key2);
+        Assertions.assertNotEquals(key1.getId(), key2.getId());
+    }
+
+    @Test
+    public void testIdsAreBelowKeyCount() {
+        MetricKey key = MetricKey.of(UUID.randomUUID().toString());
+        Assertions.assertTrue(key.getId() >= 0);
+        Assertions.assertTrue(key.getId() < MetricKey.getKeyCount());
+    }
+
+    @Test
+    public void testStandardMetricNamesAreInterned() {
+        for (StandardMetricNames name : StandardMetricNames.values()) {
+            Assertions.assertSame(name.getKey(), MetricKey.of(name.toString()));
+        }
+    }
+
+    @Test
+    public void testNullNameRejected() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> MetricKey.of(null));
+    }
+
+    @Test
+    public void testConcurrentInterningProducesOneKeyPerName() throws InterruptedException {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            names.add(UUID.randomUUID().toString());
+        }
+
+        Set<MetricKey> seen = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (String name : names) {
+                    seen.add(MetricKey.of(name));
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assertions.assertEquals(names.size(), seen.size());
+        Set<Integer> ids = new HashSet<>();
+        for (MetricKey key : seen) {
+            ids.add(key.getId());
+        }
+        Assertions.assertEquals(names.size(), ids.size());
+    }
+}
@@ -20,10 +20,14 @@ import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import com.danielgmyers.metrics.recorders.NoopMetricRecorder;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
@@ -53,6 +57,96 @@ public class MetricRecorderTest {
                                 recorder.getProperties().get(StandardMetricNames.THREAD_NAME.toString()));
     }
 
+    @Test
+    public void testUnnamedThreadIsIdentifiedById() throws InterruptedException {
+        StubMetricRecorder recorder = new StubMetricRecorder("test", new ManualClock());
+        Thread unnamed = new Thread(recorder::close, "");
+        unnamed.start();
+        unnamed.join();
+
+        Assertions.assertTrue(recorder.isClosed());
+        Assertions.assertEquals(ThreadIdentity.UNNAMED_PREFIX + unnamed.getId(),
+                                recorder.getProperties().get(StandardMetricNames.THREAD_NAME.toString()));
+    }
+
+    @Test
+    public void testDeferredValuesAreEvaluatedOnClose() {
+        StubMetricRecorder recorder = new StubMetricRecorder("test", new ManualClock());
+        AtomicInteger evaluations = new AtomicInteger();
+        recorder.addProperty("Payload", () -> {
+            evaluations.incrementAndGet();
+            return "summary";
+        });
+        recorder.addCount("Widgets", () -> {
+            evaluations.incrementAndGet();
+            return 3;
+        });
+        recorder.addCount("Widgets", 2);
+
+        Assertions.assertTrue(recorder.isRecording());
+        Assertions.assertEquals(0, evaluations.get());
+        recorder.close();
+
+        Assertions.assertEquals(2, evaluations.get());
+        Assertions.assertEquals("summary", recorder.getProperties().get("Payload"));
+        Assertions.assertEquals(5.0, recorder.getCounts().get("Widgets"));
+    }
+
+    @Test
+    public void testFailingDeferredValueIsSkipped() {
+        StubMetricRecorder recorder = new StubMetricRecorder("test", new ManualClock());
+        recorder.addProperty("Broken", () -> {
+            throw new IllegalStateException("no summary");
+        });
+        recorder.addProperty("Payload", () -> "summary");
+        recorder.close();
+
+        Assertions.assertTrue(recorder.isClosed());
+        Assertions.assertFalse(recorder.getProperties().containsKey("Broken"));
+        Assertions.assertEquals("summary", recorder.getProperties().get("Payload"));
+        Assertions.assertEquals(1.0, recorder.getCounts().get(StandardMetricNames.DEFERRED_VALUE_FAILURES.toString()));
+    }
+
+    @Test
+    public void testBackendFailureWhileApplyingDeferredValueIsNotSwallowed() {
+        MetricRecorder recorder = new MetricRecorder("test", new ManualClock()) {
+            @Override
+            protected void addPropertyHook(String name, String value) {
+                throw new IllegalArgumentException("backend rejected " + name);
+            }
+        };
+        recorder.addProperty("Payload", () -> "summary");
+
+        Assertions.assertThrows(IllegalArgumentException.class, recorder::close);
+    }
+
+    @Test
+    public void testDeferredValuesAreDiscardedWhenNotRecording() {
+        MetricRecorder recorder = new NoopMetricRecorder("test", new ManualClock());
+        AtomicInteger evaluations = new AtomicInteger();
+        recorder.addProperty("Payload", () -> {
+            evaluations.incrementAndGet();
+            return "summary";
+        });
+        recorder.addCount("Widgets", () -> evaluations.incrementAndGet());
+
+        Assertions.assertFalse(recorder.isRecording());
+        recorder.close();
+        Assertions.assertEquals(0, evaluations.get());
+    }
+
+    @Test
+    public void testChildDeferredValuesAreMergedIntoParent() {
+        StubMetricRecorder parent = new StubMetricRecorder("test", new ManualClock());
+        MetricRecorder child = parent.newChild("Fetch");
+        Assertions.assertTrue(child.isRecording());
+        child.addCount("Items", () -> 4);
+        child.close();
+        parent.close();
+
+        Assertions.assertEquals(4.0, parent.getCounts().get("Fetch.Items"));
+    }
+
     @Test
     public void testCloseCallsCloseHook() {
         ManualClock clock = new ManualClock();
@@ -306,6 +400,286 @@ public class MetricRecorderTest {
         Assertions.assertEquals(Duration.ofMinutes(5), recorder.getDurations().get(metricName));
     }
 
+    @Test
+    public void testAddCountWithKeyCallsAddCountHook() {
+        ManualClock clock = new ManualClock();
+        StubMetricRecorder recorder = new StubMetricRecorder("test", clock);
+        MetricKey key = MetricKey.of(UUID.randomUUID().toString());
+        double metricValue = ThreadLocalRandom.current().nextDouble();
+        recorder.addCount(key, metricValue);
+        // The stub only overrides the String hooks, so this also verifies the default key hook forwards to them
+        Assertions.assertEquals(metricValue, recorder.getCounts().get(key.getName()));
+    }
+
+    @Test
+    public void testAddDurationWithKeyCallsAddDurationHook() {
+        ManualClock clock = new ManualClock();
+        StubMetricRecorder recorder = new StubMetricRecorder("test", clock);
+        MetricKey key = MetricKey.of(UUID.randomUUID().toString());
+        Duration metricValue = Duration.ofHours(17);
+        recorder.addDuration(key, metricValue);
+        Assertions.assertEquals(metricValue, recorder.getDurations().get(key.getName()));
+    }
+
+    @Test
+    public void testKeyOverloadsRejectedWhenClosed() {
+        ManualClock clock = new ManualClock();
+        StubMetricRecorder recorder = new StubMetricRecorder("test", clock);
+        recorder.close();
+
+        MetricKey key = MetricKey.of(UUID.randomUUID().toString());
+        Assertions.assertThrows(IllegalStateException.class, () -> recorder.addCount(key, 1));
+        Assertions.assertThrows(IllegalStateException.class, () -> recorder.addDuration(key, Duration.ofSeconds(1)));
+        Assertions.assertThrows(IllegalStateException.class, () -> recorder.startDuration(key));
+        Assertions.assertThrows(IllegalStateException.class, () -> recorder.endDuration(key));
+    }
+
+    @Test
+    public void testTimersAreSharedBetweenNameAndKeyOverloads() {
+        ManualClock clock = new ManualClock();
+        StubMetricRecorder recorder = new StubMetricRecorder("test", clock);
+
+        String metricName = UUID.randomUUID().toString();
+        MetricKey key = MetricKey.of(metricName);
+        recorder.startDuration(metricName);
+        Assertions.assertThrows(IllegalStateException.class, () -> recorder.startDuration(key));
+
+        Duration expectedDuration = Duration.ofSeconds(42);
+        clock.forward(expectedDuration);
+        Assertions.assertEquals(expectedDuration, recorder.endDuration(key));
+        Assertions.assertEquals(expectedDuration, recorder.getDurations().get(metricName));
+    }
+
+    @Test
+    public void testNameOverloadsCallKeyHooks() {
+        ManualClock clock = new ManualClock();
+        KeyHookMetricRecorder recorder = new KeyHookMetricRecorder("test", clock);
+
+        String countName = UUID.randomUUID().toString();
+        String durationName = UUID.randomUUID().toString();
+        recorder.addCount(countName, 1);
+        recorder.addDuration(durationName, Duration.ofSeconds(1));
+        recorder.close();
+
+        Assertions.assertTrue(recorder.getKeys().contains(MetricKey.of(countName)));
+        Assertions.assertTrue(recorder.getKeys().contains(MetricKey.of(durationName)));
+        Assertions.assertTrue(recorder.getKeys().contains(StandardMetricNames.TIME.getKey()));
+    }
+
+    @Test
+    public void testDurationsUseTickerRatherThanClock() {
+        ManualClock clock = new ManualClock();
+        ManualTicker ticker = new ManualTicker(ThreadLocalRandom.current().nextLong());
+        StubMetricRecorder recorder = new StubMetricRecorder("test", clock, ticker);
+
+        String metricName = UUID.randomUUID().toString();
+        recorder.startDuration(metricName);
+
+        // A wall-clock jump backwards must not affect measured durations.
+        clock.rewind(Duration.ofMinutes(5));
+        ticker.forward(Duration.ofSeconds(3));
+        recorder.endDuration(metricName);
+
+        ticker.forward(Duration.ofSeconds(4));
+        recorder.close();
+
+        Assertions.assertEquals(Duration.ofSeconds(3), recorder.getDurations().get(metricName));
+        Assertions.assertEquals(Duration.ofSeconds(7), recorder.getDurations().get(StandardMetricNames.TIME.toString()));
+        Assertions.assertEquals(clock.instant(), recorder.getTimestamps().get(StandardMetricNames.END_TIME.toString()));
+    }
+
+    @Test
+    public void testStartAndStopTimerCalculateDurationCorrectly() {
+        ManualClock clock = new ManualClock();
+        ManualTicker ticker = new ManualTicker();
+        StubMetricRecorder recorder = new StubMetricRecorder("test", clock, ticker);
+
+        MetricKey key = MetricKey.of(UUID.randomUUID().toString());
+        Assertions.assertEquals(ticker.read(), recorder.startTimer(key));
+
+        Duration expectedDuration = Duration.ofMillis(1500);
+        ticker.forward(expectedDuration);
+        Assertions.assertEquals(expectedDuration.toNanos(), recorder.stopTimer(key));
+        Assertions.assertEquals(expectedDuration, recorder.getDurations().get(key.getName()));
+    }
+
+    @Test
+    public void testTimersAreSharedBetweenStartDurationAndStartTimer() {
+        ManualClock clock = new ManualClock();
+        ManualTicker ticker = new ManualTicker();
+        StubMetricRecorder recorder = new StubMetricRecorder("test", clock, ticker);
+
+        String metricName = UUID.randomUUID().toString();
+        recorder.startTimer(metricName);
+        Assertions.assertThrows(IllegalStateException.class, () -> recorder.startDuration(metricName));
+
+        ticker.forward(Duration.ofSeconds(2));
+        Assertions.assertEquals(Duration.ofSeconds(2), recorder.endDuration(metricName));
+        Assertions.assertThrows(IllegalStateException.class, () -> recorder.stopTimer(metricName));
+    }
+
+    @Test
+    public void testTimerMethodsRejectedWhenClosed() {
+        ManualClock clock = new ManualClock();
+        StubMetricRecorder recorder = new StubMetricRecorder("test", clock);
+        String metricName = UUID.randomUUID().toString();
+        recorder.startTimer(metricName);
+        recorder.close();
+
+        Assertions.assertThrows(IllegalStateException.class, () -> recorder.startTimer(metricName));
+        Assertions.assertThrows(IllegalStateException.class, () -> recorder.stopTimer(metricName));
+    }
+
+    @Test
+    public void testAddDurationNanosCallsAddDurationHook() {
+        ManualClock clock = new ManualClock();
+        StubMetricRecorder recorder = new StubMetricRecorder("test", clock);
+        String metricName = UUID.randomUUID().toString();
+        recorder.addDurationNanos(metricName, 1234567L);
+        Assertions.assertEquals(Duration.ofNanos(1234567L), recorder.getDurations().get(metricName));
+        recorder.close();
+        Assertions.assertThrows(IllegalStateException.class, () -> recorder.addDurationNanos(metricName, 1L));
+    }
+
+    @Test
+    public void testAllDurationsReachNanosHook() {
+        ManualClock clock = new ManualClock();
+        ManualTicker ticker = new ManualTicker();
+        NanosHookMetricRecorder recorder = new NanosHookMetricRecorder("test", clock, ticker);
+
+        String addedName = UUID.randomUUID().toString();
+        String timedName = UUID.randomUUID().toString();
+        String openName = UUID.randomUUID().toString();
+        recorder.addDuration(addedName, Duration.ofMillis(5));
+        recorder.startTimer(timedName);
+        recorder.startDuration(openName);
+        ticker.forward(Duration.ofMillis(7));
+        recorder.stopTimer(timedName);
+        ticker.forward(Duration.ofMillis(1));
+        recorder.close();
+
+        Assertions.assertEquals(Duration.ofMillis(5).toNanos(), recorder.getNanos().get(MetricKey.of(addedName)));
+        Assertions.assertEquals(Duration.ofMillis(7).toNanos(), recorder.getNanos().get(MetricKey.of(timedName)));
+        Assertions.assertEquals(Duration.ofMillis(8).toNanos(), recorder.getNanos().get(MetricKey.of(openName)));
+        Assertions.assertEquals(Duration.ofMillis(8).toNanos(), recorder.getNanos().get(StandardMetricNames.TIME.getKey()));
+    }
+
+    @Test
+    public void testChildMetricsAreMergedWithPrefix() {
+        ManualClock clock = new ManualClock();
+        ManualTicker ticker = new ManualTicker();
+        StubMetricRecorder parent = new StubMetricRecorder("GetWidget", clock, ticker);
+
+        MetricRecorder inventory = parent.newChild("FetchInventory");
+        MetricRecorder pricing = parent.newChild("FetchPricing");
+        inventory.addCount("Rows", 3);
+        inventory.addProperty("Region", "us-west-2");
+        pricing.addCount("Rows", 4);
+        ticker.forward(Duration.ofMillis(10));
+        inventory.close();
+        ticker.forward(Duration.ofMillis(5));
+        pricing.close();
+        parent.close();
+
+        Assertions.assertEquals(3.0, parent.getCounts().get("FetchInventory.Rows"));
+        Assertions.assertEquals(4.0, parent.getCounts().get("FetchPricing.Rows"));
+        Assertions.assertEquals("us-west-2", parent.getProperties().get("FetchInventory.Region"));
+        Assertions.assertFalse(parent.getProperties().containsKey("FetchInventory.Operation"));
+        Assertions.assertFalse(parent.getTimestamps().containsKey("FetchInventory.StartTime"));
+        Assertions.assertEquals("GetWidget", parent.getProperties().get(StandardMetricNames.OPERATION.toString()));
+        Assertions.assertEquals(Duration.ofMillis(10), parent.getDurations().get("FetchInventory.Time"));
+        Assertions.assertEquals(Duration.ofMillis(15), parent.getDurations().get("FetchPricing.Time"));
+        Assertions.assertEquals(Duration.ofMillis(25), parent.getDurations().get(StandardMetricNames.CHILD_TIME.toString()));
+        Assertions.assertEquals(Duration.ofMillis(15),
+            parent.getDurations().get(StandardMetricNames.CHILD_CRITICAL_PATH_TIME.toString()));
+    }
+
+    @Test
+    public void testChildCriticalPathSkipsGaps() {
+        ManualClock clock = new ManualClock();
+        ManualTicker ticker = new ManualTicker();
+        StubMetricRecorder parent = new StubMetricRecorder("GetWidget", clock, ticker);
+
+        MetricRecorder first = parent.newChild("Step");
+        ticker.forward(Duration.ofMillis(10));
+        first.close();
+        ticker.forward(Duration.ofMillis(10));
+        MetricRecorder second = parent.newChild("Step");
+        MetricRecorder overlapping = parent.newChild("Overlap");
+        ticker.forward(Duration.ofMillis(5));
+        second.close();
+        ticker.forward(Duration.ofMillis(1));
+        overlapping.close();
+        parent.close();
+
+        Assertions.assertEquals(Duration.ofMillis(15), parent.getDurations().get("Step.Time"));
+        Assertions.assertEquals(Duration.ofMillis(6), parent.getDurations().get("Overlap.Time"));
+        Assertions.assertEquals(Duration.ofMillis(21), parent.getDurations().get(StandardMetricNames.CHILD_TIME.toString()));
+        Assertions.assertEquals(Duration.ofMillis(16),
+            parent.getDurations().get(StandardMetricNames.CHILD_CRITICAL_PATH_TIME.toString()));
+        Assertions.assertEquals(Duration.ofMillis(26), parent.getDurations().get(StandardMetricNames.TIME.toString()));
+    }
+
+    @Test
+    public void testNestedChildren() {
+        StubMetricRecorder parent = new StubMetricRecorder("GetWidget", new ManualClock());
+        MetricRecorder child = parent.newChild("Fetch");
+        MetricRecorder grandchild = child.newChild("Retry");
+        grandchild.addCount("Attempts", 2);
+        grandchild.close();
+        child.close();
+        parent.close();
+
+        Assertions.assertEquals(2.0, parent.getCounts().get("Fetch.Retry.Attempts"));
+        Assertions.assertTrue(parent.getDurations().containsKey("Fetch.ChildTime"));
+    }
+
+    @Test
+    public void testNoChildMetricsWithoutChildren() {
+        StubMetricRecorder recorder = new StubMetricRecorder("GetWidget", new ManualClock());
+        recorder.close();
+        Assertions.assertFalse(recorder.getDurations().containsKey(StandardMetricNames.CHILD_TIME.toString()));
+        Assertions.assertFalse(recorder.getDurations().containsKey(StandardMetricNames.CHILD_CRITICAL_PATH_TIME.toString()));
+    }
+
+    @Test
+    public void testChildClosedAfterParentIsRejected() {
+        StubMetricRecorder parent = new StubMetricRecorder("GetWidget", new ManualClock());
+        MetricRecorder child = parent.newChild("Fetch");
+        child.addCount("Rows", 1);
+        parent.close();
+
+        Assertions.assertThrows(IllegalStateException.class, child::close);
+        Assertions.assertFalse(parent.getCounts().containsKey("Fetch.Rows"));
+        Assertions.assertThrows(IllegalStateException.class, () -> parent.newChild("Fetch"));
+    }
+
+    @Test
+    public void testChildrenClosedOnOtherThreads() throws InterruptedException {
+        StubMetricRecorder parent = new StubMetricRecorder("GetWidget", Clock.systemUTC());
+        int tasks = 8;
+        Thread[] threads = new Thread[tasks];
+        for (int t = 0; t < tasks; t++) {
+            MetricRecorder child = parent.newChild("Task");
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    child.addCount("Requests", 1);
+                }
+                child.close();
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        parent.close();
+
+        Assertions.assertEquals(8000.0, parent.getCounts().get("Task.Requests"));
+        Duration childTime = parent.getDurations().get(StandardMetricNames.CHILD_TIME.toString());
+        Duration criticalPath = parent.getDurations().get(StandardMetricNames.CHILD_CRITICAL_PATH_TIME.toString());
+        Assertions.assertTrue(criticalPath.compareTo(childTime) <= 0);
+    }
+
     /**
      * This recorder lets us verify that the base MetricRecorder class calls the base class hooks at the right times.
      * This is basically a trimmed-down version of InMemoryMetricRecorder.
@@ -319,7 +693,11 @@ public class MetricRecorderTest {
         private boolean closeHookCalled;
 
         public StubMetricRecorder(String operation, Clock clock) {
-            super(operation, clock);
+            this(operation, clock, Ticker.forClock(clock));
+        }
+
+        public StubMetricRecorder(String operation, Clock clock, Ticker ticker) {
+            super(operation, clock, ticker);
             this.properties = new HashMap<>();
             this.dates = new HashMap<>();
             this.counts = new HashMap<>();
@@ -380,4 +758,49 @@ public class MetricRecorderTest {
             return closeHookCalled;
         }
     }
+
+    /**
+     * This recorder only overrides the key-based hooks, and remembers which keys it saw.
+     */
+    public static class KeyHookMetricRecorder extends MetricRecorder {
+        private final Set<MetricKey> keys = new HashSet<>();
+
+        public KeyHookMetricRecorder(String operation, Clock clock) {
+            super(operation, clock);
+        }
+
+        @Override
+        protected void addCountHook(MetricKey key, double count) {
+            keys.add(key);
+        }
+
+        @Override
+        protected void addDurationHook(MetricKey key, Duration duration) {
+            keys.add(key);
+        }
+
+        public Set<MetricKey> getKeys() {
+            return keys;
+        }
+    }
+
+    /**
+     * This recorder only overrides the primitive nanosecond duration hook, and remembers what it saw.
+     */
+    public static class NanosHookMetricRecorder extends MetricRecorder {
+        private final Map<MetricKey, Long> nanos = new HashMap<>();
+
+        public NanosHookMetricRecorder(String operation, Clock clock, Ticker ticker) {
+            super(operation, clock, ticker);
+        }
+
+        @Override
+        protected void addDurationHook(MetricKey key, long durationNanos) {
+            nanos.merge(key, durationNanos, Long::sum);
+        }
+
+        public Map<MetricKey, Long> getNanos() {
+            return nanos;
+        }
+    }
 }
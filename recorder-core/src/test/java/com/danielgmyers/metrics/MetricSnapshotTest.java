@@ -0,0 +1,176 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class MetricSnapshotTest {
+
+    @Test
+    public void testEmptySnapshot() {
+        MetricSnapshot snapshot = MetricSnapshot.empty();
+        Assertions.assertEquals(0, snapshot.getNumProperties());
+        Assertions.assertEquals(0, snapshot.getNumTimestamps());
+        Assertions.assertEquals(0, snapshot.getNumCounts());
+        Assertions.assertEquals(0, snapshot.getNumDurations());
+        Assertions.assertNull(snapshot.getProperty("Operation"));
+        Assertions.assertNull(snapshot.getCount("Rings"));
+    }
+
+    @Test
+    public void testCountsAndDurationsAggregate() {
+        MetricKey rings = MetricKey.of("Rings");
+        MetricKey warp = MetricKey.of("Warp");
+        MetricSnapshot snapshot = new MetricSnapshot.Builder()
+                .addCount(rings, 1.5)
+                .addDurationNanos(warp, 100)
+                .addCount(rings, 2.0)
+                .addDurationNanos(warp, 23)
+                .build();
+
+        Assertions.assertEquals(1, snapshot.getNumCounts());
+        Assertions.assertEquals(rings, snapshot.getCountKey(0));
+        Assertions.assertEquals(3.5, snapshot.getCountValue(0));
+        Assertions.assertEquals(3.5, snapshot.getCount("Rings"));
+
+        Assertions.assertEquals(1, snapshot.getNumDurations());
+        Assertions.assertEquals(warp, snapshot.getDurationKey(0));
+        Assertions.assertEquals(123, snapshot.getDurationNanos(0));
+        Assertions.assertEquals(Duration.ofNanos(123), snapshot.getDuration("Warp"));
+    }
+
+    @Test
+    public void testPropertiesAndTimestampsKeepLastValue() {
+        MetricKey ship = MetricKey.of("StarshipName");
+        MetricKey stardate = MetricKey.of("Stardate");
+        Instant first = Instant.now();
+        Instant second = first.plusSeconds(60);
+        MetricSnapshot snapshot = new MetricSnapshot.Builder()
+                .putProperty(ship, "Enterprise")
+                .putTimestamp(stardate, first)
+                .putProperty(ship, "Voyager")
+                .putTimestamp(stardate, second)
+                .build();
+
+        Assertions.assertEquals(1, snapshot.getNumProperties());
+        Assertions.assertEquals("Voyager", snapshot.getPropertyValue(0));
+        Assertions.assertEquals("Voyager", snapshot.getProperty("StarshipName"));
+        Assertions.assertEquals(1, snapshot.getNumTimestamps());
+        Assertions.assertEquals(second, snapshot.getTimestampValue(0));
+        Assertions.assertEquals(second, snapshot.getTimestamp("Stardate"));
+    }
+
+    @Test
+    public void testManyKeysKeepInsertionOrder() {
+        List<MetricKey> keys = new ArrayList<>();
+        MetricSnapshot.Builder builder = new MetricSnapshot.Builder();
+        for (int i = 0; i < 100; i++) {
+            MetricKey key = MetricKey.of(UUID.randomUUID().toString());
+            keys.add(key);
+            builder.addCount(key, i);
+            builder.addDurationNanos(key, i);
+            builder.putProperty(key, Integer.toString(i));
+        }
+        // Record everything a second time so the aggregation has to find existing entries after the tables grew.
+        for (int i = 0; i < 100; i++) {
+            builder.addCount(keys.get(i), i);
+            builder.addDurationNanos(keys.get(i), i);
+        }
+
+        MetricSnapshot snapshot = builder.build();
+        Assertions.assertEquals(100, snapshot.getNumCounts());
+        Assertions.assertEquals(100, snapshot.getNumDurations());
+        Assertions.assertEquals(100, snapshot.getNumProperties());
+        for (int i = 0; i < 100; i++) {
+            Assertions.assertEquals(keys.get(i), snapshot.getCountKey(i));
+            Assertions.assertEquals(2.0 * i, snapshot.getCountValue(i));
+            Assertions.assertEquals(keys.get(i), snapshot.getDurationKey(i));
+            Assertions.assertEquals(2L * i, snapshot.getDurationNanos(i));
+            Assertions.assertEquals(Integer.toString(i), snapshot.getPropertyValue(i));
+        }
+    }
+
+    @Test
+    public void testSnapshotIsUnaffectedByLaterChanges() {
+        MetricKey rings = MetricKey.of("Rings");
+        MetricSnapshot.Builder builder = new MetricSnapshot.Builder().addCount(rings, 1);
+        MetricSnapshot snapshot = builder.build();
+
+        builder.addCount(rings, 1).addCount(MetricKey.of("Moons"), 2);
+        builder.clear();
+
+        Assertions.assertEquals(1, snapshot.getNumCounts());
+        Assertions.assertEquals(1.0, snapshot.getCount("Rings"));
+    }
+
+    @Test
+    public void testClearedBuilderCanBeReused() {
+        MetricKey rings = MetricKey.of("Rings");
+        MetricKey ship = MetricKey.of("StarshipName");
+        MetricSnapshot.Builder builder = new MetricSnapshot.Builder()
+                .addCount(rings, 5)
+                .putProperty(ship, "Enterprise");
+        builder.clear();
+
+        MetricSnapshot empty = builder.build();
+        Assertions.assertEquals(0, empty.getNumCounts());
+        Assertions.assertEquals(0, empty.getNumProperties());
+
+        MetricSnapshot snapshot = builder.addCount(rings, 2).build();
+        Assertions.assertEquals(2.0, snapshot.getCount("Rings"));
+        Assertions.assertNull(snapshot.getProperty("StarshipName"));
+    }
+
+    @Test
+    public void testBuilderCanBeReadWithoutBuilding() {
+        MetricKey rings = MetricKey.of("Rings");
+        MetricKey warp = MetricKey.of("Warp");
+        MetricKey ship = MetricKey.of("StarshipName");
+        MetricKey launch = MetricKey.of("Launch");
+        Instant launchTime = Instant.now();
+        MetricSnapshot.Builder builder = new MetricSnapshot.Builder()
+                .putProperty(ship, "Enterprise")
+                .putTimestamp(launch, launchTime)
+                .addCount(rings, 1)
+                .addCount(rings, 2)
+                .addDurationNanos(warp, 7);
+
+        Assertions.assertEquals(1, builder.getNumProperties());
+        Assertions.assertSame(ship, builder.getPropertyKey(0));
+        Assertions.assertEquals("Enterprise", builder.getPropertyValue(0));
+        Assertions.assertEquals(1, builder.getNumTimestamps());
+        Assertions.assertSame(launch, builder.getTimestampKey(0));
+        Assertions.assertEquals(launchTime, builder.getTimestampValue(0));
+        Assertions.assertEquals(1, builder.getNumCounts());
+        Assertions.assertSame(rings, builder.getCountKey(0));
+        Assertions.assertEquals(3.0, builder.getCountValue(0));
+        Assertions.assertEquals(1, builder.getNumDurations());
+        Assertions.assertSame(warp, builder.getDurationKey(0));
+        Assertions.assertEquals(7, builder.getDurationNanos(0));
+
+        builder.clear();
+        Assertions.assertEquals(0, builder.getNumProperties());
+        Assertions.assertEquals(0, builder.getNumCounts());
+    }
+}
@@ -17,8 +17,10 @@
 package com.danielgmyers.metrics;
 
 import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -37,4 +39,120 @@ public class NoopMetricRecorderFactoryTest {
         recorder = factory.newMetricRecorder("test", Clock.fixed(Instant.now(), ZoneId.systemDefault()));
         Assertions.assertEquals(NoopMetricRecorder.class, recorder.getClass());
     }
+
+    @Test
+    public void testRecordersAreNotRecording() {
+        Assertions.assertFalse(factory.newMetricRecorder("test").isRecording());
+        Assertions.assertFalse(new PooledMetricRecorderFactory(factory).newMetricRecorder("test").isRecording());
+        Assertions.assertFalse(new ConcurrentMetricRecorderFactory(factory).newMetricRecorder("test").isRecording());
+    }
+
+    @Test
+    public void testRecordersNeverReadTheClock() {
+        CountingClock clock = new CountingClock();
+        MetricRecorder recorder = factory.newMetricRecorder("test", clock);
+        recorder.addProperty("Widget", "widget-1");
+        recorder.addCount("Widgets", 1);
+        recorder.addDurationNanos("Lookup", 5);
+        recorder.startTimer("Fetch");
+        Assertions.assertEquals(0, recorder.stopTimer("Fetch"));
+        Assertions.assertEquals(Instant.EPOCH, recorder.startDuration("Render"));
+        Assertions.assertEquals(Duration.ZERO, recorder.endDuration("Render"));
+        recorder.startDuration(MetricKey.of("Unfinished"));
+        MetricRecorder child = recorder.newChild("Fetch");
+        child.addCount("Widgets", 1);
+        child.startTimer("Lookup");
+        child.close();
+        recorder.close();
+
+        Assertions.assertTrue(recorder.isClosed());
+        Assertions.assertFalse(child.isRecording());
+        Assertions.assertEquals(0, clock.reads.get());
+    }
+
+    @Test
+    public void testPooledRecordersNeverReadTheClock() {
+        CountingClock clock = new CountingClock();
+        PooledMetricRecorderFactory pooled = new PooledMetricRecorderFactory(factory);
+        for (int i = 0; i < 3; i++) {
+            MetricRecorder recorder = pooled.newMetricRecorder("test", clock);
+            recorder.startDuration("Render");
+            recorder.endDuration("Render");
+            recorder.close();
+        }
+        Assertions.assertEquals(0, clock.reads.get());
+    }
+
+    @Test
+    public void testDurationsBetweenInstantsAreZero() {
+        MetricRecorder recorder = factory.newMetricRecorder("test");
+        Instant start = Instant.now();
+        recorder.startDuration("Lookup", start);
+        Assertions.assertEquals(Duration.ZERO, recorder.endDuration("Lookup", start.plusMillis(5)));
+        recorder.startTimer("Fetch");
+        Assertions.assertEquals(Duration.ZERO, recorder.endDuration("Fetch", start.plusMillis(5)));
+        recorder.close();
+    }
+
+    @Test
+    public void testTimerMisuseIsRejected() {
+        MetricRecorder recorder = factory.newMetricRecorder("test");
+        Assertions.assertThrows(IllegalStateException.class, () -> recorder.stopTimer("Fetch"));
+        Assertions.assertThrows(IllegalStateException.class, () -> recorder.endDuration("Fetch", Instant.now()));
+        recorder.startTimer("Fetch");
+        Assertions.assertThrows(IllegalStateException.class, () -> recorder.startTimer("Fetch"));
+        Assertions.assertThrows(IllegalStateException.class, () -> recorder.startDuration("Fetch", Instant.now()));
+        recorder.stopTimer("Fetch");
+        Assertions.assertThrows(IllegalStateException.class, () -> recorder.stopTimer("Fetch"));
+        recorder.close();
+    }
+
+    @Test
+    public void testRecordersRejectUseAfterClose() {
+        MetricRecorder recorder = factory.newMetricRecorder("test");
+        MetricRecorder child = recorder.newChild("Fetch");
+        recorder.close();
+
+        Assertions.assertThrows(IllegalStateException.class, () -> recorder.addCount("Widgets", 1));
+        Assertions.assertThrows(IllegalStateException.class, () -> recorder.startTimer("Fetch"));
+        Assertions.assertThrows(IllegalStateException.class, recorder::close);
+        Assertions.assertThrows(IllegalStateException.class, child::close);
+    }
+
+    @Test
+    public void testPooledRecordersAreReused() {
+        AtomicInteger created = new AtomicInteger();
+        PooledMetricRecorderFactory pooled = new PooledMetricRecorderFactory((operation, clock) -> {
+            created.incrementAndGet();
+            return factory.newMetricRecorder(operation, clock);
+        });
+        for (int i = 0; i < 3; i++) {
+            MetricRecorder recorder = pooled.newMetricRecorder("test");
+            recorder.startTimer("Fetch");
+            recorder.addCount("Widgets", 1);
+            recorder.close();
+            Assertions.assertTrue(recorder.isClosed());
+        }
+        Assertions.assertEquals(1, created.get());
+    }
+
+    private static final class CountingClock extends Clock {
+        private final AtomicInteger reads = new AtomicInteger();
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.systemDefault();
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            reads.incrementAndGet();
+            return Instant.EPOCH;
+        }
+    }
 }
@@ -0,0 +1,269 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class PooledMetricRecorderFactoryTest {
+
+    private final List<ResettableStubMetricRecorder> backends = new ArrayList<>();
+
+    private final MetricRecorderFactory resettableFactory = (operation, clock) -> {
+        ResettableStubMetricRecorder recorder = new ResettableStubMetricRecorder(operation, clock);
+        backends.add(recorder);
+        return recorder;
+    };
+
+    @Test
+    public void testRecordersAreReused() {
+        PooledMetricRecorderFactory factory = new PooledMetricRecorderFactory(resettableFactory);
+
+        factory.newMetricRecorder("first").close();
+        factory.newMetricRecorder("second").close();
+        factory.newMetricRecorder("third").close();
+
+        Assertions.assertEquals(1, backends.size());
+    }
+
+    @Test
+    public void testMetricsReachBackend() {
+        ManualClock clock = new ManualClock();
+        PooledMetricRecorderFactory factory = new PooledMetricRecorderFactory(resettableFactory);
+
+        MetricRecorder recorder = factory.newMetricRecorder("test", clock);
+        recorder.addProperty("Ship", "Enterprise");
+        recorder.addCount("Rings", 3);
+        recorder.startDuration("Warp");
+        clock.forward(Duration.ofSeconds(5));
+        recorder.close();
+
+        ResettableStubMetricRecorder backend = backends.get(0);
+        Assertions.assertEquals(1, backend.getCloseHookCalls());
+        Assertions.assertEquals("Enterprise", backend.getClosedProperties().get("Ship"));
+        Assertions.assertEquals("test", backend.getClosedProperties().get(StandardMetricNames.OPERATION.toString()));
+        Assertions.assertEquals(3, backend.getClosedCounts().get("Rings"));
+        Assertions.assertEquals(Duration.ofSeconds(5), backend.getClosedDurations().get("Warp"));
+        Assertions.assertEquals(Duration.ofSeconds(5),
+                                backend.getClosedDurations().get(StandardMetricNames.TIME.toString()));
+        // Once closeHook() has returned, the backend is recycled.
+        Assertions.assertTrue(backend.getCounts().isEmpty());
+    }
+
+    @Test
+    public void testReusedBackendDoesNotReadTheClock() {
+        AtomicInteger reads = new AtomicInteger();
+        ManualClock clock = new ManualClock() {
+            @Override
+            public Instant instant() {
+                reads.incrementAndGet();
+                return super.instant();
+            }
+        };
+        new MetricRecorderTest.StubMetricRecorder("unpooled", clock).close();
+        int readsPerRecorder = reads.getAndSet(0);
+
+        PooledMetricRecorderFactory factory = new PooledMetricRecorderFactory(resettableFactory);
+        factory.newMetricRecorder("first", clock).close();
+        reads.set(0);
+        factory.newMetricRecorder("second", clock).close();
+
+        Assertions.assertEquals(1, backends.size());
+        // Only the handle reads the time; the reused backend's start time is never used.
+        Assertions.assertEquals(readsPerRecorder, reads.get());
+    }
+
+    @Test
+    public void testReusedRecorderStartsEmpty() {
+        PooledMetricRecorderFactory factory = new PooledMetricRecorderFactory(resettableFactory);
+
+        MetricRecorder first = factory.newMetricRecorder("first");
+        first.addCount("Rings", 3);
+        first.close();
+
+        MetricRecorder second = factory.newMetricRecorder("second");
+        ResettableStubMetricRecorder backend = backends.get(0);
+        Assertions.assertTrue(backend.getCounts().isEmpty());
+        Assertions.assertFalse(backend.isClosed());
+
+        second.close();
+        Assertions.assertNull(backend.getClosedCounts().get("Rings"));
+        Assertions.assertEquals("second", backend.getClosedProperties().get(StandardMetricNames.OPERATION.toString()));
+        // Each lease gets a single Time metric, rather than accumulating across leases.
+        Assertions.assertEquals(1, backend.getClosedDurations().size());
+    }
+
+    @Test
+    public void testUseAfterCloseDetectedAfterReuse() {
+        PooledMetricRecorderFactory factory = new PooledMetricRecorderFactory(resettableFactory);
+
+        MetricRecorder first = factory.newMetricRecorder("first");
+        first.close();
+        MetricRecorder second = factory.newMetricRecorder("second");
+        Assertions.assertEquals(1, backends.size());
+
+        Assertions.assertTrue(first.isClosed());
+        Assertions.assertThrows(IllegalStateException.class, () -> first.addCount("Rings", 1));
+        Assertions.assertThrows(IllegalStateException.class, () -> first.startDuration("Warp"));
+        Assertions.assertThrows(IllegalStateException.class, first::close);
+
+        second.addCount("Rings", 1);
+        second.close();
+        Assertions.assertEquals(1, backends.get(0).getClosedCounts().get("Rings"));
+    }
+
+    @Test
+    public void testNonResettableRecordersAreNotReused() {
+        AtomicInteger created = new AtomicInteger();
+        PooledMetricRecorderFactory factory = new PooledMetricRecorderFactory((operation, clock) -> {
+            created.incrementAndGet();
+            return new MetricRecorderTest.StubMetricRecorder(operation, clock);
+        });
+
+        factory.newMetricRecorder("first").close();
+        factory.newMetricRecorder("second").close();
+
+        Assertions.assertEquals(2, created.get());
+    }
+
+    @Test
+    public void testPoolIsBounded() {
+        PooledMetricRecorderFactory factory = new PooledMetricRecorderFactory(resettableFactory, 1, 2);
+
+        List<MetricRecorder> open = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            open.add(factory.newMetricRecorder("test"));
+        }
+        open.forEach(MetricRecorder::close);
+        Assertions.assertEquals(4, backends.size());
+
+        // Only two of the four fit in the pool, so two more have to be created.
+        for (int i = 0; i < 4; i++) {
+            factory.newMetricRecorder("test");
+        }
+        Assertions.assertEquals(6, backends.size());
+    }
+
+    @Test
+    public void testInvalidPoolSizesRejected() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> new PooledMetricRecorderFactory(resettableFactory, 3, 1));
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> new PooledMetricRecorderFactory(resettableFactory, 0, 1));
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> new PooledMetricRecorderFactory(resettableFactory, 1, 0));
+    }
+
+    @Test
+    public void testConcurrentLeasesDoNotShareState() throws InterruptedException {
+        AtomicInteger created = new AtomicInteger();
+        AtomicInteger corrupted = new AtomicInteger();
+        PooledMetricRecorderFactory factory = new PooledMetricRecorderFactory((operation, clock) -> {
+            created.incrementAndGet();
+            return new ResettableStubMetricRecorder(operation, clock) {
+                @Override
+                protected void closeHook() {
+                    super.closeHook();
+                    if (getCounts().get("Calls") != 1.0
+                            || !getOperation().equals(getProperties().get(StandardMetricNames.OPERATION.toString()))) {
+                        corrupted.incrementAndGet();
+                    }
+                }
+            };
+        }, 4, 4);
+
+        int threadCount = 8;
+        int iterations = 2000;
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            String operation = "Operation" + t;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < iterations; i++) {
+                    MetricRecorder recorder = factory.newMetricRecorder(operation);
+                    recorder.addCount("Calls", 1);
+                    recorder.close();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assertions.assertEquals(0, corrupted.get());
+        Assertions.assertTrue(created.get() < threadCount * iterations);
+    }
+
+    /**
+     * A stub which supports being reused by the pool. Since the pool recycles it as soon as closeHook() returns,
+     * it keeps a copy of what it had recorded at that point.
+     */
+    public static class ResettableStubMetricRecorder extends MetricRecorderTest.StubMetricRecorder {
+        private int closeHookCalls;
+        private Map<String, String> closedProperties;
+        private Map<String, Double> closedCounts;
+        private Map<String, Duration> closedDurations;
+
+        public ResettableStubMetricRecorder(String operation, Clock clock) {
+            super(operation, clock);
+        }
+
+        @Override
+        protected void closeHook() {
+            super.closeHook();
+            closeHookCalls++;
+            closedProperties = new HashMap<>(getProperties());
+            closedCounts = new HashMap<>(getCounts());
+            closedDurations = new HashMap<>(getDurations());
+        }
+
+        @Override
+        protected boolean resetHook() {
+            getProperties().clear();
+            getTimestamps().clear();
+            getCounts().clear();
+            getDurations().clear();
+            return true;
+        }
+
+        public int getCloseHookCalls() {
+            return closeHookCalls;
+        }
+
+        public Map<String, String> getClosedProperties() {
+            return closedProperties;
+        }
+
+        public Map<String, Double> getClosedCounts() {
+            return closedCounts;
+        }
+
+        public Map<String, Duration> getClosedDurations() {
+            return closedDurations;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class PrefixedKeysTest {
+
+    @Test
+    public void testPrefixedKeysAreCached() {
+        PrefixedKeys keys = PrefixedKeys.of("FetchInventory");
+        Assertions.assertSame(keys, PrefixedKeys.of("FetchInventory"));
+
+        MetricKey rows = MetricKey.of("Rows");
+        MetricKey prefixed = keys.prefixed(rows);
+        Assertions.assertEquals("FetchInventory.Rows", prefixed.getName());
+        Assertions.assertSame(MetricKey.of("FetchInventory.Rows"), prefixed);
+        Assertions.assertSame(prefixed, keys.prefixed(rows));
+    }
+
+    @Test
+    public void testKeysCreatedAfterCachingArePrefixed() {
+        PrefixedKeys keys = PrefixedKeys.of("FetchPricing");
+        keys.prefixed(MetricKey.of("Rows"));
+
+        MetricKey later = MetricKey.of("PrefixedKeysTestLaterKey");
+        Assertions.assertEquals("FetchPricing.PrefixedKeysTestLaterKey", keys.prefixed(later).getName());
+        Assertions.assertEquals("FetchInventory.PrefixedKeysTestLaterKey",
+                                PrefixedKeys.of("FetchInventory").prefixed(later).getName());
+    }
+}
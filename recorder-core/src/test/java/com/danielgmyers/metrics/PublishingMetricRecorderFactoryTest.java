@@ -0,0 +1,84 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.danielgmyers.metrics.recorders.PublishingMetricRecorder;
+import com.danielgmyers.metrics.recorders.PublishingMetricRecorderFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class PublishingMetricRecorderFactoryTest {
+
+    private final List<MetricSnapshot> published = new ArrayList<>();
+    private final PublishingMetricRecorderFactory factory = new PublishingMetricRecorderFactory(published::add);
+
+    @Test
+    public void testFactoryReturnsPublishingMetricRecorder() {
+        Assertions.assertEquals(PublishingMetricRecorder.class, factory.newMetricRecorder("test").getClass());
+    }
+
+    @Test
+    public void testSnapshotIsPublishedOnClose() {
+        ManualClock clock = new ManualClock();
+        Instant startTime = clock.instant();
+        MetricRecorder recorder = factory.newMetricRecorder("test", clock);
+        recorder.addProperty("StarshipName", "Enterprise");
+        recorder.addCount("Widgets", 2);
+        recorder.addCount("Widgets", 3);
+        recorder.addDuration("WarpTime", Duration.ofMillis(5));
+        Instant endTime = clock.forward(Duration.ofMillis(200));
+
+        Assertions.assertTrue(published.isEmpty());
+        recorder.close();
+        Assertions.assertEquals(1, published.size());
+
+        MetricSnapshot snapshot = published.get(0);
+        Assertions.assertEquals("Enterprise", snapshot.getProperty("StarshipName"));
+        Assertions.assertEquals("test", snapshot.getProperty(StandardMetricNames.OPERATION.toString()));
+        Assertions.assertEquals(5.0, snapshot.getCount("Widgets"));
+        Assertions.assertEquals(Duration.ofMillis(5), snapshot.getDuration("WarpTime"));
+        Assertions.assertEquals(Duration.ofMillis(200), snapshot.getDuration(StandardMetricNames.TIME.toString()));
+        Assertions.assertEquals(startTime, snapshot.getTimestamp(StandardMetricNames.START_TIME.toString()));
+        Assertions.assertEquals(endTime, snapshot.getTimestamp(StandardMetricNames.END_TIME.toString()));
+    }
+
+    @Test
+    public void testPooledRecordersPublishIndependentSnapshots() {
+        MetricRecorderFactory pooled = new PooledMetricRecorderFactory(factory, 1, 1);
+        for (int i = 0; i < 3; i++) {
+            MetricRecorder recorder = pooled.newMetricRecorder("test");
+            recorder.addCount("Iteration" + i, i);
+            recorder.close();
+        }
+
+        Assertions.assertEquals(3, published.size());
+        for (int i = 0; i < 3; i++) {
+            MetricSnapshot snapshot = published.get(i);
+            Assertions.assertEquals((double) i, snapshot.getCount("Iteration" + i));
+            for (int j = 0; j < 3; j++) {
+                if (i != j) {
+                    Assertions.assertNull(snapshot.getCount("Iteration" + j));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class RecordingGateTest {
+
+    @Test
+    public void testClosingThreadWritesWithoutEntering() {
+        RecordingGate gate = new RecordingGate();
+        gate.exit(gate.enter());
+        gate.seal();
+
+        Assertions.assertTrue(gate.isSealed());
+        Assertions.assertEquals(RecordingGate.CLOSING, gate.enter());
+        Assertions.assertThrows(IllegalStateException.class, gate::seal);
+    }
+
+    @Test
+    public void testOtherThreadsAreRejectedOnceSealed() throws Exception {
+        RecordingGate gate = new RecordingGate();
+        gate.seal();
+
+        CompletableFuture<Integer> writer = CompletableFuture.supplyAsync(gate::enter);
+        Exception thrown = Assertions.assertThrows(Exception.class, writer::join);
+        Assertions.assertInstanceOf(IllegalStateException.class, thrown.getCause());
+    }
+
+    @Test
+    public void testSealWaitsForWritesInProgress() throws Exception {
+        RecordingGate gate = new RecordingGate();
+        int token = gate.enter();
+        CountDownLatch sealing = new CountDownLatch(1);
+        AtomicBoolean sealed = new AtomicBoolean();
+
+        Thread closer = new Thread(() -> {
+            sealing.countDown();
+            gate.seal();
+            sealed.set(true);
+        });
+        closer.start();
+        sealing.await();
+        closer.join(100);
+        Assertions.assertFalse(sealed.get());
+
+        gate.exit(token);
+        closer.join(10_000);
+        Assertions.assertTrue(sealed.get());
+    }
+
+    @Test
+    public void testManyWritersAreAllCountedOut() throws Exception {
+        RecordingGate gate = new RecordingGate();
+        Thread[] writers = new Thread[8];
+        for (int t = 0; t < writers.length; t++) {
+            writers[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    gate.exit(gate.enter());
+                }
+            });
+            writers[t].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        gate.seal();
+        Assertions.assertTrue(gate.isSealed());
+    }
+}
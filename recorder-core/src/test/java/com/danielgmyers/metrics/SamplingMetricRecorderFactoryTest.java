@@ -0,0 +1,119 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.danielgmyers.metrics.MetricRecorderTest.StubMetricRecorder;
+import com.danielgmyers.metrics.recorders.NoopMetricRecorder;
+import com.danielgmyers.metrics.recorders.SamplingMetricRecorderFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class SamplingMetricRecorderFactoryTest {
+
+    private final List<StubMetricRecorder> sampled = new ArrayList<>();
+    private final MetricRecorderFactory delegate = (operation, clock) -> {
+        StubMetricRecorder recorder = new StubMetricRecorder(operation, clock);
+        sampled.add(recorder);
+        return recorder;
+    };
+
+    private static String sampleWeight(StubMetricRecorder recorder) {
+        return recorder.getProperties().get(StandardMetricNames.SAMPLE_WEIGHT.toString());
+    }
+
+    @Test
+    public void testRateOneKeepsEverything() {
+        SamplingMetricRecorderFactory factory = new SamplingMetricRecorderFactory(delegate, 1.0);
+        for (int i = 0; i < 100; i++) {
+            factory.newMetricRecorder("GetWidget").close();
+        }
+        Assertions.assertEquals(100, sampled.size());
+        Assertions.assertEquals("1.0", sampleWeight(sampled.get(0)));
+    }
+
+    @Test
+    public void testRateZeroKeepsNothing() {
+        SamplingMetricRecorderFactory factory = new SamplingMetricRecorderFactory(delegate, 0.0);
+        MetricRecorder recorder = factory.newMetricRecorder("GetWidget");
+        Assertions.assertEquals(NoopMetricRecorder.class, recorder.getClass());
+        recorder.addCount("Rings", 1);
+        recorder.close();
+        Assertions.assertTrue(sampled.isEmpty());
+    }
+
+    @Test
+    public void testFractionalRate() {
+        SamplingMetricRecorderFactory factory = new SamplingMetricRecorderFactory(delegate, 0.25);
+        for (int i = 0; i < 20_000; i++) {
+            factory.newMetricRecorder("GetWidget").close();
+        }
+        Assertions.assertTrue(sampled.size() > 4_000 && sampled.size() < 6_000, "Sampled " + sampled.size());
+        Assertions.assertEquals("4.0", sampleWeight(sampled.get(0)));
+        Assertions.assertEquals(0.25, factory.getSamplingRate("GetWidget"));
+    }
+
+    @Test
+    public void testPerOperationRates() {
+        SamplingMetricRecorderFactory factory = new SamplingMetricRecorderFactory(delegate, 0.0, Map.of("PutWidget", 1.0));
+        factory.newMetricRecorder("GetWidget").close();
+        factory.newMetricRecorder("PutWidget").close();
+        Assertions.assertEquals(1, sampled.size());
+        Assertions.assertEquals("PutWidget", sampled.get(0).getProperties().get(StandardMetricNames.OPERATION.toString()));
+        Assertions.assertEquals(0.0, factory.getSamplingRate("DeleteWidget"));
+    }
+
+    @Test
+    public void testInvalidRatesRejected() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new SamplingMetricRecorderFactory(delegate, 1.5));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new SamplingMetricRecorderFactory(delegate, Double.NaN));
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> new SamplingMetricRecorderFactory(delegate, 1.0, Map.of("GetWidget", -0.1)));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> SamplingMetricRecorderFactory.adaptive(delegate, 0));
+    }
+
+    @Test
+    public void testAdaptiveRateKeepsLowVolumeOperations() {
+        ManualTicker ticker = new ManualTicker();
+        SamplingMetricRecorderFactory factory = SamplingMetricRecorderFactory.adaptive(delegate, 100, ticker);
+
+        // Each second, PutWidget sees 10 requests and GetWidget sees 10,000.
+        for (int second = 0; second < 3; second++) {
+            for (int i = 0; i < 10_000; i++) {
+                factory.newMetricRecorder("GetWidget").close();
+                if (i % 1000 == 0) {
+                    factory.newMetricRecorder("PutWidget").close();
+                }
+            }
+            ticker.forward(Duration.ofSeconds(1));
+        }
+
+        Assertions.assertEquals(1.0, factory.getSamplingRate("PutWidget"));
+        Assertions.assertEquals(0.01, factory.getSamplingRate("GetWidget"), 0.001);
+
+        sampled.clear();
+        for (int i = 0; i < 10_000; i++) {
+            factory.newMetricRecorder("GetWidget").close();
+        }
+        Assertions.assertTrue(sampled.size() > 50 && sampled.size() < 200, "Sampled " + sampled.size());
+        Assertions.assertEquals(100.0, Double.parseDouble(sampleWeight(sampled.get(0))), 10.0);
+    }
+}
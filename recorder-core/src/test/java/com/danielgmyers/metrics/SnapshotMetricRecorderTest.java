@@ -0,0 +1,104 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class SnapshotMetricRecorderTest {
+
+    private final List<MetricSnapshot> published = new ArrayList<>();
+    private final List<RecordedMetrics> views = new ArrayList<>();
+
+    private final class CapturingRecorder extends SnapshotMetricRecorder {
+        CapturingRecorder(String operation, Clock clock) {
+            super(operation, clock);
+        }
+
+        @Override
+        protected void publish(RecordedMetrics metrics) {
+            views.add(metrics);
+            published.add(metrics.toSnapshot());
+        }
+    }
+
+    @Test
+    public void testPublishesAggregatedSnapshotOnClose() {
+        ManualClock clock = new ManualClock();
+        Instant startTime = clock.instant();
+        MetricRecorder recorder = new CapturingRecorder("test", clock);
+        recorder.addProperty("StarshipName", "Enterprise");
+        recorder.addTimestamp("LaunchTime", startTime);
+        recorder.addCount("Widgets", 2);
+        recorder.addCount(MetricKey.of("Widgets"), 3);
+        recorder.addDuration("WarpTime", Duration.ofMillis(5));
+        recorder.addDurationNanos("WarpTime", 1_000_000);
+        clock.forward(Duration.ofMillis(200));
+
+        Assertions.assertTrue(published.isEmpty());
+        recorder.close();
+        Assertions.assertEquals(1, published.size());
+
+        MetricSnapshot snapshot = published.get(0);
+        Assertions.assertEquals("Enterprise", snapshot.getProperty("StarshipName"));
+        Assertions.assertEquals("test", snapshot.getProperty(StandardMetricNames.OPERATION.toString()));
+        Assertions.assertEquals(startTime, snapshot.getTimestamp("LaunchTime"));
+        Assertions.assertEquals(1, snapshot.getNumCounts());
+        Assertions.assertEquals(5.0, snapshot.getCount("Widgets"));
+        Assertions.assertEquals(Duration.ofMillis(6), snapshot.getDuration("WarpTime"));
+        Assertions.assertEquals(Duration.ofMillis(200), snapshot.getDuration(StandardMetricNames.TIME.toString()));
+    }
+
+    @Test
+    public void testPooledRecorderStartsWithEmptySnapshot() {
+        MetricRecorderFactory pooled = new PooledMetricRecorderFactory(CapturingRecorder::new, 1, 1);
+        MetricRecorder first = pooled.newMetricRecorder("first");
+        first.addCount("FirstOnly", 1);
+        first.close();
+        MetricRecorder second = pooled.newMetricRecorder("second");
+        second.addCount("SecondOnly", 1);
+        second.close();
+
+        Assertions.assertEquals(2, published.size());
+        Assertions.assertEquals(1.0, published.get(0).getCount("FirstOnly"));
+        Assertions.assertNull(published.get(0).getCount("SecondOnly"));
+        Assertions.assertNull(published.get(1).getCount("FirstOnly"));
+        Assertions.assertEquals(1.0, published.get(1).getCount("SecondOnly"));
+        Assertions.assertEquals("second", published.get(1).getProperty(StandardMetricNames.OPERATION.toString()));
+    }
+
+    @Test
+    public void testPublishesItsOwnBuffersWithoutCopying() {
+        CapturingRecorder recorder = new CapturingRecorder("test", new ManualClock());
+        recorder.addCount("Widgets", 2);
+        RecordedMetrics recorded = recorder.getRecordedMetrics();
+        Assertions.assertEquals(1, recorded.getNumCounts());
+        Assertions.assertEquals(2.0, recorded.getCountValue(0));
+
+        recorder.close();
+        Assertions.assertSame(recorded, views.get(0));
+        Assertions.assertNotSame(recorded, published.get(0));
+        MetricSnapshot snapshot = published.get(0);
+        Assertions.assertSame(snapshot, snapshot.toSnapshot());
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.danielgmyers.metrics.MetricRecorderTest.StubMetricRecorder;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TailSamplingMetricRecorderFactoryTest {
+
+    private final List<StubMetricRecorder> emitted = new ArrayList<>();
+    private final MetricRecorderFactory delegate = (operation, clock) -> {
+        StubMetricRecorder recorder = new StubMetricRecorder(operation, clock);
+        emitted.add(recorder);
+        return recorder;
+    };
+
+    private static String sampleWeight(StubMetricRecorder recorder) {
+        return recorder.getProperties().get(StandardMetricNames.SAMPLE_WEIGHT.toString());
+    }
+
+    private static void record(MetricRecorderFactory factory, String operation, Duration time, double failures) {
+        ManualClock clock = new ManualClock();
+        MetricRecorder recorder = factory.newMetricRecorder(operation, clock);
+        recorder.addCount("FailureCount", failures);
+        clock.forward(time);
+        recorder.close();
+    }
+
+    @Test
+    public void testSlowRecordersAreKept() {
+        MetricRecorderFactory factory = TailSamplingMetricRecorderFactory.builder(delegate)
+            .withSampleRate(0.0)
+            .withLatencyThreshold(Duration.ofMillis(100))
+            .build();
+        record(factory, "GetWidget", Duration.ofMillis(99), 0);
+        Assertions.assertTrue(emitted.isEmpty());
+
+        ManualClock clock = new ManualClock();
+        MetricRecorder recorder = factory.newMetricRecorder("GetWidget", clock);
+        recorder.addProperty("WidgetId", "w-1");
+        recorder.addCount("Rows", 3);
+        recorder.startDuration("DatabaseLookup");
+        clock.forward(Duration.ofMillis(150));
+        recorder.close();
+
+        Assertions.assertEquals(1, emitted.size());
+        StubMetricRecorder kept = emitted.get(0);
+        Assertions.assertTrue(kept.isClosed());
+        Assertions.assertTrue(kept.isCloseHookCalled());
+        Assertions.assertEquals("1.0", sampleWeight(kept));
+        Assertions.assertEquals("w-1", kept.getProperties().get("WidgetId"));
+        Assertions.assertEquals("GetWidget", kept.getProperties().get(StandardMetricNames.OPERATION.toString()));
+        Assertions.assertNotNull(kept.getTimestamps().get(StandardMetricNames.START_TIME.toString()));
+        Assertions.assertEquals(3.0, kept.getCounts().get("Rows"));
+        Assertions.assertEquals(Duration.ofMillis(150), kept.getDurations().get("DatabaseLookup"));
+        Assertions.assertEquals(Duration.ofMillis(150), kept.getDurations().get(StandardMetricNames.TIME.toString()));
+    }
+
+    @Test
+    public void testFailedRecordersAreKept() {
+        MetricRecorderFactory factory = TailSamplingMetricRecorderFactory.builder(delegate)
+            .withSampleRate(0.0)
+            .withFailureCounts("FailureCount", "FaultCount")
+            .build();
+        record(factory, "GetWidget", Duration.ofMillis(1), 0);
+        record(factory, "GetWidget", Duration.ofMillis(1), 1);
+
+        MetricRecorder recorder = factory.newMetricRecorder("GetWidget");
+        recorder.addCount("FaultCount", 1);
+        recorder.close();
+
+        Assertions.assertEquals(2, emitted.size());
+        Assertions.assertEquals(1.0, emitted.get(0).getCounts().get("FailureCount"));
+        Assertions.assertEquals(1.0, emitted.get(1).getCounts().get("FaultCount"));
+    }
+
+    @Test
+    public void testFailureCountsThatNetToZeroAreNotFailures() {
+        MetricRecorderFactory factory = TailSamplingMetricRecorderFactory.builder(delegate)
+            .withSampleRate(0.0)
+            .build();
+        MetricRecorder recorder = factory.newMetricRecorder("GetWidget");
+        recorder.addCount("FailureCount", 1);
+        recorder.addCount("FailureCount", -1);
+        recorder.close();
+        Assertions.assertTrue(emitted.isEmpty());
+
+        recorder = factory.newMetricRecorder("GetWidget");
+        recorder.addCount("FailureCount", 0);
+        recorder.addCount("FailureCount", 1);
+        recorder.close();
+        Assertions.assertEquals(1, emitted.size());
+    }
+
+    @Test
+    public void testPerOperationThreshold() {
+        MetricRecorderFactory factory = TailSamplingMetricRecorderFactory.builder(delegate)
+            .withSampleRate(0.0)
+            .withLatencyThreshold(Duration.ofSeconds(1))
+            .withLatencyThreshold("GetWidget", Duration.ofMillis(10))
+            .build();
+        record(factory, "GetWidget", Duration.ofMillis(20), 0);
+        record(factory, "PutWidget", Duration.ofMillis(20), 0);
+        Assertions.assertEquals(1, emitted.size());
+        Assertions.assertEquals("GetWidget", emitted.get(0).getProperties().get(StandardMetricNames.OPERATION.toString()));
+    }
+
+    @Test
+    public void testFastRecordersAreSampled() {
+        MetricRecorderFactory factory = TailSamplingMetricRecorderFactory.builder(delegate)
+            .withSampleRate(0.25)
+            .withLatencyThreshold(Duration.ofSeconds(1))
+            .build();
+        for (int i = 0; i < 20_000; i++) {
+            record(factory, "GetWidget", Duration.ofMillis(1), 0);
+        }
+        Assertions.assertTrue(emitted.size() > 4_000 && emitted.size() < 6_000, "Emitted " + emitted.size());
+        Assertions.assertEquals("4.0", sampleWeight(emitted.get(0)));
+    }
+
+    @Test
+    public void testPercentileThresholdKeepsSlowestRecorders() {
+        MetricRecorderFactory factory = TailSamplingMetricRecorderFactory.builder(delegate)
+            .withSampleRate(0.0)
+            .withPercentileThreshold(99)
+            .build();
+        // Everything is kept until the percentile has been calculated.
+        for (int i = 0; i < 1023; i++) {
+            record(factory, "GetWidget", Duration.ofMillis(1 + i % 100), 0);
+        }
+        Assertions.assertEquals(1023, emitted.size());
+
+        emitted.clear();
+        for (int i = 0; i < 10_000; i++) {
+            record(factory, "GetWidget", Duration.ofMillis(1 + i % 100), 0);
+        }
+        // Only the slowest one or two percent are at or above the running p99.
+        Assertions.assertTrue(emitted.size() >= 100 && emitted.size() <= 200, "Emitted " + emitted.size());
+        for (StubMetricRecorder recorder : emitted) {
+            Duration time = recorder.getDurations().get(StandardMetricNames.TIME.toString());
+            Assertions.assertTrue(time.toMillis() >= 98, "Kept " + time);
+        }
+    }
+
+    @Test
+    public void testDroppedRecordersNeverReachDelegate() {
+        MetricRecorderFactory factory = TailSamplingMetricRecorderFactory.builder(delegate).withSampleRate(0.0).build();
+        MetricRecorder recorder = factory.newMetricRecorder("GetWidget");
+        recorder.addCount("Rows", 1);
+        recorder.close();
+        Assertions.assertTrue(recorder.isClosed());
+        Assertions.assertTrue(emitted.isEmpty());
+        Assertions.assertThrows(IllegalStateException.class, () -> recorder.addCount("Rows", 1));
+    }
+
+    @Test
+    public void testPooledRecordersStartEmpty() {
+        MetricRecorderFactory factory = new PooledMetricRecorderFactory(TailSamplingMetricRecorderFactory.builder(delegate)
+            .withSampleRate(0.0)
+            .build());
+        record(factory, "GetWidget", Duration.ofMillis(1), 1);
+        record(factory, "GetWidget", Duration.ofMillis(1), 0);
+        MetricRecorder recorder = factory.newMetricRecorder("PutWidget");
+        recorder.addCount("FailureCount", 2);
+        recorder.close();
+
+        Assertions.assertEquals(2, emitted.size());
+        Assertions.assertEquals(1.0, emitted.get(0).getCounts().get("FailureCount"));
+        Assertions.assertEquals(2.0, emitted.get(1).getCounts().get("FailureCount"));
+        Assertions.assertEquals("PutWidget", emitted.get(1).getProperties().get(StandardMetricNames.OPERATION.toString()));
+    }
+
+    @Test
+    public void testInvalidConfigurationRejected() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> TailSamplingMetricRecorderFactory.builder(null));
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> TailSamplingMetricRecorderFactory.builder(delegate).withSampleRate(1.5));
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> TailSamplingMetricRecorderFactory.builder(delegate).withPercentileThreshold(100));
+    }
+}
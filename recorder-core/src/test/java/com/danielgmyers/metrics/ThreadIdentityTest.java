@@ -0,0 +1,41 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ThreadIdentityTest {
+
+    @Test
+    public void testNamedThreadKeepsItsName() {
+        Thread thread = new Thread(() -> { }, "worker-1");
+        Assertions.assertEquals("worker-1", ThreadIdentity.name(thread));
+    }
+
+    @Test
+    public void testUnnamedPlatformThreadIsIdentifiedById() {
+        Thread thread = new Thread(() -> { }, "");
+        Assertions.assertFalse(ThreadIdentity.isVirtual(thread));
+        Assertions.assertEquals("thread-" + thread.getId(), ThreadIdentity.name(thread));
+    }
+
+    @Test
+    public void testCurrentPlatformThreadIsNotVirtual() {
+        Assertions.assertFalse(ThreadIdentity.isVirtual(Thread.currentThread()));
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.ZoneId;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TickerTest {
+
+    @Test
+    public void testSystemTickerIsMonotonic() {
+        Ticker ticker = Ticker.systemTicker();
+        long first = ticker.read();
+        long second = ticker.read();
+        Assertions.assertTrue(second >= first);
+    }
+
+    @Test
+    public void testSystemClocksUseSystemTicker() {
+        Assertions.assertSame(Ticker.systemTicker().getClass(), Ticker.forClock(Clock.systemUTC()).getClass());
+        Assertions.assertSame(Ticker.systemTicker().getClass(), Ticker.forClock(Clock.systemDefaultZone()).getClass());
+        Assertions.assertSame(Ticker.systemTicker().getClass(),
+                              Ticker.forClock(Clock.system(ZoneId.of("America/Los_Angeles"))).getClass());
+    }
+
+    @Test
+    public void testCustomClocksUseClockTicker() {
+        ManualClock clock = new ManualClock();
+        Ticker ticker = Ticker.forClock(clock);
+
+        long start = ticker.read();
+        clock.forward(Duration.ofMillis(1234));
+        Assertions.assertEquals(Duration.ofMillis(1234).toNanos(), ticker.read() - start);
+
+        clock.rewind(Duration.ofMillis(234));
+        Assertions.assertEquals(Duration.ofMillis(1000).toNanos(), ticker.read() - start);
+    }
+}
@@ -0,0 +1,329 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A single memory-mapped segment file. The file starts with a fixed header, followed by records, each of which is:
+ *
+ *   int length    - the length of the payload, written as soon as the slot is reserved
+ *   int commit    - COMMITTED once the payload has been written in full
+ *   byte[length]  - the payload
+ *
+ * padded to a multiple of RECORD_ALIGNMENT bytes. The file is mapped at its full size up front, so unused space reads
+ * as zeros. A record with a length but no commit marker was being written when the process died, and is skipped by
+ * readers. A zero length is either the end of the records or a slot whose writer died before writing its length, so
+ * recovery and readers look past it for the next committed record (see nextCommitted()).
+ *
+ * Segments are created ahead of time and activated when they become the log's current segment. Writers reserve slots
+ * by advancing the write position with a compare-and-set, and write their record without any locking. Once a segment
+ * is retired no more slots can be reserved in it, and the last writer to leave it hands it to the sealing executor,
+ * which writes the end offset and SEALED flag to the header and forces the mapping to disk.
+ */
+final class Segment {
+
+    static final int MAGIC = 0x4D524C47;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_HEADER_SIZE = 8;
+    static final int RECORD_ALIGNMENT = 8;
+    static final int COMMITTED = 0x434F4D54;
+    static final int SEALED = 1;
+
+    // Header layout.
+    static final int MAGIC_OFFSET = 0;
+    static final int VERSION_OFFSET = 4;
+    static final int SEALED_OFFSET = 8;
+    static final int END_OFFSET = 12;
+    static final int SEQUENCE_OFFSET = 16;
+    static final int CREATED_MILLIS_OFFSET = 24;
+
+    static final String FILE_PREFIX = "segment-";
+    static final String FILE_SUFFIX = ".log";
+
+    // Aligned accesses through this handle have the usual VarHandle memory ordering guarantees.
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final int RETIRED = -1;
+    private static final int SEALING = 2;
+
+    private final long sequence;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final Executor sealer;
+    // Set by activate(), before the segment is published to writers.
+    private long createdTicks;
+
+    private final AtomicInteger position;
+    private final AtomicInteger activeWriters = new AtomicInteger();
+    private final AtomicInteger sealState = new AtomicInteger();
+    private volatile int endOffset = -1;
+
+    private Segment(long sequence, Path path, FileChannel channel, MappedByteBuffer buffer, int position,
+                    Executor sealer) {
+        this.sequence = sequence;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.position = new AtomicInteger(position);
+        this.sealer = sealer;
+    }
+
+    /**
+     * Creates and maps a new, empty segment file of the specified size, which is sealed on the specified executor
+     * once it has been retired.
+     */
+    static Segment create(Path directory, long sequence, int size, Executor sealer) throws IOException {
+        Path path = directory.resolve(fileName(sequence));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC_OFFSET, MAGIC);
+            buffer.putInt(VERSION_OFFSET, VERSION);
+            buffer.putLong(SEQUENCE_OFFSET, sequence);
+            return new Segment(sequence, path, channel, buffer, HEADER_SIZE, sealer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Seals a segment left unsealed by a process which stopped without closing its log, ending it after the last
+     * record found. Slots whose writers died before writing their length are skipped over, so a committed record
+     * after one of them isn't lost. Segments which are already sealed are left alone.
+     */
+    static void recover(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Not a segment file: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            checkHeader(buffer, path);
+            if (buffer.getInt(SEALED_OFFSET) == SEALED) {
+                return;
+            }
+            int offset = HEADER_SIZE;
+            int end = HEADER_SIZE;
+            while (offset >= 0 && offset + RECORD_HEADER_SIZE <= buffer.limit()) {
+                int length = buffer.getInt(offset);
+                if (length <= 0 || length > buffer.limit() - offset - RECORD_HEADER_SIZE) {
+                    offset = nextCommitted(buffer, offset + RECORD_ALIGNMENT, buffer.limit());
+                    continue;
+                }
+                offset += recordSize(length);
+                end = Math.min(offset, buffer.limit());
+            }
+            buffer.putInt(END_OFFSET, end);
+            buffer.putInt(SEALED_OFFSET, SEALED);
+            buffer.force();
+        }
+    }
+
+    /**
+     * Throws an IOException unless the buffer starts with a segment header this version can read.
+     */
+    static void checkHeader(ByteBuffer buffer, Path path) throws IOException {
+        if (buffer.getInt(MAGIC_OFFSET) != MAGIC) {
+            throw new IOException("Not a segment file: " + path);
+        }
+        if (buffer.getInt(VERSION_OFFSET) != VERSION) {
+            throw new IOException("Unsupported segment version " + buffer.getInt(VERSION_OFFSET) + ": " + path);
+        }
+    }
+
+    /**
+     * Returns the offset of the first committed record at or after the specified offset, which must be aligned, or -1
+     * if there isn't one before the limit. Used to step over a slot whose writer died before writing its length: the
+     * slot was never written, so its payload is zeros, and only a record with a valid length and a commit marker is
+     * taken as the place to carry on reading.
+     */
+    static int nextCommitted(ByteBuffer buffer, int offset, int limit) {
+        for (int candidate = offset; candidate + RECORD_HEADER_SIZE <= limit; candidate += RECORD_ALIGNMENT) {
+            int length = buffer.getInt(candidate);
+            if (length > 0 && length <= limit - candidate - RECORD_HEADER_SIZE
+                    && buffer.getInt(candidate + 4) == COMMITTED) {
+                return candidate;
+            }
+        }
+        return -1;
+    }
+
+    static String fileName(long sequence) {
+        return String.format("%s%020d%s", FILE_PREFIX, sequence, FILE_SUFFIX);
+    }
+
+    /**
+     * Returns the sequence number in the segment file name, or -1 if the name isn't a segment file name.
+     */
+    static long parseSequence(String fileName) {
+        if (!fileName.startsWith(FILE_PREFIX) || !fileName.endsWith(FILE_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(fileName.substring(FILE_PREFIX.length(), fileName.length() - FILE_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * The number of bytes a record with a payload of the specified length takes up, including its header and padding.
+     */
+    static int recordSize(int length) {
+        return (RECORD_HEADER_SIZE + length + RECORD_ALIGNMENT - 1) & -RECORD_ALIGNMENT;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    long getCreatedTicks() {
+        return createdTicks;
+    }
+
+    /**
+     * Records the time the segment became the log's current segment, before any writer can see it.
+     */
+    void activate(long createdMillis, long createdTicks) {
+        buffer.putLong(CREATED_MILLIS_OFFSET, createdMillis);
+        this.createdTicks = createdTicks;
+    }
+
+    /**
+     * Closes and deletes a segment which was created ahead of time but never activated.
+     */
+    void discard() throws IOException {
+        channel.close();
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * The largest payload a record in this segment can hold.
+     */
+    int getMaxRecordLength() {
+        return buffer.capacity() - HEADER_SIZE - RECORD_HEADER_SIZE;
+    }
+
+    /**
+     * Registers a writer which is about to reserve a slot. Every call must be paired with a call to exit().
+     */
+    void enter() {
+        activeWriters.incrementAndGet();
+    }
+
+    /**
+     * Deregisters a writer, sealing the segment if it was the last writer in a retired segment.
+     */
+    void exit() {
+        if (activeWriters.decrementAndGet() == 0 && endOffset >= 0) {
+            seal();
+        }
+    }
+
+    /**
+     * Reserves a slot for a record with a payload of the specified length, and writes its length.
+     * Returns the offset of the slot, or -1 if the segment has been retired or doesn't have room.
+     * Only callable between enter() and exit().
+     */
+    int reserve(int length) {
+        int size = recordSize(length);
+        while (true) {
+            int current = position.get();
+            if (current == RETIRED || size > buffer.capacity() - current) {
+                return -1;
+            }
+            if (position.compareAndSet(current, current + size)) {
+                buffer.putInt(current, length);
+                return current;
+            }
+        }
+    }
+
+    /**
+     * Writes the payload into a reserved slot, then marks the record committed.
+     * Only callable between enter() and exit().
+     */
+    void write(int offset, byte[] record, int recordOffset, int length) {
+        ByteBuffer target = buffer.duplicate();
+        target.position(offset + RECORD_HEADER_SIZE);
+        target.put(record, recordOffset, length);
+        INTS.setRelease(buffer, offset + 4, COMMITTED);
+    }
+
+    /**
+     * Stops any more slots being reserved. The segment is sealed once every writer has left it.
+     * Returns false if the segment had already been retired.
+     */
+    boolean retire() {
+        int end = position.getAndSet(RETIRED);
+        if (end == RETIRED) {
+            return false;
+        }
+        endOffset = end;
+        if (activeWriters.get() == 0) {
+            seal();
+        }
+        return true;
+    }
+
+    /**
+     * Indicates whether the segment has been sealed, after which it can be read by SegmentLogReader.
+     */
+    boolean isSealed() {
+        return sealState.get() == SEALED;
+    }
+
+    private void seal() {
+        // Both the retiring thread and the last writer out may get here; only one of them hands the segment off.
+        if (sealState.compareAndSet(0, SEALING)) {
+            sealer.execute(this::writeSeal);
+        }
+    }
+
+    private void writeSeal() {
+        buffer.putInt(END_OFFSET, endOffset);
+        INTS.setRelease(buffer, SEALED_OFFSET, SEALED);
+        buffer.force();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // The mapping stays valid after the channel is closed, and everything has been forced already.
+        }
+        sealState.set(SEALED);
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.danielgmyers.metrics.Ticker;
+
+/**
+ * An append-only log of binary records, stored in a directory of memory-mapped segment files. Appending a record
+ * reserves a slot in the current segment with a compare-and-set and copies the record into the mapping, so there is
+ * no lock and no system call per record. When a segment is full or older than the maximum segment age, it is replaced
+ * with a new one, and sealed (and forced to disk) once the last writer still copying a record into it has finished.
+ * Sealing and forcing a segment, and creating and mapping the one after the current segment, happen on a background
+ * thread, so the append which fills a segment doesn't wait for the disk. The thread exits when it has been idle for a
+ * few seconds.
+ *
+ * Sealed segments can be read with SegmentLogReader while the log is still being written, for example by a separate
+ * process which ships them elsewhere and then deletes them. When a log is opened, segments left unsealed by a previous
+ * process are sealed first.
+ *
+ * Records which can't be appended (because they're larger than a segment, the log is closed, or a new segment can't
+ * be created) are counted and discarded. Thread-safe.
+ */
+public final class SegmentLog implements AutoCloseable {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    public static final Duration DEFAULT_MAX_SEGMENT_AGE = Duration.ofMinutes(1);
+
+    private static final int MIN_SEGMENT_SIZE = 4096;
+    private static final long IDLE_THREAD_SECONDS = 5;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long maxSegmentAgeNanos;
+    private final Clock clock;
+    private final Ticker ticker;
+
+    private final LongAdder appendedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    // A single thread, started when there's work and stopped when idle, so tasks run in the order they're submitted.
+    private final ThreadPoolExecutor background;
+
+    // Written while holding this; null once the log is closed.
+    private volatile Segment current;
+    // The segment which replaces the current one, being created in the background. Guarded by this.
+    private CompletableFuture<Segment> spare;
+    private long nextSequence;
+
+    private SegmentLog(Builder builder) throws IOException {
+        this.directory = builder.directory;
+        this.segmentSize = builder.segmentSize;
+        this.maxSegmentAgeNanos = builder.maxSegmentAge.toNanos();
+        this.clock = builder.clock;
+        this.ticker = builder.ticker;
+        this.background = new ThreadPoolExecutor(0, 1, IDLE_THREAD_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread thread = new Thread(r, "segment-log-background");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        Files.createDirectories(directory);
+        List<Path> existing = SegmentLogReader.listSegments(directory);
+        for (Path segment : existing) {
+            Segment.recover(segment);
+        }
+        if (!existing.isEmpty()) {
+            nextSequence = Segment.parseSequence(existing.get(existing.size() - 1).getFileName().toString()) + 1;
+        }
+        Segment first = newSegment();
+        first.activate(clock.millis(), ticker.read());
+        this.current = first;
+        synchronized (this) {
+            prepareSpare();
+        }
+    }
+
+    public static Builder builder(Path directory) {
+        return new Builder(directory);
+    }
+
+    /**
+     * Appends a record. Returns false if the record was discarded.
+     */
+    public boolean append(byte[] record, int offset, int length) {
+        Segment segment = current;
+        while (segment != null) {
+            if (maxSegmentAgeNanos > 0 && ticker.read() - segment.getCreatedTicks() >= maxSegmentAgeNanos) {
+                segment = rotate(segment);
+                continue;
+            }
+            if (length > segment.getMaxRecordLength()) {
+                break;
+            }
+            segment.enter();
+            try {
+                int slot = segment.reserve(length);
+                if (slot >= 0) {
+                    segment.write(slot, record, offset, length);
+                    appendedCount.increment();
+                    return true;
+                }
+            } finally {
+                segment.exit();
+            }
+            segment = rotate(segment);
+        }
+        failedCount.increment();
+        return false;
+    }
+
+    /**
+     * Seals the current segment, even if it isn't full or old enough to be replaced yet, and starts a new one.
+     * Returns once the segment has been sealed, unless appends are still copying records into it, in which case
+     * it's sealed in the background once they have finished.
+     */
+    public void roll() {
+        Segment segment = current;
+        if (segment != null) {
+            rotate(segment);
+        }
+        awaitBackgroundWork();
+    }
+
+    /**
+     * Stops accepting records and retires the current segment, and deletes the segment created ahead of time to
+     * replace it. Returns once the segment has been sealed, unless appends are still copying records into it, in
+     * which case it's sealed in the background once they have finished.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            Segment segment = current;
+            if (segment != null) {
+                current = null;
+                segment.retire();
+            }
+            if (spare != null) {
+                spare.thenAccept(SegmentLog::discardQuietly);
+                spare = null;
+            }
+        }
+        awaitBackgroundWork();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the number of records successfully appended.
+     */
+    public long getAppendedCount() {
+        return appendedCount.sum();
+    }
+
+    /**
+     * Returns the number of records discarded.
+     */
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    /**
+     * Waits for the sealing and segment creation queued so far on the background thread.
+     */
+    void awaitBackgroundWork() {
+        CompletableFuture.runAsync(() -> { }, background).join();
+    }
+
+    /**
+     * Replaces the specified segment with the spare one, unless another thread already has, and starts creating the
+     * next spare. Returns the current segment afterwards, or null if the log is closed or a new segment couldn't be
+     * created.
+     */
+    private synchronized Segment rotate(Segment full) {
+        if (current != full) {
+            return current;
+        }
+        full.retire();
+        Segment next;
+        try {
+            next = takeSpare();
+        } catch (IOException e) {
+            // The retired segment stays current, so the next append tries again to replace it.
+            return null;
+        }
+        next.activate(clock.millis(), ticker.read());
+        current = next;
+        prepareSpare();
+        return current;
+    }
+
+    /**
+     * Returns the spare segment, waiting for it if the background thread is still creating it. If there's no spare,
+     * or creating it failed, a new segment is created on this thread instead.
+     */
+    private Segment takeSpare() throws IOException {
+        CompletableFuture<Segment> pending = spare;
+        spare = null;
+        if (pending != null) {
+            try {
+                return pending.join();
+            } catch (CompletionException e) {
+                // Fall through and try again here, so that the error reaches the caller.
+            }
+        }
+        return newSegment();
+    }
+
+    private void prepareSpare() {
+        long sequence = nextSequence++;
+        spare = CompletableFuture.supplyAsync(() -> {
+            try {
+                return Segment.create(directory, sequence, segmentSize, background);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, background);
+    }
+
+    private Segment newSegment() throws IOException {
+        Segment segment = Segment.create(directory, nextSequence, segmentSize, background);
+        nextSequence++;
+        return segment;
+    }
+
+    private static void discardQuietly(Segment segment) {
+        try {
+            segment.discard();
+        } catch (IOException e) {
+            // An empty, unsealed segment left behind is sealed when the log is next opened.
+        }
+    }
+
+    /**
+     * Configures and opens a SegmentLog.
+     */
+    public static final class Builder {
+        private final Path directory;
+        private int segmentSize = DEFAULT_SEGMENT_SIZE;
+        private Duration maxSegmentAge = DEFAULT_MAX_SEGMENT_AGE;
+        private Clock clock = Clock.systemUTC();
+        private Ticker ticker = Ticker.systemTicker();
+
+        private Builder(Path directory) {
+            if (directory == null) {
+                throw new IllegalArgumentException("A directory is required.");
+            }
+            this.directory = directory;
+        }
+
+        /**
+         * Sets the size of each segment file, which is also the limit on the size of a single record.
+         */
+        public Builder withSegmentSize(int segmentSize) {
+            if (segmentSize < MIN_SEGMENT_SIZE) {
+                throw new IllegalArgumentException("Segment size must be at least " + MIN_SEGMENT_SIZE + " bytes.");
+            }
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * Sets how long a segment is written to before it's sealed, even if it isn't full, so that readers don't wait
+         * indefinitely for records when the log is quiet. The age is checked when a record is appended.
+         * Zero means segments are only replaced when they're full.
+         */
+        public Builder withMaxSegmentAge(Duration maxSegmentAge) {
+            if (maxSegmentAge == null || maxSegmentAge.isNegative()) {
+                throw new IllegalArgumentException("Maximum segment age must not be negative.");
+            }
+            this.maxSegmentAge = maxSegmentAge;
+            return this;
+        }
+
+        /**
+         * Sets the clock used for the creation time recorded in each segment's header.
+         */
+        public Builder withClock(Clock clock) {
+            if (clock == null) {
+                throw new IllegalArgumentException("Clock must not be null.");
+            }
+            this.clock = clock;
+            return this;
+        }
+
+        /**
+         * Sets the ticker used to measure the age of each segment.
+         */
+        public Builder withTicker(Ticker ticker) {
+            if (ticker == null) {
+                throw new IllegalArgumentException("Ticker must not be null.");
+            }
+            this.ticker = ticker;
+            return this;
+        }
+
+        /**
+         * Opens the log, sealing any segments left unsealed in the directory, and creates its first segment.
+         */
+        public SegmentLog build() throws IOException {
+            return new SegmentLog(this);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import com.danielgmyers.metrics.MetricPublisher;
+import com.danielgmyers.metrics.MetricSnapshot;
+
+/**
+ * A MetricPublisher which appends each snapshot to a SegmentLog, encoded with SnapshotRecordCodec.
+ * Use it with a PublishingMetricRecorderFactory to persist every closed recorder locally:
+ *
+ *   factory = new PublishingMetricRecorderFactory(new SegmentLogPublisher(log));
+ *
+ * Records written this way can be decoded with SnapshotRecordCodec.decode(). Thread-safe.
+ */
+public final class SegmentLogPublisher implements MetricPublisher {
+
+    private final SegmentLog log;
+    private final ThreadLocal<SnapshotRecordCodec> codecs = ThreadLocal.withInitial(SnapshotRecordCodec::new);
+
+    public SegmentLogPublisher(SegmentLog log) {
+        if (log == null) {
+            throw new IllegalArgumentException("A segment log is required.");
+        }
+        this.log = log;
+    }
+
+    /**
+     * Appends the snapshot to the log. Snapshots which can't be appended are counted by SegmentLog.getFailedCount().
+     */
+    @Override
+    public void publish(MetricSnapshot snapshot) {
+        SnapshotRecordCodec codec = codecs.get();
+        int length = codec.encode(snapshot);
+        log.append(codec.getBuffer(), 0, length);
+    }
+
+    public SegmentLog getLog() {
+        return log;
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Reads the committed records of a sealed segment written by SegmentLog, in the order their slots were reserved.
+ * Records which were still being written when their process died are skipped, including slots whose length was
+ * never written, which are stepped over to the next committed record.
+ *
+ * Not thread-safe.
+ */
+public final class SegmentLogReader implements AutoCloseable {
+
+    private final Path path;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final long sequence;
+    private final long createdMillis;
+    private final int endOffset;
+    private int offset = Segment.HEADER_SIZE;
+
+    private SegmentLogReader(Path path, FileChannel channel, ByteBuffer buffer) {
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.sequence = buffer.getLong(Segment.SEQUENCE_OFFSET);
+        this.createdMillis = buffer.getLong(Segment.CREATED_MILLIS_OFFSET);
+        this.endOffset = buffer.getInt(Segment.END_OFFSET);
+    }
+
+    /**
+     * Opens a sealed segment. Throws an IOException if the file isn't a sealed segment.
+     */
+    public static SegmentLogReader open(Path segment) throws IOException {
+        FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ);
+        try {
+            if (channel.size() < Segment.HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Not a segment file: " + segment);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            Segment.checkHeader(buffer, segment);
+            if (buffer.getInt(Segment.SEALED_OFFSET) != Segment.SEALED) {
+                throw new IOException("Segment is not sealed: " + segment);
+            }
+            int end = buffer.getInt(Segment.END_OFFSET);
+            if (end < Segment.HEADER_SIZE || end > buffer.limit()) {
+                throw new IOException("Segment has an invalid end offset " + end + ": " + segment);
+            }
+            return new SegmentLogReader(segment, channel, buffer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the segment files in the directory which have been sealed, oldest first.
+     */
+    public static List<Path> sealedSegments(Path directory) throws IOException {
+        List<Path> sealed = new ArrayList<>();
+        for (Path segment : listSegments(directory)) {
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(Segment.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                int read = 0;
+                while (header.hasRemaining() && read >= 0) {
+                    read = channel.read(header);
+                }
+                if (!header.hasRemaining() && header.getInt(Segment.MAGIC_OFFSET) == Segment.MAGIC
+                        && header.getInt(Segment.SEALED_OFFSET) == Segment.SEALED) {
+                    sealed.add(segment);
+                }
+            }
+        }
+        return sealed;
+    }
+
+    /**
+     * Returns every segment file in the directory, sealed or not, oldest first.
+     */
+    static List<Path> listSegments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                if (Segment.parseSequence(file.getFileName().toString()) >= 0) {
+                    segments.add(file);
+                }
+            }
+        }
+        segments.sort(Comparator.comparingLong(file -> Segment.parseSequence(file.getFileName().toString())));
+        return segments;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * The segment's sequence number; segments are numbered in the order they were created.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * The time the segment was created, in epoch milliseconds.
+     */
+    public long getCreatedMillis() {
+        return createdMillis;
+    }
+
+    /**
+     * Returns the next committed record as a read-only buffer positioned at the start of its payload, or null if
+     * there are no more records.
+     */
+    public ByteBuffer next() {
+        while (offset + Segment.RECORD_HEADER_SIZE <= endOffset) {
+            int recordOffset = offset;
+            int length = buffer.getInt(recordOffset);
+            if (length <= 0 || length > endOffset - recordOffset - Segment.RECORD_HEADER_SIZE) {
+                int next = Segment.nextCommitted(buffer, recordOffset + Segment.RECORD_ALIGNMENT, endOffset);
+                if (next < 0) {
+                    offset = endOffset;
+                    return null;
+                }
+                offset = next;
+                continue;
+            }
+            offset += Segment.recordSize(length);
+            if (buffer.getInt(recordOffset + 4) == Segment.COMMITTED) {
+                ByteBuffer record = buffer.duplicate();
+                record.limit(recordOffset + Segment.RECORD_HEADER_SIZE + length);
+                record.position(recordOffset + Segment.RECORD_HEADER_SIZE);
+                return record.slice().asReadOnlyBuffer();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.danielgmyers.metrics.MetricSnapshot;
+
+/**
+ * Encodes a MetricSnapshot as a record for SegmentLog, and decodes it again. Records are standalone records in the
+ * binary-recorder module's versioned format, written by a BinaryRecordEncoder, so they can be decoded independently
+ * of each other, and a shipper can hand them on to anything which reads that format.
+ *
+ * Encoding allocates nothing once the buffer has grown to fit. Instances are not thread-safe; SegmentLogPublisher
+ * keeps one per thread.
+ */
+public final class SnapshotRecordCodec {
+
+    private final BinaryRecordEncoder encoder = new BinaryRecordEncoder();
+
+    /**
+     * Encodes the snapshot, replacing whatever was previously encoded.
+     *
+     * @return The number of bytes encoded into getBuffer().
+     */
+    public int encode(MetricSnapshot snapshot) {
+        return encoder.encode(snapshot);
+    }
+
+    public byte[] getBuffer() {
+        return encoder.getBuffer();
+    }
+
+    /**
+     * Decodes a record from the buffer's position to its limit.
+     * Throws an IllegalArgumentException if the record is malformed or has an unsupported version.
+     */
+    public static MetricSnapshot decode(ByteBuffer record) {
+        try {
+            return BinaryRecordDecoder.decode(record);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+}
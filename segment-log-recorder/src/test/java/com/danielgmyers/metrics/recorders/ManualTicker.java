@@ -0,0 +1,44 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.time.Duration;
+
+import com.danielgmyers.metrics.Ticker;
+
+public class ManualTicker implements Ticker {
+
+    private long ticks;
+
+    public ManualTicker() {
+        this.ticks = 0;
+    }
+
+    public ManualTicker(long startTicks) {
+        this.ticks = startTicks;
+    }
+
+    @Override
+    public long read() {
+        return ticks;
+    }
+
+    public long forward(Duration amount) {
+        ticks += amount.toNanos();
+        return ticks;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.danielgmyers.metrics.MetricRecorder;
+import com.danielgmyers.metrics.MetricRecorderFactory;
+import com.danielgmyers.metrics.MetricSnapshot;
+import com.danielgmyers.metrics.StandardMetricNames;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SegmentLogPublisherTest {
+
+    @Test
+    public void testClosedRecordersArePersisted(@TempDir Path directory) throws IOException {
+        SegmentLog log = SegmentLog.builder(directory).build();
+        MetricRecorderFactory factory = new PublishingMetricRecorderFactory(new SegmentLogPublisher(log));
+
+        for (int i = 0; i < 5; i++) {
+            MetricRecorder recorder = factory.newMetricRecorder("GetWidget");
+            recorder.addCount("Widgets", i);
+            recorder.close();
+        }
+        log.close();
+
+        List<MetricSnapshot> snapshots = new ArrayList<>();
+        for (Path segment : SegmentLogReader.sealedSegments(directory)) {
+            try (SegmentLogReader reader = SegmentLogReader.open(segment)) {
+                for (ByteBuffer record = reader.next(); record != null; record = reader.next()) {
+                    snapshots.add(SnapshotRecordCodec.decode(record));
+                }
+            }
+        }
+        Assertions.assertEquals(5, snapshots.size());
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertEquals("GetWidget", snapshots.get(i).getProperty(StandardMetricNames.OPERATION.toString()));
+            Assertions.assertEquals((double) i, snapshots.get(i).getCount("Widgets"));
+            Assertions.assertNotNull(snapshots.get(i).getDuration(StandardMetricNames.TIME.toString()));
+        }
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SegmentLogTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    private static boolean append(SegmentLog log, String record) {
+        byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+        return log.append(bytes, 0, bytes.length);
+    }
+
+    private static List<String> readAll(Path directory) throws IOException {
+        List<String> records = new ArrayList<>();
+        for (Path segment : SegmentLogReader.sealedSegments(directory)) {
+            try (SegmentLogReader reader = SegmentLogReader.open(segment)) {
+                for (ByteBuffer record = reader.next(); record != null; record = reader.next()) {
+                    byte[] bytes = new byte[record.remaining()];
+                    record.get(bytes);
+                    records.add(new String(bytes, StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return records;
+    }
+
+    @Test
+    public void testRecordsAreReadableOnceSealed(@TempDir Path directory) throws IOException {
+        SegmentLog log = SegmentLog.builder(directory).withSegmentSize(SEGMENT_SIZE).build();
+        Assertions.assertTrue(append(log, "first"));
+        Assertions.assertTrue(append(log, "second"));
+        Assertions.assertTrue(SegmentLogReader.sealedSegments(directory).isEmpty());
+
+        log.close();
+        Assertions.assertEquals(List.of("first", "second"), readAll(directory));
+        Assertions.assertEquals(2, log.getAppendedCount());
+        Assertions.assertFalse(append(log, "third"));
+        Assertions.assertEquals(1, log.getFailedCount());
+    }
+
+    @Test
+    public void testRotatesFullSegments(@TempDir Path directory) throws IOException {
+        SegmentLog log = SegmentLog.builder(directory).withSegmentSize(SEGMENT_SIZE).build();
+        String record = "x".repeat(1000);
+        for (int i = 0; i < 10; i++) {
+            Assertions.assertTrue(append(log, record));
+        }
+
+        // Each segment holds four of these records after its header.
+        log.awaitBackgroundWork();
+        Assertions.assertEquals(2, SegmentLogReader.sealedSegments(directory).size());
+        log.close();
+        Assertions.assertEquals(3, SegmentLogReader.sealedSegments(directory).size());
+        Assertions.assertEquals(10, readAll(directory).size());
+    }
+
+    @Test
+    public void testRotatesOldSegments(@TempDir Path directory) throws IOException {
+        ManualTicker ticker = new ManualTicker();
+        SegmentLog log = SegmentLog.builder(directory)
+                .withSegmentSize(SEGMENT_SIZE)
+                .withMaxSegmentAge(Duration.ofSeconds(10))
+                .withTicker(ticker)
+                .build();
+
+        append(log, "first");
+        ticker.forward(Duration.ofSeconds(9));
+        append(log, "second");
+        Assertions.assertTrue(SegmentLogReader.sealedSegments(directory).isEmpty());
+
+        ticker.forward(Duration.ofSeconds(1));
+        append(log, "third");
+        log.awaitBackgroundWork();
+        Assertions.assertEquals(List.of("first", "second"), readAll(directory));
+
+        log.roll();
+        Assertions.assertEquals(List.of("first", "second", "third"), readAll(directory));
+        log.close();
+    }
+
+    @Test
+    public void testRejectsOversizedRecords(@TempDir Path directory) throws IOException {
+        SegmentLog log = SegmentLog.builder(directory).withSegmentSize(SEGMENT_SIZE).build();
+        Assertions.assertFalse(append(log, "x".repeat(SEGMENT_SIZE)));
+        Assertions.assertTrue(append(log, "small"));
+        log.close();
+        Assertions.assertEquals(1, log.getFailedCount());
+        Assertions.assertEquals(List.of("small"), readAll(directory));
+    }
+
+    @Test
+    public void testConcurrentAppends(@TempDir Path directory) throws Exception {
+        SegmentLog log = SegmentLog.builder(directory).withSegmentSize(64 * 1024).build();
+        int threads = 8;
+        int recordsPerThread = 5000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            Thread writer = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < recordsPerThread; i++) {
+                    append(log, thread + ":" + i);
+                }
+            });
+            writer.start();
+            writers.add(writer);
+        }
+        start.countDown();
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        log.close();
+
+        List<String> records = readAll(directory);
+        Set<String> unique = new HashSet<>(records);
+        Assertions.assertEquals(threads * recordsPerThread, records.size());
+        Assertions.assertEquals(records.size(), unique.size());
+        Assertions.assertEquals(0, log.getFailedCount());
+        Assertions.assertTrue(SegmentLogReader.sealedSegments(directory).size() > 1);
+    }
+
+    @Test
+    public void testRecoversUnsealedSegments(@TempDir Path directory) throws IOException {
+        // Simulate a process which died while writing its second record.
+        Segment segment = Segment.create(directory, 7, SEGMENT_SIZE, Runnable::run);
+        byte[] committed = "committed".getBytes(StandardCharsets.UTF_8);
+        segment.enter();
+        segment.write(segment.reserve(committed.length), committed, 0, committed.length);
+        segment.reserve(10);
+        Assertions.assertTrue(SegmentLogReader.sealedSegments(directory).isEmpty());
+
+        SegmentLog log = SegmentLog.builder(directory).withSegmentSize(SEGMENT_SIZE).build();
+        Assertions.assertEquals(List.of("committed"), readAll(directory));
+
+        append(log, "after restart");
+        log.close();
+        Assertions.assertEquals(List.of("committed", "after restart"), readAll(directory));
+        try (SegmentLogReader reader = SegmentLogReader.open(SegmentLogReader.sealedSegments(directory).get(1))) {
+            Assertions.assertEquals(8, reader.getSequence());
+        }
+    }
+
+    @Test
+    public void testReaderRejectsUnsealedSegments(@TempDir Path directory) throws IOException {
+        SegmentLog log = SegmentLog.builder(directory).withSegmentSize(SEGMENT_SIZE).build();
+        Path segment = directory.resolve(Segment.fileName(0));
+        Assertions.assertThrows(IOException.class, () -> SegmentLogReader.open(segment));
+        log.close();
+        SegmentLogReader.open(segment).close();
+    }
+
+    @Test
+    public void testRecoveryFindsRecordsAfterAnUnwrittenSlot(@TempDir Path directory) throws IOException {
+        // Simulate a process which died after reserving a slot but before writing its length, while a later writer
+        // committed its record.
+        Segment segment = Segment.create(directory, 0, SEGMENT_SIZE, Runnable::run);
+        byte[] before = "before".getBytes(StandardCharsets.UTF_8);
+        byte[] after = "after".getBytes(StandardCharsets.UTF_8);
+        segment.enter();
+        segment.write(segment.reserve(before.length), before, 0, before.length);
+        int lost = segment.reserve(100);
+        segment.write(segment.reserve(after.length), after, 0, after.length);
+        ByteBuffer unwritten = ByteBuffer.allocate(4);
+        try (FileChannel channel = FileChannel.open(segment.getPath(), StandardOpenOption.WRITE)) {
+            channel.write(unwritten, lost);
+        }
+
+        SegmentLog.builder(directory).withSegmentSize(SEGMENT_SIZE).build().close();
+        Assertions.assertEquals(List.of("before", "after"), readAll(directory));
+    }
+
+    @Test
+    public void testSpareSegmentIsDeletedOnClose(@TempDir Path directory) throws IOException {
+        SegmentLog log = SegmentLog.builder(directory).withSegmentSize(SEGMENT_SIZE).build();
+        append(log, "only");
+        log.close();
+
+        Assertions.assertEquals(1, SegmentLogReader.listSegments(directory).size());
+        Assertions.assertEquals(List.of("only"), readAll(directory));
+    }
+}
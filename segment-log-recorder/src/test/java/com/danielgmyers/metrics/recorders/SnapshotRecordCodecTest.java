@@ -0,0 +1,97 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+
+import com.danielgmyers.metrics.MetricKey;
+import com.danielgmyers.metrics.MetricSnapshot;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class SnapshotRecordCodecTest {
+
+    private static MetricSnapshot roundTrip(SnapshotRecordCodec codec, MetricSnapshot snapshot) {
+        int length = codec.encode(snapshot);
+        return SnapshotRecordCodec.decode(ByteBuffer.wrap(codec.getBuffer(), 0, length));
+    }
+
+    @Test
+    public void testRoundTripsEveryMetricType() {
+        Instant launch = Instant.ofEpochSecond(1700000000L, 123456789);
+        MetricSnapshot snapshot = new MetricSnapshot.Builder()
+                .putProperty(MetricKey.of("StarshipName"), "Enterprise ✨")
+                .putProperty(MetricKey.of("Captain"), null)
+                .putTimestamp(MetricKey.of("Launch"), launch)
+                .addCount(MetricKey.of("Rings"), 2.5)
+                .addDurationNanos(MetricKey.of("Warp"), 7)
+                .build();
+
+        MetricSnapshot decoded = roundTrip(new SnapshotRecordCodec(), snapshot);
+        Assertions.assertEquals(2, decoded.getNumProperties());
+        Assertions.assertEquals("Enterprise ✨", decoded.getProperty("StarshipName"));
+        Assertions.assertNull(decoded.getPropertyValue(1));
+        Assertions.assertEquals(launch, decoded.getTimestamp("Launch"));
+        Assertions.assertEquals(2.5, decoded.getCount("Rings"));
+        Assertions.assertEquals(Duration.ofNanos(7), decoded.getDuration("Warp"));
+    }
+
+    @Test
+    public void testReusesBuffer() {
+        SnapshotRecordCodec codec = new SnapshotRecordCodec();
+        MetricSnapshot snapshot = new MetricSnapshot.Builder().addCount(MetricKey.of("Rings"), 1).build();
+        int length = codec.encode(snapshot);
+        byte[] buffer = codec.getBuffer();
+
+        Assertions.assertEquals(length, codec.encode(snapshot));
+        Assertions.assertSame(buffer, codec.getBuffer());
+        Assertions.assertEquals(1.0, roundTrip(codec, snapshot).getCount("Rings"));
+    }
+
+    @Test
+    public void testRecordsAreStandaloneBinaryRecords() throws IOException {
+        SnapshotRecordCodec codec = new SnapshotRecordCodec();
+        MetricSnapshot snapshot = new MetricSnapshot.Builder()
+                .putProperty(MetricKey.of("StarshipName"), "Enterprise")
+                .addCount(MetricKey.of("Rings"), 1)
+                .build();
+        int length = codec.encode(snapshot);
+
+        BinaryRecordEncoder encoder = new BinaryRecordEncoder();
+        int binaryLength = encoder.encode(snapshot);
+        Assertions.assertArrayEquals(Arrays.copyOf(encoder.getBuffer(), binaryLength), Arrays.copyOf(codec.getBuffer(), length));
+        MetricSnapshot decoded = BinaryRecordDecoder.decode(ByteBuffer.wrap(codec.getBuffer(), 0, length));
+        Assertions.assertEquals("Enterprise", decoded.getProperty("StarshipName"));
+        Assertions.assertEquals(1.0, decoded.getCount("Rings"));
+    }
+
+    @Test
+    public void testRejectsMalformedRecords() {
+        SnapshotRecordCodec codec = new SnapshotRecordCodec();
+        int length = codec.encode(new MetricSnapshot.Builder().addCount(MetricKey.of("Rings"), 1).build());
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> SnapshotRecordCodec.decode(ByteBuffer.wrap(codec.getBuffer(), 0, length - 1)));
+        codec.getBuffer()[0] = 99;
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> SnapshotRecordCodec.decode(ByteBuffer.wrap(codec.getBuffer(), 0, length)));
+    }
+}
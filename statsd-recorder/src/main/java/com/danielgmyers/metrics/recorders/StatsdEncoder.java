@@ -0,0 +1,236 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.danielgmyers.metrics.MetricKey;
+import com.danielgmyers.metrics.RecordedMetrics;
+
+/**
+ * Encodes recorded metrics as StatsD lines, directly into a reusable byte array: one "name:value|c" line per count and
+ * one "name:value|ms" line per duration, with durations converted to milliseconds. When the operation is known, each
+ * line is tagged with it in the DogStatsD style, e.g. "prefix.DatabaseLookup:1.5|ms|#operation:GetWidget".
+ *
+ * Characters which would break the line format are replaced with underscores. Each metric name is encoded once and then
+ * cached by MetricKey id, and the tag for the most recent operation is kept, so encoding allocates nothing once the
+ * buffer and cache have grown to fit. The exception is a count with a fractional part, which is formatted with
+ * Double.toString(). Counts which aren't finite are skipped.
+ *
+ * Not thread-safe; StatsdMetricPublisher keeps one encoder per thread.
+ */
+final class StatsdEncoder {
+
+    private static final int INITIAL_BUFFER_SIZE = 512;
+
+    private static final byte[] COUNT_TYPE = ascii("|c");
+    private static final byte[] MILLISECONDS_TYPE = ascii("|ms");
+    private static final byte[] NO_TAGS = ascii("\n");
+    private static final byte[] LONG_MIN_VALUE = ascii(Long.toString(Long.MIN_VALUE));
+    // Integral counts of smaller magnitude than this are exact as longs, and are written without a fraction.
+    private static final double MAX_INTEGRAL_COUNT = 1e15;
+
+    private final String prefix;
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+    private int length;
+    private byte[][] encodedNames = new byte[0][];
+    private String taggedOperation;
+    private byte[] operationTag = NO_TAGS;
+
+    /**
+     * Creates an encoder for the specified metric name prefix.
+     *
+     * @param prefix Prepended to every metric name, followed by a dot; empty for no prefix.
+     */
+    StatsdEncoder(String prefix) {
+        this.prefix = prefix.isEmpty() ? "" : sanitize(prefix) + ".";
+    }
+
+    /**
+     * Encodes the counts and durations as newline-terminated lines, replacing whatever was previously encoded.
+     *
+     * @param operation The operation to tag each line with, or null for no tag.
+     * @return The number of bytes encoded into getBuffer().
+     */
+    int encode(RecordedMetrics metrics, String operation) {
+        length = 0;
+        byte[] tags = tags(operation);
+        for (int i = 0; i < metrics.getNumCounts(); i++) {
+            double count = metrics.getCountValue(i);
+            if (Double.isFinite(count)) {
+                writeBytes(encodedName(metrics.getCountKey(i)));
+                writeDouble(count);
+                writeBytes(COUNT_TYPE);
+                writeBytes(tags);
+            }
+        }
+        for (int i = 0; i < metrics.getNumDurations(); i++) {
+            writeBytes(encodedName(metrics.getDurationKey(i)));
+            writeMillis(metrics.getDurationNanos(i));
+            writeBytes(MILLISECONDS_TYPE);
+            writeBytes(tags);
+        }
+        return length;
+    }
+
+    byte[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Returns the end of each line: the operation tag, if any, and the newline.
+     */
+    private byte[] tags(String operation) {
+        if (operation == null) {
+            return NO_TAGS;
+        }
+        if (!operation.equals(taggedOperation)) {
+            operationTag = ("|#operation:" + sanitizeTag(operation) + "\n").getBytes(StandardCharsets.UTF_8);
+            taggedOperation = operation;
+        }
+        return operationTag;
+    }
+
+    /**
+     * Returns the prefixed name followed by the value separator, encoded as UTF-8.
+     */
+    private byte[] encodedName(MetricKey key) {
+        int id = key.getId();
+        if (id >= encodedNames.length) {
+            encodedNames = Arrays.copyOf(encodedNames, Math.max(id + 1, encodedNames.length * 2));
+        }
+        byte[] encoded = encodedNames[id];
+        if (encoded == null) {
+            encoded = (prefix + sanitize(key.getName()) + ":").getBytes(StandardCharsets.UTF_8);
+            encodedNames[id] = encoded;
+        }
+        return encoded;
+    }
+
+    private void writeDouble(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < MAX_INTEGRAL_COUNT) {
+            writeLong((long) value);
+        } else {
+            writeAscii(Double.toString(value));
+        }
+    }
+
+    /**
+     * Writes a nanosecond value as milliseconds, with up to six decimal places and no trailing zeros.
+     */
+    private void writeMillis(long nanos) {
+        long remaining = nanos;
+        if (remaining < 0) {
+            writeByte('-');
+            remaining = -remaining;
+        }
+        writeLong(remaining / 1_000_000);
+        int fraction = (int) (remaining % 1_000_000);
+        if (fraction != 0) {
+            int digits = 6;
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+                digits--;
+            }
+            writeByte('.');
+            ensureCapacity(digits);
+            for (int i = length + digits - 1; i >= length; i--) {
+                buffer[i] = (byte) ('0' + fraction % 10);
+                fraction /= 10;
+            }
+            length += digits;
+        }
+    }
+
+    private void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            writeBytes(LONG_MIN_VALUE);
+            return;
+        }
+        long remaining = value;
+        if (remaining < 0) {
+            writeByte('-');
+            remaining = -remaining;
+        }
+        int digits = 1;
+        for (long bound = 10; digits < 19 && remaining >= bound; bound *= 10) {
+            digits++;
+        }
+        ensureCapacity(digits);
+        for (int i = length + digits - 1; i >= length; i--) {
+            buffer[i] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        }
+        length += digits;
+    }
+
+    private void writeAscii(String value) {
+        ensureCapacity(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            buffer[length++] = (byte) value.charAt(i);
+        }
+    }
+
+    private void writeBytes(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private void writeByte(char ch) {
+        ensureCapacity(1);
+        buffer[length++] = (byte) ch;
+    }
+
+    private void ensureCapacity(int additional) {
+        if (length + additional > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + additional));
+        }
+    }
+
+    /**
+     * Replaces the characters which separate the parts of a line, and line breaks, in a metric name.
+     */
+    static String sanitize(String name) {
+        return replace(name, ":|@#\n\r");
+    }
+
+    /**
+     * Replaces the characters which separate tags or the parts of a line, and line breaks, in a tag value.
+     */
+    static String sanitizeTag(String value) {
+        return replace(value, ",|#\n\r");
+    }
+
+    private static String replace(String value, String reserved) {
+        StringBuilder replaced = null;
+        for (int i = 0; i < value.length(); i++) {
+            if (reserved.indexOf(value.charAt(i)) >= 0) {
+                if (replaced == null) {
+                    replaced = new StringBuilder(value);
+                }
+                replaced.setCharAt(i, '_');
+            }
+        }
+        return replaced == null ? value : replaced.toString();
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import com.danielgmyers.metrics.MetricPublisher;
+import com.danielgmyers.metrics.MetricSnapshot;
+import com.danielgmyers.metrics.RecordedMetrics;
+import com.danielgmyers.metrics.StandardMetricNames;
+
+/**
+ * A MetricPublisher which sends each snapshot's counts and durations as StatsD lines, tagged with its Operation
+ * property, so StatsD can be one of the backends of a CompositeMetricRecorderFactory. StatsdMetricRecorderFactory's
+ * recorders encode through a publisher too, straight from their own buffers.
+ *
+ * Lines are encoded into a reusable per-thread buffer, and handed to a StatsdSender, which packs the lines of many
+ * snapshots into each datagram and sends them from a background thread. Other properties, and timestamps, are ignored.
+ */
+public class StatsdMetricPublisher implements MetricPublisher {
+
+    private static final String OPERATION = StandardMetricNames.OPERATION.toString();
+
+    private final StatsdSender sender;
+    private final ThreadLocal<StatsdEncoder> encoders;
+
+    /**
+     * Creates a publisher which doesn't prefix metric names.
+     */
+    public StatsdMetricPublisher(StatsdSender sender) {
+        this("", sender);
+    }
+
+    /**
+     * Creates a publisher which prefixes every metric name.
+     *
+     * @param prefix Prepended to every metric name, followed by a dot, e.g. "myapp" for "myapp.Time".
+     */
+    public StatsdMetricPublisher(String prefix, StatsdSender sender) {
+        if (prefix == null) {
+            throw new IllegalArgumentException("Prefix must not be null.");
+        }
+        if (sender == null) {
+            throw new IllegalArgumentException("A sender is required.");
+        }
+        this.sender = sender;
+        this.encoders = ThreadLocal.withInitial(() -> new StatsdEncoder(prefix));
+    }
+
+    @Override
+    public void publish(MetricSnapshot snapshot) {
+        write(snapshot, snapshot.getProperty(OPERATION));
+    }
+
+    public StatsdSender getSender() {
+        return sender;
+    }
+
+    /**
+     * Encodes the counts and durations with the calling thread's encoder and hands the lines to the sender, which
+     * copies them, so the metrics may be reused as soon as this returns.
+     *
+     * @param operation The operation to tag each line with, or null for no tag.
+     */
+    void write(RecordedMetrics metrics, String operation) {
+        StatsdEncoder encoder = encoders.get();
+        int length = encoder.encode(metrics, operation);
+        if (length > 0) {
+            sender.write(encoder.getBuffer(), 0, length);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.time.Clock;
+
+import com.danielgmyers.metrics.RecordedMetrics;
+import com.danielgmyers.metrics.SnapshotMetricRecorder;
+
+/**
+ * Accumulates metrics through SnapshotMetricRecorder, and when closed has the factory's StatsdMetricPublisher encode
+ * the counts and durations as StatsD lines, straight from the recorder's own buffers. The lines are tagged with the
+ * operation; other properties, and timestamps, are ignored.
+ */
+public class StatsdMetricRecorder extends SnapshotMetricRecorder {
+
+    private final StatsdMetricPublisher publisher;
+
+    StatsdMetricRecorder(String operation, Clock clock, StatsdMetricPublisher publisher) {
+        super(operation, clock);
+        this.publisher = publisher;
+    }
+
+    @Override
+    protected void publish(RecordedMetrics metrics) {
+        publisher.write(metrics, getOperation());
+    }
+}
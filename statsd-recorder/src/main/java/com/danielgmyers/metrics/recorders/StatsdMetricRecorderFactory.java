@@ -0,0 +1,59 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.time.Clock;
+
+import com.danielgmyers.metrics.MetricRecorder;
+import com.danielgmyers.metrics.MetricRecorderFactory;
+
+/**
+ * Produces MetricRecorder objects which send their counts and durations as StatsD lines when closed, tagged with the
+ * Operation property. Lines are encoded straight from each recorder's buffers by a StatsdMetricPublisher, without
+ * building a snapshot, and handed to a StatsdSender, which packs the lines of many recorders into each datagram and
+ * sends them from a background thread. To send to StatsD alongside other backends, add a StatsdMetricPublisher to a
+ * CompositeMetricRecorderFactory instead.
+ */
+public class StatsdMetricRecorderFactory implements MetricRecorderFactory {
+
+    private final StatsdMetricPublisher publisher;
+
+    /**
+     * Creates a factory which doesn't prefix metric names.
+     */
+    public StatsdMetricRecorderFactory(StatsdSender sender) {
+        this("", sender);
+    }
+
+    /**
+     * Creates a factory which prefixes every metric name.
+     *
+     * @param prefix Prepended to every metric name, followed by a dot, e.g. "myapp" for "myapp.Time".
+     */
+    public StatsdMetricRecorderFactory(String prefix, StatsdSender sender) {
+        this.publisher = new StatsdMetricPublisher(prefix, sender);
+    }
+
+    @Override
+    public MetricRecorder newMetricRecorder(String operation, Clock clock) {
+        return new StatsdMetricRecorder(operation, clock, publisher);
+    }
+
+    public StatsdSender getSender() {
+        return publisher.getSender();
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Packs StatsD lines into datagrams and sends them over UDP from a background thread.
+ *
+ * Writers only copy their lines into a pending buffer, under a lock which is never held while sending. The sender
+ * thread swaps the pending buffer for a spare one whenever it holds at least a full datagram's worth of lines, or the
+ * flush interval has passed, and then packs as many whole lines into each datagram as fit in the maximum packet size.
+ * A line larger than the maximum packet size is sent in a datagram of its own.
+ *
+ * The channel is non-blocking, so a datagram which can't be sent immediately is counted as failed and discarded, as
+ * are datagrams the operating system rejects. Lines written while the pending buffer is full, or after the sender is
+ * closed, are counted as dropped and discarded. Thread-safe.
+ */
+public final class StatsdSender implements AutoCloseable {
+
+    // Fits in a 1500 byte Ethernet MTU after the IP and UDP headers, with room to spare for IP options or tunnels.
+    public static final int DEFAULT_MAX_PACKET_SIZE = 1432;
+    public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+    public static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofMillis(100);
+
+    // The largest UDP payload over IPv4.
+    private static final int MAX_PACKET_SIZE = 65507;
+
+    private final DatagramChannel channel;
+    private final int maxPacketSize;
+    private final long flushIntervalNanos;
+    private final Thread thread;
+
+    private final LongAdder sentCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+
+    // Guarded by this.
+    private byte[] pending;
+    private int pendingLength;
+    private boolean closed;
+
+    // Only used by the sender thread. Each buffer has a view which datagrams are sent from, swapped along with it.
+    private byte[] spare;
+    private ByteBuffer pendingView;
+    private ByteBuffer spareView;
+
+    private StatsdSender(Builder builder, DatagramChannel channel) {
+        this.channel = channel;
+        this.maxPacketSize = builder.maxPacketSize;
+        this.flushIntervalNanos = builder.flushInterval.toNanos();
+        this.pending = new byte[builder.bufferSize];
+        this.spare = new byte[builder.bufferSize];
+        this.pendingView = ByteBuffer.wrap(pending);
+        this.spareView = ByteBuffer.wrap(spare);
+        this.thread = new Thread(this::run, "statsd-sender");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public static Builder builder(InetSocketAddress target) {
+        return new Builder(target);
+    }
+
+    /**
+     * Queues newline-terminated lines to be sent. The lines are kept together in a single datagram if they fit in one.
+     * Never blocks on the network.
+     */
+    public void write(byte[] lines, int offset, int length) {
+        synchronized (this) {
+            if (closed || length > pending.length - pendingLength) {
+                droppedCount.increment();
+                return;
+            }
+            System.arraycopy(lines, offset, pending, pendingLength, length);
+            boolean wasUnderPacket = pendingLength < maxPacketSize;
+            pendingLength += length;
+            if (wasUnderPacket && pendingLength >= maxPacketSize) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Sends whatever is still pending and stops the sender thread, waiting for it to finish, then closes the channel.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the address datagrams are sent to.
+     */
+    public InetSocketAddress getTarget() throws IOException {
+        return (InetSocketAddress) channel.getRemoteAddress();
+    }
+
+    /**
+     * Returns the number of datagrams sent.
+     */
+    public long getSentCount() {
+        return sentCount.sum();
+    }
+
+    /**
+     * Returns the number of datagrams discarded because they couldn't be sent.
+     */
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    /**
+     * Returns the number of writes discarded because the pending buffer was full or the sender was closed.
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    private void run() {
+        boolean stopping = false;
+        while (!stopping) {
+            byte[] batch;
+            int batchLength;
+            synchronized (this) {
+                if (!closed && pendingLength < maxPacketSize) {
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(this, flushIntervalNanos);
+                    } catch (InterruptedException e) {
+                        closed = true;
+                    }
+                }
+                stopping = closed;
+                batch = pending;
+                batchLength = pendingLength;
+                pending = spare;
+                pendingLength = 0;
+            }
+            spare = batch;
+            ByteBuffer batchView = pendingView;
+            pendingView = spareView;
+            spareView = batchView;
+            send(batch, batchView, batchLength);
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Nothing is left to send.
+        }
+    }
+
+    /**
+     * Sends the lines in as few datagrams as possible, without splitting any line across datagrams.
+     */
+    private void send(byte[] batch, ByteBuffer batchView, int batchLength) {
+        int start = 0;
+        while (start < batchLength) {
+            int end = packetEnd(batch, start, batchLength);
+            batchView.limit(end).position(start);
+            try {
+                if (channel.write(batchView) > 0) {
+                    sentCount.increment();
+                } else {
+                    failedCount.increment();
+                }
+            } catch (IOException e) {
+                failedCount.increment();
+            }
+            start = end;
+        }
+    }
+
+    /**
+     * Returns the end of the last whole line starting at or after start which fits in a datagram, or the end of the
+     * first line if even that doesn't fit.
+     */
+    private int packetEnd(byte[] batch, int start, int batchLength) {
+        if (batchLength - start <= maxPacketSize) {
+            return batchLength;
+        }
+        for (int i = start + maxPacketSize - 1; i >= start; i--) {
+            if (batch[i] == '\n') {
+                return i + 1;
+            }
+        }
+        for (int i = start + maxPacketSize; i < batchLength; i++) {
+            if (batch[i] == '\n') {
+                return i + 1;
+            }
+        }
+        return batchLength;
+    }
+
+    /**
+     * Configures and starts a StatsdSender.
+     */
+    public static final class Builder {
+        private final InetSocketAddress target;
+        private int maxPacketSize = DEFAULT_MAX_PACKET_SIZE;
+        private int bufferSize = DEFAULT_BUFFER_SIZE;
+        private Duration flushInterval = DEFAULT_FLUSH_INTERVAL;
+
+        private Builder(InetSocketAddress target) {
+            if (target == null) {
+                throw new IllegalArgumentException("A target address is required.");
+            }
+            if (target.isUnresolved()) {
+                throw new IllegalArgumentException("Target address " + target + " couldn't be resolved.");
+            }
+            this.target = target;
+        }
+
+        /**
+         * Sets the largest datagram payload to send. The default fits a standard Ethernet MTU; loopback and networks
+         * with jumbo frames can use more.
+         */
+        public Builder withMaxPacketSize(int maxPacketSize) {
+            if (maxPacketSize < 1 || maxPacketSize > MAX_PACKET_SIZE) {
+                throw new IllegalArgumentException("Max packet size must be between 1 and " + MAX_PACKET_SIZE + ".");
+            }
+            this.maxPacketSize = maxPacketSize;
+            return this;
+        }
+
+        /**
+         * Sets the size of the buffer lines wait in for the sender thread, which bounds how far behind it can fall
+         * before lines are dropped.
+         */
+        public Builder withBufferSize(int bufferSize) {
+            if (bufferSize < 1) {
+                throw new IllegalArgumentException("Buffer size must be positive.");
+            }
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        /**
+         * Sets how long lines can wait for a datagram to fill up before they're sent anyway.
+         */
+        public Builder withFlushInterval(Duration flushInterval) {
+            if (flushInterval == null || flushInterval.isNegative() || flushInterval.isZero()) {
+                throw new IllegalArgumentException("Flush interval must be positive.");
+            }
+            this.flushInterval = flushInterval;
+            return this;
+        }
+
+        /**
+         * Opens a non-blocking channel to the target, and starts the sender thread.
+         */
+        public StatsdSender build() throws IOException {
+            DatagramChannel channel = DatagramChannel.open();
+            try {
+                channel.configureBlocking(false);
+                channel.connect(target);
+                return new StatsdSender(this, channel);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.nio.charset.StandardCharsets;
+
+import com.danielgmyers.metrics.MetricKey;
+import com.danielgmyers.metrics.MetricSnapshot;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class StatsdEncoderTest {
+
+    private static String encode(StatsdEncoder encoder, MetricSnapshot.Builder metrics, String operation) {
+        int length = encoder.encode(metrics, operation);
+        return new String(encoder.getBuffer(), 0, length, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testCountsAndDurations() {
+        MetricSnapshot.Builder metrics = new MetricSnapshot.Builder()
+                .addCount(MetricKey.of("WidgetCount"), 3)
+                .addCount(MetricKey.of("Ratio"), 0.25)
+                .addCount(MetricKey.of("Broken"), Double.NaN)
+                .addDurationNanos(MetricKey.of("DatabaseLookup"), 1_500_000)
+                .addDurationNanos(MetricKey.of("Time"), 20_000_000)
+                .addDurationNanos(MetricKey.of("Backwards"), -1_000_001);
+
+        Assertions.assertEquals("myapp.WidgetCount:3|c|#operation:GetWidget\n"
+                + "myapp.Ratio:0.25|c|#operation:GetWidget\n"
+                + "myapp.DatabaseLookup:1.5|ms|#operation:GetWidget\n"
+                + "myapp.Time:20|ms|#operation:GetWidget\n"
+                + "myapp.Backwards:-1.000001|ms|#operation:GetWidget\n",
+                encode(new StatsdEncoder("myapp"), metrics, "GetWidget"));
+    }
+
+    @Test
+    public void testWithoutPrefixOrOperation() {
+        MetricSnapshot.Builder metrics = new MetricSnapshot.Builder().addCount(MetricKey.of("WidgetCount"), -2);
+        Assertions.assertEquals("WidgetCount:-2|c\n", encode(new StatsdEncoder(""), metrics, null));
+    }
+
+    @Test
+    public void testReservedCharactersAreReplaced() {
+        MetricSnapshot.Builder metrics = new MetricSnapshot.Builder().addCount(MetricKey.of("Cache:Hit|Rate@1\n"), 1);
+        Assertions.assertEquals("my_app.Cache_Hit_Rate_1_:1|c|#operation:Get_Widget_ _1:x\n",
+                encode(new StatsdEncoder("my|app"), metrics, "Get,Widget| #1:x"));
+    }
+
+    @Test
+    public void testEncoderIsReused() {
+        StatsdEncoder encoder = new StatsdEncoder("myapp");
+        MetricSnapshot.Builder metrics = new MetricSnapshot.Builder().addCount(MetricKey.of("WidgetCount"), 1);
+        Assertions.assertEquals("myapp.WidgetCount:1|c|#operation:GetWidget\n", encode(encoder, metrics, "GetWidget"));
+        Assertions.assertEquals("myapp.WidgetCount:1|c|#operation:PutWidget\n", encode(encoder, metrics, "PutWidget"));
+        Assertions.assertEquals("myapp.WidgetCount:1|c\n", encode(encoder, metrics, null));
+        Assertions.assertEquals(0, encoder.encode(new MetricSnapshot.Builder(), "GetWidget"));
+    }
+}
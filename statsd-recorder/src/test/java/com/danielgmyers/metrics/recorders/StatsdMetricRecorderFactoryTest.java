@@ -0,0 +1,100 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import com.danielgmyers.metrics.MetricKey;
+import com.danielgmyers.metrics.MetricRecorder;
+import com.danielgmyers.metrics.MetricRecorderFactory;
+import com.danielgmyers.metrics.MetricSnapshot;
+import com.danielgmyers.metrics.PooledMetricRecorderFactory;
+import com.danielgmyers.metrics.StandardMetricNames;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class StatsdMetricRecorderFactoryTest {
+
+    @Test
+    public void testRecordersAreSentTogether() throws IOException {
+        try (DatagramSocket listener = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+            listener.setSoTimeout(5000);
+            StatsdSender sender = StatsdSender.builder(
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), listener.getLocalPort()))
+                    .withFlushInterval(Duration.ofHours(1))
+                    .build();
+            MetricRecorderFactory factory = new PooledMetricRecorderFactory(
+                    new StatsdMetricRecorderFactory("myapp", sender));
+
+            for (String operation : new String[] {"GetWidget", "PutWidget"}) {
+                MetricRecorder metrics = factory.newMetricRecorder(operation);
+                metrics.addProperty("WidgetId", "widget-1");
+                metrics.addCount("WidgetCount", 2);
+                metrics.addDuration("DatabaseLookup", Duration.ofMillis(3));
+                metrics.close();
+            }
+            sender.close();
+
+            DatagramPacket packet = new DatagramPacket(new byte[65536], 65536);
+            listener.receive(packet);
+            String received = new String(packet.getData(), 0, packet.getLength(), StandardCharsets.UTF_8);
+            String[] lines = received.split("\n");
+            Assertions.assertEquals(6, lines.length, received);
+            Assertions.assertEquals("myapp.WidgetCount:2|c|#operation:GetWidget", lines[0]);
+            Assertions.assertEquals("myapp.DatabaseLookup:3|ms|#operation:GetWidget", lines[1]);
+            Assertions.assertTrue(lines[2].matches("myapp\\.Time:[0-9.]+\\|ms\\|#operation:GetWidget"), lines[2]);
+            Assertions.assertEquals("myapp.WidgetCount:2|c|#operation:PutWidget", lines[3]);
+            Assertions.assertEquals("myapp.DatabaseLookup:3|ms|#operation:PutWidget", lines[4]);
+            Assertions.assertEquals(1, sender.getSentCount());
+        }
+    }
+
+    @Test
+    public void testPublisherTagsSnapshotsWithTheirOperation() throws IOException {
+        try (DatagramSocket listener = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+            listener.setSoTimeout(5000);
+            StatsdSender sender = StatsdSender.builder(
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), listener.getLocalPort()))
+                    .withFlushInterval(Duration.ofHours(1))
+                    .build();
+            StatsdMetricPublisher publisher = new StatsdMetricPublisher("myapp", sender);
+            publisher.publish(new MetricSnapshot.Builder()
+                    .putProperty(StandardMetricNames.OPERATION.getKey(), "GetWidget")
+                    .addCount(MetricKey.of("WidgetCount"), 2)
+                    .build());
+            publisher.publish(new MetricSnapshot.Builder().addCount(MetricKey.of("WidgetCount"), 1).build());
+            sender.close();
+
+            DatagramPacket packet = new DatagramPacket(new byte[65536], 65536);
+            listener.receive(packet);
+            String received = new String(packet.getData(), 0, packet.getLength(), StandardCharsets.UTF_8);
+            Assertions.assertEquals("myapp.WidgetCount:2|c|#operation:GetWidget\nmyapp.WidgetCount:1|c\n", received);
+        }
+    }
+
+    @Test
+    public void testRequiresSender() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new StatsdMetricRecorderFactory(null));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new StatsdMetricRecorderFactory(null, null));
+    }
+}
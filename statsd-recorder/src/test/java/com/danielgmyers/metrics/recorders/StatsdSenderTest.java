@@ -0,0 +1,142 @@
+/*
+ *   Copyright Metric Recorder Contributors
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.danielgmyers.metrics.recorders;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class StatsdSenderTest {
+
+    private DatagramSocket listener;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        listener = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        listener.setSoTimeout(5000);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        listener.close();
+    }
+
+    private StatsdSender.Builder sender() {
+        return StatsdSender.builder(new InetSocketAddress(InetAddress.getLoopbackAddress(), listener.getLocalPort()));
+    }
+
+    private String receive() throws IOException {
+        DatagramPacket packet = new DatagramPacket(new byte[65536], 65536);
+        listener.receive(packet);
+        return new String(packet.getData(), 0, packet.getLength(), StandardCharsets.UTF_8);
+    }
+
+    private static void write(StatsdSender sender, String lines) {
+        byte[] bytes = lines.getBytes(StandardCharsets.UTF_8);
+        sender.write(bytes, 0, bytes.length);
+    }
+
+    @Test
+    public void testSendsAfterFlushInterval() throws IOException {
+        try (StatsdSender sender = sender().withFlushInterval(Duration.ofMillis(10)).build()) {
+            write(sender, "Time:5|ms\n");
+            write(sender, "WidgetCount:1|c\n");
+            // Both lines were queued well within the flush interval, so they normally share a datagram.
+            String received = receive();
+            if (!received.contains("WidgetCount")) {
+                received += receive();
+            }
+            Assertions.assertEquals("Time:5|ms\nWidgetCount:1|c\n", received);
+        }
+    }
+
+    @Test
+    public void testPacksWholeLinesIntoDatagrams() throws IOException {
+        List<String> lines = new ArrayList<>();
+        StatsdSender sender = sender().withMaxPacketSize(100).withFlushInterval(Duration.ofHours(1)).build();
+        for (int i = 0; i < 50; i++) {
+            String line = "Metric" + i + ":" + i + "|c\n";
+            lines.add(line);
+            write(sender, line);
+        }
+        sender.close();
+
+        StringBuilder received = new StringBuilder();
+        while (received.length() < String.join("", lines).length()) {
+            String datagram = receive();
+            Assertions.assertTrue(datagram.length() <= 100, datagram);
+            Assertions.assertTrue(datagram.endsWith("\n"), datagram);
+            received.append(datagram);
+        }
+        Assertions.assertEquals(String.join("", lines), received.toString());
+        Assertions.assertTrue(sender.getSentCount() < lines.size());
+        Assertions.assertEquals(0, sender.getFailedCount());
+    }
+
+    @Test
+    public void testLongLinesAreSentAlone() throws IOException {
+        String longLine = "A".repeat(150) + ":1|c\n";
+        try (StatsdSender sender = sender().withMaxPacketSize(100).withFlushInterval(Duration.ofHours(1)).build()) {
+            write(sender, "B:1|c\n" + longLine + "C:1|c\n");
+        }
+        Assertions.assertEquals("B:1|c\n", receive());
+        Assertions.assertEquals(longLine, receive());
+        Assertions.assertEquals("C:1|c\n", receive());
+    }
+
+    @Test
+    public void testDropsWritesWhenFullOrClosed() throws IOException {
+        StatsdSender sender = sender().withBufferSize(16).withFlushInterval(Duration.ofHours(1)).build();
+        write(sender, "WidgetCount:1|c\n");
+        write(sender, "X:1|c\n");
+        sender.close();
+        write(sender, "Y:1|c\n");
+
+        Assertions.assertEquals("WidgetCount:1|c\n", receive());
+        Assertions.assertEquals(2, sender.getDroppedCount());
+        Assertions.assertEquals(1, sender.getSentCount());
+        Assertions.assertThrows(SocketTimeoutException.class, () -> {
+            listener.setSoTimeout(100);
+            receive();
+        });
+    }
+
+    @Test
+    public void testBuilderValidation() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> StatsdSender.builder(null));
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> StatsdSender.builder(InetSocketAddress.createUnresolved("statsd.invalid", 8125)));
+        StatsdSender.Builder builder = sender();
+        Assertions.assertThrows(IllegalArgumentException.class, () -> builder.withMaxPacketSize(0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> builder.withMaxPacketSize(65508));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> builder.withBufferSize(0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> builder.withFlushInterval(Duration.ZERO));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> builder.withFlushInterval(null));
+    }
+}